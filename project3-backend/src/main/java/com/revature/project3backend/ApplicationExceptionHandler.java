@@ -1,10 +1,17 @@
 package com.revature.project3backend;
 
+import com.revature.project3backend.exceptions.CheckoutInProgressException;
+import com.revature.project3backend.exceptions.CheckoutQueueFullException;
+import com.revature.project3backend.exceptions.IdempotencyKeyReusedException;
+import com.revature.project3backend.exceptions.InsufficientStockException;
 import com.revature.project3backend.exceptions.InvalidCredentialsException;
 import com.revature.project3backend.exceptions.InvalidValueException;
+import com.revature.project3backend.exceptions.RequestInProgressException;
+import com.revature.project3backend.exceptions.StaleProductException;
 import com.revature.project3backend.exceptions.UnauthorizedException;
 import com.revature.project3backend.jsonmodels.JsonResponse;
 import org.springframework.data.crossstore.ChangeSetPersister;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -27,6 +34,28 @@ public class ApplicationExceptionHandler extends ResponseEntityExceptionHandler
 		return ResponseEntity.status (HttpStatus.BAD_REQUEST).body (new JsonResponse (exception));
 	}
 	
+	/**
+	 * This method handles InsufficientStockExceptions, the ids of the products that don't have enough stock are sent back
+	 *
+	 * @param exception The exception that was thrown
+	 * @return A ResponseEntity used to create the HTTP response
+	 */
+	@ExceptionHandler
+	public ResponseEntity <JsonResponse> insufficientStockExceptionHandler (InsufficientStockException exception) {
+		return ResponseEntity.status (HttpStatus.BAD_REQUEST).body (new JsonResponse (exception.getMessage (), false, exception.getProductIds ()));
+	}
+	
+	/**
+	 * This method handles IdempotencyKeyReusedExceptions
+	 *
+	 * @param exception The exception that was thrown
+	 * @return A ResponseEntity used to create the HTTP response
+	 */
+	@ExceptionHandler
+	public ResponseEntity <JsonResponse> idempotencyKeyReusedExceptionHandler (IdempotencyKeyReusedException exception) {
+		return ResponseEntity.status (HttpStatus.UNPROCESSABLE_ENTITY).body (new JsonResponse (exception));
+	}
+	
 	/**
 	 * This method handles UnauthorizedExceptions
 	 *
@@ -49,6 +78,50 @@ public class ApplicationExceptionHandler extends ResponseEntityExceptionHandler
 		return ResponseEntity.status (HttpStatus.UNAUTHORIZED).body (new JsonResponse (exception));
 	}
 	
+	/**
+	 * This method handles RequestInProgressExceptions
+	 *
+	 * @param exception The exception that was thrown
+	 * @return A ResponseEntity used to create the HTTP response
+	 */
+	@ExceptionHandler
+	public ResponseEntity <JsonResponse> requestInProgressExceptionHandler (RequestInProgressException exception) {
+		return ResponseEntity.status (HttpStatus.CONFLICT).body (new JsonResponse (exception));
+	}
+	
+	/**
+	 * This method handles CheckoutInProgressExceptions
+	 *
+	 * @param exception The exception that was thrown
+	 * @return A ResponseEntity used to create the HTTP response
+	 */
+	@ExceptionHandler
+	public ResponseEntity <JsonResponse> checkoutInProgressExceptionHandler (CheckoutInProgressException exception) {
+		return ResponseEntity.status (HttpStatus.CONFLICT).body (new JsonResponse (exception));
+	}
+	
+	/**
+	 * This method handles StaleProductExceptions
+	 *
+	 * @param exception The exception that was thrown
+	 * @return A ResponseEntity used to create the HTTP response
+	 */
+	@ExceptionHandler
+	public ResponseEntity <JsonResponse> staleProductExceptionHandler (StaleProductException exception) {
+		return ResponseEntity.status (HttpStatus.CONFLICT).body (new JsonResponse (exception));
+	}
+	
+	/**
+	 * This method handles CheckoutQueueFullExceptions, the client is told to retry after a second
+	 *
+	 * @param exception The exception that was thrown
+	 * @return A ResponseEntity used to create the HTTP response
+	 */
+	@ExceptionHandler
+	public ResponseEntity <JsonResponse> checkoutQueueFullExceptionHandler (CheckoutQueueFullException exception) {
+		return ResponseEntity.status (HttpStatus.SERVICE_UNAVAILABLE).header (HttpHeaders.RETRY_AFTER, "1").body (new JsonResponse (exception));
+	}
+	
 	/**
 	 * This method handles NotFoundExceptions
 	 *
@@ -2,11 +2,13 @@ package com.revature.project3backend;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
- * The main class of the application
+ * The main class of the application, scheduling is enabled for the background jobs such as releasing expired stock holds
  */
 @SpringBootApplication
+@EnableScheduling
 public class Project3BackendApplication {
 	/**
 	 * Starts the Spring application
@@ -1,6 +1,8 @@
 package com.revature.project3backend.controllers;
 
+import com.revature.project3backend.exceptions.CheckoutInProgressException;
 import com.revature.project3backend.exceptions.InvalidValueException;
+import com.revature.project3backend.exceptions.RequestInProgressException;
 import com.revature.project3backend.exceptions.UnauthorizedException;
 import com.revature.project3backend.jsonmodels.CreateCartItemBody;
 import com.revature.project3backend.jsonmodels.JsonResponse;
@@ -9,6 +11,8 @@ import com.revature.project3backend.models.CartItem;
 import com.revature.project3backend.models.Product;
 import com.revature.project3backend.models.User;
 import com.revature.project3backend.services.CartItemService;
+import com.revature.project3backend.services.CheckoutQueue;
+import com.revature.project3backend.services.IdempotencyService;
 import com.revature.project3backend.services.ProductService;
 import com.revature.project3backend.services.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -40,37 +44,87 @@ public class CartItemController {
 	 */
 	private final UserService userService;
 	
+	/**
+	 * The instance of IdempotencyService to use
+	 */
+	private final IdempotencyService idempotencyService;
+	
+	/**
+	 * The instance of CheckoutQueue to use
+	 */
+	private final CheckoutQueue checkoutQueue;
+	
 	/**
 	 * This constructor is automatically called by Spring
 	 *
 	 * @param cartItemService The instance of CartItemService to use
 	 * @param productService The instance of ProductService to use
 	 * @param userService The instance of UserService to use
+	 * @param idempotencyService The instance of IdempotencyService to use
+	 * @param checkoutQueue The instance of CheckoutQueue to use
 	 */
 	@Autowired
-	public CartItemController (CartItemService cartItemService, ProductService productService, UserService userService) {
+	public CartItemController (CartItemService cartItemService, ProductService productService, UserService userService, IdempotencyService idempotencyService, CheckoutQueue checkoutQueue) {
 		this.cartItemService = cartItemService;
 		this.productService = productService;
 		this.userService = userService;
+		this.idempotencyService = idempotencyService;
+		this.checkoutQueue = checkoutQueue;
 	}
 	
 	/**
 	 * Creates a cart item and then adds it to the user's cart
+	 * A request with an Idempotency-Key header that is retried gets the response of the first request, rather than being rejected because the product is already in the cart
 	 *
 	 * @param body The data to use to create the cart item, contains a product id and a quantity
+	 * @param idempotencyKey The value of the Idempotency-Key header, if there is one
 	 * @param httpSession The HTTP session of the user
 	 * @return A ResponseEntity used to create the HTTP response, contains the user's cart
 	 * @throws InvalidValueException Thrown when validation fails
 	 * @throws UnauthorizedException Thrown when the user is not logged in
+	 * @throws RequestInProgressException Thrown when a request with the same idempotency key hasn't finished
+	 * @throws CheckoutInProgressException Thrown when the user's cart is queued to be checked out
 	 */
 	@PostMapping
-	public ResponseEntity <JsonResponse> createCartItem (@RequestBody CreateCartItemBody body, HttpSession httpSession) throws InvalidValueException, UnauthorizedException {
+	public ResponseEntity <JsonResponse> createCartItem (@RequestBody CreateCartItemBody body, @RequestHeader (value = IdempotencyService.HEADER, required = false) String idempotencyKey, HttpSession httpSession) throws InvalidValueException, UnauthorizedException, RequestInProgressException, CheckoutInProgressException {
 		User user = (User) httpSession.getAttribute ("user");
 		
 		if (user == null) {
 			throw new UnauthorizedException ();
 		}
 		
+		ResponseEntity <JsonResponse> stored = idempotencyService.begin (user.getId (), idempotencyKey, "POST /cartitem", body);
+		
+		if (stored != null) {
+			return stored;
+		}
+		
+		try {
+			if (checkoutQueue.settle (user)) {
+				throw new CheckoutInProgressException ();
+			}
+			
+			ResponseEntity <JsonResponse> responseEntity = addToCart (body, user);
+			
+			idempotencyService.complete (user.getId (), idempotencyKey, responseEntity);
+			
+			return responseEntity;
+		} catch (Exception exception) {
+			idempotencyService.abandon (user.getId (), idempotencyKey);
+			
+			throw exception;
+		}
+	}
+	
+	/**
+	 * Creates a cart item and then adds it to the user's cart
+	 *
+	 * @param body The data to use to create the cart item, contains a product id and a quantity
+	 * @param user The user whose cart the item is added to
+	 * @return A ResponseEntity used to create the HTTP response
+	 * @throws InvalidValueException Thrown when validation fails
+	 */
+	private ResponseEntity <JsonResponse> addToCart (CreateCartItemBody body, User user) throws InvalidValueException {
 		if (body.getProductId () == null) {
 			throw new InvalidValueException ("Invalid product id");
 		}
@@ -92,7 +146,8 @@ public class CartItemController {
 		
 		Product product = productService.getProduct (body.getProductId ());
 		
-		if (product.getStock () - body.getQuantity () < 0) {
+		//the product may be a little stale, holding its stock is what makes sure that it's available
+		if (product.getAvailableStock () - body.getQuantity () < 0) {
 			throw new InvalidValueException ("Invalid quantity");
 		}
 		
@@ -120,6 +175,8 @@ public class CartItemController {
 			throw new UnauthorizedException ();
 		}
 		
+		checkoutQueue.settle (user);
+		
 		List <CartItem> cart = user.getCart ();
 		
 		return ResponseEntity.ok (new JsonResponse ("Got " + cart.size () + " cart items", true, cart));
@@ -134,16 +191,21 @@ public class CartItemController {
 	 * @return A ResponseEntity used to create the HTTP response
 	 * @throws InvalidValueException Thrown when validation fails
 	 * @throws UnauthorizedException Thrown when the user is not logged in
+	 * @throws CheckoutInProgressException Thrown when the user's cart is queued to be checked out
 	 */
 	@PutMapping ("{cartItemId}")
-	public ResponseEntity <JsonResponse> updateCartItem (@PathVariable Integer cartItemId, @RequestBody UpdateCartItemBody body, HttpSession httpSession) throws InvalidValueException, UnauthorizedException {
+	public ResponseEntity <JsonResponse> updateCartItem (@PathVariable Integer cartItemId, @RequestBody UpdateCartItemBody body, HttpSession httpSession) throws InvalidValueException, UnauthorizedException, CheckoutInProgressException {
 		User user = (User) httpSession.getAttribute ("user");
 		
 		if (user == null) {
 			throw new UnauthorizedException ();
 		}
 		
-		if (body.getQuantity () == null) {
+		if (checkoutQueue.settle (user)) {
+			throw new CheckoutInProgressException ();
+		}
+		
+		if (body.getQuantity () == null || body.getQuantity () < 1) {
 			throw new InvalidValueException ("Invalid quantity");
 		}
 		
@@ -153,6 +215,7 @@ public class CartItemController {
 					throw new InvalidValueException ("Invalid quantity");
 				}
 				
+				//the stock held for the cart item is changed by the new quantity, which fails if the product doesn't have enough available stock
 				cartItemService.updateCartItem (cartItemId, body.getQuantity ());
 				
 				return ResponseEntity.ok (new JsonResponse ("Updated cart item quantity", true));
@@ -170,15 +233,20 @@ public class CartItemController {
 	 * @return A ResponseEntity used to create the HTTP response
 	 * @throws InvalidValueException Thrown when validation fails
 	 * @throws UnauthorizedException Thrown when the user is not logged in
+	 * @throws CheckoutInProgressException Thrown when the user's cart is queued to be checked out
 	 */
 	@DeleteMapping ("{cartItemId}")
-	public ResponseEntity <JsonResponse> deleteCartItem (@PathVariable Integer cartItemId, HttpSession httpSession) throws InvalidValueException, UnauthorizedException {
+	public ResponseEntity <JsonResponse> deleteCartItem (@PathVariable Integer cartItemId, HttpSession httpSession) throws InvalidValueException, UnauthorizedException, CheckoutInProgressException {
 		User user = (User) httpSession.getAttribute ("user");
 		
 		if (user == null) {
 			throw new UnauthorizedException ();
 		}
 		
+		if (checkoutQueue.settle (user)) {
+			throw new CheckoutInProgressException ();
+		}
+		
 		for (int i = 0; i < user.getCart ().size (); i++) {
 			if (user.getCart ().get (i).getId ().equals (cartItemId)) {
 				userService.removeFromCart (user, user.getCart ().get (i));
@@ -1,16 +1,32 @@
 package com.revature.project3backend.controllers;
 
 import com.revature.project3backend.exceptions.InvalidValueException;
+import com.revature.project3backend.exceptions.StaleProductException;
 import com.revature.project3backend.exceptions.UnauthorizedException;
 import com.revature.project3backend.jsonmodels.JsonResponse;
+import com.revature.project3backend.jsonmodels.ProductBatch;
+import com.revature.project3backend.jsonmodels.ProductListing;
+import com.revature.project3backend.jsonmodels.ProductSuggestion;
+import com.revature.project3backend.modeldtos.ProductVersion;
 import com.revature.project3backend.models.Product;
 import com.revature.project3backend.models.User;
+import com.revature.project3backend.search.FacetedPage;
+import com.revature.project3backend.search.ProductCursor;
+import com.revature.project3backend.search.ProductFilter;
+import com.revature.project3backend.search.ProductSort;
 import com.revature.project3backend.services.ProductService;
+import com.revature.project3backend.utils.ProductExportFormat;
 import org.apache.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.servlet.http.HttpSession;
 import java.util.List;
@@ -48,11 +64,16 @@ public class ProductController {
 	 *
 	 * @param searchQuery The query to use to search the products
 	 * @param page The page of products to get
-	 * @return A ResponseEntity used to create the HTTP response, contains the products found
+	 * @param sort The order to sort the products in, either name or relevance
+	 * @param minPrice The lowest price of the products to get, if any
+	 * @param maxPrice The highest price of the products to get, if any
+	 * @param onSale Whether to only get products on sale
+	 * @param inStock Whether to only get products in stock
+	 * @return A ResponseEntity used to create the HTTP response, contains the listings of the products found
 	 * @throws InvalidValueException Thrown when validation fails
 	 */
 	@GetMapping
-	public ResponseEntity <JsonResponse> getProducts (@RequestParam String searchQuery, @RequestParam Integer page) throws InvalidValueException {
+	public ResponseEntity <JsonResponse> getProducts (@RequestParam String searchQuery, @RequestParam Integer page, @RequestParam (required = false, defaultValue = "name") String sort, @RequestParam (required = false) Float minPrice, @RequestParam (required = false) Float maxPrice, @RequestParam (required = false, defaultValue = "false") boolean onSale, @RequestParam (required = false, defaultValue = "false") boolean inStock) throws InvalidValueException {
 		if (searchQuery == null) {
 			throw new InvalidValueException ("Invalid search query");
 		}
@@ -61,23 +82,139 @@ public class ProductController {
 			throw new InvalidValueException ("Invalid page");
 		}
 		
-		List <Product> products = this.productService.getProducts (searchQuery, page);
+		if (minPrice != null && minPrice < 0 || maxPrice != null && maxPrice < 0 || minPrice != null && maxPrice != null && minPrice > maxPrice) {
+			throw new InvalidValueException ("Invalid price range");
+		}
+		
+		Slice <ProductListing> products = this.productService.getProducts (searchQuery, page, ProductSort.of (sort), new ProductFilter (minPrice, maxPrice, onSale, inStock));
+		
+		JsonResponse jsonResponse = new JsonResponse ("Got " + products.getNumberOfElements () + " products", true, products.getContent ());
+		
+		jsonResponse.setHasNext (products.hasNext ());
+		
+		if (products instanceof Page) {
+			jsonResponse.setTotal (((Page <ProductListing>) products).getTotalElements ());
+		}
+		
+		if (products instanceof FacetedPage) {
+			jsonResponse.setFacets (((FacetedPage <ProductListing>) products).getFacets ());
+		}
 		
-		return ResponseEntity.ok (new JsonResponse ("Got " + products.size () + " products", true, products));
+		return ResponseEntity.ok (jsonResponse);
+	}
+	
+	/**
+	 * Gets products that match the given searchQuery, starting after a cursor instead of at a page number
+	 * An empty cursor gets the first page, and the response's nextCursor gets the page after it
+	 *
+	 * @param searchQuery The query to use to search the products
+	 * @param cursor The nextCursor of the previous response, or an empty string for the first page
+	 * @return A ResponseEntity used to create the HTTP response, contains the listings of the products found
+	 * @throws InvalidValueException Thrown when validation fails
+	 */
+	@GetMapping (params = "cursor")
+	public ResponseEntity <JsonResponse> getProductsAfterCursor (@RequestParam String searchQuery, @RequestParam String cursor) throws InvalidValueException {
+		Slice <ProductListing> products = this.productService.getProductsAfter (searchQuery, cursor.isEmpty () ? null : ProductCursor.decode (cursor));
+		
+		JsonResponse jsonResponse = new JsonResponse ("Got " + products.getNumberOfElements () + " products", true, products.getContent ());
+		
+		jsonResponse.setHasNext (products.hasNext ());
+		
+		if (products.hasNext ()) {
+			jsonResponse.setNextCursor (ProductCursor.after (products.getContent ().get (products.getNumberOfElements () - 1)).encode ());
+		}
+		
+		return ResponseEntity.ok (jsonResponse);
+	}
+	
+	/**
+	 * Gets suggestions for a search that is being typed, these come from memory so they can be requested on every keystroke
+	 *
+	 * @param prefix The search that has been typed so far
+	 * @param limit The most suggestions to get
+	 * @return A ResponseEntity used to create the HTTP response, contains the suggestions
+	 * @throws InvalidValueException Thrown when validation fails
+	 */
+	@GetMapping ("suggest")
+	public ResponseEntity <JsonResponse> getSuggestions (@RequestParam String prefix, @RequestParam (required = false, defaultValue = "10") Integer limit) throws InvalidValueException {
+		List <ProductSuggestion> suggestions = this.productService.getSuggestions (prefix, limit);
+		
+		return ResponseEntity.ok (new JsonResponse ("Got " + suggestions.size () + " suggestions", true, suggestions));
+	}
+	
+	/**
+	 * Gets several products by id at once, so a page that shows many products doesn't have to get them one at a time
+	 *
+	 * @param ids The ids of the products to get
+	 * @return A ResponseEntity used to create the HTTP response, contains the products found in the order of their ids and the ids that weren't found
+	 * @throws InvalidValueException Thrown when validation fails
+	 */
+	@GetMapping (params = "ids")
+	public ResponseEntity <JsonResponse> getProductsById (@RequestParam List <Integer> ids) throws InvalidValueException {
+		ProductBatch batch = this.productService.getProductsById (ids);
+		
+		return ResponseEntity.ok (new JsonResponse ("Got " + batch.getProducts ().size () + " products", true, batch));
+	}
+	
+	/**
+	 * Exports every product for partner feeds, only admins can do this
+	 * The products are written to the response as they are read from the database, so the export can be as large as the catalog without being held in memory
+	 *
+	 * @param format The format of the export, either ndjson or csv
+	 * @param httpSession The session of the user
+	 * @return A ResponseEntity used to create the HTTP response, its body writes the products
+	 * @throws InvalidValueException Thrown when validation fails
+	 * @throws UnauthorizedException Thrown when the user isn't an admin
+	 */
+	@GetMapping ("export")
+	public ResponseEntity <StreamingResponseBody> exportProducts (@RequestParam (required = false, defaultValue = "ndjson") String format, HttpSession httpSession) throws InvalidValueException, UnauthorizedException {
+		User user = (User) httpSession.getAttribute ("user");
+		
+		if (user == null) {
+			throw new UnauthorizedException ();
+		}
+		
+		if (!user.getRole ().getRole ().equals ("ADMIN")) {
+			throw new UnauthorizedException ();
+		}
+		
+		ProductExportFormat exportFormat = ProductExportFormat.of (format);
+		StreamingResponseBody body = outputStream -> this.productService.exportProducts (exportFormat, outputStream);
+		
+		return ResponseEntity.ok ()
+			.contentType (exportFormat.getMediaType ())
+			.header (HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"products." + exportFormat.getExtension () + "\"")
+			.body (body);
 	}
 	
 	/**
 	 * Gets a product with a given id
+	 * The response has the product's version as a strong ETag along with a Last-Modified header, and must be revalidated before it is reused
+	 * When the request's If-None-Match or If-Modified-Since header shows that the client already has this version, only the version is looked up and a 304 is sent without a body
 	 *
 	 * @param id The id of the product to get
-	 * @return A ResponseEntity used to create the HTTP response, contains the products found
+	 * @param request The request, used to check its conditional headers
+	 * @return A ResponseEntity used to create the HTTP response, contains the products found, or null when the response is a 304
 	 * @throws InvalidValueException Thrown when validation fails
 	 */
 	@GetMapping ("{id}")
-	public ResponseEntity <JsonResponse> getProduct (@PathVariable Integer id) throws InvalidValueException {
+	public ResponseEntity <JsonResponse> getProduct (@PathVariable Integer id, WebRequest request) throws InvalidValueException {
+		ProductVersion version = this.productService.getProductVersion (id);
+		
+		if (request.checkNotModified (version.getETag (), version.getLastModified ().toEpochMilli ())) {
+			return null;
+		}
+		
 		Product product = this.productService.getProduct (id);
 		
-		return ResponseEntity.ok (new JsonResponse ("Got product", true, product));
+		//the product may have changed since its version was looked up, so the headers come from the product that is sent
+		version = ProductVersion.of (product);
+		
+		return ResponseEntity.ok ()
+			.eTag (version.getETag ())
+			.lastModified (version.getLastModified ())
+			.cacheControl (CacheControl.noCache ())
+			.body (new JsonResponse ("Got product", true, product));
 	}
 	
 	/**
@@ -91,6 +228,7 @@ public class ProductController {
 	 * @param file The file for the product's image.
 	 * @param stock The amount of stock for that product.
 	 * @param imageUrl The existing string for the product's image.
+	 * @param version The version of the product that was edited, the product isn't updated if it has changed since.
 	 * @return It returns a response containing the updated product.
 	 */
 	@PatchMapping
@@ -102,7 +240,8 @@ public class ProductController {
 														@RequestParam (value = "file", required = false) MultipartFile file,
 														@RequestParam (value = "stock", required = false) Integer stock,
 														@RequestParam (value = "imageUrl", required = false) String imageUrl,
-														HttpSession httpSession) throws InvalidValueException, UnauthorizedException {
+														@RequestParam ("version") Long version,
+														HttpSession httpSession) throws InvalidValueException, UnauthorizedException, StaleProductException {
 		User user = (User) httpSession.getAttribute ("user");
 		
 		if (user == null) {
@@ -115,6 +254,8 @@ public class ProductController {
 		
 		Product product = new Product (id, productName, productDescription, price, imageUrl, salePrice, stock);
 		
+		product.setVersion (version);
+		
 		if (salePrice != null) {
 			product.setSalePrice (salePrice);
 			if (product.getSalePrice () < 0) {
@@ -1,20 +1,26 @@
 package com.revature.project3backend.controllers;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
+import com.revature.project3backend.exceptions.CheckoutInProgressException;
+import com.revature.project3backend.exceptions.CheckoutQueueFullException;
 import com.revature.project3backend.exceptions.InvalidValueException;
+import com.revature.project3backend.exceptions.RequestInProgressException;
 import com.revature.project3backend.exceptions.UnauthorizedException;
 import com.revature.project3backend.jsonmodels.JsonResponse;
+import com.revature.project3backend.modeldtos.CheckoutOrder;
 import com.revature.project3backend.models.CartItem;
 import com.revature.project3backend.models.Transaction;
 import com.revature.project3backend.models.User;
-import com.revature.project3backend.services.ProductService;
+import com.revature.project3backend.services.CheckoutQueue;
+import com.revature.project3backend.services.CheckoutService;
+import com.revature.project3backend.services.IdempotencyService;
 import com.revature.project3backend.services.TransactionService;
-import com.revature.project3backend.services.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import javax.servlet.http.HttpSession;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -30,61 +36,97 @@ public class TransactionController {
 	private final TransactionService transactionService;
 	
 	/**
-	 * The instance of UserService to use
+	 * The instance of CheckoutService to use
 	 */
-	private final UserService userService;
+	private final CheckoutService checkoutService;
 	
 	/**
-	 * The instance of ProductService to use
+	 * The instance of IdempotencyService to use
 	 */
-	private final ProductService productService;
+	private final IdempotencyService idempotencyService;
+	
+	/**
+	 * The instance of CheckoutQueue to use
+	 */
+	private final CheckoutQueue checkoutQueue;
 	
 	/**
 	 * This constructor is automatically called by Spring
 	 *
 	 * @param transactionService The instance of TransactionService to use
-	 * @param userService The instance of UserService to use
-	 * @param productService The instance of ProductService to use
+	 * @param checkoutService The instance of CheckoutService to use
+	 * @param idempotencyService The instance of IdempotencyService to use
+	 * @param checkoutQueue The instance of CheckoutQueue to use
 	 */
 	@Autowired
-	public TransactionController (TransactionService transactionService, UserService userService, ProductService productService) {
+	public TransactionController (TransactionService transactionService, CheckoutService checkoutService, IdempotencyService idempotencyService, CheckoutQueue checkoutQueue) {
 		this.transactionService = transactionService;
-		this.userService = userService;
-		this.productService = productService;
+		this.checkoutService = checkoutService;
+		this.idempotencyService = idempotencyService;
+		this.checkoutQueue = checkoutQueue;
 	}
 	
 	/**
 	 * Creates a transaction
+	 * When checkouts are asynchronous the cart is queued instead, and the response is 202 with the queued order, whose status can be polled at the Location header
+	 * A request with an Idempotency-Key header that is retried gets the response of the first request, the cart isn't checked out twice
 	 *
+	 * @param idempotencyKey The value of the Idempotency-Key header, if there is one
 	 * @param httpSession The HTTP session of the user
-	 * @return A ResponseEntity used to create the HTTP response, contains the created transaction
+	 * @return A ResponseEntity used to create the HTTP response, contains the created transaction or the queued order
 	 * @throws UnauthorizedException Thrown when the user is not logged in
 	 * @throws InvalidValueException Thrown when validation fails
-	 * @throws JsonProcessingException Thrown when there is an error while parsing JSON
+	 * @throws RequestInProgressException Thrown when a request with the same idempotency key hasn't finished
+	 * @throws CheckoutQueueFullException Thrown when checkouts are asynchronous and too many carts are already queued
+	 * @throws CheckoutInProgressException Thrown when the user's cart is already queued to be checked out
 	 */
 	@PostMapping
-	public ResponseEntity <JsonResponse> createTransaction (HttpSession httpSession) throws UnauthorizedException, InvalidValueException, JsonProcessingException {
+	public ResponseEntity <JsonResponse> createTransaction (@RequestHeader (value = IdempotencyService.HEADER, required = false) String idempotencyKey, HttpSession httpSession) throws UnauthorizedException, InvalidValueException, RequestInProgressException, CheckoutQueueFullException, CheckoutInProgressException {
 		User user = (User) httpSession.getAttribute ("user");
 		
 		if (user == null) {
 			throw new UnauthorizedException ();
 		}
 		
-		List <CartItem> cart = user.getCart ();
+		ResponseEntity <JsonResponse> stored = idempotencyService.begin (user.getId (), idempotencyKey, "POST /transaction", null);
 		
-		if (cart.size () < 1) {
-			throw new InvalidValueException ("Invalid cart");
+		if (stored != null) {
+			return stored;
 		}
 		
-		for (CartItem cartItem : cart) {
-			productService.reduceStock (cartItem.getProduct (), cartItem.getQuantity ());
+		try {
+			if (checkoutQueue.settle (user)) {
+				throw new CheckoutInProgressException ();
+			}
+			
+			List <CartItem> cart = user.getCart ();
+			
+			if (cart.size () < 1) {
+				throw new InvalidValueException ("Invalid cart");
+			}
+			
+			ResponseEntity <JsonResponse> responseEntity;
+			
+			if (checkoutQueue.isEnabled ()) {
+				CheckoutOrder order = checkoutQueue.submit (user);
+				
+				responseEntity = ResponseEntity.accepted ().header (HttpHeaders.LOCATION, "/transaction/" + order.getId () + "/status").body (new JsonResponse ("Queued transaction", true, order));
+			} else {
+				Transaction transaction = checkoutService.checkout (user, cart);
+				
+				user.setCart (new ArrayList <> ());
+				
+				responseEntity = ResponseEntity.ok (new JsonResponse ("Created transaction", true, transaction));
+			}
+			
+			idempotencyService.complete (user.getId (), idempotencyKey, responseEntity);
+			
+			return responseEntity;
+		} catch (Exception exception) {
+			idempotencyService.abandon (user.getId (), idempotencyKey);
+			
+			throw exception;
 		}
-		
-		ResponseEntity <JsonResponse> responseEntity = ResponseEntity.ok (new JsonResponse ("Created transaction", true, transactionService.createTransaction (new Transaction (user), cart)));
-		
-		userService.clearCart (user);
-		
-		return responseEntity;
 	}
 	
 	/**
@@ -110,6 +152,37 @@ public class TransactionController {
 			throw new InvalidValueException ("Invalid transaction id");
 		}
 		
+		transaction.setItems (transactionService.getItems (transactionId));
+		
 		return ResponseEntity.ok (new JsonResponse ("Got transaction", true, transaction));
 	}
+	
+	/**
+	 * Gets the status of a queued order, once it has completed this contains the id of the created transaction
+	 * A finished order is settled, so the user's cart in the session reflects it
+	 *
+	 * @param orderId The id of the order
+	 * @param httpSession The HTTP session of the user
+	 * @return A ResponseEntity used to create the HTTP response, contains the order
+	 * @throws UnauthorizedException Thrown when the user is not logged in
+	 * @throws InvalidValueException Thrown when validation fails
+	 */
+	@GetMapping ("{orderId}/status")
+	public ResponseEntity <JsonResponse> getOrderStatus (@PathVariable String orderId, HttpSession httpSession) throws UnauthorizedException, InvalidValueException {
+		User user = (User) httpSession.getAttribute ("user");
+		
+		if (user == null) {
+			throw new UnauthorizedException ();
+		}
+		
+		CheckoutOrder order = checkoutQueue.getOrder (orderId);
+		
+		if (order == null || !order.getUserId ().equals (user.getId ())) {
+			throw new InvalidValueException ("Invalid order id");
+		}
+		
+		checkoutQueue.settle (user);
+		
+		return ResponseEntity.ok (new JsonResponse ("Got order status", true, order));
+	}
 }
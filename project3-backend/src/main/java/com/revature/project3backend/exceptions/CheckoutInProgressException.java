@@ -0,0 +1,13 @@
+package com.revature.project3backend.exceptions;
+
+/**
+ * CheckoutInProgressException is thrown when a user's cart is changed or checked out again while it is queued to be checked out
+ */
+public class CheckoutInProgressException extends Exception {
+	/**
+	 * This constructor sets the message of the exception
+	 */
+	public CheckoutInProgressException () {
+		super ("Error! Checkout in progress");
+	}
+}
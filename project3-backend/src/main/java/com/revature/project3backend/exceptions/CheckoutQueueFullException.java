@@ -0,0 +1,13 @@
+package com.revature.project3backend.exceptions;
+
+/**
+ * CheckoutQueueFullException is thrown when a checkout can't be queued because too many checkouts are already waiting
+ */
+public class CheckoutQueueFullException extends Exception {
+	/**
+	 * This constructor sets the message of the exception
+	 */
+	public CheckoutQueueFullException () {
+		super ("Error! Too many checkouts, try again later");
+	}
+}
@@ -0,0 +1,13 @@
+package com.revature.project3backend.exceptions;
+
+/**
+ * IdempotencyKeyReusedException is thrown when an idempotency key is sent again with a request that isn't the same as the one that first used it
+ */
+public class IdempotencyKeyReusedException extends InvalidValueException {
+	/**
+	 * This constructor sets the message of the exception
+	 */
+	public IdempotencyKeyReusedException () {
+		super ("Idempotency key was used for another request");
+	}
+}
@@ -0,0 +1,31 @@
+package com.revature.project3backend.exceptions;
+
+import java.util.List;
+
+/**
+ * InsufficientStockException is thrown when some of the products in a cart don't have enough stock for it to be bought
+ */
+public class InsufficientStockException extends InvalidValueException {
+	/**
+	 * The ids of the products that don't have enough stock
+	 */
+	private final List <Integer> productIds;
+	
+	/**
+	 * This constructor sets the message of the exception
+	 *
+	 * @param productIds The ids of the products that don't have enough stock
+	 */
+	public InsufficientStockException (List <Integer> productIds) {
+		super ("Invalid quantity");
+		
+		this.productIds = productIds;
+	}
+	
+	/**
+	 * @return The ids of the products that don't have enough stock
+	 */
+	public List <Integer> getProductIds () {
+		return productIds;
+	}
+}
@@ -0,0 +1,13 @@
+package com.revature.project3backend.exceptions;
+
+/**
+ * RequestInProgressException is thrown when a request is retried with the same idempotency key while the first one hasn't finished
+ */
+public class RequestInProgressException extends Exception {
+	/**
+	 * This constructor sets the message of the exception
+	 */
+	public RequestInProgressException () {
+		super ("Error! Request in progress");
+	}
+}
@@ -0,0 +1,13 @@
+package com.revature.project3backend.exceptions;
+
+/**
+ * StaleProductException is thrown when a product is updated from a version of it that has since been changed, such as by a sale
+ */
+public class StaleProductException extends Exception {
+	/**
+	 * This constructor sets the message of the exception
+	 */
+	public StaleProductException () {
+		super ("Error! The product has changed, reload it and try again");
+	}
+}
@@ -1,5 +1,6 @@
 package com.revature.project3backend.jsonmodels;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.Data;
@@ -34,6 +35,30 @@ public class JsonResponse {
 	 */
 	private String redirect;
 	
+	/**
+	 * The cursor that gets the next page of a paginated response, it is left out of the response when there is no next page
+	 */
+	@JsonInclude (JsonInclude.Include.NON_NULL)
+	private String nextCursor;
+	
+	/**
+	 * Whether there is a page after this one, it is only included in paginated responses
+	 */
+	@JsonInclude (JsonInclude.Include.NON_NULL)
+	private Boolean hasNext;
+	
+	/**
+	 * The total number of results across all pages, it is only included in paginated responses when it is known without counting the results in the database
+	 */
+	@JsonInclude (JsonInclude.Include.NON_NULL)
+	private Long total;
+	
+	/**
+	 * The facet counts of a product search, they are only included when the search was answered by the in-memory index
+	 */
+	@JsonInclude (JsonInclude.Include.NON_NULL)
+	private ProductFacets facets;
+	
 	/**
 	 * The log4j logger that logs the contents of responses
 	 */
@@ -0,0 +1,26 @@
+package com.revature.project3backend.jsonmodels;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * PriceFacet is the number of products in a price range
+ */
+@AllArgsConstructor
+@Data
+public class PriceFacet {
+	/**
+	 * The lowest price in the range
+	 */
+	private Float min;
+	
+	/**
+	 * The price that the range goes up to but doesn't include, or null if the range has no upper bound
+	 */
+	private Float max;
+	
+	/**
+	 * The number of products in the range
+	 */
+	private long count;
+}
@@ -0,0 +1,24 @@
+package com.revature.project3backend.jsonmodels;
+
+import com.revature.project3backend.models.Product;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * ProductBatch is the result of getting several products by id at once, it is sent to the client when getting products by id
+ */
+@AllArgsConstructor
+@Data
+public class ProductBatch {
+	/**
+	 * The products that were found, in the order that their ids were requested
+	 */
+	private List <Product> products;
+	
+	/**
+	 * The requested ids that no product has, in the order that they were requested
+	 */
+	private List <Integer> missingIds;
+}
@@ -0,0 +1,29 @@
+package com.revature.project3backend.jsonmodels;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * ProductFacets are the number of products that a search would find with each filter, they are sent to the client along with the search results
+ * Each count applies every other filter of the search but not its own, so the client can show what choosing it would do
+ */
+@AllArgsConstructor
+@Data
+public class ProductFacets {
+	/**
+	 * The number of products on sale
+	 */
+	private long onSale;
+	
+	/**
+	 * The number of products in stock
+	 */
+	private long inStock;
+	
+	/**
+	 * The number of products in each price range, from the cheapest range up
+	 */
+	private List <PriceFacet> prices;
+}
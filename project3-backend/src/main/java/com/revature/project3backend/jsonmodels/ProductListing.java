@@ -0,0 +1,69 @@
+package com.revature.project3backend.jsonmodels;
+
+import com.revature.project3backend.models.Product;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * ProductListing is a product as it is shown in the product grid, it is sent to the client when listing and searching products
+ * The description is cut short to what the grid has room for, the whole product is sent when getting it by id
+ */
+@AllArgsConstructor
+@Data
+public class ProductListing {
+	/**
+	 * The most characters of the description that are listed, the grid shows two lines of it
+	 */
+	public static final int DESCRIPTION_LENGTH = 160;
+	
+	/**
+	 * The id of the product
+	 */
+	private Integer id;
+	
+	/**
+	 * The name of the product
+	 */
+	private String name;
+	
+	/**
+	 * The start of the description of the product, at most DESCRIPTION_LENGTH characters
+	 */
+	private String description;
+	
+	/**
+	 * The price of the product (if the product is on sale, this is the non-sale price)
+	 */
+	private Float price;
+	
+	/**
+	 * The url of the image of the product
+	 */
+	private String imageUrl;
+	
+	/**
+	 * The sale price of the product (if this is null, the product is not on sale)
+	 */
+	private Float salePrice;
+	
+	/**
+	 * The stock of the product
+	 */
+	private Integer stock;
+	
+	/**
+	 * Creates the listing of a product
+	 *
+	 * @param product The product
+	 * @return The listing
+	 */
+	public static ProductListing of (Product product) {
+		String description = product.getDescription ();
+		
+		if (description != null && description.length () > DESCRIPTION_LENGTH) {
+			description = description.substring (0, DESCRIPTION_LENGTH);
+		}
+		
+		return new ProductListing (product.getId (), product.getName (), description, product.getPrice (), product.getImageUrl (), product.getSalePrice (), product.getStock ());
+	}
+}
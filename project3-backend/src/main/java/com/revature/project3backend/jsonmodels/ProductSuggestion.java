@@ -0,0 +1,21 @@
+package com.revature.project3backend.jsonmodels;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * ProductSuggestion is a completion of a search that is being typed, it is sent to the client when getting suggestions
+ */
+@AllArgsConstructor
+@Data
+public class ProductSuggestion {
+	/**
+	 * The id of the suggested product
+	 */
+	private Integer id;
+	
+	/**
+	 * The name of the suggested product
+	 */
+	private String name;
+}
@@ -0,0 +1,122 @@
+package com.revature.project3backend.modeldtos;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * CheckoutOrder is the progress of a cart that was queued to be checked out, it only lives in memory
+ * An order is never changed once it is handed out, each step of the checkout replaces it with a new one
+ */
+@AllArgsConstructor
+@Data
+public class CheckoutOrder {
+	/**
+	 * The steps that a queued checkout goes through
+	 */
+	public enum Status {
+		/**
+		 * The checkout is waiting for a worker
+		 */
+		QUEUED,
+		
+		/**
+		 * A worker is checking out the cart
+		 */
+		PROCESSING,
+		
+		/**
+		 * The transaction was created
+		 */
+		COMPLETED,
+		
+		/**
+		 * The cart couldn't be checked out, it is left in the user's cart
+		 */
+		FAILED
+	}
+	
+	/**
+	 * The id of the order
+	 */
+	private String id;
+	
+	/**
+	 * The id of the user who checked out
+	 */
+	@JsonIgnore
+	private Integer userId;
+	
+	/**
+	 * The step that the checkout is at
+	 */
+	private Status status;
+	
+	/**
+	 * The id of the created transaction, once the checkout has completed
+	 */
+	private Integer transactionId;
+	
+	/**
+	 * Why the checkout failed, if it did
+	 */
+	private String message;
+	
+	/**
+	 * The ids of the products that didn't have enough stock, if that's why the checkout failed
+	 */
+	private List <Integer> productIds;
+	
+	/**
+	 * This constructor is used to create an order that was just queued
+	 *
+	 * @param id The id of the order
+	 * @param userId The id of the user who checked out
+	 */
+	public CheckoutOrder (String id, Integer userId) {
+		this (id, userId, Status.QUEUED, null, null, null);
+	}
+	
+	/**
+	 * Tells whether the checkout has finished, whether or not it succeeded
+	 *
+	 * @return Whether the order is completed or failed
+	 */
+	@JsonIgnore
+	public boolean isFinished () {
+		return status == Status.COMPLETED || status == Status.FAILED;
+	}
+	
+	/**
+	 * Gets the order at another step
+	 *
+	 * @param status The step that the checkout is at
+	 * @return A new order with the status
+	 */
+	public CheckoutOrder withStatus (Status status) {
+		return new CheckoutOrder (id, userId, status, transactionId, message, productIds);
+	}
+	
+	/**
+	 * Gets the order once its transaction was created
+	 *
+	 * @param transactionId The id of the created transaction
+	 * @return A new completed order
+	 */
+	public CheckoutOrder completed (Integer transactionId) {
+		return new CheckoutOrder (id, userId, Status.COMPLETED, transactionId, null, null);
+	}
+	
+	/**
+	 * Gets the order once its checkout failed
+	 *
+	 * @param message Why the checkout failed
+	 * @param productIds The ids of the products that didn't have enough stock, or null
+	 * @return A new failed order
+	 */
+	public CheckoutOrder failed (String message, List <Integer> productIds) {
+		return new CheckoutOrder (id, userId, Status.FAILED, null, message, productIds);
+	}
+}
@@ -0,0 +1,48 @@
+package com.revature.project3backend.modeldtos;
+
+import com.revature.project3backend.models.Product;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.Instant;
+
+/**
+ * ProductVersion is the version of a product without the rest of the product, it is all that is needed to answer a conditional request
+ */
+@AllArgsConstructor
+@Data
+public class ProductVersion {
+	/**
+	 * The id of the product
+	 */
+	private Integer id;
+
+	/**
+	 * The version of the product
+	 */
+	private Long version;
+
+	/**
+	 * When the product was last changed
+	 */
+	private Instant lastModified;
+
+	/**
+	 * Gets the version of a product
+	 *
+	 * @param product The product
+	 * @return The version of the product
+	 */
+	public static ProductVersion of (Product product) {
+		return new ProductVersion (product.getId (), product.getVersion (), product.getLastModified ());
+	}
+
+	/**
+	 * Gets the strong ETag of the product, which changes whenever the product does
+	 *
+	 * @return The quoted ETag
+	 */
+	public String getETag () {
+		return "\"" + id + "-" + version + "\"";
+	}
+}
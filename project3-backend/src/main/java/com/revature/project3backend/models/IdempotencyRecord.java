@@ -0,0 +1,97 @@
+package com.revature.project3backend.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.Instant;
+
+/**
+ * IdempotencyRecords are the responses of requests that were sent with an Idempotency-Key header, so that a retry of the request gets the same response without the request being done again
+ * A record is saved as soon as its request starts, and the unique index on the user and key stops a second request with the same key from starting while the first is running
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Entity
+@Table (indexes = {@Index (name = "idempotency_record_user_id_key_idx", columnList = "userId, idempotencyKey", unique = true), @Index (name = "idempotency_record_created_at_idx", columnList = "createdAt")})
+public class IdempotencyRecord {
+	/**
+	 * The id of the record
+	 */
+	@Id
+	@GeneratedValue (strategy = GenerationType.IDENTITY)
+	private Integer id;
+	
+	/**
+	 * The id of the user that sent the request, keys only have to be unique for each user
+	 */
+	@Column (nullable = false)
+	private Integer userId;
+	
+	/**
+	 * The value of the Idempotency-Key header
+	 */
+	@Column (nullable = false)
+	private String idempotencyKey;
+	
+	/**
+	 * The method and path of the request, a key can't be used for another endpoint
+	 */
+	@Column (nullable = false)
+	private String endpoint;
+	
+	/**
+	 * The SHA-256 hash of the request, a key can't be used for a request that isn't the same
+	 */
+	@Column (nullable = false)
+	private String requestHash;
+	
+	/**
+	 * The HTTP status of the response, which is null while the request is in progress
+	 */
+	private Integer status;
+	
+	/**
+	 * The headers of the response that are replayed with it as a JSON object of lists of values, which is null if it doesn't have any
+	 */
+	@Column (columnDefinition = "text")
+	private String headers;
+	
+	/**
+	 * The JSON body of the response, which is null while the request is in progress
+	 */
+	@Column (columnDefinition = "text")
+	private String body;
+	
+	/**
+	 * When the request started, the record expires a while after that
+	 */
+	@Column (nullable = false)
+	private Instant createdAt;
+	
+	/**
+	 * When the request in progress was last claimed, another request with the key can take it over once the claim has timed out because the request that made it may have died
+	 */
+	@Column (nullable = false)
+	private Instant claimedAt;
+	
+	/**
+	 * This constructor is used to create the record of a request that is starting
+	 *
+	 * @param userId The id of the user that sent the request
+	 * @param idempotencyKey The value of the Idempotency-Key header
+	 * @param endpoint The method and path of the request
+	 * @param requestHash The SHA-256 hash of the request
+	 * @param createdAt When the request started
+	 */
+	public IdempotencyRecord (Integer userId, String idempotencyKey, String endpoint, String requestHash, Instant createdAt) {
+		this.userId = userId;
+		this.idempotencyKey = idempotencyKey;
+		this.endpoint = endpoint;
+		this.requestHash = requestHash;
+		this.createdAt = createdAt;
+		this.claimedAt = createdAt;
+	}
+}
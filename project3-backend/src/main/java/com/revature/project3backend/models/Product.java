@@ -1,19 +1,25 @@
 package com.revature.project3backend.models;
 
-import lombok.AllArgsConstructor;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 
 /**
  * Products are things that the user can buy
+ * They are kept in the read-write region of the second-level cache, so loading a product by id usually doesn't go to the database
  */
 @NoArgsConstructor
-@AllArgsConstructor
 @Data
 @Entity
-@Table
+@Cacheable
+@Cache (usage = CacheConcurrencyStrategy.READ_WRITE, region = "product")
+@Table (indexes = @Index (name = "product_name_id_idx", columnList = "name, id"))
 public class Product {
 	/**
 	 * The id of the product
@@ -55,6 +61,49 @@ public class Product {
 	 */
 	private Integer stock;
 	
+	/**
+	 * The part of the stock that is held for carts, which can't be added to other carts. Only the stock holds change this, so it is never written when the product is saved
+	 */
+	@JsonIgnore
+	@Column (insertable = false, updatable = false, nullable = false, columnDefinition = "integer default 0")
+	private Integer reserved = 0;
+	
+	/**
+	 * The version of the product, it goes up every time the product changes and is used as the product's ETag
+	 * The column has a default so that it can be added to a table that already has products
+	 */
+	@Version
+	@Column (nullable = false, columnDefinition = "bigint default 0")
+	private Long version;
+	
+	/**
+	 * When the product was last changed, this is sent as the Last-Modified header rather than in the product's JSON
+	 */
+	@JsonIgnore
+	@Column (nullable = false, columnDefinition = "timestamp default current_timestamp")
+	private Instant lastModified;
+	
+	/**
+	 * This constructor is used to create a product with all the properties that can be edited
+	 *
+	 * @param id The id of the product
+	 * @param name The name of the product
+	 * @param description The description of the product
+	 * @param price The price of the product (if the product is on sale, this is the non-sale price)
+	 * @param imageUrl The url of the image of the product
+	 * @param salePrice The sale price of the product (if this is null, the product is not on sale)
+	 * @param stock The stock of the product
+	 */
+	public Product (Integer id, String name, String description, Float price, String imageUrl, Float salePrice, Integer stock) {
+		this.id = id;
+		this.name = name;
+		this.description = description;
+		this.price = price;
+		this.imageUrl = imageUrl;
+		this.salePrice = salePrice;
+		this.stock = stock;
+	}
+	
 	/**
 	 * This constructor is used to create a product with only the needed properties
 	 *
@@ -73,4 +122,23 @@ public class Product {
 		this.imageUrl = imageUrl;
 		this.stock = stock;
 	}
+	
+	/**
+	 * Gets the stock that isn't held for any cart
+	 *
+	 * @return The stock minus the held stock, or 0 if there is no stock or more stock is held than there is
+	 */
+	@JsonIgnore
+	public int getAvailableStock () {
+		return stock == null ? 0 : Math.max (stock - reserved, 0);
+	}
+	
+	/**
+	 * Sets lastModified before the product is inserted or updated, to the millisecond so that it's the same once it has been read back from the database
+	 */
+	@PrePersist
+	@PreUpdate
+	private void touch () {
+		this.lastModified = Instant.now ().truncatedTo (ChronoUnit.MILLIS);
+	}
 }
@@ -0,0 +1,48 @@
+package com.revature.project3backend.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+
+/**
+ * StockDeltas are sales of hot products that have been taken from their in-memory stock but not yet from the product table
+ * Each checkout inserts its own rows rather than updating the product, so checkouts of the same product don't wait on each other. The rows are applied to the products and deleted in batches by HotStockFlusher
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Entity
+@Table (indexes = @Index (name = "stock_delta_product_id_idx", columnList = "productId"))
+public class StockDelta {
+	/**
+	 * The id of the delta, which orders the deltas by when they were made
+	 */
+	@Id
+	@GeneratedValue (strategy = GenerationType.IDENTITY)
+	private Integer id;
+	
+	/**
+	 * The id of the product that was sold
+	 */
+	@Column (nullable = false)
+	private Integer productId;
+	
+	/**
+	 * The quantity that was sold, which is still to be taken from the product's stock
+	 */
+	@Column (nullable = false)
+	private Integer quantity;
+	
+	/**
+	 * This constructor is used to create a delta that hasn't been saved yet
+	 *
+	 * @param productId The id of the product that was sold
+	 * @param quantity The quantity that was sold
+	 */
+	public StockDelta (Integer productId, Integer quantity) {
+		this.productId = productId;
+		this.quantity = quantity;
+	}
+}
@@ -0,0 +1,65 @@
+package com.revature.project3backend.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.Instant;
+
+/**
+ * StockHolds are stock set aside for a cart item until it is checked out or the hold expires
+ * The cart item and product are kept as ids rather than relations, so a hold that outlives its cart item is simply released when it expires
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Entity
+@Table (indexes = {@Index (name = "stock_hold_cart_item_id_idx", columnList = "cartItemId", unique = true), @Index (name = "stock_hold_expires_at_idx", columnList = "expiresAt")})
+public class StockHold {
+	/**
+	 * The id of the hold
+	 */
+	@Id
+	@GeneratedValue (strategy = GenerationType.IDENTITY)
+	private Integer id;
+	
+	/**
+	 * The id of the cart item that the stock is held for
+	 */
+	@Column (nullable = false)
+	private Integer cartItemId;
+	
+	/**
+	 * The id of the product that the stock is held from
+	 */
+	@Column (nullable = false)
+	private Integer productId;
+	
+	/**
+	 * The quantity of the product that is held
+	 */
+	@Column (nullable = false)
+	private Integer quantity;
+	
+	/**
+	 * When the hold expires and its stock is given back
+	 */
+	@Column (nullable = false)
+	private Instant expiresAt;
+	
+	/**
+	 * This constructor is used to create a hold that hasn't been saved yet
+	 *
+	 * @param cartItemId The id of the cart item that the stock is held for
+	 * @param productId The id of the product that the stock is held from
+	 * @param quantity The quantity of the product that is held
+	 * @param expiresAt When the hold expires and its stock is given back
+	 */
+	public StockHold (Integer cartItemId, Integer productId, Integer quantity, Instant expiresAt) {
+		this.cartItemId = cartItemId;
+		this.productId = productId;
+		this.quantity = quantity;
+		this.expiresAt = expiresAt;
+	}
+}
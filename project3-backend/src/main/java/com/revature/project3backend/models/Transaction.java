@@ -1,17 +1,17 @@
 package com.revature.project3backend.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
-import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import javax.persistence.*;
+import java.util.List;
 
 /**
  * Transactions are completed orders made by the user
  */
 @NoArgsConstructor
-@AllArgsConstructor
 @Data
 @Entity
 @Table
@@ -30,13 +30,11 @@ public class Transaction {
 	@JsonProperty (access = JsonProperty.Access.WRITE_ONLY)
 	private User buyer;
 	
-	//todo use a List of CartItems, problem is that you can't delete the CartItems when they are used in a transaction, but you should delete them if the user clears them from the cart or they checkout and you want to clear their cart
-	//todo this causes error if items string is more than 2000 characters
 	/**
-	 * The items in the transaction (formatted as a JSON string)
+	 * The items in the transaction, these are kept in the transaction_line table
 	 */
-	@Column (length = 2000)
-	private String items;
+	@Transient
+	private List <TransactionLine> items;
 	
 	/**
 	 * The total price of the transaction
@@ -44,6 +42,28 @@ public class Transaction {
 	@Column (nullable = false)
 	private Float total;
 	
+	/**
+	 * The items of a transaction made before they were kept in the transaction_line table, formatted as a JSON string of its cart items. They are moved to the table by TransactionLineMigration, which then clears this
+	 */
+	@Column (name = "items", length = 2000)
+	@JsonIgnore
+	private String legacyItems;
+	
+	/**
+	 * This constructor is used to create a transaction with all of its properties
+	 *
+	 * @param id The id of the transaction
+	 * @param buyer The user that completed the transaction
+	 * @param items The items in the transaction
+	 * @param total The total price of the transaction
+	 */
+	public Transaction (Integer id, User buyer, List <TransactionLine> items, Float total) {
+		this.id = id;
+		this.buyer = buyer;
+		this.items = items;
+		this.total = total;
+	}
+	
 	/**
 	 * This constructor is used to create a transaction with only the needed properties
 	 *
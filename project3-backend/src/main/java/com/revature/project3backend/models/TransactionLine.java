@@ -0,0 +1,71 @@
+package com.revature.project3backend.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+
+/**
+ * TransactionLines are the products bought in a transaction, with their name and price as they were when it was made
+ * The transaction and product are kept as ids rather than relations, so a line stays as it was when its product changes or is deleted
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Entity
+@Table (indexes = @Index (name = "transaction_line_transaction_id_idx", columnList = "transactionId"))
+public class TransactionLine {
+	/**
+	 * The id of the line
+	 */
+	@Id
+	@GeneratedValue (strategy = GenerationType.IDENTITY)
+	private Integer id;
+	
+	/**
+	 * The id of the transaction that the line is part of
+	 */
+	@Column (nullable = false)
+	private Integer transactionId;
+	
+	/**
+	 * The id of the product that was bought
+	 */
+	@Column (nullable = false)
+	private Integer productId;
+	
+	/**
+	 * The name of the product when it was bought
+	 */
+	@Column (nullable = false)
+	private String name;
+	
+	/**
+	 * The price that was paid for each unit of the product, its sale price if it had one
+	 */
+	@Column (nullable = false)
+	private Float price;
+	
+	/**
+	 * The number of units of the product that were bought
+	 */
+	@Column (nullable = false)
+	private Integer quantity;
+	
+	/**
+	 * This constructor is used to create a line from a cart item that is being checked out
+	 *
+	 * @param transactionId The id of the transaction that the line is part of
+	 * @param cartItem The cart item that was bought
+	 */
+	public TransactionLine (Integer transactionId, CartItem cartItem) {
+		Product product = cartItem.getProduct ();
+		
+		this.transactionId = transactionId;
+		this.productId = product.getId ();
+		this.name = product.getName ();
+		this.price = product.getSalePrice () == null ? product.getPrice () : product.getSalePrice ();
+		this.quantity = cartItem.getQuantity ();
+	}
+}
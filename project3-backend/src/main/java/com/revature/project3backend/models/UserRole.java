@@ -3,6 +3,8 @@ package com.revature.project3backend.models;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 
@@ -10,6 +12,8 @@ import javax.persistence.*;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
+@Cacheable
+@Cache (usage = CacheConcurrencyStrategy.READ_ONLY, region = "user-role")
 @Table (name = "userRoles")
 public class UserRole {
 	
@@ -0,0 +1,48 @@
+package com.revature.project3backend.repositories;
+
+import com.revature.project3backend.models.IdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import javax.transaction.Transactional;
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * IdempotencyRecordRepo is the repository for the stored responses of idempotent requests
+ */
+public interface IdempotencyRecordRepo extends JpaRepository <IdempotencyRecord, Integer> {
+	/**
+	 * Gets the record of a user's key
+	 *
+	 * @param userId The id of the user
+	 * @param idempotencyKey The key
+	 * @return The record, or an empty Optional if the key hasn't been used
+	 */
+	Optional <IdempotencyRecord> findByUserIdAndIdempotencyKey (Integer userId, String idempotencyKey);
+	
+	/**
+	 * Takes over a request that is still in progress if its claim was made before a given time, so of two requests that try to take it over at once only one does
+	 *
+	 * @param id The id of the record
+	 * @param claimedBefore The time that the claim must have been made before
+	 * @param claimedAt The time of the new claim
+	 * @return Whether the request was taken over
+	 */
+	@Transactional
+	@Modifying
+	@Query ("UPDATE IdempotencyRecord r SET r.claimedAt = :claimedAt WHERE r.id = :id AND r.status IS NULL AND r.claimedAt < :claimedBefore")
+	int reclaim (@Param ("id") Integer id, @Param ("claimedBefore") Instant claimedBefore, @Param ("claimedAt") Instant claimedAt);
+	
+	/**
+	 * Deletes the records of requests that started before a given time
+	 *
+	 * @param before The time
+	 * @return The number of records that were deleted
+	 */
+	@Modifying
+	@Query ("DELETE FROM IdempotencyRecord r WHERE r.createdAt < :before")
+	int deleteCreatedBefore (@Param ("before") Instant before);
+}
@@ -1,21 +1,124 @@
 package com.revature.project3backend.repositories;
 
+import com.revature.project3backend.jsonmodels.ProductListing;
+import com.revature.project3backend.modeldtos.ProductVersion;
 import com.revature.project3backend.models.Product;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * ProductRepo is the repository for products
  */
-public interface ProductRepo extends JpaRepository <Product, Integer> {
+public interface ProductRepo extends JpaRepository <Product, Integer>, ProductStockRepo {
+	/**
+	 * The number of products fetched from the database at a time when streaming them
+	 */
+	int STREAM_FETCH_SIZE = 500;
+	
+	/**
+	 * Gets a page of products whose name or description matches a LIKE pattern, ranked by relevance. This query only works on PostgreSQL with the pg_trgm extension, where the LIKE predicates are answered by the trigram indexes in db/postgresql-product-search.sql
+	 * Products that match by name come first, then products are ranked by the trigram similarity of their name to the query, then by name
+	 *
+	 * @param query The lowercase search query, used to rank the products
+	 * @param pattern The lowercase LIKE pattern that the product's name or description must match
+	 * @param pageable The Pageable object to use to get the page of products, it must not be sorted
+	 * @return Returns a Slice containing the products that were found
+	 */
+	@Query (value = "SELECT * FROM product WHERE lower(name) LIKE :pattern OR lower(description) LIKE :pattern ORDER BY (lower(name) LIKE :pattern) DESC, similarity(lower(name), :query) DESC, name, id", nativeQuery = true)
+	Slice <Product> searchByTrigrams (@Param ("query") String query, @Param ("pattern") String pattern, Pageable pageable);
+	
+	/**
+	 * Gets a page of the listings of products, sorted by name, whose name or description matches a LIKE pattern. Its first page is also the first page of the keyset pagination done by findPageAfter
+	 * Only the columns that are listed are selected, so the whole description isn't read and no entities are built
+	 *
+	 * @param pattern The lowercase LIKE pattern that the product's name or description must match, with backslash as the escape character
+	 * @param pageable The Pageable object to use to get the page of products, it must not be sorted
+	 * @return Returns a Slice containing the listings of the products that were found
+	 */
+	@Query ("SELECT new com.revature.project3backend.jsonmodels.ProductListing(p.id, p.name, substring(p.description, 1, " + ProductListing.DESCRIPTION_LENGTH + "), p.price, p.imageUrl, p.salePrice, p.stock) FROM Product p WHERE lower(p.name) LIKE :pattern ESCAPE '\\' OR lower(p.description) LIKE :pattern ESCAPE '\\' ORDER BY p.name, p.id")
+	Slice <ProductListing> findListings (@Param ("pattern") String pattern, Pageable pageable);
+	
+	/**
+	 * Gets the listings of the products, sorted by name, whose name or description matches a LIKE pattern and that come after a given product. The name and id of the previous page's last product are compared as a row value, so the database can seek straight to them with the index on (name, id) instead of counting past an offset
+	 *
+	 * @param pattern The lowercase LIKE pattern that the product's name or description must match, with backslash as the escape character
+	 * @param name The name of the last product on the previous page
+	 * @param id The id of the last product on the previous page
+	 * @param pageable The Pageable object that limits the number of products, it must not be sorted
+	 * @return Returns a Slice containing the listings of the products that were found
+	 */
+	@Query ("SELECT new com.revature.project3backend.jsonmodels.ProductListing(p.id, p.name, substring(p.description, 1, " + ProductListing.DESCRIPTION_LENGTH + "), p.price, p.imageUrl, p.salePrice, p.stock) FROM Product p WHERE (lower(p.name) LIKE :pattern ESCAPE '\\' OR lower(p.description) LIKE :pattern ESCAPE '\\') AND (p.name, p.id) > (:name, :id) ORDER BY p.name, p.id")
+	Slice <ProductListing> findPageAfter (@Param ("pattern") String pattern, @Param ("name") String name, @Param ("id") Integer id, Pageable pageable);
+	
+	/**
+	 * Gets a page of the listings of products, sorted by name, whose name or description matches a LIKE pattern and that pass a filter. This is only used until the in-memory search index has been built
+	 *
+	 * @param pattern The lowercase LIKE pattern that the product's name or description must match, with backslash as the escape character
+	 * @param minPrice The lowest price, the sale price is used for products on sale
+	 * @param maxPrice The highest price, the sale price is used for products on sale
+	 * @param onSale Whether only products on sale are included
+	 * @param inStock Whether only products with stock that isn't held for carts are included
+	 * @param pageable The Pageable object to use to get the page of products, it must not be sorted
+	 * @return Returns a Slice containing the listings of the products that were found
+	 */
+	@Query ("SELECT new com.revature.project3backend.jsonmodels.ProductListing(p.id, p.name, substring(p.description, 1, " + ProductListing.DESCRIPTION_LENGTH + "), p.price, p.imageUrl, p.salePrice, p.stock) FROM Product p WHERE (lower(p.name) LIKE :pattern ESCAPE '\\' OR lower(p.description) LIKE :pattern ESCAPE '\\') AND coalesce(p.salePrice, p.price) BETWEEN :minPrice AND :maxPrice AND (:onSale = false OR p.salePrice IS NOT NULL) AND (:inStock = false OR p.stock - p.reserved > 0) ORDER BY p.name, p.id")
+	Slice <ProductListing> findFiltered (@Param ("pattern") String pattern, @Param ("minPrice") Float minPrice, @Param ("maxPrice") Float maxPrice, @Param ("onSale") boolean onSale, @Param ("inStock") boolean inStock, Pageable pageable);
+	
+	/**
+	 * Gets the version of a product without loading the product, used to answer conditional requests
+	 *
+	 * @param id The id of the product
+	 * @return The version of the product, or an empty Optional if it wasn't found
+	 */
+	@Query ("SELECT new com.revature.project3backend.modeldtos.ProductVersion(p.id, p.version, p.lastModified) FROM Product p WHERE p.id = :id")
+	Optional <ProductVersion> findVersionById (@Param ("id") Integer id);
+	
+	/**
+	 * Gets the reserved stock of a product without loading the product, so it is read from the table even if the product is already in the persistence context
+	 *
+	 * @param id The id of the product
+	 * @return The stock of the product that is held for carts, or null if it wasn't found
+	 */
+	@Query ("SELECT p.reserved FROM Product p WHERE p.id = :id")
+	Integer findReservedById (@Param ("id") Integer id);
+	
+	/**
+	 * Gets a product from the table without going through the second-level cache, which only drops products that change through Hibernate and can hold on to a product that was changed straight in the database for much longer
+	 *
+	 * @param id The id of the product
+	 * @return The product, or an empty Optional if it wasn't found
+	 */
+	@Query ("SELECT p FROM Product p WHERE p.id = :id")
+	@QueryHints (@QueryHint (name = org.hibernate.jpa.QueryHints.HINT_CACHE_MODE, value = "IGNORE"))
+	Optional <Product> findUncachedById (@Param ("id") Integer id);
+	
+	/**
+	 * Gets and locks a product, so that its stock can't change until the transaction ends
+	 *
+	 * @param id The id of the product
+	 * @return The product, or an empty Optional if it wasn't found
+	 */
+	@Lock (LockModeType.PESSIMISTIC_WRITE)
+	@Query ("SELECT p FROM Product p WHERE p.id = :id")
+	Optional <Product> findAndLockById (@Param ("id") Integer id);
+	
 	/**
-	 * Gets a page of products based on a name and description. Case is ignored and products must contain the passed name or description
+	 * Streams every product, sorted by id, through a forward-only cursor that fetches STREAM_FETCH_SIZE rows at a time, so the whole catalog is never in memory at once
+	 * The products are read-only, and the caller must detach them once they have been used because the persistence context holds on to them. The stream must be used within a transaction and closed
 	 *
-	 * @param name The string that the product's name must contain to be included in the result (if not found by description)
-	 * @param description The string that the product's description must contain to be included in the result (if not found by name)
-	 * @param pageable The Pageable object to use to get the page of products
-	 * @return Returns a Page containing the products that were found
+	 * @return The stream of products
 	 */
-	Page <Product> findByNameIgnoreCaseContainingOrDescriptionIgnoreCaseContaining (String name, String description, Pageable pageable);
+	@Query ("SELECT p FROM Product p ORDER BY p.id")
+	@QueryHints ({@QueryHint (name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "" + STREAM_FETCH_SIZE), @QueryHint (name = org.hibernate.jpa.QueryHints.HINT_READONLY, value = "true")})
+	Stream <Product> streamAll ();
 }
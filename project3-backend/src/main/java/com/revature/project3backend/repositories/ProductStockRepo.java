@@ -0,0 +1,47 @@
+package com.revature.project3backend.repositories;
+
+import com.revature.project3backend.models.CartItem;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ProductStockRepo changes the stock of many products at once, it is implemented by ProductStockRepoImpl and is part of ProductRepo
+ * A product's reserved stock is the stock held for carts, so only its stock minus its reserved stock is available to anyone else
+ * Holding and releasing stock doesn't refresh products that are already in the persistence context, their reserved stock is only read again once they are loaded by another transaction
+ */
+public interface ProductStockRepo {
+	/**
+	 * Takes the quantity of each cart item from its product's stock. Every item is a conditional UPDATE that bumps the product's version, so two checkouts can never both take the last of the stock, and they are all sent to the database in one JDBC batch, so the number of round trips doesn't grow with the size of the cart
+	 * The part of an item that was held for it is taken out of the reserved stock too, and only the rest of it has to be available. The items are decremented in the current transaction, which must be rolled back if any of them fail. The persistence context is cleared afterwards so that the products are read again with their new stock
+	 *
+	 * @param items The cart items, each quantity must be positive
+	 * @param heldQuantities The quantity that was held for each item, in the same order, whose holds must already have been deleted
+	 * @return The number of rows updated for each item, in the same order, which is 0 when the product doesn't exist or doesn't have enough stock
+	 */
+	int[] decrementStock (List <CartItem> items, int[] heldQuantities);
+	
+	/**
+	 * Holds a quantity of a product's available stock, with a conditional UPDATE so that two carts can't hold the same stock
+	 *
+	 * @param id The id of the product
+	 * @param quantity The quantity to hold, which must be positive
+	 * @return Whether the stock was held, it isn't when the product doesn't exist or doesn't have enough available stock
+	 */
+	boolean reserveStock (Integer id, int quantity);
+	
+	/**
+	 * Gives held stock back, in one JDBC batch
+	 *
+	 * @param quantities The quantity to give back of each product by its id
+	 */
+	void releaseStock (Map <Integer, Integer> quantities);
+	
+	/**
+	 * Takes quantities that were already sold from the in-memory stock of hot products out of their stock in the table, in one JDBC batch
+	 * Nothing is checked, since the in-memory stock never lets more be sold than there was
+	 *
+	 * @param quantities The quantity to take of each product by its id
+	 */
+	void applyStockDeltas (Map <Integer, Integer> quantities);
+}
@@ -0,0 +1,168 @@
+package com.revature.project3backend.repositories;
+
+import com.revature.project3backend.models.CartItem;
+import com.revature.project3backend.models.Product;
+import com.revature.project3backend.utils.TransactionUtil;
+import org.hibernate.Session;
+
+import javax.persistence.Cache;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * ProductStockRepoImpl is the JDBC implementation of ProductStockRepo
+ * The products that are changed are also dropped from the second-level cache, both right away and once the transaction commits, since Hibernate doesn't know that they changed
+ */
+public class ProductStockRepoImpl implements ProductStockRepo {
+	/**
+	 * The statement that takes a quantity from a product's stock, and the held part of it from its reserved stock. It only matches when enough of the stock that isn't held for other carts is left
+	 */
+	static final String DECREMENT_STOCK = "UPDATE product SET stock = stock - ?, reserved = reserved - ?, version = version + 1, last_modified = CURRENT_TIMESTAMP WHERE id = ? AND stock - reserved + ? >= ?";
+	
+	/**
+	 * The statement that holds a quantity of a product's available stock. The version isn't changed because the reserved stock isn't part of the product's JSON
+	 */
+	static final String RESERVE_STOCK = "UPDATE product SET reserved = reserved + ? WHERE id = ? AND stock - reserved >= ?";
+	
+	/**
+	 * The statement that gives held stock back
+	 */
+	static final String RELEASE_STOCK = "UPDATE product SET reserved = reserved - ? WHERE id = ?";
+	
+	/**
+	 * The statement that takes the sales of a hot product from its stock
+	 */
+	static final String APPLY_STOCK_DELTA = "UPDATE product SET stock = stock - ?, version = version + 1, last_modified = CURRENT_TIMESTAMP WHERE id = ?";
+	
+	/**
+	 * The EntityManager of the current transaction
+	 */
+	@PersistenceContext
+	private EntityManager entityManager;
+	
+	@Override
+	public int[] decrementStock (List <CartItem> items, int[] heldQuantities) {
+		//flushes so pending changes to the products are written before they are decremented
+		entityManager.flush ();
+		
+		//the rows are updated in order of id, so that two carts with the same products lock them in the same order and can't deadlock
+		Integer[] order = new Integer[items.size ()];
+		
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		
+		Arrays.sort (order, Comparator.comparing (i -> items.get (i).getProduct ().getId ()));
+		
+		int[] sortedCounts = entityManager.unwrap (Session.class).doReturningWork (connection -> {
+			try (PreparedStatement statement = connection.prepareStatement (DECREMENT_STOCK)) {
+				for (Integer i : order) {
+					CartItem item = items.get (i);
+					
+					statement.setInt (1, item.getQuantity ());
+					statement.setInt (2, heldQuantities[i]);
+					statement.setInt (3, item.getProduct ().getId ());
+					statement.setInt (4, heldQuantities[i]);
+					statement.setInt (5, item.getQuantity ());
+					statement.addBatch ();
+				}
+				
+				return statement.executeBatch ();
+			}
+		});
+		
+		int[] counts = new int[items.size ()];
+		List <Integer> ids = new ArrayList <> ();
+		
+		for (int i = 0; i < order.length; i++) {
+			counts[order[i]] = sortedCounts[i];
+			ids.add (items.get (i).getProduct ().getId ());
+		}
+		
+		entityManager.clear ();
+		
+		evict (ids);
+		
+		return counts;
+	}
+	
+	@Override
+	public boolean reserveStock (Integer id, int quantity) {
+		int count = entityManager.unwrap (Session.class).doReturningWork (connection -> {
+			try (PreparedStatement statement = connection.prepareStatement (RESERVE_STOCK)) {
+				statement.setInt (1, quantity);
+				statement.setInt (2, id);
+				statement.setInt (3, quantity);
+				
+				return statement.executeUpdate ();
+			}
+		});
+		
+		evict (Arrays.asList (id));
+		
+		return count > 0;
+	}
+	
+	@Override
+	public void releaseStock (Map <Integer, Integer> quantities) {
+		update (RELEASE_STOCK, quantities);
+	}
+	
+	@Override
+	public void applyStockDeltas (Map <Integer, Integer> quantities) {
+		update (APPLY_STOCK_DELTA, quantities);
+	}
+	
+	/**
+	 * Runs a statement that takes a quantity and then an id for each product, in one JDBC batch
+	 *
+	 * @param sql The statement
+	 * @param quantities The quantity of each product by its id
+	 */
+	private void update (String sql, Map <Integer, Integer> quantities) {
+		if (quantities.isEmpty ()) {
+			return;
+		}
+		
+		//sorted by id for the same reason as when decrementing
+		Map <Integer, Integer> sorted = new TreeMap <> (quantities);
+		
+		entityManager.unwrap (Session.class).doWork (connection -> {
+			try (PreparedStatement statement = connection.prepareStatement (sql)) {
+				for (Map.Entry <Integer, Integer> entry : sorted.entrySet ()) {
+					statement.setInt (1, entry.getValue ());
+					statement.setInt (2, entry.getKey ());
+					statement.addBatch ();
+				}
+				
+				statement.executeBatch ();
+			}
+		});
+		
+		evict (sorted.keySet ());
+	}
+	
+	/**
+	 * Drops products from the second-level cache now and once the transaction commits or rolls back
+	 * Products read later in the same transaction are cached with the changed stock, so they have to be dropped again if the transaction rolls back as well
+	 *
+	 * @param ids The ids of the products
+	 */
+	private void evict (Collection <Integer> ids) {
+		Cache cache = entityManager.getEntityManagerFactory ().getCache ();
+		
+		for (Integer id : ids) {
+			cache.evict (Product.class, id);
+			TransactionUtil.afterCommit (() -> cache.evict (Product.class, id));
+			TransactionUtil.afterRollback (() -> cache.evict (Product.class, id));
+		}
+	}
+}
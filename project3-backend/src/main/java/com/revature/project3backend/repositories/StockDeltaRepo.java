@@ -0,0 +1,35 @@
+package com.revature.project3backend.repositories;
+
+import com.revature.project3backend.models.StockDelta;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import javax.persistence.LockModeType;
+import java.util.List;
+
+/**
+ * StockDeltaRepo is the repository for the sales of hot products that haven't been applied to the product table yet
+ */
+public interface StockDeltaRepo extends JpaRepository <StockDelta, Integer> {
+	/**
+	 * Gets and locks the oldest deltas, so that they are applied by only one flush
+	 *
+	 * @param pageable The most deltas to get
+	 * @return The deltas, oldest first
+	 */
+	@Lock (LockModeType.PESSIMISTIC_WRITE)
+	@Query ("SELECT d FROM StockDelta d ORDER BY d.id")
+	List <StockDelta> findOldest (Pageable pageable);
+	
+	/**
+	 * Adds up the quantity of a product that has been sold but not yet taken from its stock
+	 *
+	 * @param productId The id of the product
+	 * @return The total quantity, 0 when there are no deltas
+	 */
+	@Query ("SELECT COALESCE(SUM(d.quantity), 0) FROM StockDelta d WHERE d.productId = :productId")
+	long sumQuantityByProductId (@Param ("productId") Integer productId);
+}
@@ -0,0 +1,49 @@
+package com.revature.project3backend.repositories;
+
+import com.revature.project3backend.models.StockHold;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import javax.persistence.LockModeType;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * StockHoldRepo is the repository for stock holds
+ * Holds are always locked when they are read to be changed, so a hold can't be released by the sweeper while its cart item is being checked out or changed
+ */
+public interface StockHoldRepo extends JpaRepository <StockHold, Integer> {
+	/**
+	 * Gets and locks the hold of a cart item
+	 *
+	 * @param cartItemId The id of the cart item
+	 * @return The hold, or an empty Optional if the cart item doesn't have one
+	 */
+	@Lock (LockModeType.PESSIMISTIC_WRITE)
+	Optional <StockHold> findByCartItemId (Integer cartItemId);
+	
+	/**
+	 * Gets and locks the holds of many cart items
+	 *
+	 * @param cartItemIds The ids of the cart items
+	 * @return The holds of the cart items that have one
+	 */
+	@Lock (LockModeType.PESSIMISTIC_WRITE)
+	@Query ("SELECT h FROM StockHold h WHERE h.cartItemId IN :cartItemIds ORDER BY h.id")
+	List <StockHold> findByCartItemIds (@Param ("cartItemIds") Collection <Integer> cartItemIds);
+	
+	/**
+	 * Gets and locks the holds out of the given ones that have expired
+	 *
+	 * @param ids The ids of the holds
+	 * @param now The current time
+	 * @return The holds that still exist and have expired by now
+	 */
+	@Lock (LockModeType.PESSIMISTIC_WRITE)
+	@Query ("SELECT h FROM StockHold h WHERE h.id IN :ids AND h.expiresAt <= :now ORDER BY h.id")
+	List <StockHold> findExpired (@Param ("ids") Collection <Integer> ids, @Param ("now") Instant now);
+}
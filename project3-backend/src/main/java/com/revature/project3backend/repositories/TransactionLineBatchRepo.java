@@ -0,0 +1,17 @@
+package com.revature.project3backend.repositories;
+
+import com.revature.project3backend.models.TransactionLine;
+
+import java.util.List;
+
+/**
+ * TransactionLineBatchRepo writes the lines of a transaction at once, it is implemented by TransactionLineBatchRepoImpl and is part of TransactionLineRepo
+ */
+public interface TransactionLineBatchRepo {
+	/**
+	 * Inserts lines in one JDBC batch, so the number of round trips doesn't grow with the size of the cart. The lines aren't given their ids
+	 *
+	 * @param lines The lines to insert
+	 */
+	void insertAll (List <TransactionLine> lines);
+}
@@ -0,0 +1,50 @@
+package com.revature.project3backend.repositories;
+
+import com.revature.project3backend.models.TransactionLine;
+import org.hibernate.Session;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.sql.PreparedStatement;
+import java.util.List;
+
+/**
+ * TransactionLineBatchRepoImpl is the JDBC implementation of TransactionLineBatchRepo
+ */
+public class TransactionLineBatchRepoImpl implements TransactionLineBatchRepo {
+	/**
+	 * The statement that inserts a line
+	 */
+	static final String INSERT_LINE = "INSERT INTO transaction_line (transaction_id, product_id, name, price, quantity) VALUES (?, ?, ?, ?, ?)";
+	
+	/**
+	 * The EntityManager of the current transaction
+	 */
+	@PersistenceContext
+	private EntityManager entityManager;
+	
+	@Override
+	public void insertAll (List <TransactionLine> lines) {
+		if (lines.isEmpty ()) {
+			return;
+		}
+		
+		//flushes so the transaction that the lines belong to is written before them
+		entityManager.flush ();
+		
+		entityManager.unwrap (Session.class).doWork (connection -> {
+			try (PreparedStatement statement = connection.prepareStatement (INSERT_LINE)) {
+				for (TransactionLine line : lines) {
+					statement.setInt (1, line.getTransactionId ());
+					statement.setInt (2, line.getProductId ());
+					statement.setString (3, line.getName ());
+					statement.setFloat (4, line.getPrice ());
+					statement.setInt (5, line.getQuantity ());
+					statement.addBatch ();
+				}
+				
+				statement.executeBatch ();
+			}
+		});
+	}
+}
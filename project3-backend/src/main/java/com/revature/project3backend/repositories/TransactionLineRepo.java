@@ -0,0 +1,43 @@
+package com.revature.project3backend.repositories;
+
+import com.revature.project3backend.models.TransactionLine;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
+
+/**
+ * TransactionLineRepo is the repository for the lines of transactions
+ */
+public interface TransactionLineRepo extends JpaRepository <TransactionLine, Integer>, TransactionLineBatchRepo {
+	/**
+	 * The number of units of a product that have been sold
+	 */
+	interface ProductSales {
+		/**
+		 * @return The id of the product
+		 */
+		Integer getProductId ();
+		
+		/**
+		 * @return The number of units sold
+		 */
+		Long getQuantity ();
+	}
+	
+	/**
+	 * Gets the lines of a transaction, this is read from the transaction id index
+	 *
+	 * @param transactionId The id of the transaction
+	 * @return The lines in the order they were inserted
+	 */
+	List <TransactionLine> findByTransactionIdOrderById (Integer transactionId);
+	
+	/**
+	 * Adds up the units sold of every product that has been sold
+	 *
+	 * @return The units sold of each product
+	 */
+	@Query ("SELECT line.productId AS productId, SUM(line.quantity) AS quantity FROM TransactionLine line GROUP BY line.productId")
+	List <ProductSales> sumQuantityByProduct ();
+}
@@ -1,10 +1,21 @@
 package com.revature.project3backend.repositories;
 
 import com.revature.project3backend.models.Transaction;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.util.List;
+
 /**
  * TransactionRepo is the repository for transactions
  */
 public interface TransactionRepo extends JpaRepository <Transaction, Integer> {
+	/**
+	 * Gets the transactions whose items are still in the legacy JSON column, in order of id
+	 *
+	 * @param id The id to start after
+	 * @param pageable The number of transactions to get
+	 * @return The transactions
+	 */
+	List <Transaction> findByLegacyItemsNotNullAndIdGreaterThanOrderById (Integer id, Pageable pageable);
 }
@@ -0,0 +1,224 @@
+package com.revature.project3backend.search;
+
+import com.revature.project3backend.jsonmodels.PriceFacet;
+import com.revature.project3backend.jsonmodels.ProductFacets;
+import com.revature.project3backend.models.Product;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * FacetIndex keeps a compressed bitmap of product ids for every facet, so filtering and counting a search is a handful of bitmap intersections
+ * It isn't thread safe, ProductSearchIndex guards it with a lock
+ */
+class FacetIndex {
+	/**
+	 * The prices that separate the price ranges, the first range starts at 0 and the last one has no upper bound
+	 */
+	static final float[] PRICE_BOUNDS = {10.00F, 25.00F, 50.00F, 100.00F};
+
+	/**
+	 * Every indexed product
+	 */
+	private final RoaringBitmap all = new RoaringBitmap ();
+
+	/**
+	 * The products on sale
+	 */
+	private final RoaringBitmap onSale = new RoaringBitmap ();
+
+	/**
+	 * The products in stock, not counting the stock that is held for carts
+	 */
+	private final RoaringBitmap inStock = new RoaringBitmap ();
+
+	/**
+	 * The products in each price range
+	 */
+	private final RoaringBitmap[] prices = new RoaringBitmap[PRICE_BOUNDS.length + 1];
+
+	FacetIndex () {
+		for (int i = 0; i < prices.length; i++) {
+			prices[i] = new RoaringBitmap ();
+		}
+	}
+
+	/**
+	 * Adds a product to the bitmaps of its facets
+	 *
+	 * @param product The product
+	 */
+	void add (Product product) {
+		int id = product.getId ();
+
+		all.add (id);
+		prices[priceRange (price (product))].add (id);
+
+		if (product.getSalePrice () != null) {
+			onSale.add (id);
+		}
+
+		if (product.getAvailableStock () > 0) {
+			inStock.add (id);
+		}
+	}
+
+	/**
+	 * Removes a product from the bitmaps of its facets
+	 *
+	 * @param product The product as it was added
+	 */
+	void remove (Product product) {
+		int id = product.getId ();
+
+		all.remove (id);
+		onSale.remove (id);
+		inStock.remove (id);
+		prices[priceRange (price (product))].remove (id);
+	}
+
+	/**
+	 * Applies a filter to the products found by a search and counts the facets
+	 *
+	 * @param found The ids of the products found by the search, or null if every product was found
+	 * @param filter The filter to apply
+	 * @param products Gets an indexed product by id, used to check the price of products in a price range that the filter only partly covers
+	 * @return The ids of the products that pass the filter, along with the facet counts
+	 */
+	Selection select (RoaringBitmap found, ProductFilter filter, IntFunction <Product> products) {
+		RoaringBitmap base = found == null ? all : found;
+		RoaringBitmap price = priceFilter (filter.getMinPrice (), filter.getMaxPrice (), products);
+		RoaringBitmap sale = filter.isOnSale () ? onSale : null;
+		RoaringBitmap stock = filter.isInStock () ? inStock : null;
+
+		RoaringBitmap withoutPrice = and (base, sale, stock);
+		List <PriceFacet> priceFacets = new ArrayList <> (prices.length);
+
+		for (int i = 0; i < prices.length; i++) {
+			priceFacets.add (new PriceFacet (i == 0 ? 0.00F : PRICE_BOUNDS[i - 1], i == PRICE_BOUNDS.length ? null : PRICE_BOUNDS[i], RoaringBitmap.andCardinality (withoutPrice, prices[i])));
+		}
+
+		ProductFacets facets = new ProductFacets (RoaringBitmap.andCardinality (and (base, price, stock), onSale), RoaringBitmap.andCardinality (and (base, price, sale), inStock), priceFacets);
+
+		return new Selection (and (withoutPrice, price), facets);
+	}
+
+	/**
+	 * Gets the products within a price range
+	 * Ranges that are entirely within the filter are taken whole, and only the products of the ranges at its ends are checked one by one
+	 *
+	 * @param min The lowest price, or null for no lower bound
+	 * @param max The highest price, or null for no upper bound
+	 * @param products Gets an indexed product by id
+	 * @return The products, or null if there are no bounds
+	 */
+	private RoaringBitmap priceFilter (Float min, Float max, IntFunction <Product> products) {
+		if (min == null && max == null) {
+			return null;
+		}
+
+		float low = min == null ? Float.NEGATIVE_INFINITY : min;
+		float high = max == null ? Float.POSITIVE_INFINITY : max;
+		RoaringBitmap result = new RoaringBitmap ();
+
+		for (int i = 0; i < prices.length; i++) {
+			float rangeLow = i == 0 ? Float.NEGATIVE_INFINITY : PRICE_BOUNDS[i - 1];
+			float rangeHigh = i == PRICE_BOUNDS.length ? Float.POSITIVE_INFINITY : PRICE_BOUNDS[i];
+
+			if (rangeHigh <= low || rangeLow > high) {
+				continue;
+			}
+
+			if (rangeLow >= low && rangeHigh <= high) {
+				result.or (prices[i]);
+
+				continue;
+			}
+
+			prices[i].forEach ((int id) -> {
+				float price = price (products.apply (id));
+
+				if (price >= low && price <= high) {
+					result.add (id);
+				}
+			});
+		}
+
+		return result;
+	}
+
+	/**
+	 * Intersects a bitmap with some others, without changing any of them
+	 *
+	 * @param base The bitmap
+	 * @param others The other bitmaps, the null ones are skipped
+	 * @return The intersection, which is base itself when all the others are null
+	 */
+	private static RoaringBitmap and (RoaringBitmap base, RoaringBitmap... others) {
+		RoaringBitmap result = base;
+
+		for (RoaringBitmap other : others) {
+			if (other != null) {
+				result = RoaringBitmap.and (result, other);
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Gets the price range that a price falls in
+	 *
+	 * @param price The price
+	 * @return The index of the range
+	 */
+	private static int priceRange (float price) {
+		int range = 0;
+
+		while (range < PRICE_BOUNDS.length && price >= PRICE_BOUNDS[range]) {
+			range++;
+		}
+
+		return range;
+	}
+
+	/**
+	 * Gets the price that a customer pays for a product, the sale price if it is on sale
+	 *
+	 * @param product The product
+	 * @return The price
+	 */
+	static float price (Product product) {
+		if (product.getSalePrice () != null) {
+			return product.getSalePrice ();
+		}
+
+		return product.getPrice () == null ? 0.00F : product.getPrice ();
+	}
+
+	/**
+	 * Selection is the products of a search that pass a filter, along with the facet counts
+	 */
+	static class Selection {
+		/**
+		 * The ids of the products that pass the filter
+		 */
+		final RoaringBitmap ids;
+
+		/**
+		 * The facet counts
+		 */
+		final ProductFacets facets;
+
+		/**
+		 * @param ids The ids of the products that pass the filter
+		 * @param facets The facet counts
+		 */
+		private Selection (RoaringBitmap ids, ProductFacets facets) {
+			this.ids = ids;
+			this.facets = facets;
+		}
+	}
+}
@@ -0,0 +1,54 @@
+package com.revature.project3backend.search;
+
+import com.revature.project3backend.jsonmodels.ProductFacets;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * FacetedPage is a page of search results along with the facet counts of the whole search
+ *
+ * @param <T> The type of the results
+ */
+public class FacetedPage <T> extends PageImpl <T> {
+	/**
+	 * The facet counts of the search
+	 */
+	private final ProductFacets facets;
+
+	/**
+	 * @param content The results on the page
+	 * @param pageable The page that was requested
+	 * @param total The total number of results found
+	 * @param facets The facet counts of the search
+	 */
+	public FacetedPage (List <T> content, Pageable pageable, long total, ProductFacets facets) {
+		super (content, pageable, total);
+
+		this.facets = facets;
+	}
+
+	/**
+	 * Gets the facet counts of the search
+	 *
+	 * @return The facet counts
+	 */
+	public ProductFacets getFacets () {
+		return facets;
+	}
+
+	/**
+	 * Converts the results on the page, keeping the total and the facet counts
+	 *
+	 * @param converter Converts a result
+	 * @param <U> The type of the converted results
+	 * @return The page of converted results
+	 */
+	@Override
+	public <U> FacetedPage <U> map (Function <? super T, ? extends U> converter) {
+		return new FacetedPage <> (getContent ().stream ().map (converter).collect (Collectors.toList ()), getPageable (), getTotalElements (), facets);
+	}
+}
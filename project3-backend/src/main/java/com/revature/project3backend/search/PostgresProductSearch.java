@@ -0,0 +1,114 @@
+package com.revature.project3backend.search;
+
+import com.revature.project3backend.models.Product;
+import com.revature.project3backend.repositories.ProductRepo;
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * PostgresProductSearch searches products with the trigram indexes of PostgreSQL's pg_trgm extension
+ * It is only available when the database is PostgreSQL, other databases (like H2 in the tests) use ProductRepo's derived query
+ */
+@Component
+public class PostgresProductSearch {
+	/**
+	 * The script that sets the collation of the product names and creates the pg_trgm extension and the trigram indexes
+	 */
+	private static final String SCHEMA_SCRIPT = "db/postgresql-product-search.sql";
+
+	/**
+	 * The instance of ProductRepo to use
+	 */
+	private final ProductRepo productRepo;
+
+	/**
+	 * The DataSource that the products are stored in
+	 */
+	private final DataSource dataSource;
+
+	/**
+	 * Whether the database is PostgreSQL and the trigram indexes exist
+	 */
+	private volatile boolean available = false;
+
+	/**
+	 * The log4j logger for the search
+	 */
+	private static final Logger logger = Logger.getLogger (PostgresProductSearch.class);
+
+	/**
+	 * This constructor is automatically called by Spring
+	 *
+	 * @param productRepo The instance of ProductRepo to use
+	 * @param dataSource The DataSource that the products are stored in
+	 */
+	@Autowired
+	public PostgresProductSearch (ProductRepo productRepo, DataSource dataSource) {
+		this.productRepo = productRepo;
+		this.dataSource = dataSource;
+	}
+
+	/**
+	 * Whether products can be searched with the trigram indexes
+	 *
+	 * @return True if the database is PostgreSQL and the trigram indexes exist
+	 */
+	public boolean isAvailable () {
+		return available;
+	}
+
+	/**
+	 * Orders the product names like ProductSearchIndex and creates the trigram indexes if the database is PostgreSQL, this is called once the application has started so that the product table exists
+	 */
+	@EventListener (ApplicationReadyEvent.class)
+	public void initialize () {
+		try (Connection connection = dataSource.getConnection ()) {
+			if (!"PostgreSQL".equals (connection.getMetaData ().getDatabaseProductName ())) {
+				return;
+			}
+
+			new ResourceDatabasePopulator (new ClassPathResource (SCHEMA_SCRIPT)).populate (connection);
+
+			available = true;
+
+			logger.info ("Product search is using the pg_trgm indexes");
+		} catch (SQLException | RuntimeException exception) {
+			logger.warn ("Could not create the pg_trgm indexes, product search will use the derived query", exception);
+		}
+	}
+
+	/**
+	 * Gets a page of the products whose name or description contains the search query, ignoring case, ranked by relevance
+	 *
+	 * @param searchQuery The query to use to search the products
+	 * @param page The page of products to get
+	 * @param pageSize The number of products on a page
+	 * @return The found products, along with whether there are more after them
+	 */
+	public Slice <Product> search (String searchQuery, int page, int pageSize) {
+		String query = ProductSearchIndex.normalize (searchQuery);
+
+		return productRepo.searchByTrigrams (query, "%" + escapeLike (query) + "%", PageRequest.of (page, pageSize));
+	}
+
+	/**
+	 * Escapes the LIKE wildcards in some text so they match literally, as the derived IgnoreCaseContaining query does
+	 *
+	 * @param text The text to escape
+	 * @return The escaped text
+	 */
+	public static String escapeLike (String text) {
+		return text.replace ("\\", "\\\\").replace ("%", "\\%").replace ("_", "\\_");
+	}
+}
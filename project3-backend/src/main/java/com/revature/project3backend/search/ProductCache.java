@@ -0,0 +1,86 @@
+package com.revature.project3backend.search;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.revature.project3backend.models.Product;
+import com.revature.project3backend.repositories.ProductRepo;
+import com.revature.project3backend.utils.TransactionUtil;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * ProductCache is a read-through cache of whole products by id, so a product that is viewed or added to a cart isn't read from the database every time
+ * Products are dropped when they change, and otherwise expire once they are older than the maximum staleness, which bounds how stale a stock value can be when the database is changed by someone else
+ * Products are loaded from the table rather than from Hibernate's second-level cache, whose products expire much later, so that the bound holds
+ * The cache is bounded by its number of products and evicts with Caffeine's W-TinyLFU policy. Its hit, miss, eviction, load count and load duration metrics are published as the "cache.*" metrics with the tag cache=product
+ */
+@Component
+public class ProductCache {
+	/**
+	 * The name of the cache in the published metrics
+	 */
+	static final String NAME = "product";
+
+	/**
+	 * The cached products, these are copies that are never handed out
+	 */
+	private final LoadingCache <Integer, Product> cache;
+
+	/**
+	 * This constructor is automatically called by Spring
+	 *
+	 * @param productRepo The instance of ProductRepo used to load products
+	 * @param maximumSize The maximum number of cached products
+	 * @param maxStaleness How long a product stays cached after it is loaded
+	 * @param meterRegistry The registry to publish the cache's metrics to
+	 */
+	@Autowired
+	public ProductCache (ProductRepo productRepo, @Value ("${product.cache.maximum-size:10000}") long maximumSize, @Value ("${product.cache.max-staleness:5s}") Duration maxStaleness, MeterRegistry meterRegistry) {
+		this (productRepo, maximumSize, maxStaleness, meterRegistry, Ticker.systemTicker ());
+	}
+
+	/**
+	 * @param productRepo The instance of ProductRepo used to load products
+	 * @param maximumSize The maximum number of cached products
+	 * @param maxStaleness How long a product stays cached after it is loaded
+	 * @param meterRegistry The registry to publish the cache's metrics to
+	 * @param ticker The source of time used to expire products
+	 */
+	ProductCache (ProductRepo productRepo, long maximumSize, Duration maxStaleness, MeterRegistry meterRegistry, Ticker ticker) {
+		this.cache = Caffeine.newBuilder ()
+			.maximumSize (maximumSize)
+			.expireAfterWrite (maxStaleness)
+			.ticker (ticker)
+			.recordStats ()
+			.build (id -> productRepo.findUncachedById (id).map (ProductSearchIndex::copy).orElse (null));
+
+		CaffeineCacheMetrics.monitor (meterRegistry, cache, NAME);
+	}
+
+	/**
+	 * Gets a cached product, or loads and caches it
+	 *
+	 * @param id The id of the product
+	 * @return A copy of the product that the caller is free to change, or null if it doesn't exist
+	 */
+	public Product get (Integer id) {
+		Product product = cache.get (id);
+
+		return product == null ? null : ProductSearchIndex.copy (product);
+	}
+
+	/**
+	 * Drops a product because it changed. If there is a transaction in progress, the product is dropped after it commits so that it isn't reloaded with its old values
+	 *
+	 * @param id The id of the product
+	 */
+	public void invalidate (Integer id) {
+		TransactionUtil.afterCommit (() -> cache.invalidate (id));
+	}
+}
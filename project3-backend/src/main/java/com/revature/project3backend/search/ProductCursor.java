@@ -0,0 +1,80 @@
+package com.revature.project3backend.search;
+
+import com.revature.project3backend.exceptions.InvalidValueException;
+import com.revature.project3backend.jsonmodels.ProductListing;
+import com.revature.project3backend.models.Product;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * ProductCursor marks a position in the name ordered product listing, the next page starts at the first product after it
+ * It is sent to clients as an opaque string
+ */
+@AllArgsConstructor
+@Data
+public class ProductCursor {
+	/**
+	 * The name of the last product on the previous page
+	 */
+	private final String name;
+
+	/**
+	 * The id of the last product on the previous page, used as a tiebreaker between products with the same name
+	 */
+	private final Integer id;
+
+	/**
+	 * Creates a cursor that points at a product
+	 *
+	 * @param product The last product on a page
+	 * @return The cursor for the next page
+	 */
+	public static ProductCursor after (Product product) {
+		return new ProductCursor (product.getName (), product.getId ());
+	}
+
+	/**
+	 * Creates a cursor that points at a listed product
+	 *
+	 * @param listing The listing of the last product on a page
+	 * @return The cursor for the next page
+	 */
+	public static ProductCursor after (ProductListing listing) {
+		return new ProductCursor (listing.getName (), listing.getId ());
+	}
+
+	/**
+	 * Encodes the cursor as an opaque string that is safe to use in a URL
+	 *
+	 * @return The encoded cursor
+	 */
+	public String encode () {
+		return Base64.getUrlEncoder ().withoutPadding ().encodeToString ((id + ":" + name).getBytes (StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Decodes a cursor that was created by encode
+	 *
+	 * @param cursor The encoded cursor
+	 * @return The decoded cursor
+	 * @throws InvalidValueException Thrown when the cursor is not valid
+	 */
+	public static ProductCursor decode (String cursor) throws InvalidValueException {
+		try {
+			String decoded = new String (Base64.getUrlDecoder ().decode (cursor), StandardCharsets.UTF_8);
+
+			int separator = decoded.indexOf (':');
+
+			if (separator < 1) {
+				throw new InvalidValueException ("Invalid cursor");
+			}
+
+			return new ProductCursor (decoded.substring (separator + 1), Integer.valueOf (decoded.substring (0, separator)));
+		} catch (IllegalArgumentException exception) {
+			throw new InvalidValueException ("Invalid cursor");
+		}
+	}
+}
@@ -0,0 +1,45 @@
+package com.revature.project3backend.search;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * ProductFilter narrows a product search down by price, sale and stock
+ */
+@AllArgsConstructor
+@Data
+public class ProductFilter {
+	/**
+	 * The filter that lets every product through
+	 */
+	public static final ProductFilter NONE = new ProductFilter (null, null, false, false);
+
+	/**
+	 * The lowest price a product can have, or null for no lower bound. The sale price is used for products on sale
+	 */
+	private final Float minPrice;
+
+	/**
+	 * The highest price a product can have, or null for no upper bound. The sale price is used for products on sale
+	 */
+	private final Float maxPrice;
+
+	/**
+	 * Whether only products on sale are let through
+	 */
+	private final boolean onSale;
+
+	/**
+	 * Whether only products in stock are let through
+	 */
+	private final boolean inStock;
+
+	/**
+	 * Whether the filter lets every product through
+	 *
+	 * @return True if no filter is set
+	 */
+	public boolean isEmpty () {
+		return minPrice == null && maxPrice == null && !onSale && !inStock;
+	}
+}
@@ -0,0 +1,122 @@
+package com.revature.project3backend.search;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.revature.project3backend.jsonmodels.ProductListing;
+import com.revature.project3backend.utils.TransactionUtil;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * ProductSearchCache caches pages of product search results by their normalized query, page number, sort and filter
+ * The cache is bounded by the number of products it holds and evicts with Caffeine's W-TinyLFU policy. Its hit, miss and eviction counts are published as the "cache.*" metrics with the tag cache=productSearch
+ */
+@Component
+public class ProductSearchCache {
+	/**
+	 * The name of the cache in the published metrics
+	 */
+	static final String NAME = "productSearch";
+
+	/**
+	 * The cached pages
+	 */
+	private final Cache <Key, Slice <ProductListing>> cache;
+
+	/**
+	 * The generation of the cached pages, it is part of every key so bumping it makes every cached page unreachable
+	 * A search that started before a product changed caches its page under the old generation, so it can never be served afterwards
+	 */
+	private final AtomicLong generation = new AtomicLong ();
+
+	/**
+	 * This constructor is automatically called by Spring
+	 *
+	 * @param maximumProducts The maximum number of products across all the cached pages
+	 * @param timeToLive How long a page stays cached after it is loaded
+	 * @param meterRegistry The registry to publish the cache's metrics to
+	 */
+	@Autowired
+	public ProductSearchCache (@Value ("${product.search.cache.maximum-products:20000}") long maximumProducts, @Value ("${product.search.cache.time-to-live:60s}") Duration timeToLive, MeterRegistry meterRegistry) {
+		this.cache = Caffeine.newBuilder ()
+			.maximumWeight (maximumProducts)
+			.weigher ((Key key, Slice <ProductListing> page) -> page.getNumberOfElements () + 1)
+			.expireAfterWrite (timeToLive)
+			.recordStats ()
+			.build ();
+
+		CaffeineCacheMetrics.monitor (meterRegistry, cache, NAME);
+	}
+
+	/**
+	 * Gets a cached page of search results, or loads and caches it
+	 *
+	 * @param searchQuery The query used to search the products
+	 * @param page The page of products
+	 * @param sort The order that the products are sorted in
+	 * @param filter The filter applied to the products
+	 * @param loader Loads the page when it isn't cached
+	 * @return The page of products
+	 */
+	public Slice <ProductListing> get (String searchQuery, int page, ProductSort sort, ProductFilter filter, Supplier <Slice <ProductListing>> loader) {
+		return cache.get (new Key (generation.get (), ProductSearchIndex.normalize (searchQuery), page, sort, filter), key -> loader.get ());
+	}
+
+	/**
+	 * Invalidates every cached page because a product changed. If there is a transaction in progress, the pages are invalidated after it commits so that they aren't reloaded with the old product
+	 */
+	public void invalidate () {
+		TransactionUtil.afterCommit (this::bump);
+	}
+
+	/**
+	 * Moves to a new generation and drops the pages of the old one
+	 */
+	private void bump () {
+		generation.incrementAndGet ();
+
+		cache.invalidateAll ();
+	}
+
+	/**
+	 * Key identifies a cached page
+	 */
+	@AllArgsConstructor
+	@Data
+	private static class Key {
+		/**
+		 * The generation that the page was loaded in
+		 */
+		private final long generation;
+
+		/**
+		 * The normalized search query
+		 */
+		private final String query;
+
+		/**
+		 * The page number
+		 */
+		private final int page;
+
+		/**
+		 * The order that the products are sorted in
+		 */
+		private final ProductSort sort;
+
+		/**
+		 * The filter applied to the products
+		 */
+		private final ProductFilter filter;
+	}
+}
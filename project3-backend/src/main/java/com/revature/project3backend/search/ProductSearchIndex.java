@@ -0,0 +1,727 @@
+package com.revature.project3backend.search;
+
+import com.revature.project3backend.modeldtos.ProductVersion;
+import com.revature.project3backend.models.Product;
+import com.revature.project3backend.repositories.ProductRepo;
+import com.revature.project3backend.utils.TransactionUtil;
+import org.apache.log4j.Logger;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * ProductSearchIndex keeps every product in memory along with a trigram index over their names and descriptions
+ * It answers product searches with the same results as ProductRepo.findListings without scanning the product table
+ * When a search finds too few products, its misspelled words are corrected against the words of the product names and the products matching the corrected query follow the exact matches
+ * Searches are filtered and their facets counted with the bitmaps of FacetIndex
+ */
+@Component
+public class ProductSearchIndex {
+	/**
+	 * The order that search results are returned in, the same as sorting by name in the database with the id as a tiebreaker
+	 * Names are compared by their characters rather than by locale, which is H2's default and the "C" collation that PostgresProductSearch gives the name column on PostgreSQL
+	 */
+	static final Comparator <Product> NAME_ORDER = Comparator.comparing (Product::getName).thenComparing (Product::getId);
+
+	/**
+	 * The number of products to load from the database at a time when building the index
+	 */
+	private static final int BATCH_SIZE = 1000;
+
+	/**
+	 * When a query has more candidates than this fraction of the catalog, walking the name ordered set is cheaper than sorting the candidates
+	 */
+	private static final int SORT_THRESHOLD_DIVISOR = 8;
+
+	/**
+	 * The most words of a query that are corrected, this bounds the time taken by a fuzzy search
+	 */
+	private static final int MAX_CORRECTED_WORDS = 4;
+
+	/**
+	 * The instance of ProductRepo to use
+	 */
+	private final ProductRepo productRepo;
+
+	/**
+	 * Whether the index is enabled, when it's disabled searches go to the database
+	 */
+	private final boolean enabled;
+
+	/**
+	 * When a search finds fewer products than this, the products matching its corrected spelling are added, 0 turns fuzzy search off
+	 */
+	private final int fuzzyMinimumHits;
+
+	/**
+	 * Guards the catalog and the pending updates, searches take the read lock and updates take the write lock
+	 */
+	private final ReadWriteLock lock = new ReentrantReadWriteLock ();
+
+	/**
+	 * The indexed products
+	 */
+	private Catalog catalog = new Catalog ();
+
+	/**
+	 * Products that were changed while the index was being rebuilt, they are applied once the rebuild finishes
+	 */
+	private List <Product> pendingUpdates = null;
+
+	/**
+	 * Whether the index has been built and can be searched
+	 */
+	private volatile boolean ready = false;
+
+	/**
+	 * The log4j logger for the index
+	 */
+	private static final Logger logger = Logger.getLogger (ProductSearchIndex.class);
+
+	/**
+	 * This constructor is automatically called by Spring
+	 *
+	 * @param productRepo The instance of ProductRepo to use
+	 * @param enabled Whether the index is enabled
+	 * @param fuzzyMinimumHits When a search finds fewer products than this, the products matching its corrected spelling are added
+	 */
+	@Autowired
+	public ProductSearchIndex (ProductRepo productRepo, @Value ("${product.search.index.enabled:true}") boolean enabled, @Value ("${product.search.fuzzy.minimum-hits:5}") int fuzzyMinimumHits) {
+		this.productRepo = productRepo;
+		this.enabled = enabled;
+		this.fuzzyMinimumHits = fuzzyMinimumHits;
+	}
+
+	/**
+	 * Whether the index has been built and can be used to search products
+	 *
+	 * @return True if the index is ready
+	 */
+	public boolean isReady () {
+		return ready;
+	}
+
+	/**
+	 * Builds the index from every product in the database, this is called once the application has started
+	 */
+	@EventListener (ApplicationReadyEvent.class)
+	public void rebuild () {
+		if (!enabled) {
+			return;
+		}
+
+		long start = System.currentTimeMillis ();
+
+		lock.writeLock ().lock ();
+
+		try {
+			pendingUpdates = new ArrayList <> ();
+		} finally {
+			lock.writeLock ().unlock ();
+		}
+
+		Catalog newCatalog = new Catalog ();
+
+		Slice <Product> batch = productRepo.findAll (PageRequest.of (0, BATCH_SIZE, Sort.by ("id")));
+
+		while (true) {
+			for (Product product : batch.getContent ()) {
+				newCatalog.put (new IndexedProduct (copy (product)));
+			}
+
+			if (!batch.hasNext ()) {
+				break;
+			}
+
+			batch = productRepo.findAll (batch.nextPageable ());
+		}
+
+		lock.writeLock ().lock ();
+
+		try {
+			catalog = newCatalog;
+
+			for (Product product : pendingUpdates) {
+				catalog.put (new IndexedProduct (product));
+			}
+
+			pendingUpdates = null;
+			ready = true;
+		} finally {
+			lock.writeLock ().unlock ();
+		}
+
+		logger.info ("Indexed " + newCatalog.products.size () + " products (" + newCatalog.trigrams.size () + " trigrams) in " + (System.currentTimeMillis () - start) + "ms");
+	}
+
+	/**
+	 * Adds a product to the index or replaces the indexed version of it. If there is a transaction in progress, the index is updated after it commits
+	 *
+	 * @param product The product that was saved
+	 */
+	public void index (Product product) {
+		if (!enabled) {
+			return;
+		}
+
+		Product copy = copy (product);
+
+		TransactionUtil.afterCommit (() -> update (copy));
+	}
+
+	/**
+	 * Changes the reserved stock of an indexed product, used when stock is held for carts or given back since that doesn't change the rest of the product
+	 *
+	 * @param id The id of the product
+	 * @param reserved The product's new reserved stock
+	 * @return Whether the product went in or out of stock, or may have if the index can't tell, in which case cached search results are out of date
+	 */
+	public boolean updateReserved (Integer id, int reserved) {
+		if (!enabled) {
+			return true;
+		}
+
+		lock.writeLock ().lock ();
+
+		try {
+			IndexedProduct indexedProduct = catalog.products.get (id);
+
+			if (indexedProduct == null) {
+				return !ready;
+			}
+
+			Product copy = copy (indexedProduct.product);
+
+			copy.setReserved (reserved);
+
+			if (pendingUpdates != null) {
+				pendingUpdates.add (copy);
+			}
+
+			catalog.put (new IndexedProduct (copy));
+
+			return (indexedProduct.product.getAvailableStock () > 0) != (copy.getAvailableStock () > 0);
+		} finally {
+			lock.writeLock ().unlock ();
+		}
+	}
+
+	/**
+	 * Replaces the indexed version of a product whose stock was changed by a checkout or a stock flush, since that doesn't change its name, description or prices
+	 *
+	 * @param product The product with its new stock
+	 * @return Whether the product went in or out of stock, or may have if the index can't tell, in which case cached search results are out of date
+	 */
+	public boolean updateStock (Product product) {
+		if (!enabled) {
+			return true;
+		}
+
+		Product copy = copy (product);
+
+		lock.writeLock ().lock ();
+
+		try {
+			IndexedProduct indexedProduct = catalog.products.get (copy.getId ());
+
+			if (pendingUpdates != null) {
+				pendingUpdates.add (copy);
+			}
+
+			catalog.put (new IndexedProduct (copy));
+
+			return indexedProduct == null || (indexedProduct.product.getAvailableStock () > 0) != (copy.getAvailableStock () > 0);
+		} finally {
+			lock.writeLock ().unlock ();
+		}
+	}
+
+	/**
+	 * Gets a page of the products whose name or description contains the search query, ignoring case
+	 * When sorting by relevance, the products are ranked by the BM25 score of the query's words in their name and description, and products with the same score are sorted by name
+	 * When fewer than fuzzyMinimumHits products match, the products that match the query with its misspelled words corrected follow them
+	 *
+	 * @param searchQuery The query to use to search the products
+	 * @param page The page of products to get
+	 * @param pageSize The number of products on a page
+	 * @param sort The order to sort the products in
+	 * @param filter The filter to apply to the found products
+	 * @return The found products, along with the total number of matches and the facet counts
+	 */
+	public FacetedPage <Product> search (String searchQuery, int page, int pageSize, ProductSort sort, ProductFilter filter) {
+		lock.readLock ().lock ();
+
+		try {
+			String query = normalize (searchQuery);
+
+			//every product matches an empty query, so the page is taken straight from the name ordered set rather than from a copy of it
+			if (query.isEmpty ()) {
+				FacetIndex.Selection selection = catalog.facets.select (null, filter, id -> catalog.products.get (id).product);
+				List <Product> products = collect (catalog.productsByName, filter.isEmpty () ? product -> true : product -> selection.ids.contains (product.getId ()), page * pageSize, pageSize);
+
+				return new FacetedPage <> (products, PageRequest.of (page, pageSize), selection.ids.getCardinality (), selection.facets);
+			}
+
+			int count = (page + 1) * pageSize;
+			List <Product> matches = matches (query);
+			List <Product> fuzzyMatches = new ArrayList <> ();
+			String corrected = query;
+
+			if (matches.size () < fuzzyMinimumHits) {
+				corrected = correct (query);
+
+				if (!corrected.equals (query)) {
+					fuzzyMatches = matches (corrected);
+
+					fuzzyMatches.removeAll (matches);
+				}
+			}
+
+			RoaringBitmap found = new RoaringBitmap ();
+
+			for (Product product : matches) {
+				found.add (product.getId ());
+			}
+
+			for (Product product : fuzzyMatches) {
+				found.add (product.getId ());
+			}
+
+			FacetIndex.Selection selection = catalog.facets.select (found, filter, id -> catalog.products.get (id).product);
+
+			if (!filter.isEmpty ()) {
+				matches.removeIf (product -> !selection.ids.contains (product.getId ()));
+				fuzzyMatches.removeIf (product -> !selection.ids.contains (product.getId ()));
+			}
+
+			List <Product> sorted = new ArrayList <> (sort (query, matches, sort, count));
+
+			sorted.addAll (sort (corrected, fuzzyMatches, sort, count - sorted.size ()));
+
+			int from = Math.min (page * pageSize, sorted.size ());
+			int to = Math.min (from + pageSize, sorted.size ());
+
+			return new FacetedPage <> (new ArrayList <> (sorted.subList (from, to)), PageRequest.of (page, pageSize), matches.size () + fuzzyMatches.size (), selection.facets);
+		} finally {
+			lock.readLock ().unlock ();
+		}
+	}
+
+	/**
+	 * Gets products by id
+	 *
+	 * @param ids The ids of the products
+	 * @return Copies of the indexed products that were found, by id
+	 */
+	public Map <Integer, Product> get (Collection <Integer> ids) {
+		Map <Integer, Product> found = new HashMap <> ();
+
+		lock.readLock ().lock ();
+
+		try {
+			for (Integer id : ids) {
+				IndexedProduct indexedProduct = catalog.products.get (id);
+
+				if (indexedProduct != null) {
+					found.put (id, copy (indexedProduct.product));
+				}
+			}
+		} finally {
+			lock.readLock ().unlock ();
+		}
+
+		return found;
+	}
+
+	/**
+	 * Gets the version of a product
+	 *
+	 * @param id The id of the product
+	 * @return The version of the indexed product, or null if it isn't indexed
+	 */
+	public ProductVersion getVersion (int id) {
+		lock.readLock ().lock ();
+
+		try {
+			IndexedProduct indexedProduct = catalog.products.get (id);
+
+			return indexedProduct == null ? null : ProductVersion.of (indexedProduct.product);
+		} finally {
+			lock.readLock ().unlock ();
+		}
+	}
+
+	/**
+	 * Gets the products after a cursor whose name or description contains the search query, ignoring case, sorted by name
+	 * The search starts at the cursor's position in the name ordered set and stops once it has found one product more than a page, so a deep page costs no more than the first one
+	 *
+	 * @param searchQuery The query to use to search the products
+	 * @param cursor The position to start after, null starts at the first product
+	 * @param pageSize The number of products on a page
+	 * @return The found products, along with whether there are more after them
+	 */
+	public Slice <Product> searchAfter (String searchQuery, ProductCursor cursor, int pageSize) {
+		lock.readLock ().lock ();
+
+		try {
+			String query = normalize (searchQuery);
+			Map <Integer, IndexedProduct> products = catalog.products;
+			NavigableSet <Product> after = catalog.productsByName;
+
+			if (cursor != null) {
+				Product position = new Product ();
+
+				position.setId (cursor.getId ());
+				position.setName (cursor.getName ());
+
+				after = after.tailSet (position, false);
+			}
+
+			RoaringBitmap candidates = query.isEmpty () ? null : catalog.trigrams.candidates (query);
+			List <Product> found;
+
+			if (candidates != null && candidates.getCardinality () <= products.size () / SORT_THRESHOLD_DIVISOR) {
+				//there are few candidates, so sorting the ones after the cursor is cheaper than walking the set to find them
+				Product first = after.isEmpty () ? null : after.first ();
+				List <Product> matches = new ArrayList <> ();
+
+				candidates.forEach ((int id) -> {
+					IndexedProduct indexedProduct = products.get (id);
+
+					if (first != null && NAME_ORDER.compare (indexedProduct.product, first) >= 0 && indexedProduct.contains (query)) {
+						matches.add (indexedProduct.product);
+					}
+				});
+
+				matches.sort (NAME_ORDER);
+
+				found = matches;
+			} else {
+				found = collect (after, product -> (candidates == null || candidates.contains (product.getId ())) && products.get (product.getId ()).contains (query), 0, pageSize + 1);
+			}
+
+			int to = Math.min (pageSize, found.size ());
+
+			return new SliceImpl <> (new ArrayList <> (found.subList (0, to)), PageRequest.of (0, pageSize), found.size () > pageSize);
+		} finally {
+			lock.readLock ().unlock ();
+		}
+	}
+
+	/**
+	 * Gets every product that matches a query in name order, the caller must hold the read lock
+	 *
+	 * @param query The normalized query, which must not be empty
+	 * @return The matching products
+	 */
+	private List <Product> matches (String query) {
+		Map <Integer, IndexedProduct> products = catalog.products;
+		RoaringBitmap candidates = catalog.trigrams.candidates (query);
+
+		List <Product> result = new ArrayList <> ();
+
+		if (candidates == null || candidates.getCardinality () > products.size () / SORT_THRESHOLD_DIVISOR) {
+			for (Product product : catalog.productsByName) {
+				if ((candidates == null || candidates.contains (product.getId ())) && products.get (product.getId ()).contains (query)) {
+					result.add (product);
+				}
+			}
+
+			return result;
+		}
+
+		candidates.forEach ((int id) -> {
+			IndexedProduct indexedProduct = products.get (id);
+
+			if (indexedProduct.contains (query)) {
+				result.add (indexedProduct.product);
+			}
+		});
+
+		result.sort (NAME_ORDER);
+
+		return result;
+	}
+
+	/**
+	 * Takes products in order until enough of them have been found, so that a page doesn't copy or check the rest of the catalog
+	 *
+	 * @param products The products in order
+	 * @param filter Whether a product is taken
+	 * @param skip The number of products that would be taken to skip first
+	 * @param limit The most products to take
+	 * @return The products that were taken
+	 */
+	static List <Product> collect (Iterable <Product> products, Predicate <Product> filter, int skip, int limit) {
+		List <Product> result = new ArrayList <> ();
+		int skipped = 0;
+
+		for (Product product : products) {
+			if (result.size () >= limit) {
+				break;
+			}
+
+			if (!filter.test (product)) {
+				continue;
+			}
+
+			if (skipped < skip) {
+				skipped++;
+			} else {
+				result.add (product);
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Sorts matching products, the caller must hold the read lock
+	 *
+	 * @param query The normalized query
+	 * @param matches The matching products in name order
+	 * @param sort The order to sort the products in
+	 * @param count The number of products needed, when ranking by relevance the rest are left out
+	 * @return The sorted products
+	 */
+	private List <Product> sort (String query, List <Product> matches, ProductSort sort, int count) {
+		return sort == ProductSort.RELEVANCE && !query.isEmpty () ? rank (query, matches, Math.max (count, 0)) : matches;
+	}
+
+	/**
+	 * Corrects the misspelled words of a query, the caller must hold the read lock
+	 * A word is misspelled when no product's name or description contains it, and it is replaced with the closest word of a product name
+	 *
+	 * @param query The normalized query
+	 * @return The corrected query, or the query itself if nothing was corrected
+	 */
+	private String correct (String query) {
+		StringBuilder corrected = new StringBuilder (query.length ());
+		int corrections = 0;
+		int end = 0;
+
+		for (String word : RelevanceIndex.tokenize (query)) {
+			int start = query.indexOf (word, end);
+
+			corrected.append (query, end, start);
+
+			end = start + word.length ();
+
+			String correction = corrections < MAX_CORRECTED_WORDS && !catalog.relevance.contains (word) ? catalog.spelling.correct (word) : null;
+
+			if (correction == null) {
+				corrected.append (word);
+			} else {
+				corrected.append (correction);
+				corrections++;
+			}
+		}
+
+		return corrected.append (query, end, query.length ()).toString ();
+	}
+
+	/**
+	 * Ranks matching products by relevance, the caller must hold the read lock
+	 *
+	 * @param query The normalized query
+	 * @param matches The matching products in name order
+	 * @param count The number of products to rank, the rest are left out
+	 * @return The highest ranked products, the best first
+	 */
+	private List <Product> rank (String query, List <Product> matches, int count) {
+		int[] slots = new int[matches.size ()];
+
+		for (int i = 0; i < slots.length; i++) {
+			slots[i] = catalog.products.get (matches.get (i).getId ()).slot;
+		}
+
+		int[] positions = catalog.relevance.rank (query, slots, count);
+		List <Product> ranked = new ArrayList <> (positions.length);
+
+		for (int position : positions) {
+			ranked.add (matches.get (position));
+		}
+
+		return ranked;
+	}
+
+	/**
+	 * Applies an update to the index, or queues it if the index is being rebuilt
+	 *
+	 * @param product The copy of the product to index
+	 */
+	private void update (Product product) {
+		lock.writeLock ().lock ();
+
+		try {
+			if (pendingUpdates != null) {
+				pendingUpdates.add (product);
+			}
+
+			catalog.put (new IndexedProduct (product));
+		} finally {
+			lock.writeLock ().unlock ();
+		}
+	}
+
+	/**
+	 * Normalizes text so that matching ignores case
+	 *
+	 * @param text The text to normalize
+	 * @return The normalized text
+	 */
+	static String normalize (String text) {
+		return text == null ? "" : text.toLowerCase (Locale.ROOT);
+	}
+
+	/**
+	 * Copies a product so that the indexed version can't be changed by whoever saved it
+	 *
+	 * @param product The product to copy
+	 * @return The copy of the product
+	 */
+	static Product copy (Product product) {
+		Product copy = new Product (product.getId (), product.getName (), product.getDescription (), product.getPrice (), product.getImageUrl (), product.getSalePrice (), product.getStock ());
+
+		copy.setReserved (product.getReserved ());
+		copy.setVersion (product.getVersion ());
+		copy.setLastModified (product.getLastModified ());
+
+		return copy;
+	}
+
+	/**
+	 * Catalog holds the structures that products are searched with, it is replaced as a whole when the index is rebuilt
+	 */
+	private static class Catalog {
+		/**
+		 * The indexed products by id
+		 */
+		private final Map <Integer, IndexedProduct> products = new HashMap <> ();
+
+		/**
+		 * The indexed products sorted in the order that search results are returned in
+		 */
+		private final TreeSet <Product> productsByName = new TreeSet <> (NAME_ORDER);
+
+		/**
+		 * The trigram index over the products' names and descriptions
+		 */
+		private final TrigramIndex trigrams = new TrigramIndex ();
+
+		/**
+		 * The word index over the products' names and descriptions, used to rank them by relevance
+		 */
+		private final RelevanceIndex relevance = new RelevanceIndex ();
+
+		/**
+		 * The words of the products' names, used to correct misspelled queries
+		 */
+		private final SpellingIndex spelling = new SpellingIndex ();
+
+		/**
+		 * The bitmaps of the products' facets, used to filter searches and count their facets
+		 */
+		private final FacetIndex facets = new FacetIndex ();
+
+		/**
+		 * Adds a product or replaces the indexed version of it
+		 * The text indexes are only updated when the name or description changed, so stock and price changes are cheap
+		 *
+		 * @param indexedProduct The product to index
+		 */
+		private void put (IndexedProduct indexedProduct) {
+			int id = indexedProduct.product.getId ();
+			IndexedProduct old = products.put (id, indexedProduct);
+
+			if (old != null) {
+				productsByName.remove (old.product);
+				facets.remove (old.product);
+
+				if (old.name.equals (indexedProduct.name) && old.description.equals (indexedProduct.description)) {
+					indexedProduct.slot = old.slot;
+					productsByName.add (indexedProduct.product);
+					facets.add (indexedProduct.product);
+
+					return;
+				}
+
+				trigrams.remove (id, old.name);
+				trigrams.remove (id, old.description);
+				relevance.remove (old.slot, old.name, old.description);
+				spelling.remove (old.name);
+			}
+
+			productsByName.add (indexedProduct.product);
+			facets.add (indexedProduct.product);
+			trigrams.add (id, indexedProduct.name);
+			trigrams.add (id, indexedProduct.description);
+			indexedProduct.slot = relevance.add (indexedProduct.name, indexedProduct.description);
+			spelling.add (indexedProduct.name);
+		}
+	}
+
+	/**
+	 * IndexedProduct is a product along with the normalized text that it is searched by
+	 */
+	private static class IndexedProduct {
+		/**
+		 * The copy of the product
+		 */
+		private final Product product;
+
+		/**
+		 * The normalized name of the product
+		 */
+		private final String name;
+
+		/**
+		 * The normalized description of the product
+		 */
+		private final String description;
+
+		/**
+		 * The slot of the product in the relevance index
+		 */
+		private int slot;
+
+		/**
+		 * @param product The copy of the product
+		 */
+		private IndexedProduct (Product product) {
+			this.product = product;
+			this.name = normalize (product.getName ());
+			this.description = normalize (product.getDescription ());
+		}
+
+		/**
+		 * Whether the product's name or description contains the query
+		 *
+		 * @param query The normalized query
+		 * @return True if the product matches the query
+		 */
+		private boolean contains (String query) {
+			return name.contains (query) || description.contains (query);
+		}
+	}
+}
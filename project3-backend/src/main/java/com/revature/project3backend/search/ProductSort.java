@@ -0,0 +1,35 @@
+package com.revature.project3backend.search;
+
+import com.revature.project3backend.exceptions.InvalidValueException;
+
+import java.util.Locale;
+
+/**
+ * ProductSort is the order that product search results are sorted in
+ */
+public enum ProductSort {
+	/**
+	 * Sorted by name
+	 */
+	NAME,
+
+	/**
+	 * Ranked by how well the product's name and description match the search query
+	 */
+	RELEVANCE;
+
+	/**
+	 * Gets the sort for a request parameter
+	 *
+	 * @param sort The value of the parameter, ignoring case
+	 * @return The sort
+	 * @throws InvalidValueException Thrown when the value isn't a sort
+	 */
+	public static ProductSort of (String sort) throws InvalidValueException {
+		try {
+			return ProductSort.valueOf (sort.toUpperCase (Locale.ROOT));
+		} catch (IllegalArgumentException exception) {
+			throw new InvalidValueException ("Invalid sort");
+		}
+	}
+}
@@ -0,0 +1,256 @@
+package com.revature.project3backend.search;
+
+import com.revature.project3backend.jsonmodels.ProductSuggestion;
+import com.revature.project3backend.models.Product;
+import com.revature.project3backend.repositories.ProductRepo;
+import com.revature.project3backend.repositories.TransactionLineRepo;
+import com.revature.project3backend.utils.TransactionUtil;
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * ProductSuggestions completes searches as they are typed, from a radix tree over the words of the product names held in memory
+ * Suggestions are ranked by the number of units of the product that have been sold, then by name
+ */
+@Component
+public class ProductSuggestions {
+	/**
+	 * The most suggestions that can be returned for a prefix
+	 */
+	public static final int MAX_SUGGESTIONS = 10;
+
+	/**
+	 * The number of rows to load from the database at a time when building the tree
+	 */
+	private static final int BATCH_SIZE = 1000;
+
+	/**
+	 * The instance of ProductRepo to use
+	 */
+	private final ProductRepo productRepo;
+
+	/**
+	 * The instance of TransactionLineRepo to use
+	 */
+	private final TransactionLineRepo transactionLineRepo;
+
+	/**
+	 * Guards all the structures below, suggestions take the read lock and updates take the write lock
+	 */
+	private final ReadWriteLock lock = new ReentrantReadWriteLock ();
+
+	/**
+	 * The names of the products by id
+	 */
+	private final Map <Integer, String> names = new HashMap <> ();
+
+	/**
+	 * The number of units sold of the products by id
+	 */
+	private final Map <Integer, Long> unitsSold = new HashMap <> ();
+
+	/**
+	 * The tree from the words of the product names to the product ids
+	 */
+	private final SuggestionTrie trie = new SuggestionTrie (MAX_SUGGESTIONS, Comparator
+		.comparing ((Integer id) -> unitsSold.getOrDefault (id, 0L)).reversed ()
+		.thenComparing (names::get)
+		.thenComparing (id -> id));
+
+	/**
+	 * Whether the tree has been built
+	 */
+	private volatile boolean ready = false;
+
+	/**
+	 * The log4j logger for the suggestions
+	 */
+	private static final Logger logger = Logger.getLogger (ProductSuggestions.class);
+
+	/**
+	 * This constructor is automatically called by Spring
+	 *
+	 * @param productRepo The instance of ProductRepo to use
+	 * @param transactionLineRepo The instance of TransactionLineRepo to use
+	 */
+	@Autowired
+	public ProductSuggestions (ProductRepo productRepo, TransactionLineRepo transactionLineRepo) {
+		this.productRepo = productRepo;
+		this.transactionLineRepo = transactionLineRepo;
+	}
+
+	/**
+	 * Builds the tree from every product in the database and counts their sales from the lines of past transactions, this is called once the application has started and after TransactionLineMigration
+	 * The write lock is held throughout, changes that commit in the meantime wait for it rather than being lost
+	 */
+	@EventListener (ApplicationReadyEvent.class)
+	public void rebuild () {
+		long start = System.currentTimeMillis ();
+
+		lock.writeLock ().lock ();
+
+		try {
+			for (TransactionLineRepo.ProductSales sales : transactionLineRepo.sumQuantityByProduct ()) {
+				unitsSold.put (sales.getProductId (), sales.getQuantity ());
+			}
+
+			Slice <Product> products = productRepo.findAll (PageRequest.of (0, BATCH_SIZE, Sort.by ("id")));
+
+			while (true) {
+				for (Product product : products.getContent ()) {
+					put (product.getId (), product.getName ());
+				}
+
+				if (!products.hasNext ()) {
+					break;
+				}
+
+				products = productRepo.findAll (products.nextPageable ());
+			}
+
+			ready = true;
+		} finally {
+			lock.writeLock ().unlock ();
+		}
+
+		logger.info ("Built suggestions for " + names.size () + " products in " + (System.currentTimeMillis () - start) + "ms");
+	}
+
+	/**
+	 * Adds a product or updates its name. If there is a transaction in progress, the tree is updated after it commits
+	 *
+	 * @param product The product that was saved
+	 */
+	public void index (Product product) {
+		int id = product.getId ();
+		String name = product.getName ();
+
+		TransactionUtil.afterCommit (() -> {
+			lock.writeLock ().lock ();
+
+			try {
+				put (id, name);
+			} finally {
+				lock.writeLock ().unlock ();
+			}
+		});
+	}
+
+	/**
+	 * Records that units of a product were sold, which moves it up in the suggestions. If there is a transaction in progress, this happens after it commits
+	 *
+	 * @param product The product that was sold
+	 * @param quantity The number of units sold
+	 */
+	public void sold (Product product, int quantity) {
+		int id = product.getId ();
+
+		TransactionUtil.afterCommit (() -> {
+			lock.writeLock ().lock ();
+
+			try {
+				unitsSold.merge (id, (long) quantity, Long::sum);
+
+				String name = names.get (id);
+
+				if (name != null) {
+					for (String key : keys (name)) {
+						trie.rerank (key);
+					}
+				}
+			} finally {
+				lock.writeLock ().unlock ();
+			}
+		});
+	}
+
+	/**
+	 * Gets the most popular products that have a word in their name starting with a prefix, ignoring case
+	 *
+	 * @param prefix The prefix that has been typed so far
+	 * @param limit The most suggestions to return, at most MAX_SUGGESTIONS
+	 * @return The suggestions, the most popular first. This is empty until the tree has been built
+	 */
+	public List <ProductSuggestion> suggest (String prefix, int limit) {
+		List <ProductSuggestion> suggestions = new ArrayList <> ();
+
+		if (!ready) {
+			return suggestions;
+		}
+
+		lock.readLock ().lock ();
+
+		try {
+			int[] ids = trie.complete (ProductSearchIndex.normalize (prefix));
+
+			for (int i = 0; i < ids.length && i < limit; i++) {
+				suggestions.add (new ProductSuggestion (ids[i], names.get (ids[i])));
+			}
+		} finally {
+			lock.readLock ().unlock ();
+		}
+
+		return suggestions;
+	}
+
+	/**
+	 * Adds a product to the tree or replaces its name, the caller must hold the write lock
+	 *
+	 * @param id The id of the product
+	 * @param name The name of the product
+	 */
+	private void put (int id, String name) {
+		String old = names.get (id);
+
+		if (name.equals (old)) {
+			return;
+		}
+
+		if (old != null) {
+			for (String key : keys (old)) {
+				trie.remove (key, id);
+			}
+		}
+
+		names.put (id, name);
+
+		for (String key : keys (name)) {
+			trie.add (key, id);
+		}
+	}
+
+	/**
+	 * Gets the keys that a product name is found by, the normalized name from the start of each word
+	 *
+	 * @param name The name of the product
+	 * @return The keys
+	 */
+	static Set <String> keys (String name) {
+		String normalized = ProductSearchIndex.normalize (name);
+		Set <String> keys = new LinkedHashSet <> ();
+
+		for (int i = 0; i < normalized.length (); i++) {
+			if (!Character.isWhitespace (normalized.charAt (i)) && (i == 0 || Character.isWhitespace (normalized.charAt (i - 1)))) {
+				keys.add (normalized.substring (i));
+			}
+		}
+
+		return keys;
+	}
+}
@@ -0,0 +1,400 @@
+package com.revature.project3backend.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * RelevanceIndex is an inverted index over the words of product names and descriptions that scores products against a query with BM25
+ * Each field is scored separately and weighted by its boost, so a word in the name counts for more than the same word in the description
+ * Products are stored in numbered slots and the postings and field lengths are primitive arrays, so scoring doesn't allocate per product
+ * It isn't thread safe for updates, the owner must guard it. Scoring can run concurrently, each thread has its own scratch space
+ */
+class RelevanceIndex {
+	/**
+	 * How much a match in each field counts, the name and then the description
+	 */
+	private static final float[] BOOSTS = {3.0F, 1.0F};
+
+	/**
+	 * How quickly repeating a word stops raising the score
+	 */
+	private static final float K1 = 1.2F;
+
+	/**
+	 * How much the score is normalized by the length of the field
+	 */
+	private static final float B = 0.75F;
+
+	/**
+	 * The terms by their text
+	 */
+	private final Map <String, Term> terms = new HashMap <> ();
+
+	/**
+	 * The number of words in each field of each slot
+	 */
+	private int[][] lengths = new int[BOOSTS.length][16];
+
+	/**
+	 * The number of words in each field across all products
+	 */
+	private final long[] totalLengths = new long[BOOSTS.length];
+
+	/**
+	 * The number of products in the index
+	 */
+	private int documents = 0;
+
+	/**
+	 * The number of slots that have been used
+	 */
+	private int slots = 0;
+
+	/**
+	 * The slots of removed products, they are reused before new slots
+	 */
+	private int[] freeSlots = new int[16];
+
+	/**
+	 * The number of free slots
+	 */
+	private int freeSlotCount = 0;
+
+	/**
+	 * The score of each slot while a query is scored, it is all zeros between queries
+	 */
+	private final ThreadLocal <float[]> scratch = ThreadLocal.withInitial (() -> new float[0]);
+
+	/**
+	 * Adds a product
+	 *
+	 * @param name The normalized name of the product
+	 * @param description The normalized description of the product
+	 * @return The slot of the product, it is needed to score or remove it
+	 */
+	int add (String name, String description) {
+		int slot = freeSlotCount > 0 ? freeSlots[--freeSlotCount] : slots++;
+
+		if (slot >= lengths[0].length) {
+			for (int field = 0; field < lengths.length; field++) {
+				lengths[field] = Arrays.copyOf (lengths[field], lengths[field].length * 2);
+			}
+		}
+
+		String[] fields = {name, description};
+		Set <String> distinct = new LinkedHashSet <> ();
+
+		for (int field = 0; field < fields.length; field++) {
+			List <String> words = tokenize (fields[field]);
+			Map <String, Integer> frequencies = new HashMap <> ();
+
+			for (String word : words) {
+				frequencies.merge (word, 1, Integer::sum);
+			}
+
+			for (Map.Entry <String, Integer> frequency : frequencies.entrySet ()) {
+				terms.computeIfAbsent (frequency.getKey (), key -> new Term ()).postings[field].add (slot, frequency.getValue ());
+			}
+
+			lengths[field][slot] = words.size ();
+			totalLengths[field] += words.size ();
+			distinct.addAll (frequencies.keySet ());
+		}
+
+		for (String word : distinct) {
+			terms.get (word).documentFrequency++;
+		}
+
+		documents++;
+
+		return slot;
+	}
+
+	/**
+	 * Removes a product
+	 *
+	 * @param slot The slot of the product
+	 * @param name The normalized name that the product was added with
+	 * @param description The normalized description that the product was added with
+	 */
+	void remove (int slot, String name, String description) {
+		String[] fields = {name, description};
+		Set <String> distinct = new LinkedHashSet <> ();
+
+		for (int field = 0; field < fields.length; field++) {
+			for (String word : new LinkedHashSet <> (tokenize (fields[field]))) {
+				terms.get (word).postings[field].remove (slot);
+				distinct.add (word);
+			}
+
+			totalLengths[field] -= lengths[field][slot];
+			lengths[field][slot] = 0;
+		}
+
+		for (String word : distinct) {
+			Term term = terms.get (word);
+
+			if (--term.documentFrequency == 0) {
+				terms.remove (word);
+			}
+		}
+
+		if (freeSlotCount == freeSlots.length) {
+			freeSlots = Arrays.copyOf (freeSlots, freeSlots.length * 2);
+		}
+
+		freeSlots[freeSlotCount++] = slot;
+		documents--;
+	}
+
+	/**
+	 * Whether any product contains a word
+	 *
+	 * @param word The normalized word
+	 * @return True if the word is in the name or description of a product
+	 */
+	boolean contains (String word) {
+		return terms.containsKey (word);
+	}
+
+	/**
+	 * Ranks products by how well they match a query
+	 *
+	 * @param query The normalized query
+	 * @param candidates The slots of the products to rank
+	 * @param count The number of products to rank, the rest are left out
+	 * @return The positions in candidates of the highest scoring products, the best first. Products with the same score keep their order in candidates
+	 */
+	int[] rank (String query, int[] candidates, int count) {
+		float[] accumulator = scratch.get ();
+
+		if (accumulator.length < slots) {
+			accumulator = new float[lengths[0].length];
+
+			scratch.set (accumulator);
+		}
+
+		List <Term> queryTerms = new ArrayList <> ();
+
+		for (String word : new LinkedHashSet <> (tokenize (query))) {
+			Term term = terms.get (word);
+
+			if (term != null) {
+				queryTerms.add (term);
+			}
+		}
+
+		for (Term term : queryTerms) {
+			float idf = (float) Math.log (1 + (documents - term.documentFrequency + 0.5) / (term.documentFrequency + 0.5));
+
+			for (int field = 0; field < BOOSTS.length; field++) {
+				Postings postings = term.postings[field];
+				float averageLength = (float) totalLengths[field] / documents;
+				float weight = idf * BOOSTS[field] * (K1 + 1);
+				int[] fieldLengths = lengths[field];
+
+				for (int i = 0; i < postings.size; i++) {
+					int slot = postings.slots[i];
+					int frequency = postings.frequencies[i];
+
+					accumulator[slot] += weight * frequency / (frequency + K1 * (1 - B + B * fieldLengths[slot] / averageLength));
+				}
+			}
+		}
+
+		//the bits of a non-negative float sort the same way as the float, so the score and the position are packed into one long that sorts best first
+		long[] keys = new long[candidates.length];
+
+		for (int i = 0; i < candidates.length; i++) {
+			keys[i] = (long) (Integer.MAX_VALUE - Float.floatToIntBits (accumulator[candidates[i]])) << 32 | i;
+		}
+
+		for (Term term : queryTerms) {
+			for (Postings postings : term.postings) {
+				for (int i = 0; i < postings.size; i++) {
+					accumulator[postings.slots[i]] = 0;
+				}
+			}
+		}
+
+		long[] top = smallest (keys, Math.min (count, keys.length));
+		int[] positions = new int[top.length];
+
+		for (int i = 0; i < top.length; i++) {
+			positions[i] = (int) top[i];
+		}
+
+		return positions;
+	}
+
+	/**
+	 * Gets the smallest keys in ascending order, with a bounded heap when only a few of them are needed
+	 *
+	 * @param keys The keys, they may be reordered
+	 * @param count The number of keys to get
+	 * @return The smallest keys
+	 */
+	static long[] smallest (long[] keys, int count) {
+		if (count >= keys.length / 2) {
+			Arrays.sort (keys);
+
+			return Arrays.copyOf (keys, count);
+		}
+
+		long[] heap = new long[count];
+		int size = 0;
+
+		for (long key : keys) {
+			if (size < count) {
+				int child = size++;
+
+				heap[child] = key;
+
+				while (child > 0 && heap[(child - 1) / 2] < heap[child]) {
+					swap (heap, child, (child - 1) / 2);
+
+					child = (child - 1) / 2;
+				}
+			} else if (count > 0 && key < heap[0]) {
+				int parent = 0;
+
+				heap[0] = key;
+
+				while (true) {
+					int largest = parent;
+
+					for (int child = 2 * parent + 1; child <= 2 * parent + 2 && child < size; child++) {
+						if (heap[child] > heap[largest]) {
+							largest = child;
+						}
+					}
+
+					if (largest == parent) {
+						break;
+					}
+
+					swap (heap, parent, largest);
+
+					parent = largest;
+				}
+			}
+		}
+
+		Arrays.sort (heap);
+
+		return heap;
+	}
+
+	/**
+	 * Swaps two elements of an array
+	 *
+	 * @param array The array
+	 * @param i The index of one element
+	 * @param j The index of the other element
+	 */
+	private static void swap (long[] array, int i, int j) {
+		long temporary = array[i];
+
+		array[i] = array[j];
+		array[j] = temporary;
+	}
+
+	/**
+	 * Splits normalized text into words, anything that isn't a letter or a digit separates words
+	 *
+	 * @param text The normalized text
+	 * @return The words
+	 */
+	static List <String> tokenize (String text) {
+		List <String> words = new ArrayList <> ();
+		int start = -1;
+
+		for (int i = 0; i <= text.length (); i++) {
+			boolean wordCharacter = i < text.length () && Character.isLetterOrDigit (text.charAt (i));
+
+			if (wordCharacter && start < 0) {
+				start = i;
+			} else if (!wordCharacter && start >= 0) {
+				words.add (text.substring (start, i));
+
+				start = -1;
+			}
+		}
+
+		return words;
+	}
+
+	/**
+	 * Term is a word along with the products that contain it
+	 */
+	private static class Term {
+		/**
+		 * The products that contain the word in each field
+		 */
+		private final Postings[] postings = {new Postings (), new Postings ()};
+
+		/**
+		 * The number of products that contain the word in any field
+		 */
+		private int documentFrequency = 0;
+	}
+
+	/**
+	 * Postings are the slots of the products that contain a word in a field, along with how many times they contain it
+	 */
+	private static class Postings {
+		/**
+		 * The slots, in no particular order
+		 */
+		private int[] slots = new int[4];
+
+		/**
+		 * The number of times the word appears in the field of each slot
+		 */
+		private int[] frequencies = new int[4];
+
+		/**
+		 * The number of slots
+		 */
+		private int size = 0;
+
+		/**
+		 * Adds a slot
+		 *
+		 * @param slot The slot
+		 * @param frequency The number of times the word appears in the field
+		 */
+		private void add (int slot, int frequency) {
+			if (size == slots.length) {
+				slots = Arrays.copyOf (slots, size * 2);
+				frequencies = Arrays.copyOf (frequencies, size * 2);
+			}
+
+			slots[size] = slot;
+			frequencies[size] = frequency;
+			size++;
+		}
+
+		/**
+		 * Removes a slot by moving the last slot into its place
+		 *
+		 * @param slot The slot
+		 */
+		private void remove (int slot) {
+			for (int i = 0; i < size; i++) {
+				if (slots[i] == slot) {
+					size--;
+					slots[i] = slots[size];
+					frequencies[i] = frequencies[size];
+
+					return;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,209 @@
+package com.revature.project3backend.search;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * SpellingIndex corrects misspelled words against the words of the product names, using a SymSpell style deletion dictionary
+ * Every word is stored under the strings made by deleting up to MAX_DISTANCE characters from its prefix, so the words close to a misspelling are found by looking up the misspelling's own deletions instead of comparing it to the whole vocabulary
+ * It isn't thread safe for updates, the owner must guard it
+ */
+class SpellingIndex {
+	/**
+	 * The most edits that a correction can be away from the misspelled word
+	 */
+	static final int MAX_DISTANCE = 2;
+
+	/**
+	 * Only the deletions of this many characters at the start of a word are stored, which bounds the size of the dictionary for long words
+	 */
+	private static final int PREFIX_LENGTH = 7;
+
+	/**
+	 * The most words that are compared to a misspelled word, this bounds the time taken to correct it
+	 */
+	private static final int MAX_CANDIDATES = 64;
+
+	/**
+	 * The number of product names that contain each word
+	 */
+	private final Map <String, Integer> words = new HashMap <> ();
+
+	/**
+	 * The words by the deletions of their prefixes
+	 */
+	private final Map <String, List <String>> deletions = new HashMap <> ();
+
+	/**
+	 * Adds the words of a product name
+	 *
+	 * @param name The normalized name
+	 */
+	void add (String name) {
+		for (String word : new LinkedHashSet <> (RelevanceIndex.tokenize (name))) {
+			if (words.merge (word, 1, Integer::sum) == 1) {
+				for (String deletion : deletions (word, MAX_DISTANCE)) {
+					deletions.computeIfAbsent (deletion, key -> new ArrayList <> (1)).add (word);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Removes the words of a product name
+	 *
+	 * @param name The normalized name that was added
+	 */
+	void remove (String name) {
+		for (String word : new LinkedHashSet <> (RelevanceIndex.tokenize (name))) {
+			if (words.merge (word, -1, Integer::sum) == 0) {
+				words.remove (word);
+
+				for (String deletion : deletions (word, MAX_DISTANCE)) {
+					List <String> candidates = deletions.get (deletion);
+
+					candidates.remove (word);
+
+					if (candidates.isEmpty ()) {
+						deletions.remove (deletion);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Finds the closest word to a misspelled word
+	 * Words of up to two characters aren't corrected, and words of up to four characters are only corrected by one edit
+	 *
+	 * @param word The normalized misspelled word
+	 * @return The closest word, the most common one when several are as close, or null if none are close enough
+	 */
+	String correct (String word) {
+		int maxDistance = word.length () <= 2 ? 0 : word.length () <= 4 ? 1 : MAX_DISTANCE;
+
+		if (maxDistance == 0) {
+			return null;
+		}
+
+		Set <String> compared = new HashSet <> ();
+		String best = null;
+		int bestDistance = maxDistance + 1;
+
+		for (String deletion : deletions (word, maxDistance)) {
+			List <String> candidates = deletions.get (deletion);
+
+			if (candidates == null) {
+				continue;
+			}
+
+			for (String candidate : candidates) {
+				if (!compared.add (candidate)) {
+					continue;
+				}
+
+				int distance = distance (word, candidate, maxDistance);
+
+				if (distance < bestDistance || distance == bestDistance && best != null && (words.get (candidate) > words.get (best) || words.get (candidate).equals (words.get (best)) && candidate.compareTo (best) < 0)) {
+					best = candidate;
+					bestDistance = distance;
+				}
+
+				if (compared.size () == MAX_CANDIDATES) {
+					return best;
+				}
+			}
+		}
+
+		return best;
+	}
+
+	/**
+	 * Gets the strings made by deleting up to a number of characters from the prefix of a word, the prefix itself included
+	 *
+	 * @param word The word
+	 * @param maxDeletions The most characters to delete
+	 * @return The deletions, the fewest deleted characters first
+	 */
+	private static Set <String> deletions (String word, int maxDeletions) {
+		Set <String> result = new LinkedHashSet <> ();
+		List <String> current = new ArrayList <> ();
+
+		current.add (word.length () > PREFIX_LENGTH ? word.substring (0, PREFIX_LENGTH) : word);
+		result.addAll (current);
+
+		for (int deleted = 0; deleted < maxDeletions; deleted++) {
+			List <String> next = new ArrayList <> ();
+
+			for (String text : current) {
+				for (int i = 0; i < text.length (); i++) {
+					String deletion = text.substring (0, i) + text.substring (i + 1);
+
+					if (result.add (deletion)) {
+						next.add (deletion);
+					}
+				}
+			}
+
+			current = next;
+		}
+
+		return result;
+	}
+
+	/**
+	 * Gets the number of insertions, deletions, substitutions and swaps of adjacent characters that turn one word into another (the optimal string alignment distance)
+	 *
+	 * @param a One word
+	 * @param b The other word
+	 * @param maxDistance The distance to stop at
+	 * @return The distance, or maxDistance + 1 if it's more than maxDistance
+	 */
+	static int distance (String a, String b, int maxDistance) {
+		if (Math.abs (a.length () - b.length ()) > maxDistance) {
+			return maxDistance + 1;
+		}
+
+		int[] previousRow = new int[b.length () + 1];
+		int[] row = new int[b.length () + 1];
+		int[] nextRow = new int[b.length () + 1];
+
+		for (int j = 0; j <= b.length (); j++) {
+			row[j] = j;
+		}
+
+		for (int i = 1; i <= a.length (); i++) {
+			int[] rotated = previousRow;
+
+			previousRow = row;
+			row = nextRow;
+			nextRow = rotated;
+			row[0] = i;
+
+			int rowMinimum = row[0];
+
+			for (int j = 1; j <= b.length (); j++) {
+				int cost = a.charAt (i - 1) == b.charAt (j - 1) ? 0 : 1;
+
+				row[j] = Math.min (Math.min (row[j - 1] + 1, previousRow[j] + 1), previousRow[j - 1] + cost);
+
+				if (i > 1 && j > 1 && a.charAt (i - 1) == b.charAt (j - 2) && a.charAt (i - 2) == b.charAt (j - 1)) {
+					row[j] = Math.min (row[j], nextRow[j - 2] + 1);
+				}
+
+				rowMinimum = Math.min (rowMinimum, row[j]);
+			}
+
+			if (rowMinimum > maxDistance) {
+				return maxDistance + 1;
+			}
+		}
+
+		return Math.min (row[b.length ()], maxDistance + 1);
+	}
+}
@@ -0,0 +1,280 @@
+package com.revature.project3backend.search;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * SuggestionTrie is a radix tree (a trie whose single child chains are compressed into one edge) from keys to product ids
+ * Every node keeps the ids of the highest ranked products under it, so the completions of a prefix are read off a single node
+ * It isn't thread safe, the owner must guard it
+ */
+class SuggestionTrie {
+	/**
+	 * The number of ids kept at every node
+	 */
+	private final int topSize;
+
+	/**
+	 * The order that ids are ranked in, the best first
+	 */
+	private final Comparator <Integer> ranking;
+
+	/**
+	 * The root of the tree, its label is always empty
+	 */
+	private final Node root = new Node ("");
+
+	/**
+	 * @param topSize The number of ids kept at every node
+	 * @param ranking The order that ids are ranked in, the best first
+	 */
+	SuggestionTrie (int topSize, Comparator <Integer> ranking) {
+		this.topSize = topSize;
+		this.ranking = ranking;
+	}
+
+	/**
+	 * Adds a key for a product
+	 *
+	 * @param key The key
+	 * @param id The id of the product
+	 */
+	void add (String key, int id) {
+		List <Node> path = new ArrayList <> ();
+		Node node = root;
+		int position = 0;
+
+		path.add (node);
+
+		while (position < key.length ()) {
+			Node child = node.children.get (key.charAt (position));
+
+			if (child == null) {
+				child = new Node (key.substring (position));
+
+				node.children.put (key.charAt (position), child);
+			} else {
+				int common = commonPrefixLength (child.label, key, position);
+
+				if (common < child.label.length ()) {
+					Node split = new Node (child.label.substring (0, common));
+
+					child.label = child.label.substring (common);
+					split.children.put (child.label.charAt (0), child);
+					node.children.put (key.charAt (position), split);
+
+					child = split;
+				}
+			}
+
+			node = child;
+			position += child.label.length ();
+
+			path.add (node);
+		}
+
+		node.ids.add (id);
+
+		refresh (path);
+	}
+
+	/**
+	 * Removes a key of a product
+	 *
+	 * @param key The key
+	 * @param id The id of the product
+	 */
+	void remove (String key, int id) {
+		List <Node> path = find (key);
+
+		if (path == null) {
+			return;
+		}
+
+		Node node = path.get (path.size () - 1);
+
+		node.ids.remove (id);
+
+		for (int i = path.size () - 1; i > 0; i--) {
+			Node child = path.get (i);
+			Node parent = path.get (i - 1);
+
+			if (!child.ids.isEmpty ()) {
+				break;
+			}
+
+			if (child.children.isEmpty ()) {
+				parent.children.remove (child.label.charAt (0));
+			} else if (child.children.size () == 1) {
+				Node grandchild = child.children.values ().iterator ().next ();
+
+				grandchild.label = child.label + grandchild.label;
+				parent.children.put (grandchild.label.charAt (0), grandchild);
+			}
+		}
+
+		refresh (path);
+	}
+
+	/**
+	 * Reranks the nodes above a key, this must be called when the rank of one of its products changes
+	 *
+	 * @param key The key
+	 */
+	void rerank (String key) {
+		List <Node> path = find (key);
+
+		if (path != null) {
+			refresh (path);
+		}
+	}
+
+	/**
+	 * Gets the highest ranked products with a key that starts with a prefix
+	 *
+	 * @param prefix The prefix
+	 * @return The ids of the products, the best first
+	 */
+	int[] complete (String prefix) {
+		Node node = root;
+		int position = 0;
+
+		while (position < prefix.length ()) {
+			Node child = node.children.get (prefix.charAt (position));
+
+			if (child == null) {
+				return new int[0];
+			}
+
+			int common = commonPrefixLength (child.label, prefix, position);
+
+			if (position + common == prefix.length ()) {
+				return child.top;
+			}
+
+			if (common < child.label.length ()) {
+				return new int[0];
+			}
+
+			node = child;
+			position += common;
+		}
+
+		return node.top;
+	}
+
+	/**
+	 * Finds the nodes from the root to the node of a key
+	 *
+	 * @param key The key
+	 * @return The nodes, or null if the key isn't in the tree
+	 */
+	private List <Node> find (String key) {
+		List <Node> path = new ArrayList <> ();
+		Node node = root;
+		int position = 0;
+
+		path.add (node);
+
+		while (position < key.length ()) {
+			node = node.children.get (key.charAt (position));
+
+			if (node == null || !key.startsWith (node.label, position)) {
+				return null;
+			}
+
+			position += node.label.length ();
+
+			path.add (node);
+		}
+
+		return path;
+	}
+
+	/**
+	 * Recomputes the highest ranked products of the nodes on a path, from the bottom up
+	 * A product that is in the top of a node is in the top of the child it came from, so only the children's tops need to be merged
+	 *
+	 * @param path The nodes from the root down
+	 */
+	private void refresh (List <Node> path) {
+		for (int i = path.size () - 1; i >= 0; i--) {
+			Node node = path.get (i);
+			Set <Integer> candidates = new LinkedHashSet <> (node.ids);
+
+			for (Node child : node.children.values ()) {
+				for (int id : child.top) {
+					candidates.add (id);
+				}
+			}
+
+			List <Integer> ranked = new ArrayList <> (candidates);
+
+			ranked.sort (ranking);
+
+			int size = Math.min (topSize, ranked.size ());
+
+			node.top = new int[size];
+
+			for (int j = 0; j < size; j++) {
+				node.top[j] = ranked.get (j);
+			}
+		}
+	}
+
+	/**
+	 * Gets the length of the common prefix of a label and a key from a position
+	 *
+	 * @param label The label
+	 * @param key The key
+	 * @param position The position in the key to start at
+	 * @return The number of matching characters
+	 */
+	private static int commonPrefixLength (String label, String key, int position) {
+		int length = 0;
+
+		while (length < label.length () && position + length < key.length () && label.charAt (length) == key.charAt (position + length)) {
+			length++;
+		}
+
+		return length;
+	}
+
+	/**
+	 * Node is a node in the tree
+	 */
+	private static class Node {
+		/**
+		 * The characters on the edge from the parent to this node
+		 */
+		private String label;
+
+		/**
+		 * The children by the first character of their labels
+		 */
+		private final Map <Character, Node> children = new HashMap <> ();
+
+		/**
+		 * The ids of the products whose key ends at this node
+		 */
+		private final Set <Integer> ids = new HashSet <> ();
+
+		/**
+		 * The ids of the highest ranked products under this node, the best first
+		 */
+		private int[] top = new int[0];
+
+		/**
+		 * @param label The characters on the edge from the parent to this node
+		 */
+		private Node (String label) {
+			this.label = label;
+		}
+	}
+}
@@ -0,0 +1,121 @@
+package com.revature.project3backend.search;
+
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * TrigramIndex is an inverted index from every three character sequence of some text to the ids of the products whose text contains it
+ * It is not thread safe, ProductSearchIndex guards it with a lock
+ */
+class TrigramIndex {
+	/**
+	 * The length of the grams that are indexed
+	 */
+	static final int GRAM_LENGTH = 3;
+
+	/**
+	 * The posting list of each trigram, kept as compressed bitmaps of product ids
+	 */
+	private final Map <String, RoaringBitmap> postings = new HashMap <> ();
+
+	/**
+	 * Adds the trigrams of the given text to the index
+	 *
+	 * @param id The id of the product the text belongs to
+	 * @param text The lowercase text to index
+	 */
+	void add (int id, String text) {
+		for (String trigram : trigrams (text)) {
+			postings.computeIfAbsent (trigram, key -> new RoaringBitmap ()).add (id);
+		}
+	}
+
+	/**
+	 * Removes the trigrams of the given text from the index
+	 *
+	 * @param id The id of the product the text belongs to
+	 * @param text The lowercase text that was indexed for the product
+	 */
+	void remove (int id, String text) {
+		for (String trigram : trigrams (text)) {
+			RoaringBitmap bitmap = postings.get (trigram);
+
+			if (bitmap == null) {
+				continue;
+			}
+
+			bitmap.remove (id);
+
+			if (bitmap.isEmpty ()) {
+				postings.remove (trigram);
+			}
+		}
+	}
+
+	/**
+	 * Gets the ids of the products that contain every trigram of the query. This is a superset of the products that contain the query, so the candidates still have to be verified
+	 *
+	 * @param query The lowercase query
+	 * @return The candidate ids, or null if the query is too short to be narrowed down by trigrams
+	 */
+	RoaringBitmap candidates (String query) {
+		if (query.length () < GRAM_LENGTH) {
+			return null;
+		}
+
+		List <RoaringBitmap> lists = new ArrayList <> ();
+
+		for (String trigram : trigrams (query)) {
+			RoaringBitmap bitmap = postings.get (trigram);
+
+			//no product contains this trigram, so no product can contain the query
+			if (bitmap == null) {
+				return new RoaringBitmap ();
+			}
+
+			lists.add (bitmap);
+		}
+
+		//intersecting the shortest lists first keeps the intermediate results small
+		lists.sort ((a, b) -> Integer.compare (a.getCardinality (), b.getCardinality ()));
+
+		RoaringBitmap result = lists.get (0).clone ();
+
+		for (int i = 1; i < lists.size () && !result.isEmpty (); i++) {
+			result.and (lists.get (i));
+		}
+
+		return result;
+	}
+
+	/**
+	 * Gets the number of distinct trigrams in the index
+	 *
+	 * @return The number of distinct trigrams
+	 */
+	int size () {
+		return postings.size ();
+	}
+
+	/**
+	 * Gets the distinct trigrams of some text
+	 *
+	 * @param text The text to split into trigrams
+	 * @return The distinct trigrams of the text
+	 */
+	private static Set <String> trigrams (String text) {
+		Set <String> trigrams = new HashSet <> ();
+
+		for (int i = 0; i + GRAM_LENGTH <= text.length (); i++) {
+			trigrams.add (text.substring (i, i + GRAM_LENGTH));
+		}
+
+		return trigrams;
+	}
+}
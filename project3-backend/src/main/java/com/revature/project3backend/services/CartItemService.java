@@ -19,32 +19,44 @@ public class CartItemService {
 	 */
 	private final CartItemRepo cartItemRepo;
 	
+	/**
+	 * The instance of StockHoldService to use
+	 */
+	private final StockHoldService stockHoldService;
+	
 	/**
 	 * This constructor is automatically called by Spring
 	 *
 	 * @param cartItemRepo The instance of CartItemRepo to use
+	 * @param stockHoldService The instance of StockHoldService to use
 	 */
 	@Autowired
-	public CartItemService (CartItemRepo cartItemRepo) {
+	public CartItemService (CartItemRepo cartItemRepo, StockHoldService stockHoldService) {
 		this.cartItemRepo = cartItemRepo;
+		this.stockHoldService = stockHoldService;
 	}
 	
 	/**
-	 * Saves a cart item to the database
+	 * Saves a cart item to the database and holds its product's stock for it
 	 *
 	 * @param cartItem The cart item to save to the database
+	 * @throws InvalidValueException Thrown when the product doesn't have enough available stock, the cart item isn't saved
 	 */
-	public void createCartItem (CartItem cartItem) {
+	@Transactional (rollbackOn = InvalidValueException.class)
+	public void createCartItem (CartItem cartItem) throws InvalidValueException {
 		this.cartItemRepo.save (cartItem);
+		
+		stockHoldService.hold (cartItem);
 	}
 	
 	/**
-	 * Updates a cart item's quantity
+	 * Updates a cart item's quantity and the stock held for it
 	 *
 	 * @param cartItemId The id of the cart item to update
 	 * @param quantity The value to set the cart item's quantity to
-	 * @throws InvalidValueException Thrown when cart item cannot be found with given id
+	 * @throws InvalidValueException Thrown when cart item cannot be found with given id, or the product doesn't have enough available stock
 	 */
+	@Transactional (rollbackOn = InvalidValueException.class)
 	public void updateCartItem (Integer cartItemId, Integer quantity) throws InvalidValueException {
 		CartItem cartItem = cartItemRepo.findById (cartItemId).orElse (null);
 		
@@ -52,6 +64,8 @@ public class CartItemService {
 			throw new InvalidValueException ("Invalid cart item id");
 		}
 		
+		stockHoldService.changeHold (cartItem, quantity);
+		
 		cartItem.setQuantity (quantity);
 		
 		cartItemRepo.save (cartItem);
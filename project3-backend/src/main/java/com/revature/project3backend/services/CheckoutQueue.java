@@ -0,0 +1,234 @@
+package com.revature.project3backend.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.revature.project3backend.exceptions.CheckoutInProgressException;
+import com.revature.project3backend.exceptions.CheckoutQueueFullException;
+import com.revature.project3backend.exceptions.InsufficientStockException;
+import com.revature.project3backend.exceptions.InvalidValueException;
+import com.revature.project3backend.modeldtos.CheckoutOrder;
+import com.revature.project3backend.models.CartItem;
+import com.revature.project3backend.models.Transaction;
+import com.revature.project3backend.models.User;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CheckoutQueue checks out carts in the background, so a checkout doesn't keep a request thread busy while the stock is reserved and the transaction is created
+ * Carts wait on a bounded queue that a fixed pool of workers drains. When the queue is full a checkout is turned away straight away instead of piling up, so a burst of checkouts can't run the application out of memory or threads
+ * The progress of each order is kept in memory for the status TTL and can be polled. Queued carts belong to this instance of the application and are lost if it stops before a worker gets to them, their cart items are still in the table though
+ * Workers never touch the user in the HTTP session, which belongs to the request threads. While an order is queued the user's cart is locked instead, and the next request of the user after the order has finished settles it: the cart in the session is emptied if the order completed, and is left as it was if it failed
+ */
+@Service
+public class CheckoutQueue {
+	/**
+	 * The instance of CheckoutService to use
+	 */
+	private final CheckoutService checkoutService;
+	
+	/**
+	 * Whether POST /transaction queues carts instead of checking them out on the request thread
+	 */
+	private final boolean enabled;
+	
+	/**
+	 * The workers and the queue of carts waiting for them
+	 */
+	private final ThreadPoolExecutor executor;
+	
+	/**
+	 * The orders by their ids, an order is replaced whenever its checkout moves on a step
+	 */
+	private final Cache <String, CheckoutOrder> orders;
+	
+	/**
+	 * The latest order of each user whose cart is locked, until a request thread of the user settles it
+	 */
+	private final Map <Integer, CheckoutOrder> ordersByUser = new ConcurrentHashMap <> ();
+	
+	/**
+	 * Counts the checkouts that were turned away because the queue was full, published as "checkout.queue.rejected"
+	 */
+	private final Counter rejected;
+	
+	/**
+	 * The log4j logger for the queue
+	 */
+	private static final Logger logger = Logger.getLogger (CheckoutQueue.class);
+	
+	/**
+	 * This constructor is automatically called by Spring
+	 *
+	 * @param checkoutService The instance of CheckoutService to use
+	 * @param enabled Whether POST /transaction queues carts
+	 * @param workers The number of workers
+	 * @param capacity The most carts that can wait for a worker
+	 * @param statusTtl How long an order can be polled after it last changed
+	 * @param meterRegistry The registry to publish the queue's metrics to
+	 */
+	@Autowired
+	public CheckoutQueue (CheckoutService checkoutService, @Value ("${checkout.async.enabled:false}") boolean enabled, @Value ("${checkout.async.workers:4}") int workers, @Value ("${checkout.async.queue-capacity:100}") int capacity, @Value ("${checkout.async.status-ttl:1h}") Duration statusTtl, MeterRegistry meterRegistry) {
+		this.checkoutService = checkoutService;
+		this.enabled = enabled;
+		this.executor = new ThreadPoolExecutor (workers, workers, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue <> (capacity), new CustomizableThreadFactory ("checkout-"), new ThreadPoolExecutor.AbortPolicy ());
+		this.orders = Caffeine.newBuilder ().expireAfterWrite (statusTtl).build ();
+		this.rejected = meterRegistry.counter ("checkout.queue.rejected");
+		
+		meterRegistry.gauge ("checkout.queue.size", executor.getQueue (), BlockingQueue::size);
+	}
+	
+	/**
+	 * Tells whether POST /transaction queues carts
+	 *
+	 * @return Whether checkouts are done in the background
+	 */
+	public boolean isEnabled () {
+		return enabled;
+	}
+	
+	/**
+	 * Queues the user's cart to be checked out, the cart is locked until the order has finished and been settled
+	 *
+	 * @param user The user who is checking out, whose cart must not be empty
+	 * @return The queued order
+	 * @throws CheckoutQueueFullException Thrown when too many carts are already waiting, the user's cart is left as it was
+	 * @throws CheckoutInProgressException Thrown when the user already has a cart queued
+	 */
+	public CheckoutOrder submit (User user) throws CheckoutQueueFullException, CheckoutInProgressException {
+		if (settle (user)) {
+			throw new CheckoutInProgressException ();
+		}
+		
+		CheckoutOrder order = new CheckoutOrder (UUID.randomUUID ().toString (), user.getId ());
+		
+		if (ordersByUser.putIfAbsent (user.getId (), order) != null) {
+			throw new CheckoutInProgressException ();
+		}
+		
+		//the worker gets its own copy of the cart and a buyer that only has an id, so it shares nothing with the session that can change
+		List <CartItem> cart = new ArrayList <> (user.getCart ());
+		User buyer = new User ();
+		
+		buyer.setId (user.getId ());
+		
+		orders.put (order.getId (), order);
+		
+		try {
+			executor.execute (() -> process (order, buyer, cart));
+		} catch (RejectedExecutionException exception) {
+			orders.invalidate (order.getId ());
+			ordersByUser.remove (user.getId ());
+			rejected.increment ();
+			
+			throw new CheckoutQueueFullException ();
+		}
+		
+		return order;
+	}
+	
+	/**
+	 * Settles the user's latest order if it has finished, this must be called on a request thread of the user before their cart is used
+	 * The cart in the session is emptied if the order completed, since its items were checked out
+	 *
+	 * @param user The user in the HTTP session
+	 * @return Whether the user still has a cart queued, in which case their cart must not be changed
+	 */
+	public boolean settle (User user) {
+		CheckoutOrder order = ordersByUser.get (user.getId ());
+		
+		if (order == null) {
+			return false;
+		}
+		
+		if (!order.isFinished ()) {
+			return true;
+		}
+		
+		if (order.getStatus () == CheckoutOrder.Status.COMPLETED) {
+			user.setCart (new ArrayList <> ());
+		}
+		
+		ordersByUser.remove (user.getId (), order);
+		
+		return false;
+	}
+	
+	/**
+	 * Gets an order
+	 *
+	 * @param id The id of the order
+	 * @return The order, or null if it doesn't exist or has expired
+	 */
+	public CheckoutOrder getOrder (String id) {
+		return orders.getIfPresent (id);
+	}
+	
+	/**
+	 * Checks out a queued cart the same way as POST /transaction does on the request thread, this runs on a worker
+	 *
+	 * @param order The queued order
+	 * @param buyer The user who is checking out, with only their id
+	 * @param cart A copy of the user's cart
+	 */
+	void process (CheckoutOrder order, User buyer, List <CartItem> cart) {
+		update (order.withStatus (CheckoutOrder.Status.PROCESSING));
+		
+		try {
+			Transaction transaction = checkoutService.checkout (buyer, cart);
+			
+			update (order.completed (transaction.getId ()));
+		} catch (InsufficientStockException exception) {
+			update (order.failed (exception.getMessage (), exception.getProductIds ()));
+		} catch (InvalidValueException exception) {
+			update (order.failed (exception.getMessage (), null));
+		} catch (Exception exception) {
+			logger.error ("Failed to check out order " + order.getId (), exception);
+			
+			update (order.failed ("Error! Checkout failed", null));
+		}
+	}
+	
+	/**
+	 * Replaces an order with its next step
+	 *
+	 * @param order The order at its next step
+	 */
+	private void update (CheckoutOrder order) {
+		orders.put (order.getId (), order);
+		ordersByUser.put (order.getUserId (), order);
+	}
+	
+	/**
+	 * Stops taking carts and waits for the workers to check out the ones that are already queued
+	 *
+	 * @throws InterruptedException Thrown when the thread is interrupted while waiting
+	 */
+	@PreDestroy
+	public void shutdown () throws InterruptedException {
+		executor.shutdown ();
+		
+		if (!executor.awaitTermination (30, TimeUnit.SECONDS)) {
+			logger.warn ("Stopped with " + executor.getQueue ().size () + " checkouts still queued");
+			
+			executor.shutdownNow ();
+		}
+	}
+}
@@ -0,0 +1,124 @@
+package com.revature.project3backend.services;
+
+import com.revature.project3backend.exceptions.InvalidValueException;
+import com.revature.project3backend.models.CartItem;
+import com.revature.project3backend.models.Transaction;
+import com.revature.project3backend.models.User;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * CheckoutService checks out carts, retrying the checkouts that run into other checkouts
+ * It isn't transactional, each attempt runs in its own transaction so that a failed attempt is rolled back before the next one starts
+ */
+@Service
+public class CheckoutService {
+	/**
+	 * The instance of TransactionService to use
+	 */
+	private final TransactionService transactionService;
+	
+	/**
+	 * The most times a cart is tried to be checked out
+	 */
+	private final int maxAttempts;
+	
+	/**
+	 * The longest wait before the first retry, this doubles with every retry
+	 */
+	private final long backoffMillis;
+	
+	/**
+	 * Counts the attempts that failed because of another transaction, published as "checkout.stock.conflicts"
+	 */
+	private final Counter conflicts;
+	
+	/**
+	 * Counts the attempts that were retried, published as "checkout.stock.retries"
+	 */
+	private final Counter retries;
+	
+	/**
+	 * The log4j logger for checkouts
+	 */
+	private static final Logger logger = Logger.getLogger (CheckoutService.class);
+	
+	/**
+	 * This constructor is automatically called by Spring
+	 *
+	 * @param transactionService The instance of TransactionService to use
+	 * @param maxAttempts The most times a cart is tried to be checked out
+	 * @param backoff The longest wait before the first retry
+	 * @param meterRegistry The registry to publish the conflict and retry counts to
+	 */
+	@Autowired
+	public CheckoutService (TransactionService transactionService, @Value ("${checkout.retry.max-attempts:4}") int maxAttempts, @Value ("${checkout.retry.backoff:10ms}") Duration backoff, MeterRegistry meterRegistry) {
+		this.transactionService = transactionService;
+		this.maxAttempts = maxAttempts;
+		this.backoffMillis = backoff.toMillis ();
+		this.conflicts = meterRegistry.counter ("checkout.stock.conflicts");
+		this.retries = meterRegistry.counter ("checkout.stock.retries");
+	}
+	
+	/**
+	 * Checks out a cart, reserving the stock of every product in it, creating the transaction and deleting the cart items
+	 * When the checkout fails because another transaction holds or changed the same products, such as a deadlock, a lock timeout or an optimistic locking failure, it is retried up to the maximum attempts
+	 * Each retry waits for a random time up to an exponentially growing bound, so that the checkouts that collided don't collide again
+	 *
+	 * @param buyer The user who is checking out
+	 * @param cart The cart items to check out
+	 * @return The created Transaction
+	 * @throws InvalidValueException Thrown when a quantity isn't positive or a product doesn't have enough stock, this is never retried
+	 * @throws ConcurrencyFailureException Thrown when the last attempt still conflicted with another transaction
+	 */
+	public Transaction checkout (User buyer, List <CartItem> cart) throws InvalidValueException {
+		for (int attempt = 1; ; attempt++) {
+			try {
+				return transactionService.checkout (buyer, cart);
+			} catch (ConcurrencyFailureException exception) {
+				conflicts.increment ();
+				
+				if (attempt >= maxAttempts) {
+					logger.warn ("Gave up checking out after " + attempt + " attempts", exception);
+					
+					throw exception;
+				}
+				
+				retries.increment ();
+				
+				backOff (attempt, exception);
+			}
+		}
+	}
+	
+	/**
+	 * Waits before a retry for a random time between zero and the backoff doubled for every earlier retry
+	 *
+	 * @param attempt The attempt that failed, starting at 1
+	 * @param exception The failure, which is thrown if the thread is interrupted while waiting
+	 */
+	private void backOff (int attempt, ConcurrencyFailureException exception) {
+		long bound = backoffMillis << Math.min (attempt - 1, 16);
+		
+		if (bound < 1) {
+			return;
+		}
+		
+		try {
+			Thread.sleep (ThreadLocalRandom.current ().nextLong (bound + 1));
+		} catch (InterruptedException interruptedException) {
+			Thread.currentThread ().interrupt ();
+			
+			throw exception;
+		}
+	}
+}
@@ -0,0 +1,64 @@
+package com.revature.project3backend.services;
+
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * HotStockFlusher applies the sales of hot products to the product table, it runs in the background every flush interval
+ * Each batch of deltas is applied in its own transaction, and a full batch is followed by another one straight away so the table catches up after a burst of sales
+ */
+@Component
+public class HotStockFlusher {
+	/**
+	 * The instance of HotStockService to use
+	 */
+	private final HotStockService hotStockService;
+	
+	/**
+	 * The most deltas that are applied in one transaction
+	 */
+	private final int batchSize;
+	
+	/**
+	 * The log4j logger for the flusher
+	 */
+	private static final Logger logger = Logger.getLogger (HotStockFlusher.class);
+	
+	/**
+	 * This constructor is automatically called by Spring
+	 *
+	 * @param hotStockService The instance of HotStockService to use
+	 * @param batchSize The most deltas that are applied in one transaction
+	 */
+	@Autowired
+	public HotStockFlusher (HotStockService hotStockService, @Value ("${inventory.hot.flush-batch-size:1000}") int batchSize) {
+		this.hotStockService = hotStockService;
+		this.batchSize = batchSize;
+	}
+	
+	/**
+	 * Applies the deltas made since the last flush. A batch that fails is logged, its deltas are left in the table and applied by the next flush
+	 *
+	 * @return The number of deltas that were applied
+	 */
+	@Scheduled (fixedDelayString = "${inventory.hot.flush-interval:200}")
+	public int flush () {
+		int flushed = 0;
+		
+		try {
+			int count;
+			
+			do {
+				count = hotStockService.flush (batchSize);
+				flushed += count;
+			} while (count == batchSize);
+		} catch (RuntimeException exception) {
+			logger.warn ("Failed to apply the sales of hot products, they will be tried again", exception);
+		}
+		
+		return flushed;
+	}
+}
@@ -0,0 +1,255 @@
+package com.revature.project3backend.services;
+
+import com.revature.project3backend.exceptions.InvalidValueException;
+import com.revature.project3backend.models.Product;
+import com.revature.project3backend.models.StockDelta;
+import com.revature.project3backend.repositories.ProductRepo;
+import com.revature.project3backend.repositories.StockDeltaRepo;
+import com.revature.project3backend.search.ProductCache;
+import com.revature.project3backend.search.ProductSearchCache;
+import com.revature.project3backend.search.ProductSearchIndex;
+import com.revature.project3backend.utils.StripedCounter;
+import com.revature.project3backend.utils.TransactionUtil;
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import javax.transaction.Transactional;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * HotStockService keeps the available stock of hot products, such as a course on a flash sale, in memory so that checkouts of them don't all wait on the same product row
+ * A checkout takes a hot product's stock from a StripedCounter without locking, and records the sale as a row in the stock_delta table in its own transaction. HotStockFlusher then applies the deltas to the product table in batches, so the product's stock in the table trails the sales by about a flush interval
+ * The deltas are the truth, so nothing is lost when the application stops before they are applied: the in-memory stock is always worked out again from the product's stock minus its reserved stock minus its deltas
+ * The in-memory stock belongs to a single instance of the application, so hot products must only be sold by one instance
+ */
+@Service
+@Transactional
+public class HotStockService {
+	/**
+	 * The instance of ProductRepo to use
+	 */
+	private final ProductRepo productRepo;
+	
+	/**
+	 * The instance of StockDeltaRepo to use
+	 */
+	private final StockDeltaRepo stockDeltaRepo;
+	
+	/**
+	 * The in-memory index used to search products, whose stock is updated as the deltas are applied
+	 */
+	private final ProductSearchIndex productSearchIndex;
+	
+	/**
+	 * The cache of search result pages
+	 */
+	private final ProductSearchCache productSearchCache;
+	
+	/**
+	 * The cache of whole products by id
+	 */
+	private final ProductCache productCache;
+	
+	/**
+	 * The ids of the products that are hot from the start
+	 */
+	private final List <Integer> productIds;
+	
+	/**
+	 * The number of stripes of each product's in-memory stock
+	 */
+	private final int stripeCount;
+	
+	/**
+	 * The available stock of each hot product by its id
+	 */
+	private final Map <Integer, StripedCounter> counters = new ConcurrentHashMap <> ();
+	
+	/**
+	 * The log4j logger for the service
+	 */
+	private static final Logger logger = Logger.getLogger (HotStockService.class);
+	
+	/**
+	 * This constructor is automatically called by Spring
+	 *
+	 * @param productRepo The instance of ProductRepo to use
+	 * @param stockDeltaRepo The instance of StockDeltaRepo to use
+	 * @param productSearchIndex The in-memory index used to search products
+	 * @param productSearchCache The cache of search result pages
+	 * @param productCache The cache of whole products by id
+	 * @param productIds The ids of the products that are hot from the start
+	 * @param stripeCount The number of stripes of each product's in-memory stock
+	 */
+	@Autowired
+	public HotStockService (ProductRepo productRepo, StockDeltaRepo stockDeltaRepo, ProductSearchIndex productSearchIndex, ProductSearchCache productSearchCache, ProductCache productCache, @Value ("${inventory.hot.product-ids:}") List <Integer> productIds, @Value ("${inventory.hot.stripes:16}") int stripeCount) {
+		this.productRepo = productRepo;
+		this.stockDeltaRepo = stockDeltaRepo;
+		this.productSearchIndex = productSearchIndex;
+		this.productSearchCache = productSearchCache;
+		this.productCache = productCache;
+		this.productIds = productIds;
+		this.stripeCount = stripeCount;
+	}
+	
+	/**
+	 * Makes the configured products hot once the application has started, working out their stock from the deltas that weren't applied before it last stopped
+	 */
+	@EventListener (ApplicationReadyEvent.class)
+	public void load () {
+		for (Integer id : productIds) {
+			try {
+				enable (id);
+			} catch (InvalidValueException exception) {
+				logger.warn ("Hot product " + id + " doesn't exist");
+			}
+		}
+	}
+	
+	/**
+	 * Makes a product hot, so its stock is taken from memory from now on
+	 * The product is locked while its available stock is worked out, but a checkout that already started taking its stock from the table isn't seen, so a product should be made hot before its sale starts
+	 *
+	 * @param id The id of the product
+	 * @throws InvalidValueException Thrown when the product doesn't exist
+	 */
+	public void enable (Integer id) throws InvalidValueException {
+		Product product = productRepo.findAndLockById (id).orElseThrow (() -> new InvalidValueException ("Invalid product id"));
+		long pending = stockDeltaRepo.sumQuantityByProductId (id);
+		long available = (product.getStock () == null ? 0 : product.getStock ()) - product.getReserved () - pending;
+		
+		StripedCounter previous = counters.put (id, new StripedCounter ((int) Math.max (available, 0), stripeCount));
+		
+		TransactionUtil.afterRollback (() -> {
+			if (previous == null) {
+				counters.remove (id);
+			} else {
+				counters.put (id, previous);
+			}
+		});
+		
+		logger.info ("Hot product " + id + " has " + available + " available, " + pending + " of it was sold but not yet taken from its stock");
+	}
+	
+	/**
+	 * Stops a product from being hot, its stock is taken from the table again. Deltas that are still to be applied are still applied by the flusher
+	 *
+	 * @param id The id of the product
+	 */
+	@Transactional (Transactional.TxType.SUPPORTS)
+	public void disable (Integer id) {
+		counters.remove (id);
+	}
+	
+	/**
+	 * Works out a hot product's stock again in the current transaction, used when its stock has been changed directly in the table
+	 *
+	 * @param id The id of the product, nothing is done if it isn't hot
+	 * @throws InvalidValueException Thrown when the product doesn't exist
+	 */
+	public void refresh (Integer id) throws InvalidValueException {
+		if (isHot (id)) {
+			enable (id);
+		}
+	}
+	
+	/**
+	 * Tells whether a product is hot
+	 *
+	 * @param id The id of the product
+	 * @return Whether the product's stock is in memory
+	 */
+	@Transactional (Transactional.TxType.SUPPORTS)
+	public boolean isHot (Integer id) {
+		return counters.containsKey (id);
+	}
+	
+	/**
+	 * Takes a quantity from a hot product's in-memory stock and records the sale in the current transaction. The quantity is given back if the transaction rolls back
+	 *
+	 * @param id The id of the product
+	 * @param quantity The quantity to take, which must be positive
+	 * @return Whether the quantity was taken, it isn't when the product doesn't have enough stock or isn't hot
+	 */
+	public boolean take (Integer id, int quantity) {
+		StripedCounter counter = counters.get (id);
+		
+		if (counter == null || !counter.tryTake (quantity)) {
+			return false;
+		}
+		
+		TransactionUtil.afterRollback (() -> counter.add (quantity));
+		
+		stockDeltaRepo.save (new StockDelta (id, quantity));
+		
+		return true;
+	}
+	
+	/**
+	 * Gives stock back to a hot product's in-memory stock once the current transaction commits
+	 * This is used when a hold that was made before the product became hot is released, since the held stock was left out of the in-memory stock when it was worked out
+	 *
+	 * @param id The id of the product, nothing is done if it isn't hot
+	 * @param quantity The quantity to give back
+	 */
+	@Transactional (Transactional.TxType.SUPPORTS)
+	public void release (Integer id, int quantity) {
+		StripedCounter counter = counters.get (id);
+		
+		if (counter != null) {
+			TransactionUtil.afterCommit (() -> counter.add (quantity));
+		}
+	}
+	
+	/**
+	 * Applies the oldest deltas to the product table, adding up the deltas of each product into a single update
+	 *
+	 * @param limit The most deltas to apply
+	 * @return The number of deltas that were applied
+	 */
+	public int flush (int limit) {
+		List <StockDelta> deltas = stockDeltaRepo.findOldest (PageRequest.of (0, limit));
+		
+		if (deltas.isEmpty ()) {
+			return 0;
+		}
+		
+		Map <Integer, Integer> quantities = new HashMap <> ();
+		
+		for (StockDelta delta : deltas) {
+			quantities.merge (delta.getProductId (), delta.getQuantity (), Integer::sum);
+		}
+		
+		productRepo.applyStockDeltas (quantities);
+		stockDeltaRepo.deleteAllInBatch (deltas);
+		
+		List <Product> products = productRepo.findAllById (quantities.keySet ());
+		
+		for (Product product : products) {
+			productCache.invalidate (product.getId ());
+		}
+		
+		//the stock shown on cached pages catches up when they expire, they are only dropped when a product went in or out of stock
+		TransactionUtil.afterCommit (() -> {
+			boolean changed = false;
+			
+			for (Product product : products) {
+				changed |= productSearchIndex.updateStock (product);
+			}
+			
+			if (changed) {
+				productSearchCache.invalidate ();
+			}
+		});
+		
+		return deltas.size ();
+	}
+}
@@ -0,0 +1,304 @@
+package com.revature.project3backend.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.revature.project3backend.exceptions.IdempotencyKeyReusedException;
+import com.revature.project3backend.exceptions.InvalidValueException;
+import com.revature.project3backend.exceptions.RequestInProgressException;
+import com.revature.project3backend.jsonmodels.JsonResponse;
+import com.revature.project3backend.models.IdempotencyRecord;
+import com.revature.project3backend.repositories.IdempotencyRecordRepo;
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.transaction.Transactional;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * IdempotencyService makes requests with an Idempotency-Key header safe to retry, a retry gets the response of the first request without anything being done again
+ * Call begin before doing the request's work, and then complete with its response, or abandon if it failed. Requests without a key are always done
+ * Responses are kept in the idempotency_record table for the TTL, and the most recent ones are also kept in a bounded in-memory cache so that retries usually don't read the table. Only successful responses are kept, a request that failed can be retried with the same key and is done again
+ * A key can only be sent again with the same request, which is compared by its hash. A request that is in progress holds a claim on its key, and if it hasn't finished by the claim timeout, such as when the application stopped while it was running, a retry takes it over
+ */
+@Service
+public class IdempotencyService {
+	/**
+	 * The name of the header that carries the key
+	 */
+	public static final String HEADER = "Idempotency-Key";
+	
+	/**
+	 * The name of the header that is added to a response that was stored rather than made for the request
+	 */
+	public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+	
+	/**
+	 * The longest key that can be used, the length of the column
+	 */
+	static final int MAX_KEY_LENGTH = 255;
+	
+	/**
+	 * The headers of a response that are stored and replayed with it, such as the location of a queued checkout
+	 */
+	static final List <String> STORED_HEADERS = Collections.singletonList (HttpHeaders.LOCATION);
+	
+	/**
+	 * The type of the stored headers
+	 */
+	private static final TypeReference <Map <String, List <String>>> HEADERS_TYPE = new TypeReference <Map <String, List <String>>> () {};
+	
+	/**
+	 * The instance of IdempotencyRecordRepo to use
+	 */
+	private final IdempotencyRecordRepo idempotencyRecordRepo;
+	
+	/**
+	 * The mapper used to store the bodies of responses
+	 */
+	private final ObjectMapper objectMapper;
+	
+	/**
+	 * How long a response is kept after its request started
+	 */
+	private final Duration ttl;
+	
+	/**
+	 * How long a request in progress holds its key before a retry can take it over
+	 */
+	private final Duration claimTimeout;
+	
+	/**
+	 * The completed records by user id and key
+	 */
+	private final Cache <String, IdempotencyRecord> cache;
+	
+	/**
+	 * The log4j logger for the service
+	 */
+	private static final Logger logger = Logger.getLogger (IdempotencyService.class);
+	
+	/**
+	 * This constructor is automatically called by Spring
+	 *
+	 * @param idempotencyRecordRepo The instance of IdempotencyRecordRepo to use
+	 * @param objectMapper The mapper used to store the bodies of responses
+	 * @param ttl How long a response is kept after its request started
+	 * @param claimTimeout How long a request in progress holds its key before a retry can take it over
+	 * @param maximumSize The most responses that are kept in memory
+	 */
+	@Autowired
+	public IdempotencyService (IdempotencyRecordRepo idempotencyRecordRepo, ObjectMapper objectMapper, @Value ("${idempotency.ttl:24h}") Duration ttl, @Value ("${idempotency.claim-timeout:1m}") Duration claimTimeout, @Value ("${idempotency.cache.maximum-size:10000}") long maximumSize) {
+		this.idempotencyRecordRepo = idempotencyRecordRepo;
+		this.objectMapper = objectMapper;
+		this.ttl = ttl;
+		this.claimTimeout = claimTimeout;
+		this.cache = Caffeine.newBuilder ().maximumSize (maximumSize).expireAfterWrite (ttl).build ();
+	}
+	
+	/**
+	 * Starts a request, or gets the stored response of the request that first used its key
+	 * The request is claimed by saving its record, so if two requests with the same key arrive at once the unique index lets only one of them start
+	 *
+	 * @param userId The id of the user that sent the request
+	 * @param key The value of the Idempotency-Key header, or null if the request doesn't have one
+	 * @param endpoint The method and path of the request
+	 * @param request The body of the request, or null if it doesn't have one
+	 * @return The stored response, or null if the request should be done
+	 * @throws InvalidValueException Thrown when the key is too long or was used for another endpoint
+	 * @throws IdempotencyKeyReusedException Thrown when the key was used for a request that isn't the same
+	 * @throws RequestInProgressException Thrown when the request that first used the key hasn't finished
+	 */
+	public ResponseEntity <JsonResponse> begin (Integer userId, String key, String endpoint, Object request) throws InvalidValueException, RequestInProgressException {
+		if (key == null) {
+			return null;
+		}
+		
+		if (key.isEmpty () || key.length () > MAX_KEY_LENGTH) {
+			throw new InvalidValueException ("Invalid idempotency key");
+		}
+		
+		Instant now = Instant.now ();
+		String requestHash = hash (request);
+		IdempotencyRecord record = cache.getIfPresent (cacheKey (userId, key));
+		
+		//the cache's own expiry restarts whenever a replayed record is put back
+		if (record != null && isExpired (record, now)) {
+			cache.invalidate (cacheKey (userId, key));
+			
+			record = null;
+		}
+		
+		if (record == null) {
+			record = idempotencyRecordRepo.findByUserIdAndIdempotencyKey (userId, key).orElse (null);
+			
+			if (record != null && isExpired (record, now)) {
+				idempotencyRecordRepo.delete (record);
+				
+				record = null;
+			}
+		}
+		
+		if (record == null) {
+			try {
+				idempotencyRecordRepo.saveAndFlush (new IdempotencyRecord (userId, key, endpoint, requestHash, now));
+			} catch (DataIntegrityViolationException exception) {
+				throw new RequestInProgressException ();
+			}
+			
+			return null;
+		}
+		
+		if (!record.getEndpoint ().equals (endpoint)) {
+			throw new InvalidValueException ("Invalid idempotency key");
+		}
+		
+		if (!record.getRequestHash ().equals (requestHash)) {
+			throw new IdempotencyKeyReusedException ();
+		}
+		
+		if (record.getStatus () == null) {
+			if (idempotencyRecordRepo.reclaim (record.getId (), now.minus (claimTimeout), now) == 0) {
+				throw new RequestInProgressException ();
+			}
+			
+			logger.warn ("Took over idempotency key " + key + " from a request that didn't finish");
+			
+			return null;
+		}
+		
+		cache.put (cacheKey (userId, key), record);
+		
+		try {
+			ResponseEntity.BodyBuilder response = ResponseEntity.status (record.getStatus ()).header (REPLAYED_HEADER, "true");
+			
+			if (record.getHeaders () != null) {
+				for (Map.Entry <String, List <String>> header : objectMapper.readValue (record.getHeaders (), HEADERS_TYPE).entrySet ()) {
+					response.header (header.getKey (), header.getValue ().toArray (new String[0]));
+				}
+			}
+			
+			return response.body (objectMapper.readValue (record.getBody (), JsonResponse.class));
+		} catch (JsonProcessingException exception) {
+			throw new IllegalStateException ("The stored response of idempotency key " + key + " can't be read", exception);
+		}
+	}
+	
+	/**
+	 * Stores the response of a request that was started by begin, so that retries get it
+	 *
+	 * @param userId The id of the user that sent the request
+	 * @param key The value of the Idempotency-Key header, or null if the request doesn't have one
+	 * @param response The response of the request
+	 */
+	public void complete (Integer userId, String key, ResponseEntity <JsonResponse> response) {
+		if (key == null) {
+			return;
+		}
+		
+		IdempotencyRecord record = idempotencyRecordRepo.findByUserIdAndIdempotencyKey (userId, key).orElse (null);
+		
+		if (record == null) {
+			return;
+		}
+		
+		Map <String, List <String>> headers = new LinkedHashMap <> ();
+		
+		for (String name : STORED_HEADERS) {
+			if (response.getHeaders ().containsKey (name)) {
+				headers.put (name, response.getHeaders ().get (name));
+			}
+		}
+		
+		try {
+			record.setBody (objectMapper.writeValueAsString (response.getBody ()));
+			record.setHeaders (headers.isEmpty () ? null : objectMapper.writeValueAsString (headers));
+		} catch (JsonProcessingException exception) {
+			//the request was done, but a retry will be done again because its response can't be stored
+			logger.warn ("Failed to store the response of idempotency key " + key, exception);
+			
+			idempotencyRecordRepo.delete (record);
+			
+			return;
+		}
+		
+		record.setStatus (response.getStatusCodeValue ());
+		
+		cache.put (cacheKey (userId, key), idempotencyRecordRepo.save (record));
+	}
+	
+	/**
+	 * Forgets a request that was started by begin and failed, so that it is done again when it is retried
+	 *
+	 * @param userId The id of the user that sent the request
+	 * @param key The value of the Idempotency-Key header, or null if the request doesn't have one
+	 */
+	public void abandon (Integer userId, String key) {
+		if (key == null) {
+			return;
+		}
+		
+		idempotencyRecordRepo.findByUserIdAndIdempotencyKey (userId, key).ifPresent (idempotencyRecordRepo::delete);
+	}
+	
+	/**
+	 * Deletes the records that have expired, it runs in the background every purge interval
+	 *
+	 * @return The number of records that were deleted
+	 */
+	@Scheduled (fixedDelayString = "${idempotency.purge-interval:3600000}")
+	@Transactional
+	public int purgeExpired () {
+		return idempotencyRecordRepo.deleteCreatedBefore (Instant.now ().minus (ttl));
+	}
+	
+	/**
+	 * @param record The record
+	 * @param now The current time
+	 * @return Whether the record is older than the TTL
+	 */
+	private boolean isExpired (IdempotencyRecord record, Instant now) {
+		return record.getCreatedAt ().plus (ttl).isBefore (now);
+	}
+	
+	/**
+	 * Hashes a request by its JSON, so that a retry can be told apart from another request that was sent with the same key
+	 *
+	 * @param request The body of the request, or null if it doesn't have one
+	 * @return The Base64 SHA-256 hash of the request
+	 */
+	public String hash (Object request) {
+		try {
+			return Base64.getEncoder ().encodeToString (MessageDigest.getInstance ("SHA-256").digest (objectMapper.writeValueAsBytes (request)));
+		} catch (JsonProcessingException exception) {
+			throw new IllegalArgumentException ("The request can't be hashed", exception);
+		} catch (NoSuchAlgorithmException exception) {
+			throw new IllegalStateException ("SHA-256 isn't available", exception);
+		}
+	}
+	
+	/**
+	 * @param userId The id of the user
+	 * @param key The key
+	 * @return The key of the user's key in the cache
+	 */
+	private static String cacheKey (Integer userId, String key) {
+		return userId + ":" + key;
+	}
+}
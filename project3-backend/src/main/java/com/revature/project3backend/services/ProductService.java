@@ -1,17 +1,52 @@
 package com.revature.project3backend.services;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.revature.project3backend.exceptions.InsufficientStockException;
 import com.revature.project3backend.exceptions.InvalidValueException;
+import com.revature.project3backend.exceptions.StaleProductException;
+import com.revature.project3backend.jsonmodels.ProductBatch;
+import com.revature.project3backend.jsonmodels.ProductListing;
+import com.revature.project3backend.jsonmodels.ProductSuggestion;
+import com.revature.project3backend.modeldtos.ProductVersion;
+import com.revature.project3backend.models.CartItem;
 import com.revature.project3backend.models.Product;
 import com.revature.project3backend.repositories.ProductRepo;
+import com.revature.project3backend.search.PostgresProductSearch;
+import com.revature.project3backend.search.ProductCache;
+import com.revature.project3backend.search.ProductCursor;
+import com.revature.project3backend.search.ProductFilter;
+import com.revature.project3backend.search.ProductSearchCache;
+import com.revature.project3backend.search.ProductSearchIndex;
+import com.revature.project3backend.search.ProductSort;
+import com.revature.project3backend.search.ProductSuggestions;
 import com.revature.project3backend.utils.FileUtil;
+import com.revature.project3backend.utils.TransactionUtil;
+import com.revature.project3backend.utils.ProductExportFormat;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Slice;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.persistence.EntityManager;
 import javax.transaction.Transactional;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
 
 /**
  * ProductService contains the Service layer methods for products
@@ -19,6 +54,11 @@ import java.util.List;
 @Service
 @Transactional
 public class ProductService {
+	/**
+	 * The most distinct ids that can be requested at once when getting products by id
+	 */
+	public static final int MAX_BATCH_SIZE = 100;
+	
 	/**
 	 * The instance of ProductRepo to use
 	 */
@@ -34,37 +74,256 @@ public class ProductService {
 	 */
 	private final FileUtil fileUtil;
 	
+	/**
+	 * The in-memory index used to search products without scanning the product table
+	 */
+	private final ProductSearchIndex productSearchIndex;
+	
+	/**
+	 * The trigram index search used when the database is PostgreSQL and the in-memory index isn't available
+	 */
+	private final PostgresProductSearch postgresProductSearch;
+	
+	/**
+	 * The cache of search result pages, it is invalidated whenever a product changes
+	 */
+	private final ProductSearchCache productSearchCache;
+	
+	/**
+	 * The suggestions for searches that are being typed
+	 */
+	private final ProductSuggestions productSuggestions;
+	
+	/**
+	 * The cache of whole products by id, it drops a product whenever it changes
+	 */
+	private final ProductCache productCache;
+	
+	/**
+	 * The holds of stock for cart items, which are confirmed when the cart is checked out
+	 */
+	private final StockHoldService stockHoldService;
+	
+	/**
+	 * The in-memory stock of hot products, which is taken without updating their rows
+	 */
+	private final HotStockService hotStockService;
+	
+	/**
+	 * The EntityManager used to detach the products that are exported
+	 */
+	private final EntityManager entityManager;
+	
+	/**
+	 * The ObjectMapper used to write the products that are exported as JSON
+	 */
+	private final ObjectMapper objectMapper;
+	
 	/**
 	 * This constructor is automatically called by Spring
 	 *
 	 * @param productRepo The instance of ProductRepo to use
+	 * @param fileUtil The file utility for uploading a file to the S3 bucket
+	 * @param productSearchIndex The in-memory index used to search products
+	 * @param postgresProductSearch The trigram index search used on PostgreSQL
+	 * @param productSearchCache The cache of search result pages
+	 * @param productSuggestions The suggestions for searches that are being typed
+	 * @param productCache The cache of whole products by id
+	 * @param stockHoldService The holds of stock for cart items
+	 * @param hotStockService The in-memory stock of hot products
+	 * @param entityManager The EntityManager used to detach the products that are exported
+	 * @param objectMapper The ObjectMapper used to write the products that are exported as JSON
 	 */
 	@Autowired
-	public ProductService (ProductRepo productRepo, FileUtil fileUtil) {
+	public ProductService (ProductRepo productRepo, FileUtil fileUtil, ProductSearchIndex productSearchIndex, PostgresProductSearch postgresProductSearch, ProductSearchCache productSearchCache, ProductSuggestions productSuggestions, ProductCache productCache, StockHoldService stockHoldService, HotStockService hotStockService, EntityManager entityManager, ObjectMapper objectMapper) {
 		this.productRepo = productRepo;
 		this.fileUtil = fileUtil;
+		this.productSearchIndex = productSearchIndex;
+		this.postgresProductSearch = postgresProductSearch;
+		this.productSearchCache = productSearchCache;
+		this.productSuggestions = productSuggestions;
+		this.productCache = productCache;
+		this.stockHoldService = stockHoldService;
+		this.hotStockService = hotStockService;
+		this.entityManager = entityManager;
+		this.objectMapper = objectMapper;
 	}
 	
 	/**
 	 * Gets products on a given page of products that match the given search query
+	 * The search is served from the in-memory index once it has been built, and from the database until then
+	 * The in-memory index also tolerates typos, when the query finds too few products the products matching its corrected spelling follow them
+	 * On PostgreSQL the database search uses the pg_trgm indexes and ranks the products by relevance whatever the sort
+	 * The in-memory index also counts the facets of the search, the database doesn't
+	 * Pages are cached until a product changes
+	 * Only the listings of the products are returned, use getProduct to get the whole product
+	 *
+	 * @param searchQuery The query to use to get products
+	 * @param page The page of products to get
+	 * @param sort The order to sort the products in
+	 * @param filter The filter to apply to the products
+	 * @return The listings of the found products, along with whether there are more after them
+	 */
+	public Slice <ProductListing> getProducts (String searchQuery, Integer page, ProductSort sort, ProductFilter filter) {
+		return this.productSearchCache.get (searchQuery, page, sort, filter, () -> this.searchProducts (searchQuery, page, sort, filter));
+	}
+	
+	/**
+	 * Searches for a page of products without going through the cache
 	 *
 	 * @param searchQuery The query to use to get products
 	 * @param page The page of products to get
-	 * @return The found products
+	 * @param sort The order to sort the products in
+	 * @param filter The filter to apply to the products
+	 * @return The listings of the found products, along with whether there are more after them
+	 */
+	private Slice <ProductListing> searchProducts (String searchQuery, Integer page, ProductSort sort, ProductFilter filter) {
+		if (this.productSearchIndex.isReady ()) {
+			return this.productSearchIndex.search (searchQuery, page, postsPerPage, sort, filter).map (ProductListing::of);
+		}
+		
+		String pattern = "%" + PostgresProductSearch.escapeLike (searchQuery.toLowerCase (Locale.ROOT)) + "%";
+		
+		if (!filter.isEmpty ()) {
+			Float minPrice = filter.getMinPrice () == null ? 0.00F : filter.getMinPrice ();
+			Float maxPrice = filter.getMaxPrice () == null ? Float.MAX_VALUE : filter.getMaxPrice ();
+			
+			return this.productRepo.findFiltered (pattern, minPrice, maxPrice, filter.isOnSale (), filter.isInStock (), PageRequest.of (page, postsPerPage));
+		}
+		
+		if (this.postgresProductSearch.isAvailable ()) {
+			return this.postgresProductSearch.search (searchQuery, page, postsPerPage).map (ProductListing::of);
+		}
+		
+		return this.productRepo.findListings (pattern, PageRequest.of (page, postsPerPage));
+	}
+	
+	/**
+	 * Gets the products after a cursor that match the given search query, sorted by name
+	 * Unlike getProducts, the database doesn't have to skip over the previous pages, so deep pages cost the same as the first one
+	 *
+	 * @param searchQuery The query to use to get products
+	 * @param cursor The position to start after, null gets the first page
+	 * @return The listings of the found products, along with whether there are more after them
+	 */
+	public Slice <ProductListing> getProductsAfter (String searchQuery, ProductCursor cursor) {
+		if (this.productSearchIndex.isReady ()) {
+			return this.productSearchIndex.searchAfter (searchQuery, cursor, postsPerPage).map (ProductListing::of);
+		}
+		
+		String pattern = "%" + PostgresProductSearch.escapeLike (searchQuery.toLowerCase (Locale.ROOT)) + "%";
+		
+		if (cursor == null) {
+			return this.productRepo.findListings (pattern, PageRequest.of (0, postsPerPage));
+		}
+		
+		return this.productRepo.findPageAfter (pattern, cursor.getName (), cursor.getId (), PageRequest.of (0, postsPerPage));
+	}
+	
+	/**
+	 * Gets the most popular products that have a word in their name starting with a prefix
+	 *
+	 * @param prefix The prefix that has been typed so far
+	 * @param limit The most suggestions to return
+	 * @return The suggestions, the most popular first
+	 * @throws InvalidValueException Thrown when validation fails
+	 */
+	public List <ProductSuggestion> getSuggestions (String prefix, Integer limit) throws InvalidValueException {
+		if (limit < 1 || limit > ProductSuggestions.MAX_SUGGESTIONS) {
+			throw new InvalidValueException ("Invalid limit");
+		}
+		
+		return this.productSuggestions.suggest (prefix, limit);
+	}
+	
+	/**
+	 * Gets several products given their ids
+	 * The products are taken from the in-memory index once it has been built, and the ones it doesn't have are loaded from the database with a single query
+	 *
+	 * @param ids The ids of the products to get, an id that is repeated is only looked up once
+	 * @return The found products in the order of their ids, along with the ids that weren't found
+	 * @throws InvalidValueException Thrown when validation fails
+	 */
+	public ProductBatch getProductsById (List <Integer> ids) throws InvalidValueException {
+		if (ids.isEmpty () || ids.contains (null)) {
+			throw new InvalidValueException ("Invalid ids");
+		}
+		
+		Set <Integer> distinctIds = new LinkedHashSet <> (ids);
+		
+		if (distinctIds.size () > MAX_BATCH_SIZE) {
+			throw new InvalidValueException ("Too many ids");
+		}
+		
+		Map <Integer, Product> found = this.productSearchIndex.isReady () ? this.productSearchIndex.get (distinctIds) : new HashMap <> ();
+		List <Integer> notIndexed = new ArrayList <> ();
+		
+		for (Integer id : distinctIds) {
+			if (!found.containsKey (id)) {
+				notIndexed.add (id);
+			}
+		}
+		
+		if (!notIndexed.isEmpty ()) {
+			for (Product product : this.productRepo.findAllById (notIndexed)) {
+				found.put (product.getId (), product);
+			}
+		}
+		
+		List <Product> products = new ArrayList <> ();
+		List <Integer> missingIds = new ArrayList <> ();
+		
+		for (Integer id : distinctIds) {
+			Product product = found.get (id);
+			
+			if (product == null) {
+				missingIds.add (id);
+			} else {
+				products.add (product);
+			}
+		}
+		
+		return new ProductBatch (products, missingIds);
+	}
+	
+	/**
+	 * Writes every product to an output stream, sorted by id
+	 * The products are streamed from the database through a cursor and detached once they have been written, so the memory used doesn't grow with the size of the catalog
+	 *
+	 * @param format The format to write the products in
+	 * @param outputStream The output stream to write to, it is flushed but not closed
+	 * @throws IOException Thrown when writing to the output stream fails
 	 */
-	public List <Product> getProducts (String searchQuery, Integer page) {
-		return this.productRepo.findByNameIgnoreCaseContainingOrDescriptionIgnoreCaseContaining (searchQuery, searchQuery, PageRequest.of (page, postsPerPage, Sort.by ("name"))).getContent ();
+	public void exportProducts (ProductExportFormat format, OutputStream outputStream) throws IOException {
+		Writer writer = new BufferedWriter (new OutputStreamWriter (outputStream, StandardCharsets.UTF_8));
+		
+		format.writeHeader (writer);
+		
+		try (Stream <Product> products = this.productRepo.streamAll ()) {
+			Iterator <Product> iterator = products.iterator ();
+			
+			while (iterator.hasNext ()) {
+				Product product = iterator.next ();
+				
+				format.write (product, writer, this.objectMapper);
+				
+				this.entityManager.detach (product);
+			}
+		}
+		
+		writer.flush ();
 	}
 	
 	/**
 	 * Gets a product given its id
+	 * The product is served from the product cache, and only read from the database when it isn't cached
 	 *
 	 * @param id The id of the product to get
-	 * @return The found product
+	 * @return A copy of the found product that isn't attached to the persistence context
 	 * @throws InvalidValueException Thrown when validation fails
 	 */
 	public Product getProduct (Integer id) throws InvalidValueException {
-		Product product = this.productRepo.findById (id).orElse (null);
+		Product product = this.productCache.get (id);
 		
 		if (product == null) {
 			throw new InvalidValueException ("Invalid product id");
@@ -74,36 +333,156 @@ public class ProductService {
 	}
 	
 	/**
-	 * Reduces a product's stock by a given quantity
+	 * Gets the version of a product given its id, without loading the whole product
+	 * The version comes from the in-memory index once it has been built, and from a query of only the version columns until then
 	 *
-	 * @param product The product to reduce the stock of
-	 * @param quantity The quantity to reduce the stock by
+	 * @param id The id of the product
+	 * @return The version of the product
 	 * @throws InvalidValueException Thrown when validation fails
 	 */
-	public void reduceStock (Product product, Integer quantity) throws InvalidValueException {
-		int newStock = product.getStock () - quantity;
+	public ProductVersion getProductVersion (Integer id) throws InvalidValueException {
+		ProductVersion version = this.productSearchIndex.isReady () ? this.productSearchIndex.getVersion (id) : null;
 		
-		if (newStock < 0) {
-			throw new InvalidValueException ("Invalid quantity");
+		if (version == null) {
+			version = this.productRepo.findVersionById (id).orElse (null);
 		}
 		
-		product.setStock (newStock);
+		if (version == null) {
+			throw new InvalidValueException ("Invalid product id");
+		}
 		
-		productRepo.save (product);
+		return version;
+	}
+	
+	/**
+	 * Reduces the stock of every product in a cart. Either all of the stock is taken or, if any product doesn't have enough, none of it is
+	 * All of the products are decremented in one batch and then read back in one query, so this takes about as long for a large cart as for a single item
+	 * The stock that is held for the cart items is confirmed rather than checked again, only the quantity of an item whose hold has expired has to still be available
+	 * The stock of hot products that isn't held is taken from memory instead, and their rows are only updated later by HotStockFlusher, so the cart's products keep their old stock for them
+	 *
+	 * @param cart The cart items to reduce the stock of the products of
+	 * @throws InvalidValueException Thrown when a quantity isn't positive
+	 * @throws InsufficientStockException Thrown when some of the products don't have enough stock, it has the ids of all of them
+	 */
+	@Transactional (rollbackOn = InvalidValueException.class)
+	public void reduceStock (List <CartItem> cart) throws InvalidValueException {
+		for (CartItem cartItem : cart) {
+			if (cartItem.getQuantity () == null || cartItem.getQuantity () < 1) {
+				throw new InvalidValueException ("Invalid quantity");
+			}
+		}
+		
+		int[] held = stockHoldService.consume (cart);
+		boolean[] failed = new boolean[cart.size ()];
+		List <CartItem> stocked = new ArrayList <> ();
+		List <Integer> stockedIndexes = new ArrayList <> ();
+		
+		for (int i = 0; i < cart.size (); i++) {
+			CartItem cartItem = cart.get (i);
+			
+			if (held[i] == 0 && hotStockService.isHot (cartItem.getProduct ().getId ())) {
+				failed[i] = !hotStockService.take (cartItem.getProduct ().getId (), cartItem.getQuantity ());
+			} else {
+				stocked.add (cartItem);
+				stockedIndexes.add (i);
+			}
+		}
+		
+		if (!stocked.isEmpty ()) {
+			int[] stockedHeld = new int[stocked.size ()];
+			
+			for (int i = 0; i < stockedHeld.length; i++) {
+				stockedHeld[i] = held[stockedIndexes.get (i)];
+			}
+			
+			int[] counts = productRepo.decrementStock (stocked, stockedHeld);
+			
+			for (int i = 0; i < counts.length; i++) {
+				failed[stockedIndexes.get (i)] = counts[i] == 0;
+			}
+		}
+		
+		List <Integer> failedIds = new ArrayList <> ();
+		
+		for (int i = 0; i < cart.size (); i++) {
+			if (failed[i]) {
+				failedIds.add (cart.get (i).getProduct ().getId ());
+			}
+		}
+		
+		if (!failedIds.isEmpty ()) {
+			throw new InsufficientStockException (failedIds);
+		}
+		
+		Set <Integer> ids = new LinkedHashSet <> ();
+		
+		for (CartItem cartItem : stocked) {
+			ids.add (cartItem.getProduct ().getId ());
+		}
+		
+		Map <Integer, Product> updated = new HashMap <> ();
+		
+		for (Product product : productRepo.findAllById (ids)) {
+			updated.put (product.getId (), product);
+		}
+		
+		for (CartItem cartItem : cart) {
+			Product product = cartItem.getProduct ();
+			Product updatedProduct = updated.get (product.getId ());
+			
+			if (updatedProduct == null) {
+				productSuggestions.sold (product, cartItem.getQuantity ());
+				
+				continue;
+			}
+			
+			product.setStock (updatedProduct.getStock ());
+			product.setVersion (updatedProduct.getVersion ());
+			product.setLastModified (updatedProduct.getLastModified ());
+			
+			productCache.invalidate (updatedProduct.getId ());
+			productSuggestions.sold (updatedProduct, cartItem.getQuantity ());
+		}
+		
+		reindexStock (updated.values ());
+	}
+	
+	/**
+	 * Updates the stock of products in the search index once the transaction commits, and drops the cached search results if any of them went in or out of stock
+	 * The stock shown on cached pages otherwise catches up when they expire
+	 *
+	 * @param products The products whose stock changed
+	 */
+	private void reindexStock (Collection <Product> products) {
+		TransactionUtil.afterCommit (() -> {
+			boolean changed = false;
+			
+			for (Product product : products) {
+				changed |= productSearchIndex.updateStock (product);
+			}
+			
+			if (changed) {
+				productSearchCache.invalidate ();
+			}
+		});
 	}
 	
 	/**
 	 * Updates the product information in the database
 	 *
-	 * @param product The new product information.
+	 * Only the editable properties are copied onto the stored product, and only if it is still at the version that was edited
+	 *
+	 * @param product The new product information, with the version of the product that it was edited from.
 	 * @param file The new image for the product if desired.
 	 * @return The updated product.
+	 * @throws InvalidValueException Thrown when validation fails
+	 * @throws StaleProductException Thrown when the product has changed since the version that was edited
 	 */
-	public Product updateProduct (Product product, MultipartFile file) throws InvalidValueException {
+	public Product updateProduct (Product product, MultipartFile file) throws InvalidValueException, StaleProductException {
 		if ((product.getStock() == null) || (product.getStock() < 0)){
 			product.setStock(null);
 		}
-
+		
 		if (product.getName () == null) {
 			throw new InvalidValueException ("No product name");
 		}
@@ -111,28 +490,60 @@ public class ProductService {
 		if (product.getDescription () == null) {
 			throw new InvalidValueException ("No product description");
 		}
-
+		
 		if (product.getSalePrice() != null) {
 			if (product.getSalePrice () < 0) {
 				product.setSalePrice (null);
 			}
-
+			
 			//Error thrown if the sale price is higher than the normal price.
 			if (product.getPrice () < product.getSalePrice ()) {
 				throw new InvalidValueException ("Sale price cannot be higher than normal price.");
 			}
 		}
-
+		
 		//Error thrown if the price is negative.
 		if (product.getPrice () < 0) {
 			throw new InvalidValueException ("Price cannot be negative.");
 		}
 		
+		if (product.getVersion () == null) {
+			throw new InvalidValueException ("No product version");
+		}
+		
+		Product stored = productRepo.findById (product.getId ()).orElseThrow (() -> new InvalidValueException ("Invalid product id"));
+		
+		//the product was edited as it was at its version, so saving it over a newer version would undo changes such as the stock taken by sales
+		if (!stored.getVersion ().equals (product.getVersion ())) {
+			throw new StaleProductException ();
+		}
+		
+		stored.setName (product.getName ());
+		stored.setDescription (product.getDescription ());
+		stored.setPrice (product.getPrice ());
+		stored.setSalePrice (product.getSalePrice ());
+		stored.setStock (product.getStock ());
+		stored.setImageUrl (product.getImageUrl ());
+		
 		if (file != null) {
-			product.setImageUrl (this.fileUtil.uploadToS3 (product, file));
+			stored.setImageUrl (this.fileUtil.uploadToS3 (stored, file));
 		}
 		
-		return productRepo.save (product);
+		//flushes so the product's new version is indexed, and a hot product's stock is worked out from its new stock
+		try {
+			product = productRepo.saveAndFlush (stored);
+		} catch (ObjectOptimisticLockingFailureException exception) {
+			throw new StaleProductException ();
+		}
+		
+		hotStockService.refresh (product.getId ());
+		
+		productSearchIndex.index (product);
+		productSearchCache.invalidate ();
+		productCache.invalidate (product.getId ());
+		productSuggestions.index (product);
+		
+		return product;
 	}
 	
 	/**
@@ -147,7 +558,7 @@ public class ProductService {
 		if ((product.getStock() == null) || (product.getStock() < 0)){
 			product.setStock(null);
 		}
-
+		
 		if (product.getName () == null) {
 			throw new InvalidValueException ("No product name");
 		}
@@ -177,6 +588,13 @@ public class ProductService {
 			product.setImageUrl (this.fileUtil.uploadToS3 (product, file));
 		}
 		
-		return this.productRepo.save (product);
+		product = this.productRepo.saveAndFlush (product);
+		
+		this.productSearchIndex.index (product);
+		this.productSearchCache.invalidate ();
+		this.productCache.invalidate (product.getId ());
+		this.productSuggestions.index (product);
+		
+		return product;
 	}
 }
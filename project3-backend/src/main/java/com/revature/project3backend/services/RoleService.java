@@ -3,30 +3,65 @@ package com.revature.project3backend.services;
 import com.revature.project3backend.models.UserRole;
 import com.revature.project3backend.repositories.UserRoleRepo;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
 import javax.transaction.Transactional;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
 
 @Service
 @Transactional
 /**
  * This service deals with user roles, such as ADMIN or USER.
+ * Roles are loaded once into an immutable table by name, so looking one up never goes to the database. The table must be refreshed when roles change.
  */ public class RoleService {
 	
 	private UserRoleRepo roleRepo;
 	
+	/**
+	 * The roles by their uppercase names, this is replaced as a whole when the roles are refreshed. It's null until they are first loaded
+	 */
+	private volatile Map <String, UserRole> rolesByName;
+	
 	@Autowired
 	public RoleService (UserRoleRepo roleRepo) {
 		this.roleRepo = roleRepo;
 	}
 	
+	/**
+	 * Loads every role from the database, this is called once the application has started and must be called again whenever roles change
+	 */
+	@EventListener (ApplicationReadyEvent.class)
+	public void refresh () {
+		Map <String, UserRole> roles = new HashMap <> ();
+		
+		for (UserRole role : this.roleRepo.findAll ()) {
+			roles.put (role.getRole ().toUpperCase (Locale.ROOT), role);
+		}
+		
+		this.rolesByName = Collections.unmodifiableMap (roles);
+	}
+	
 	/**
 	 * Returns the role object for a given role name.
+	 * The roles are loaded first if a request comes in before the application has finished starting.
 	 *
-	 * @param roleName The name of the role to search for, all names should be uppercase.
-	 * @return The UserRole object that matches the name.
+	 * @param roleName The name of the role to search for, case is ignored.
+	 * @return The UserRole object that matches the name, or null if there is no such role.
 	 */
 	public UserRole getRoleByName (String roleName) {
-		return this.roleRepo.findUserRoleByName (roleName.toUpperCase ());
+		Map <String, UserRole> roles = this.rolesByName;
+		
+		if (roles == null) {
+			refresh ();
+			
+			roles = this.rolesByName;
+		}
+		
+		return roles.get (roleName.toUpperCase (Locale.ROOT));
 	}
 }
@@ -0,0 +1,337 @@
+package com.revature.project3backend.services;
+
+import com.revature.project3backend.exceptions.InvalidValueException;
+import com.revature.project3backend.models.CartItem;
+import com.revature.project3backend.models.StockHold;
+import com.revature.project3backend.repositories.ProductRepo;
+import com.revature.project3backend.repositories.StockHoldRepo;
+import com.revature.project3backend.search.ProductCache;
+import com.revature.project3backend.search.ProductSearchCache;
+import com.revature.project3backend.search.ProductSearchIndex;
+import com.revature.project3backend.utils.ExpiryWheel;
+import com.revature.project3backend.utils.TransactionUtil;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import javax.transaction.Transactional;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * StockHoldService holds stock for cart items, so stock that is in someone's cart can't be added to other carts and checking out only has to confirm it
+ * A hold expires a while after its cart item was last added or changed, and is then released by StockHoldSweeper. The holds are kept in the stock_hold table, which is the truth, and their expiry times are also kept in an ExpiryWheel so the sweeper never has to scan the table
+ */
+@Service
+@Transactional
+public class StockHoldService {
+	/**
+	 * The length of a tick of the expiry wheel
+	 */
+	static final Duration TICK = Duration.ofSeconds (1);
+	
+	/**
+	 * The number of slots of the expiry wheel, one turn of the wheel covers a little over 17 minutes
+	 */
+	static final int SLOT_COUNT = 1024;
+	
+	/**
+	 * The instance of StockHoldRepo to use
+	 */
+	private final StockHoldRepo stockHoldRepo;
+	
+	/**
+	 * The instance of ProductRepo to use
+	 */
+	private final ProductRepo productRepo;
+	
+	/**
+	 * The cache of products, whose reserved stock changes with the holds
+	 */
+	private final ProductCache productCache;
+	
+	/**
+	 * The in-memory stock of hot products, which aren't held for carts
+	 */
+	private final HotStockService hotStockService;
+	
+	/**
+	 * The in-memory index used to search products, which filters and counts products by their stock that isn't held
+	 */
+	private final ProductSearchIndex productSearchIndex;
+	
+	/**
+	 * The cache of search result pages
+	 */
+	private final ProductSearchCache productSearchCache;
+	
+	/**
+	 * How long a hold lasts after its cart item was last added or changed
+	 */
+	private final Duration ttl;
+	
+	/**
+	 * The ids of the holds by when they expire
+	 */
+	private final ExpiryWheel <Integer> wheel = new ExpiryWheel <> (TICK, SLOT_COUNT, Instant.now ());
+	
+	/**
+	 * This constructor is automatically called by Spring
+	 *
+	 * @param stockHoldRepo The instance of StockHoldRepo to use
+	 * @param productRepo The instance of ProductRepo to use
+	 * @param productCache The cache of products
+	 * @param hotStockService The in-memory stock of hot products
+	 * @param productSearchIndex The in-memory index used to search products
+	 * @param productSearchCache The cache of search result pages
+	 * @param ttl How long a hold lasts after its cart item was last added or changed
+	 */
+	@Autowired
+	public StockHoldService (StockHoldRepo stockHoldRepo, ProductRepo productRepo, ProductCache productCache, HotStockService hotStockService, ProductSearchIndex productSearchIndex, ProductSearchCache productSearchCache, @Value ("${stock.hold.ttl:15m}") Duration ttl) {
+		this.stockHoldRepo = stockHoldRepo;
+		this.productRepo = productRepo;
+		this.productCache = productCache;
+		this.hotStockService = hotStockService;
+		this.productSearchIndex = productSearchIndex;
+		this.productSearchCache = productSearchCache;
+		this.ttl = ttl;
+	}
+	
+	/**
+	 * Schedules every hold in the table, this is called once the application has started so that holds made before a restart are still released
+	 */
+	@EventListener (ApplicationReadyEvent.class)
+	public void load () {
+		for (StockHold hold : stockHoldRepo.findAll ()) {
+			wheel.schedule (hold.getId (), hold.getExpiresAt ());
+		}
+	}
+	
+	/**
+	 * Holds the stock of a new cart item
+	 * The stock of a hot product isn't held, since holding it would update the product's row for every cart it is added to. It goes to whoever checks out first
+	 *
+	 * @param cartItem The cart item, which must have been saved
+	 * @throws InvalidValueException Thrown when the product doesn't have enough available stock
+	 */
+	public void hold (CartItem cartItem) throws InvalidValueException {
+		Integer productId = cartItem.getProduct ().getId ();
+		
+		if (hotStockService.isHot (productId)) {
+			return;
+		}
+		
+		if (!productRepo.reserveStock (productId, cartItem.getQuantity ())) {
+			throw new InvalidValueException ("Invalid quantity");
+		}
+		
+		schedule (stockHoldRepo.save (new StockHold (cartItem.getId (), productId, cartItem.getQuantity (), Instant.now ().plus (ttl))));
+		
+		productCache.invalidate (productId);
+		reindex (productId);
+	}
+	
+	/**
+	 * Changes the held stock of a cart item to a new quantity and restarts its hold, or holds its stock again if its hold has expired
+	 * A hold on a product that has become hot since it was made is released instead, since the stock of hot products isn't held
+	 *
+	 * @param cartItem The cart item, with its old quantity
+	 * @param quantity The new quantity of the cart item
+	 * @throws InvalidValueException Thrown when the product doesn't have enough available stock for the extra quantity
+	 */
+	public void changeHold (CartItem cartItem, Integer quantity) throws InvalidValueException {
+		StockHold hold = stockHoldRepo.findByCartItemId (cartItem.getId ()).orElse (null);
+		
+		if (hold == null) {
+			hold (new CartItem (cartItem.getId (), cartItem.getBuyer (), cartItem.getProduct (), quantity));
+			
+			return;
+		}
+		
+		if (hotStockService.isHot (hold.getProductId ())) {
+			release (hold);
+			
+			return;
+		}
+		
+		int change = quantity - hold.getQuantity ();
+		
+		if (change > 0 && !productRepo.reserveStock (hold.getProductId (), change)) {
+			throw new InvalidValueException ("Invalid quantity");
+		}
+		
+		if (change < 0) {
+			productRepo.releaseStock (Collections.singletonMap (hold.getProductId (), -change));
+		}
+		
+		hold.setQuantity (quantity);
+		hold.setExpiresAt (Instant.now ().plus (ttl));
+		
+		schedule (stockHoldRepo.save (hold));
+		
+		productCache.invalidate (hold.getProductId ());
+		
+		if (change != 0) {
+			reindex (hold.getProductId ());
+		}
+	}
+	
+	/**
+	 * Gives back the held stock of a cart item that is being removed from its cart
+	 *
+	 * @param cartItem The cart item
+	 */
+	public void release (CartItem cartItem) {
+		StockHold hold = stockHoldRepo.findByCartItemId (cartItem.getId ()).orElse (null);
+		
+		if (hold != null) {
+			release (hold);
+		}
+	}
+	
+	/**
+	 * Deletes the holds of the cart items that are being checked out, the held stock then has to be taken from the products' reserved stock as they are decremented
+	 *
+	 * @param cart The cart items
+	 * @return The quantity that was held for each cart item, in the same order, which is 0 for an item without a hold
+	 */
+	public int[] consume (List <CartItem> cart) {
+		List <Integer> cartItemIds = new ArrayList <> ();
+		
+		for (CartItem cartItem : cart) {
+			if (cartItem.getId () != null) {
+				cartItemIds.add (cartItem.getId ());
+			}
+		}
+		
+		int[] held = new int[cart.size ()];
+		
+		if (cartItemIds.isEmpty ()) {
+			return held;
+		}
+		
+		List <StockHold> holds = stockHoldRepo.findByCartItemIds (cartItemIds);
+		Map <Integer, Integer> heldByCartItem = new HashMap <> ();
+		
+		for (StockHold hold : holds) {
+			heldByCartItem.put (hold.getCartItemId (), hold.getQuantity ());
+		}
+		
+		stockHoldRepo.deleteAllInBatch (holds);
+		
+		for (int i = 0; i < held.length; i++) {
+			held[i] = heldByCartItem.getOrDefault (cart.get (i).getId (), 0);
+		}
+		
+		return held;
+	}
+	
+	/**
+	 * Releases the holds out of the given ones that have expired, giving their stock back in one batch. Holds that were checked out, removed or restarted in the meantime are left alone
+	 * The stock of holds on products that have become hot since they were made is given back to the products' in-memory stock too
+	 *
+	 * @param ids The ids of the holds
+	 * @return The number of holds that were released
+	 */
+	public int releaseExpired (List <Integer> ids) {
+		List <StockHold> holds = stockHoldRepo.findExpired (ids, Instant.now ());
+		
+		if (holds.isEmpty ()) {
+			return 0;
+		}
+		
+		Map <Integer, Integer> quantities = new HashMap <> ();
+		
+		for (StockHold hold : holds) {
+			quantities.merge (hold.getProductId (), hold.getQuantity (), Integer::sum);
+		}
+		
+		stockHoldRepo.deleteAllInBatch (holds);
+		productRepo.releaseStock (quantities);
+		
+		for (Map.Entry <Integer, Integer> entry : quantities.entrySet ()) {
+			hotStockService.release (entry.getKey (), entry.getValue ());
+			productCache.invalidate (entry.getKey ());
+			reindex (entry.getKey ());
+		}
+		
+		return holds.size ();
+	}
+	
+	/**
+	 * Takes the holds that have expired by now off the expiry wheel
+	 *
+	 * @return The ids of the holds, which may have been checked out, removed or restarted since they were scheduled
+	 */
+	@Transactional (Transactional.TxType.SUPPORTS)
+	public List <Integer> due () {
+		return wheel.advance (Instant.now ());
+	}
+	
+	/**
+	 * Schedules holds to be looked at again by the next sweep, used when releasing them failed
+	 *
+	 * @param ids The ids of the holds
+	 */
+	@Transactional (Transactional.TxType.SUPPORTS)
+	public void retry (List <Integer> ids) {
+		Instant now = Instant.now ();
+		
+		for (Integer id : ids) {
+			wheel.schedule (id, now);
+		}
+	}
+	
+	/**
+	 * Deletes a hold and gives its stock back, to the product's in-memory stock too if the product has become hot since the hold was made
+	 *
+	 * @param hold The hold
+	 */
+	private void release (StockHold hold) {
+		stockHoldRepo.delete (hold);
+		productRepo.releaseStock (Collections.singletonMap (hold.getProductId (), hold.getQuantity ()));
+		hotStockService.release (hold.getProductId (), hold.getQuantity ());
+		
+		productCache.invalidate (hold.getProductId ());
+		reindex (hold.getProductId ());
+	}
+	
+	/**
+	 * Updates a product's reserved stock in the search index once the transaction commits, and drops the cached search results if the product went in or out of stock
+	 * The reserved stock is read back from the table, whose row stays locked by the change until the commit
+	 *
+	 * @param productId The id of the product whose reserved stock changed
+	 */
+	private void reindex (Integer productId) {
+		Integer reserved = productRepo.findReservedById (productId);
+		
+		if (reserved == null) {
+			return;
+		}
+		
+		TransactionUtil.afterCommit (() -> {
+			if (productSearchIndex.updateReserved (productId, reserved)) {
+				productSearchCache.invalidate ();
+			}
+		});
+	}
+	
+	/**
+	 * Schedules a hold on the expiry wheel once it has been committed
+	 *
+	 * @param hold The hold
+	 */
+	private void schedule (StockHold hold) {
+		Integer id = hold.getId ();
+		Instant expiresAt = hold.getExpiresAt ();
+		
+		TransactionUtil.afterCommit (() -> wheel.schedule (id, expiresAt));
+	}
+}
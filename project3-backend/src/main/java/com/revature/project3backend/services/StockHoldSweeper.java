@@ -0,0 +1,68 @@
+package com.revature.project3backend.services;
+
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * StockHoldSweeper releases the stock holds that have expired, it runs in the background every sweep interval
+ * The holds are released in batches that each have their own transaction, so a sweep never locks many holds or products at once
+ */
+@Component
+public class StockHoldSweeper {
+	/**
+	 * The instance of StockHoldService to use
+	 */
+	private final StockHoldService stockHoldService;
+	
+	/**
+	 * The most holds that are released in one transaction
+	 */
+	private final int batchSize;
+	
+	/**
+	 * The log4j logger for the sweeper
+	 */
+	private static final Logger logger = Logger.getLogger (StockHoldSweeper.class);
+	
+	/**
+	 * This constructor is automatically called by Spring
+	 *
+	 * @param stockHoldService The instance of StockHoldService to use
+	 * @param batchSize The most holds that are released in one transaction
+	 */
+	@Autowired
+	public StockHoldSweeper (StockHoldService stockHoldService, @Value ("${stock.hold.sweep-batch-size:100}") int batchSize) {
+		this.stockHoldService = stockHoldService;
+		this.batchSize = batchSize;
+	}
+	
+	/**
+	 * Releases the holds that have expired since the last sweep. A batch that fails is logged and tried again by the next sweep
+	 *
+	 * @return The number of holds that were released
+	 */
+	@Scheduled (fixedDelayString = "${stock.hold.sweep-interval:1000}")
+	public int sweep () {
+		List <Integer> due = stockHoldService.due ();
+		int released = 0;
+		
+		for (int start = 0; start < due.size (); start += batchSize) {
+			List <Integer> batch = due.subList (start, Math.min (start + batchSize, due.size ()));
+			
+			try {
+				released += stockHoldService.releaseExpired (batch);
+			} catch (RuntimeException exception) {
+				logger.warn ("Failed to release " + batch.size () + " stock holds, they will be tried again", exception);
+				
+				stockHoldService.retry (batch);
+			}
+		}
+		
+		return released;
+	}
+}
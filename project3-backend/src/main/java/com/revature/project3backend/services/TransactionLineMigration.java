@@ -0,0 +1,63 @@
+package com.revature.project3backend.services;
+
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * TransactionLineMigration moves the items of transactions made before the transaction_line table existed out of their JSON column, so their receipts and sales aren't lost
+ * It runs once the application has started, before anything else that reads the lines such as ProductSuggestions. Once every transaction has been moved it finds nothing to do
+ */
+@Component
+public class TransactionLineMigration {
+	/**
+	 * The number of transactions that are moved in one transaction
+	 */
+	static final int BATCH_SIZE = 500;
+	
+	/**
+	 * The instance of TransactionService to use
+	 */
+	private final TransactionService transactionService;
+	
+	/**
+	 * The log4j logger for the migration
+	 */
+	private static final Logger logger = Logger.getLogger (TransactionLineMigration.class);
+	
+	/**
+	 * This constructor is automatically called by Spring
+	 *
+	 * @param transactionService The instance of TransactionService to use
+	 */
+	@Autowired
+	public TransactionLineMigration (TransactionService transactionService) {
+		this.transactionService = transactionService;
+	}
+	
+	/**
+	 * Moves the legacy items of every transaction, a batch at a time
+	 *
+	 * @return The number of batches that were moved
+	 */
+	@EventListener (ApplicationReadyEvent.class)
+	@Order (Ordered.HIGHEST_PRECEDENCE)
+	public int migrate () {
+		int batches = 0;
+		Integer lastId = 0;
+		
+		while ((lastId = transactionService.migrateLegacyItems (lastId, BATCH_SIZE)) != null) {
+			batches++;
+		}
+		
+		if (batches > 0) {
+			logger.info ("Moved the legacy items of transactions to the transaction_line table in " + batches + " batches");
+		}
+		
+		return batches;
+	}
+}
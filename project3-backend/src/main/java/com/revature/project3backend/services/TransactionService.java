@@ -1,16 +1,23 @@
 package com.revature.project3backend.services;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.revature.project3backend.exceptions.InvalidValueException;
 import com.revature.project3backend.models.CartItem;
 import com.revature.project3backend.models.Product;
 import com.revature.project3backend.models.Transaction;
+import com.revature.project3backend.models.TransactionLine;
+import com.revature.project3backend.models.User;
+import com.revature.project3backend.repositories.TransactionLineRepo;
 import com.revature.project3backend.repositories.TransactionRepo;
+import org.apache.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
 import javax.transaction.Transactional;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -25,29 +32,74 @@ public class TransactionService {
 	private final TransactionRepo transactionRepo;
 	
 	/**
-	 * The instance of ObjectMapper to use
+	 * The instance of TransactionLineRepo to use
+	 */
+	private final TransactionLineRepo transactionLineRepo;
+	
+	/**
+	 * The instance of ProductService to use
+	 */
+	private final ProductService productService;
+	
+	/**
+	 * The instance of UserService to use
+	 */
+	private final UserService userService;
+	
+	/**
+	 * The instance of ObjectMapper used to read the legacy items of transactions
 	 */
 	private final ObjectMapper json = new ObjectMapper ();
 	
+	/**
+	 * The log4j logger for the service
+	 */
+	private static final Logger logger = Logger.getLogger (TransactionService.class);
+	
 	/**
 	 * This constructor is automatically called by Spring
 	 *
 	 * @param transactionRepo The instance of TransactionRepo to use
+	 * @param transactionLineRepo The instance of TransactionLineRepo to use
+	 * @param productService The instance of ProductService to use
+	 * @param userService The instance of UserService to use
 	 */
 	@Autowired
-	public TransactionService (TransactionRepo transactionRepo) {
+	public TransactionService (TransactionRepo transactionRepo, TransactionLineRepo transactionLineRepo, ProductService productService, UserService userService) {
 		this.transactionRepo = transactionRepo;
+		this.transactionLineRepo = transactionLineRepo;
+		this.productService = productService;
+		this.userService = userService;
 	}
 	
 	/**
-	 * Create a transaction
+	 * Checks out a cart, the stock of its products is reserved, the transaction is created and the cart items are deleted in one transaction
+	 * If any of the steps fails none of them are kept, so the stock of a cart is never taken without its transaction being created
+	 *
+	 * @param buyer The user who is checking out
+	 * @param cart The cart items to check out
+	 * @return The created Transaction
+	 * @throws InvalidValueException Thrown when a quantity isn't positive or a product doesn't have enough stock
+	 */
+	@Transactional (rollbackOn = InvalidValueException.class)
+	public Transaction checkout (User buyer, List <CartItem> cart) throws InvalidValueException {
+		productService.reduceStock (cart);
+		
+		Transaction transaction = createTransaction (new Transaction (buyer), cart);
+		
+		userService.deleteCartItems (cart);
+		
+		return transaction;
+	}
+	
+	/**
+	 * Create a transaction, each cart item is written as a line with the price it was bought at
 	 *
 	 * @param transaction The transaction to create
 	 * @param items The cart items used in the transaction
 	 * @return The created Transaction
-	 * @throws JsonProcessingException Thrown when there is an error while parsing JSON
 	 */
-	public Transaction createTransaction (Transaction transaction, List <CartItem> items) throws JsonProcessingException {
+	public Transaction createTransaction (Transaction transaction, List <CartItem> items) {
 		float total = 0f;
 		
 		for (CartItem item : items) {
@@ -57,13 +109,23 @@ public class TransactionService {
 		}
 		
 		transaction.setTotal (total);
-		transaction.setItems (json.writeValueAsString (items));
 		
-		return transactionRepo.save (transaction);
+		Transaction created = transactionRepo.save (transaction);
+		List <TransactionLine> lines = new ArrayList <> ();
+		
+		for (CartItem item : items) {
+			lines.add (new TransactionLine (created.getId (), item));
+		}
+		
+		transactionLineRepo.insertAll (lines);
+		
+		created.setItems (lines);
+		
+		return created;
 	}
 	
 	/**
-	 * Gets a transaction given its id
+	 * Gets a transaction given its id, without its items
 	 *
 	 * @param transactionId The id to use to get the transaction
 	 * @return The found transaction
@@ -78,4 +140,51 @@ public class TransactionService {
 		
 		return transaction;
 	}
+	
+	/**
+	 * Gets the items of a transaction, these aren't read with the transaction so that they are only read when they are going to be sent
+	 *
+	 * @param transactionId The id of the transaction
+	 * @return The lines of the transaction in the order they were bought
+	 */
+	public List <TransactionLine> getItems (Integer transactionId) {
+		return transactionLineRepo.findByTransactionIdOrderById (transactionId);
+	}
+	
+	/**
+	 * Moves the legacy JSON items of a batch of transactions to the transaction_line table, each line gets the price that the cart item's product was sold at
+	 * A transaction whose items can't be read is logged and left as it is
+	 *
+	 * @param afterId The id to start after
+	 * @param limit The most transactions to move
+	 * @return The id of the last transaction that was looked at, or null if there are none left
+	 */
+	public Integer migrateLegacyItems (Integer afterId, int limit) {
+		List <Transaction> transactions = transactionRepo.findByLegacyItemsNotNullAndIdGreaterThanOrderById (afterId, PageRequest.of (0, limit));
+		
+		if (transactions.isEmpty ()) {
+			return null;
+		}
+		
+		List <TransactionLine> lines = new ArrayList <> ();
+		
+		for (Transaction transaction : transactions) {
+			try {
+				for (JsonNode item : json.readTree (transaction.getLegacyItems ())) {
+					JsonNode product = item.path ("product");
+					JsonNode salePrice = product.path ("salePrice");
+					
+					lines.add (new TransactionLine (null, transaction.getId (), product.path ("id").asInt (), product.path ("name").asText (), (float) (salePrice.isNumber () ? salePrice : product.path ("price")).asDouble (), item.path ("quantity").asInt ()));
+				}
+				
+				transaction.setLegacyItems (null);
+			} catch (JsonProcessingException exception) {
+				logger.warn ("Could not read the legacy items of transaction " + transaction.getId (), exception);
+			}
+		}
+		
+		transactionLineRepo.insertAll (lines);
+		
+		return transactions.get (transactions.size () - 1).getId ();
+	}
 }
@@ -11,7 +11,6 @@ import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Service;
 
 import javax.transaction.Transactional;
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -30,6 +29,11 @@ public class UserService {
 	 */
 	private final CartItemRepo cartItemRepo;
 	
+	/**
+	 * The instance of StockHoldService to use
+	 */
+	private final StockHoldService stockHoldService;
+	
 	/**
 	 * The instance of BCryptPasswordEncoder to use to encrypt passwords
 	 */
@@ -40,11 +44,13 @@ public class UserService {
 	 *
 	 * @param userRepo The instance of UserRepo to use
 	 * @param cartItemRepo The instance of CartItemRepo to use
+	 * @param stockHoldService The instance of StockHoldService to use
 	 */
 	@Autowired
-	public UserService (UserRepo userRepo, CartItemRepo cartItemRepo) {
+	public UserService (UserRepo userRepo, CartItemRepo cartItemRepo, StockHoldService stockHoldService) {
 		this.userRepo = userRepo;
 		this.cartItemRepo = cartItemRepo;
+		this.stockHoldService = stockHoldService;
 	}
 	
 	/**
@@ -111,7 +117,7 @@ public class UserService {
 	}
 	
 	/**
-	 * Removes an item from the user's cart
+	 * Removes an item from the user's cart, and gives back the stock that was held for it
 	 *
 	 * @param user The user who owns the cart that the cart item will be removed from
 	 * @param cartItem The cart item to remove from the user's cart
@@ -119,23 +125,18 @@ public class UserService {
 	public void removeFromCart (User user, CartItem cartItem) {
 		user.getCart ().remove (cartItem);
 		
+		stockHoldService.release (cartItem);
 		cartItemRepo.delete (cartItem);
 		
 		userRepo.save (user);
 	}
 	
 	/**
-	 * Removes all items from the user's cart
+	 * Deletes cart items that were checked out, the cart in the session is emptied by the caller
 	 *
-	 * @param user The user who owns the cart that all cart items will be removed from
+	 * @param cartItems The cart items to delete
 	 */
-	public void clearCart (User user) {
-		List <CartItem> cart = user.getCart ();
-		
-		user.setCart (new ArrayList <> ());
-		
-		cartItemRepo.deleteAll (cart);
-		
-		userRepo.save (user);
+	public void deleteCartItems (List <CartItem> cartItems) {
+		cartItemRepo.deleteAll (cartItems);
 	}
 }
@@ -0,0 +1,129 @@
+package com.revature.project3backend.utils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * ExpiryWheel is a hashed timing wheel that tells when things expire, without sorting them or scanning all of them
+ * Time is split into ticks and every tick has a slot on the wheel, wrapping around. Scheduling adds to a slot and advancing only looks at the slots of the ticks that have passed, so both take about constant time however many things are scheduled
+ * Things can't be cancelled, so whoever gets them back when they expire must check that they really have
+ *
+ * @param <T> The type of the things that expire
+ */
+public class ExpiryWheel <T> {
+	/**
+	 * The length of a tick in milliseconds
+	 */
+	private final long tickMillis;
+	
+	/**
+	 * The slots of the wheel, a thing is in the slot of the tick it expires in, modulo the number of slots
+	 */
+	private final List <List <Entry <T>>> slots;
+	
+	/**
+	 * The first tick that hasn't been advanced past yet
+	 */
+	private long currentTick;
+	
+	/**
+	 * The number of things that are scheduled
+	 */
+	private int size;
+	
+	/**
+	 * @param tick The length of a tick, things expire up to a tick late
+	 * @param slotCount The number of slots, this should cover the usual time to expiry so that a slot doesn't hold things from later turns of the wheel
+	 * @param now The current time
+	 */
+	public ExpiryWheel (Duration tick, int slotCount, Instant now) {
+		this.tickMillis = tick.toMillis ();
+		this.slots = new ArrayList <> (slotCount);
+		this.currentTick = now.toEpochMilli () / tickMillis;
+		
+		for (int i = 0; i < slotCount; i++) {
+			slots.add (new ArrayList <> ());
+		}
+	}
+	
+	/**
+	 * Schedules something to expire, things that have already expired are returned by the next advance
+	 *
+	 * @param item The thing that expires
+	 * @param expiresAt When it expires
+	 */
+	public synchronized void schedule (T item, Instant expiresAt) {
+		//rounds up, so nothing is returned before it has expired
+		long tick = Math.max ((expiresAt.toEpochMilli () + tickMillis - 1) / tickMillis, currentTick);
+		
+		slots.get ((int) (tick % slots.size ())).add (new Entry <> (item, tick));
+		size++;
+	}
+	
+	/**
+	 * Removes and returns everything that has expired by now
+	 *
+	 * @param now The current time
+	 * @return The things that have expired
+	 */
+	public synchronized List <T> advance (Instant now) {
+		long nowTick = now.toEpochMilli () / tickMillis;
+		List <T> expired = new ArrayList <> ();
+		
+		//after a whole turn of the wheel every slot has been looked at
+		for (long tick = currentTick; tick <= nowTick && tick < currentTick + slots.size (); tick++) {
+			Iterator <Entry <T>> iterator = slots.get ((int) (tick % slots.size ())).iterator ();
+			
+			while (iterator.hasNext ()) {
+				Entry <T> entry = iterator.next ();
+				
+				//things from later turns of the wheel are left in the slot
+				if (entry.tick <= nowTick) {
+					expired.add (entry.item);
+					iterator.remove ();
+				}
+			}
+		}
+		
+		size -= expired.size ();
+		currentTick = Math.max (currentTick, nowTick + 1);
+		
+		return expired;
+	}
+	
+	/**
+	 * @return The number of things that are scheduled
+	 */
+	public synchronized int size () {
+		return size;
+	}
+	
+	/**
+	 * Entry is a scheduled thing and the tick it expires in
+	 *
+	 * @param <T> The type of the thing
+	 */
+	private static class Entry <T> {
+		/**
+		 * The thing that expires
+		 */
+		private final T item;
+		
+		/**
+		 * The tick it expires in
+		 */
+		private final long tick;
+		
+		/**
+		 * @param item The thing that expires
+		 * @param tick The tick it expires in
+		 */
+		Entry (T item, long tick) {
+			this.item = item;
+			this.tick = tick;
+		}
+	}
+}
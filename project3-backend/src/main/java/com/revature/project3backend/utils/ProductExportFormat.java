@@ -0,0 +1,150 @@
+package com.revature.project3backend.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.revature.project3backend.exceptions.InvalidValueException;
+import com.revature.project3backend.models.Product;
+import org.springframework.http.MediaType;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+
+/**
+ * ProductExportFormat is the format that the catalog is exported in, every product is written on its own line so the export can be written and read one product at a time
+ */
+public enum ProductExportFormat {
+	/**
+	 * Newline delimited JSON, one product object per line
+	 */
+	NDJSON ("application/x-ndjson", "ndjson") {
+		@Override
+		public void writeHeader (Writer writer) {
+		}
+
+		@Override
+		public void write (Product product, Writer writer, ObjectMapper objectMapper) throws IOException {
+			writer.write (objectMapper.writeValueAsString (product));
+			writer.write ('\n');
+		}
+	},
+
+	/**
+	 * Comma separated values with a header line, fields are quoted as in RFC 4180 when they need to be
+	 * Text that a spreadsheet would run as a formula is written with a single quote in front of it
+	 */
+	CSV ("text/csv", "csv") {
+		@Override
+		public void writeHeader (Writer writer) throws IOException {
+			writer.write ("id,name,description,price,imageUrl,salePrice,stock\r\n");
+		}
+
+		@Override
+		public void write (Product product, Writer writer, ObjectMapper objectMapper) throws IOException {
+			Object[] fields = {product.getId (), product.getName (), product.getDescription (), product.getPrice (), product.getImageUrl (), product.getSalePrice (), product.getStock ()};
+
+			for (int i = 0; i < fields.length; i++) {
+				if (i > 0) {
+					writer.write (',');
+				}
+
+				if (fields[i] instanceof String) {
+					writer.write (quote ((String) fields[i]));
+				} else if (fields[i] != null) {
+					writer.write (fields[i].toString ());
+				}
+			}
+
+			writer.write ("\r\n");
+		}
+	};
+
+	/**
+	 * The characters that make a spreadsheet read a cell as a formula when it starts with them
+	 */
+	private static final String FORMULA_PREFIXES = "=+-@\t\r";
+
+	/**
+	 * The media type of the export
+	 */
+	private final MediaType mediaType;
+
+	/**
+	 * The file extension of the export
+	 */
+	private final String extension;
+
+	/**
+	 * @param mediaType The media type of the export
+	 * @param extension The file extension of the export
+	 */
+	ProductExportFormat (String mediaType, String extension) {
+		this.mediaType = MediaType.parseMediaType (mediaType);
+		this.extension = extension;
+	}
+
+	/**
+	 * Writes whatever comes before the first product
+	 *
+	 * @param writer The writer to write to
+	 * @throws IOException Thrown when the writer fails
+	 */
+	public abstract void writeHeader (Writer writer) throws IOException;
+
+	/**
+	 * Writes a product
+	 *
+	 * @param product The product to write
+	 * @param writer The writer to write to
+	 * @param objectMapper The application's ObjectMapper, used by the formats that write products as JSON
+	 * @throws IOException Thrown when the writer fails
+	 */
+	public abstract void write (Product product, Writer writer, ObjectMapper objectMapper) throws IOException;
+
+	/**
+	 * @return The media type of the export
+	 */
+	public MediaType getMediaType () {
+		return mediaType;
+	}
+
+	/**
+	 * @return The file extension of the export
+	 */
+	public String getExtension () {
+		return extension;
+	}
+
+	/**
+	 * Gets the format for a request parameter
+	 *
+	 * @param format The value of the parameter, ignoring case
+	 * @return The format
+	 * @throws InvalidValueException Thrown when the value isn't a format
+	 */
+	public static ProductExportFormat of (String format) throws InvalidValueException {
+		try {
+			return ProductExportFormat.valueOf (format.toUpperCase (Locale.ROOT));
+		} catch (IllegalArgumentException exception) {
+			throw new InvalidValueException ("Invalid format");
+		}
+	}
+
+	/**
+	 * Quotes a CSV text field if it contains a comma, a quote or a line break
+	 * A field starting with =, +, -, @, a tab or a carriage return gets a single quote in front of it first, so spreadsheets show it as text instead of running it as a formula
+	 *
+	 * @param field The field
+	 * @return The field, quoted with its quotes doubled if it needed to be
+	 */
+	static String quote (String field) {
+		if (!field.isEmpty () && FORMULA_PREFIXES.indexOf (field.charAt (0)) >= 0) {
+			field = "'" + field;
+		}
+
+		if (field.indexOf (',') < 0 && field.indexOf ('"') < 0 && field.indexOf ('\n') < 0 && field.indexOf ('\r') < 0) {
+			return field;
+		}
+
+		return "\"" + field.replace ("\"", "\"\"") + "\"";
+	}
+}
@@ -0,0 +1,133 @@
+package com.revature.project3backend.utils;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * StripedCounter is a non-negative count that many threads can take from at once without locking
+ * The count is split into stripes that are each changed with compare-and-set, and a thread starts at a random stripe, so threads rarely retry on the same stripe the way they would on a single AtomicInteger
+ * A quantity is taken from a single stripe when one has enough, otherwise it is gathered from several. Gathering gives back what it took if there isn't enough in total, so a taker running at the same time may briefly see less than there is, but never more
+ */
+public class StripedCounter {
+	/**
+	 * The distance between two stripes in the array, so each stripe sits on its own 64 byte cache line and the stripes don't slow each other down
+	 */
+	private static final int PADDING = 16;
+	
+	/**
+	 * The stripes, only every PADDING-th element is used
+	 */
+	private final AtomicIntegerArray stripes;
+	
+	/**
+	 * The number of stripes
+	 */
+	private final int stripeCount;
+	
+	/**
+	 * @param value The initial count, which is spread evenly over the stripes
+	 * @param stripeCount The number of stripes
+	 */
+	public StripedCounter (int value, int stripeCount) {
+		if (value < 0 || stripeCount < 1) {
+			throw new IllegalArgumentException ("The value can't be negative and there must be at least one stripe");
+		}
+		
+		this.stripeCount = stripeCount;
+		this.stripes = new AtomicIntegerArray (stripeCount * PADDING);
+		
+		for (int i = 0; i < stripeCount; i++) {
+			stripes.set (i * PADDING, value / stripeCount + (i < value % stripeCount ? 1 : 0));
+		}
+	}
+	
+	/**
+	 * Gets the count, which is only exact when nothing is changing it
+	 *
+	 * @return The sum of the stripes
+	 */
+	public int get () {
+		int sum = 0;
+		
+		for (int i = 0; i < stripeCount; i++) {
+			sum += stripes.get (i * PADDING);
+		}
+		
+		return sum;
+	}
+	
+	/**
+	 * Takes a quantity from the count if there is enough of it
+	 *
+	 * @param quantity The quantity to take, which must be positive
+	 * @return Whether the quantity was taken
+	 */
+	public boolean tryTake (int quantity) {
+		int start = ThreadLocalRandom.current ().nextInt (stripeCount);
+		
+		for (int i = 0; i < stripeCount; i++) {
+			int index = ((start + i) % stripeCount) * PADDING;
+			int value = stripes.get (index);
+			
+			while (value >= quantity) {
+				if (stripes.compareAndSet (index, value, value - quantity)) {
+					return true;
+				}
+				
+				value = stripes.get (index);
+			}
+		}
+		
+		return gather (start, quantity);
+	}
+	
+	/**
+	 * Gives a quantity back to the count
+	 *
+	 * @param quantity The quantity to give back, which must be positive
+	 */
+	public void add (int quantity) {
+		stripes.getAndAdd (ThreadLocalRandom.current ().nextInt (stripeCount) * PADDING, quantity);
+	}
+	
+	/**
+	 * Takes a quantity that no single stripe has from several of them, or gives back the part that was taken if they don't have enough between them
+	 *
+	 * @param start The stripe to start from
+	 * @param quantity The quantity to take
+	 * @return Whether the quantity was taken
+	 */
+	private boolean gather (int start, int quantity) {
+		int[] taken = new int[stripeCount];
+		int total = 0;
+		
+		for (int i = 0; i < stripeCount && total < quantity; i++) {
+			int stripe = (start + i) % stripeCount;
+			int index = stripe * PADDING;
+			int value = stripes.get (index);
+			
+			while (value > 0 && total < quantity) {
+				int part = Math.min (value, quantity - total);
+				
+				if (stripes.compareAndSet (index, value, value - part)) {
+					taken[stripe] += part;
+					total += part;
+				}
+				
+				value = stripes.get (index);
+			}
+		}
+		
+		if (total == quantity) {
+			return true;
+		}
+		
+		for (int stripe = 0; stripe < stripeCount; stripe++) {
+			if (taken[stripe] > 0) {
+				stripes.getAndAdd (stripe * PADDING, taken[stripe]);
+			}
+		}
+		
+		return false;
+	}
+}
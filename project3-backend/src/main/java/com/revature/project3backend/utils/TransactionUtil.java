@@ -0,0 +1,58 @@
+package com.revature.project3backend.utils;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Helpers for running code around database transactions
+ */
+public class TransactionUtil {
+	/**
+	 * Whether the current thread is running code after its transaction committed, the transaction's synchronizations are still active then but ones registered would never run
+	 */
+	private static final ThreadLocal <Boolean> committed = ThreadLocal.withInitial (() -> false);
+	
+	/**
+	 * Runs something once the current transaction commits, or right away if there is no transaction in progress or it has already committed
+	 * This is used to update the in-memory structures that mirror the database, so they never show changes that were rolled back
+	 *
+	 * @param runnable The code to run
+	 */
+	public static void afterCommit (Runnable runnable) {
+		if (TransactionSynchronizationManager.isSynchronizationActive () && !committed.get ()) {
+			TransactionSynchronizationManager.registerSynchronization (new TransactionSynchronization () {
+				@Override
+				public void afterCommit () {
+					committed.set (true);
+					
+					try {
+						runnable.run ();
+					} finally {
+						committed.set (false);
+					}
+				}
+			});
+		} else {
+			runnable.run ();
+		}
+	}
+	
+	/**
+	 * Runs something if the current transaction rolls back, or not at all if there is no transaction in progress
+	 * This is used to undo changes to in-memory structures that were made ahead of the commit
+	 *
+	 * @param runnable The code to run
+	 */
+	public static void afterRollback (Runnable runnable) {
+		if (TransactionSynchronizationManager.isSynchronizationActive ()) {
+			TransactionSynchronizationManager.registerSynchronization (new TransactionSynchronization () {
+				@Override
+				public void afterCompletion (int status) {
+					if (status == STATUS_ROLLED_BACK) {
+						runnable.run ();
+					}
+				}
+			});
+		}
+	}
+}
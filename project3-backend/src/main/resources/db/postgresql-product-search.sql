@@ -0,0 +1,12 @@
+-- Trigram indexes that let PostgreSQL answer the product search without scanning the product table
+-- These are run by PostgresProductSearch when the application starts against PostgreSQL
+
+-- Product names are compared in the "C" collation so that ORDER BY name and the (name, id) cursor use the same order as ProductSearchIndex.NAME_ORDER (and H2)
+-- The column is only altered when its collation differs, since altering it rebuilds the indexes on it
+DO 'BEGIN IF (SELECT collation_name FROM information_schema.columns WHERE table_schema = current_schema() AND table_name = ''product'' AND column_name = ''name'') IS DISTINCT FROM ''C'' THEN ALTER TABLE product ALTER COLUMN name TYPE varchar(255) COLLATE "C"; END IF; END';
+
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE INDEX IF NOT EXISTS product_name_trgm_idx ON product USING gin (lower(name) gin_trgm_ops);
+
+CREATE INDEX IF NOT EXISTS product_description_trgm_idx ON product USING gin (lower(description) gin_trgm_ops);
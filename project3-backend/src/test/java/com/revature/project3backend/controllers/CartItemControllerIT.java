@@ -1,6 +1,7 @@
 package com.revature.project3backend.controllers;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.revature.project3backend.exceptions.IdempotencyKeyReusedException;
 import com.revature.project3backend.exceptions.InvalidValueException;
 import com.revature.project3backend.exceptions.UnauthorizedException;
 import com.revature.project3backend.jsonmodels.CreateCartItemBody;
@@ -11,7 +12,9 @@ import com.revature.project3backend.models.Product;
 import com.revature.project3backend.models.User;
 import com.revature.project3backend.models.UserRole;
 import com.revature.project3backend.services.CartItemService;
+import com.revature.project3backend.services.CheckoutQueue;
 import com.revature.project3backend.services.ProductService;
+import com.revature.project3backend.services.IdempotencyService;
 import com.revature.project3backend.services.UserService;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -43,6 +46,12 @@ class CartItemControllerIT {
 	@MockBean
 	private UserService userService;
 	
+	@MockBean
+	private IdempotencyService idempotencyService;
+	
+	@MockBean
+	private CheckoutQueue checkoutQueue;
+	
 	private final ObjectMapper json = new ObjectMapper ();
 	
 	private final List <Product> products = new ArrayList <> ();
@@ -93,6 +102,53 @@ class CartItemControllerIT {
 		Mockito.verify (userService).addToCart (users.get (1), cartItem);
 	}
 	
+	@Test
+	void createCartItemWhileCheckingOut () throws Exception {
+		CreateCartItemBody body = new CreateCartItemBody ();
+		
+		body.setProductId (2);    // Java II
+		body.setQuantity (2);
+		
+		MockHttpSession httpSession = new MockHttpSession ();
+		httpSession.setAttribute ("user", users.get (1)); // User 2
+		
+		Mockito.when (checkoutQueue.settle (users.get (1))).thenReturn (true);
+		
+		mvc.perform (MockMvcRequestBuilders.post ("/cartitem")
+			.contentType (MediaType.APPLICATION_JSON)
+			.session (httpSession)
+			.content (json.writeValueAsString (body)))
+			
+			.andExpect (MockMvcResultMatchers.status ().isConflict ())
+			.andExpect (MockMvcResultMatchers.content ().json (json.writeValueAsString (new JsonResponse ("Error! Checkout in progress", false))));
+		
+		Mockito.verify (cartItemService, Mockito.never ()).createCartItem (Mockito.any ());
+	}
+	
+	@Test
+	void createCartItemWhenIdempotencyKeyWasReused () throws Exception {
+		CreateCartItemBody body = new CreateCartItemBody ();
+		
+		body.setProductId (2);    // Java II
+		body.setQuantity (2);
+		
+		MockHttpSession httpSession = new MockHttpSession ();
+		httpSession.setAttribute ("user", users.get (1)); // User 2
+		
+		Mockito.when (idempotencyService.begin (Mockito.eq (2), Mockito.eq ("key"), Mockito.eq ("POST /cartitem"), Mockito.any ())).thenThrow (new IdempotencyKeyReusedException ());
+		
+		mvc.perform (MockMvcRequestBuilders.post ("/cartitem")
+			.header (IdempotencyService.HEADER, "key")
+			.contentType (MediaType.APPLICATION_JSON)
+			.session (httpSession)
+			.content (json.writeValueAsString (body)))
+			
+			.andExpect (MockMvcResultMatchers.status ().isUnprocessableEntity ())
+			.andExpect (MockMvcResultMatchers.content ().json (json.writeValueAsString (new JsonResponse ("Error! Idempotency key was used for another request", false))));
+		
+		Mockito.verify (cartItemService, Mockito.never ()).createCartItem (Mockito.any ());
+	}
+	
 	@Test
 	void createCartItemWhenNotLoggedIn () throws Exception {
 		CreateCartItemBody body = new CreateCartItemBody ();
@@ -1,28 +1,49 @@
 package com.revature.project3backend.controllers;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.revature.project3backend.exceptions.CheckoutInProgressException;
 import com.revature.project3backend.exceptions.InvalidValueException;
+import com.revature.project3backend.exceptions.RequestInProgressException;
 import com.revature.project3backend.exceptions.UnauthorizedException;
 import com.revature.project3backend.jsonmodels.CreateCartItemBody;
 import com.revature.project3backend.jsonmodels.JsonResponse;
 import com.revature.project3backend.jsonmodels.UpdateCartItemBody;
 import com.revature.project3backend.models.CartItem;
+import com.revature.project3backend.models.IdempotencyRecord;
 import com.revature.project3backend.models.Product;
+import com.revature.project3backend.models.StockHold;
 import com.revature.project3backend.models.User;
 import com.revature.project3backend.models.UserRole;
 import com.revature.project3backend.repositories.CartItemRepo;
+import com.revature.project3backend.repositories.IdempotencyRecordRepo;
 import com.revature.project3backend.repositories.ProductRepo;
+import com.revature.project3backend.repositories.StockHoldRepo;
 import com.revature.project3backend.repositories.UserRepo;
+import com.revature.project3backend.search.PostgresProductSearch;
+import com.revature.project3backend.search.ProductCache;
+import com.revature.project3backend.search.ProductSearchCache;
+import com.revature.project3backend.search.ProductSearchIndex;
+import com.revature.project3backend.search.ProductSuggestions;
 import com.revature.project3backend.services.CartItemService;
+import com.revature.project3backend.services.CheckoutQueue;
+import com.revature.project3backend.services.HotStockService;
+import com.revature.project3backend.services.IdempotencyService;
 import com.revature.project3backend.services.ProductService;
+import com.revature.project3backend.services.StockHoldService;
 import com.revature.project3backend.services.UserService;
 import com.revature.project3backend.utils.FileUtil;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.AdditionalAnswers;
 import org.mockito.Mockito;
 import org.springframework.http.ResponseEntity;
 import org.springframework.mock.web.MockHttpSession;
 
+import javax.persistence.EntityManager;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -34,6 +55,18 @@ class  CartItemControllerTest {
     private final ProductRepo productRepo = Mockito.mock(ProductRepo.class);
     private final UserRepo userRepo = Mockito.mock(UserRepo.class);
     private final FileUtil fileUtil = Mockito.mock(FileUtil.class);
+    private final ProductSearchIndex productSearchIndex = Mockito.mock(ProductSearchIndex.class);
+    private final PostgresProductSearch postgresProductSearch = Mockito.mock(PostgresProductSearch.class);
+    private final ProductSearchCache productSearchCache = Mockito.mock(ProductSearchCache.class);
+    private final ProductSuggestions productSuggestions = Mockito.mock(ProductSuggestions.class);
+    private final ProductCache productCache = new ProductCache(productRepo, 1000, Duration.ofMinutes(1), new SimpleMeterRegistry());
+    private final EntityManager entityManager = Mockito.mock(EntityManager.class);
+    private final StockHoldRepo stockHoldRepo = Mockito.mock(StockHoldRepo.class);
+    private final HotStockService hotStockService = Mockito.mock(HotStockService.class);
+    private final StockHoldService stockHoldService = new StockHoldService(stockHoldRepo, productRepo, productCache, hotStockService, productSearchIndex, productSearchCache, Duration.ofMinutes(15));
+    private final IdempotencyRecordRepo idempotencyRecordRepo = Mockito.mock(IdempotencyRecordRepo.class);
+    private final IdempotencyService idempotencyService = new IdempotencyService(idempotencyRecordRepo, new ObjectMapper(), Duration.ofHours(24), Duration.ofMinutes(1), 100);
+    private final CheckoutQueue checkoutQueue = Mockito.mock(CheckoutQueue.class);
 
     private final CartItemService cartItemService;
     private final ProductService productService;
@@ -45,14 +78,17 @@ class  CartItemControllerTest {
     private final List<User> users = new ArrayList<>();
 
     public CartItemControllerTest() {
-        cartItemService = new CartItemService(cartItemRepo);
-        productService = new ProductService(productRepo, fileUtil);
-        userService = new UserService(userRepo, cartItemRepo);
-        cartItemController = new CartItemController(cartItemService, productService, userService);
+        cartItemService = new CartItemService(cartItemRepo, stockHoldService);
+        productService = new ProductService(productRepo, fileUtil, productSearchIndex, postgresProductSearch, productSearchCache, productSuggestions, productCache, stockHoldService, hotStockService, entityManager, new ObjectMapper());
+        userService = new UserService(userRepo, cartItemRepo, stockHoldService);
+        cartItemController = new CartItemController(cartItemService, productService, userService, idempotencyService, checkoutQueue);
     }
 
     @BeforeEach
     void setUp() {
+        Mockito.when(productRepo.reserveStock(Mockito.any(), Mockito.anyInt())).thenReturn(true);
+        Mockito.when(stockHoldRepo.save(Mockito.any())).then(AdditionalAnswers.returnsFirstArg());
+
         products.add (new Product(1, "Java I", "A beginner Java course", 10.00F, "", 8.00F, 5));
         products.add (new Product (2, "Java II", "An intermediate Java course", 20.00F, "", 18.00F, 5));
         products.add (new Product (3, "Python I", "A beginner Python course", 10.00F, "", 8.00F, 5));
@@ -69,7 +105,7 @@ class  CartItemControllerTest {
     }
 
 	@Test
-	void createCartItem() throws InvalidValueException, UnauthorizedException {
+	void createCartItem() throws InvalidValueException, UnauthorizedException, RequestInProgressException, CheckoutInProgressException {
 		CreateCartItemBody body = new CreateCartItemBody();
 
 		body.setProductId(2);    // Java II
@@ -79,7 +115,7 @@ class  CartItemControllerTest {
 
 		httpSession.setAttribute("user", users.get(1)); // User 2
 
-		Mockito.when(productRepo.findById(2)).thenReturn(java.util.Optional.of(products.get(1)));   // Java II
+		Mockito.when(productRepo.findUncachedById(2)).thenReturn(java.util.Optional.of(products.get(1)));   // Java II
 
 		List<CartItem> newCart = new ArrayList<>();
 
@@ -87,13 +123,105 @@ class  CartItemControllerTest {
 
 		newCart.add(cartItem);
 
-		assertEquals(ResponseEntity.ok(new JsonResponse("Added to cart", true)), cartItemController.createCartItem(body, httpSession));
+		assertEquals(ResponseEntity.ok(new JsonResponse("Added to cart", true)), cartItemController.createCartItem(body, null, httpSession));
 		assertEquals(newCart, users.get(1).getCart());
 
 		Mockito.verify(cartItemRepo).save(cartItem);
+		Mockito.verify(productRepo).reserveStock(2, 2);
+		Mockito.verify(stockHoldRepo).save(Mockito.any());
 		Mockito.verify(userRepo).save(users.get(1));
 	}
 
+	@Test
+	void createCartItemWhenStockIsHeld() {
+		CreateCartItemBody body = new CreateCartItemBody();
+
+		body.setProductId(2);    // Java II
+		body.setQuantity(2);
+
+		MockHttpSession httpSession = new MockHttpSession();
+
+		httpSession.setAttribute("user", users.get(1)); // User 2
+
+		Mockito.when(productRepo.findUncachedById(2)).thenReturn(java.util.Optional.of(products.get(1)));   // Java II
+		Mockito.when(productRepo.reserveStock(2, 2)).thenReturn(false);   // held for other carts since the product was read
+
+		InvalidValueException exception = assertThrows(InvalidValueException.class, () -> cartItemController.createCartItem(body, null, httpSession));
+
+		assertEquals("Error! Invalid quantity", exception.getMessage());
+		assertEquals(new ArrayList<>(), users.get(1).getCart());
+
+		Mockito.verify(stockHoldRepo, Mockito.never()).save(Mockito.any());
+		Mockito.verify(userRepo, Mockito.never()).save(Mockito.any());
+	}
+
+	@Test
+	void createCartItemWithIdempotencyKey() throws InvalidValueException, UnauthorizedException, RequestInProgressException, CheckoutInProgressException {
+		CreateCartItemBody body = new CreateCartItemBody();
+
+		body.setProductId(2);    // Java II
+		body.setQuantity(2);
+
+		MockHttpSession httpSession = new MockHttpSession();
+
+		httpSession.setAttribute("user", users.get(1)); // User 2
+
+		IdempotencyRecord record = new IdempotencyRecord(2, "key", "POST /cartitem", idempotencyService.hash(body), Instant.now());
+
+		Mockito.when(productRepo.findUncachedById(2)).thenReturn(java.util.Optional.of(products.get(1)));   // Java II
+		Mockito.when(idempotencyRecordRepo.findByUserIdAndIdempotencyKey(2, "key")).thenReturn(java.util.Optional.empty(), java.util.Optional.of(record));
+		Mockito.when(idempotencyRecordRepo.save(record)).thenReturn(record);
+
+		assertEquals(ResponseEntity.ok(new JsonResponse("Added to cart", true)), cartItemController.createCartItem(body, "key", httpSession));
+		assertEquals(200, record.getStatus());
+
+		Mockito.verify(idempotencyRecordRepo).saveAndFlush(Mockito.any());
+		Mockito.verify(cartItemRepo).save(Mockito.any());
+	}
+
+	@Test
+	void createCartItemWhenRetried() throws InvalidValueException, UnauthorizedException, RequestInProgressException, CheckoutInProgressException {
+		CreateCartItemBody body = new CreateCartItemBody();
+
+		body.setProductId(2);    // Java II
+		body.setQuantity(2);
+
+		MockHttpSession httpSession = new MockHttpSession();
+
+		httpSession.setAttribute("user", users.get(1)); // User 2
+
+		Mockito.when(idempotencyRecordRepo.findByUserIdAndIdempotencyKey(2, "key")).thenReturn(java.util.Optional.of(new IdempotencyRecord(1, 2, "key", "POST /cartitem", idempotencyService.hash(body), 200, null, "{\"message\":\"Added to cart\",\"success\":true}", Instant.now(), Instant.now())));
+
+		ResponseEntity<JsonResponse> response = cartItemController.createCartItem(body, "key", httpSession);
+
+		assertEquals(new JsonResponse("Added to cart", true), response.getBody());
+		assertEquals("true", response.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+
+		Mockito.verify(cartItemRepo, Mockito.never()).save(Mockito.any());
+		Mockito.verify(userRepo, Mockito.never()).save(Mockito.any());
+	}
+
+	@Test
+	void createCartItemWhileCheckingOut() {
+		CreateCartItemBody body = new CreateCartItemBody();
+
+		body.setProductId(2);    // Java II
+		body.setQuantity(2);
+
+		MockHttpSession httpSession = new MockHttpSession();
+
+		httpSession.setAttribute("user", users.get(1)); // User 2
+
+		Mockito.when(checkoutQueue.settle(users.get(1))).thenReturn(true);
+
+		CheckoutInProgressException exception = assertThrows(CheckoutInProgressException.class, () -> cartItemController.createCartItem(body, "key", httpSession));
+
+		assertEquals("Error! Checkout in progress", exception.getMessage());
+		assertEquals(new ArrayList<>(), users.get(1).getCart());
+
+		Mockito.verify(cartItemRepo, Mockito.never()).save(Mockito.any());
+	}
+
 	@Test
 	void createCartItemWhenNotLoggedIn() {
 		CreateCartItemBody body = new CreateCartItemBody();
@@ -103,11 +231,11 @@ class  CartItemControllerTest {
 
 		MockHttpSession httpSession = new MockHttpSession();
 
-		UnauthorizedException exception = assertThrows(UnauthorizedException.class, () -> cartItemController.createCartItem(body, httpSession));
+		UnauthorizedException exception = assertThrows(UnauthorizedException.class, () -> cartItemController.createCartItem(body, null, httpSession));
 
 		assertEquals("Error! Unauthorized", exception.getMessage());
 
-		Mockito.verify(productRepo, Mockito.never()).findById(Mockito.any());
+		Mockito.verify(productRepo, Mockito.never()).findUncachedById(Mockito.any());
 		Mockito.verify(cartItemRepo, Mockito.never()).save(Mockito.any());
 		Mockito.verify(userRepo, Mockito.never()).save(Mockito.any());
 	}
@@ -123,11 +251,11 @@ class  CartItemControllerTest {
 
 		httpSession.setAttribute("user", users.get(2));
 
-		InvalidValueException exception = assertThrows(InvalidValueException.class, () -> cartItemController.createCartItem(body, httpSession));
+		InvalidValueException exception = assertThrows(InvalidValueException.class, () -> cartItemController.createCartItem(body, null, httpSession));
 
 		assertEquals("Error! Invalid product id", exception.getMessage());
 
-		Mockito.verify(productRepo, Mockito.never()).findById(Mockito.any());
+		Mockito.verify(productRepo, Mockito.never()).findUncachedById(Mockito.any());
 		Mockito.verify(cartItemRepo, Mockito.never()).save(Mockito.any());
 		Mockito.verify(userRepo, Mockito.never()).save(Mockito.any());
 	}
@@ -143,11 +271,11 @@ class  CartItemControllerTest {
 
 		httpSession.setAttribute("user", users.get(0));
 
-		InvalidValueException exception = assertThrows(InvalidValueException.class, () -> cartItemController.createCartItem(body, httpSession));
+		InvalidValueException exception = assertThrows(InvalidValueException.class, () -> cartItemController.createCartItem(body, null, httpSession));
 
 		assertEquals("Error! Invalid quantity", exception.getMessage());
 
-		Mockito.verify(productRepo, Mockito.never()).findById(Mockito.any());
+		Mockito.verify(productRepo, Mockito.never()).findUncachedById(Mockito.any());
 		Mockito.verify(cartItemRepo, Mockito.never()).save(Mockito.any());
 		Mockito.verify(userRepo, Mockito.never()).save(Mockito.any());
 	}
@@ -163,11 +291,11 @@ class  CartItemControllerTest {
 
 		httpSession.setAttribute("user", users.get(0));
 
-		InvalidValueException exception = assertThrows(InvalidValueException.class, () -> cartItemController.createCartItem(body, httpSession));
+		InvalidValueException exception = assertThrows(InvalidValueException.class, () -> cartItemController.createCartItem(body, null, httpSession));
 
 		assertEquals("Error! Invalid quantity", exception.getMessage());
 
-		Mockito.verify(productRepo, Mockito.never()).findById(Mockito.any());
+		Mockito.verify(productRepo, Mockito.never()).findUncachedById(Mockito.any());
 		Mockito.verify(cartItemRepo, Mockito.never()).save(Mockito.any());
 		Mockito.verify(userRepo, Mockito.never()).save(Mockito.any());
 	}
@@ -190,11 +318,11 @@ class  CartItemControllerTest {
 
 		users.get(1).setCart(cartItems);    // Set user 2's cart to contain existing items (just the Java II course)
 
-		InvalidValueException exception = assertThrows(InvalidValueException.class, () -> cartItemController.createCartItem(body, httpSession));
+		InvalidValueException exception = assertThrows(InvalidValueException.class, () -> cartItemController.createCartItem(body, null, httpSession));
 
 		assertEquals("Error! Invalid product id", exception.getMessage());
 
-		Mockito.verify(productRepo, Mockito.never()).findById(Mockito.any());
+		Mockito.verify(productRepo, Mockito.never()).findUncachedById(Mockito.any());
 		Mockito.verify(cartItemRepo, Mockito.never()).save(Mockito.any());
 		Mockito.verify(userRepo, Mockito.never()).save(Mockito.any());
 	}
@@ -217,9 +345,9 @@ class  CartItemControllerTest {
 
 		users.get(1).setCart(cartItems);
 
-		Mockito.when(productRepo.findById(4)).thenReturn(java.util.Optional.of(products.get(3)));   // Python II
+		Mockito.when(productRepo.findUncachedById(4)).thenReturn(java.util.Optional.of(products.get(3)));   // Python II
 
-		InvalidValueException exception = assertThrows(InvalidValueException.class, () -> cartItemController.createCartItem(body, httpSession));
+		InvalidValueException exception = assertThrows(InvalidValueException.class, () -> cartItemController.createCartItem(body, null, httpSession));
 
 		assertEquals("Error! Invalid quantity", exception.getMessage());
 
@@ -256,7 +384,7 @@ class  CartItemControllerTest {
 	}
 
 	@Test
-	void updateCartItem() throws InvalidValueException, UnauthorizedException {
+	void updateCartItem() throws InvalidValueException, UnauthorizedException, CheckoutInProgressException {
 		int cartItemId = 2;
 		int quantity = 4;
 
@@ -335,6 +463,32 @@ class  CartItemControllerTest {
 		Mockito.verify(cartItemRepo, Mockito.never()).save(Mockito.any());
 	}
 
+	@Test
+	void updateCartItemWhenStockIsHeld() {
+		MockHttpSession httpSession = new MockHttpSession();
+
+		httpSession.setAttribute("user", users.get(0)); // User 1
+
+		UpdateCartItemBody body = new UpdateCartItemBody();
+
+		body.setQuantity(5);
+
+		// pre-populate cart for user 1
+		List<CartItem> cart = new ArrayList<>();
+		cart.add(new CartItem(1, users.get(0), products.get(1), 2)); // pre-populate with existing item Java II
+		cart.add(new CartItem(2, users.get(0), products.get(2), 3)); // pre-populate with existing item Python I
+		users.get(0).setCart(cart);    // User 1
+
+		Mockito.when(cartItemRepo.findById(2)).thenReturn(java.util.Optional.of(cart.get(1)));
+		Mockito.when(stockHoldRepo.findByCartItemId(2)).thenReturn(java.util.Optional.of(new StockHold(1, 2, 3, 3, Instant.now())));
+		Mockito.when(productRepo.reserveStock(3, 2)).thenReturn(false);   // the 2 more than are held are held for other carts
+
+		InvalidValueException exception = assertThrows(InvalidValueException.class, () -> cartItemController.updateCartItem(2, body, httpSession));
+		assertEquals("Error! Invalid quantity", exception.getMessage());
+		assertEquals(3, cart.get(1).getQuantity());
+		Mockito.verify(cartItemRepo, Mockito.never()).save(Mockito.any());
+	}
+
 	@Test
 	void updateCartItemWhenItemIsNotInCart() {
 		MockHttpSession httpSession = new MockHttpSession();
@@ -362,7 +516,23 @@ class  CartItemControllerTest {
 	}
 
 	@Test
-	void deleteCartItem() throws InvalidValueException, UnauthorizedException {
+	void deleteCartItemWhileCheckingOut() {
+		MockHttpSession httpSession = new MockHttpSession();
+
+		httpSession.setAttribute("user", users.get(0)); // User 1
+
+		users.get(0).getCart().add(new CartItem(1, users.get(0), products.get(1), 2));
+
+		Mockito.when(checkoutQueue.settle(users.get(0))).thenReturn(true);
+
+		assertThrows(CheckoutInProgressException.class, () -> cartItemController.deleteCartItem(1, httpSession));
+		assertEquals(1, users.get(0).getCart().size());
+
+		Mockito.verify(cartItemRepo, Mockito.never()).delete(Mockito.any());
+	}
+
+	@Test
+	void deleteCartItem() throws InvalidValueException, UnauthorizedException, CheckoutInProgressException {
 		MockHttpSession httpSession = new MockHttpSession();
 
 		httpSession.setAttribute("user", users.get(0)); // User 1
@@ -385,6 +555,7 @@ class  CartItemControllerTest {
 
 		assertEquals(expectedResult, users.get(0).getCart());
 
+		Mockito.verify(stockHoldRepo).findByCartItemId(2);
 		Mockito.verify(cartItemRepo).delete(cartItemToDelete);    // Verify Python I course had .delete() method called on it
 		Mockito.verify(userRepo).save(users.get(0));
 	}
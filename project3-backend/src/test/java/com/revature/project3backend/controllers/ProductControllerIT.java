@@ -3,27 +3,40 @@ package com.revature.project3backend.controllers;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.revature.project3backend.exceptions.InvalidValueException;
+import com.revature.project3backend.exceptions.StaleProductException;
 import com.revature.project3backend.exceptions.UnauthorizedException;
 import com.revature.project3backend.jsonmodels.CreateSessionBody;
 import com.revature.project3backend.jsonmodels.JsonResponse;
+import com.revature.project3backend.jsonmodels.ProductBatch;
+import com.revature.project3backend.jsonmodels.ProductListing;
+import com.revature.project3backend.modeldtos.ProductVersion;
 import com.revature.project3backend.models.*;
+import com.revature.project3backend.search.ProductFilter;
+import com.revature.project3backend.search.ProductSort;
 import com.revature.project3backend.services.ProductService;
+import com.revature.project3backend.utils.ProductExportFormat;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.mock.web.MockHttpSession;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.RequestBuilder;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.OutputStream;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -43,36 +56,105 @@ public class ProductControllerIT {
 	
 	@Test
 	void getProducts () throws Exception {
-		List <Product> products = new ArrayList <> ();
+		List <ProductListing> products = new ArrayList <> ();
 		
-		products.add (new Product (1, "roomba", "description", 12.88f, "https://i.pcmag.com/imagery/reviews/01hmxcWyN13h1LfMglNxHGC-1.fit_scale.size_1028x578.v1589573902.jpg", 12.00f, 10));
-		products.add (new Product (2, "roomba", "description", 12.88f, "https://i.pcmag.com/imagery/reviews/01hmxcWyN13h1LfMglNxHGC-1.fit_scale.size_1028x578.v1589573902.jpg", 12.00f, 10));
+		products.add (new ProductListing (1, "roomba", "description", 12.88f, "https://i.pcmag.com/imagery/reviews/01hmxcWyN13h1LfMglNxHGC-1.fit_scale.size_1028x578.v1589573902.jpg", 12.00f, 10));
+		products.add (new ProductListing (2, "roomba", "description", 12.88f, "https://i.pcmag.com/imagery/reviews/01hmxcWyN13h1LfMglNxHGC-1.fit_scale.size_1028x578.v1589573902.jpg", 12.00f, 10));
 		
 		String searchQuery = "roomba";
 		int page = 0;
 		
-		Mockito.when (productService.getProducts (searchQuery, page)).thenReturn (products);
+		Mockito.when (productService.getProducts (searchQuery, page, ProductSort.NAME, ProductFilter.NONE)).thenReturn (new SliceImpl <> (products, PageRequest.of (page, 20), false));
+		
+		JsonResponse expected = new JsonResponse ("Got " + products.size () + " products", true, products);
+		
+		expected.setHasNext (false);
 		
 		mvc.perform (MockMvcRequestBuilders.get ("/product?searchQuery=" + searchQuery + "&page=" + page))
 			.andExpect (MockMvcResultMatchers.status ().isOk ())
-			.andExpect (MockMvcResultMatchers.content ().json (json.writeValueAsString (new JsonResponse ("Got " + products.size () + " products", true, products))));
+			.andExpect (MockMvcResultMatchers.content ().json (json.writeValueAsString (expected)))
+			.andExpect (MockMvcResultMatchers.jsonPath ("$.total").doesNotExist ());
 		
-		Mockito.verify (productService).getProducts (searchQuery, page);
+		Mockito.verify (productService).getProducts (searchQuery, page, ProductSort.NAME, ProductFilter.NONE);
 	}
 	
 	@Test
 	void getProduct () throws Exception {
 		Product product = new Product (1, "roomba", "description", 12.88f, "https://i.pcmag.com/imagery/reviews/01hmxcWyN13h1LfMglNxHGC-1.fit_scale.size_1028x578.v1589573902.jpg", 12.00f, 10);
 		
+		product.setVersion (3L);
+		product.setLastModified (Instant.ofEpochSecond (1000));
+		
+		Mockito.when (productService.getProductVersion (product.getId ())).thenReturn (ProductVersion.of (product));
 		Mockito.when (productService.getProduct (product.getId ())).thenReturn (product);
 		
 		mvc.perform (MockMvcRequestBuilders.get ("/product/" + product.getId ()))
 			.andExpect (MockMvcResultMatchers.status ().isOk ())
+			.andExpect (MockMvcResultMatchers.header ().string ("ETag", "\"1-3\""))
+			.andExpect (MockMvcResultMatchers.header ().dateValue ("Last-Modified", 1000000))
 			.andExpect (MockMvcResultMatchers.content ().json (json.writeValueAsString (new JsonResponse ("Got product", true, product))));
 		
 		Mockito.verify (productService).getProduct (product.getId ());
 	}
 	
+	@Test
+	void getProductWhenNotModified () throws Exception {
+		Mockito.when (productService.getProductVersion (1)).thenReturn (new ProductVersion (1, 3L, Instant.ofEpochSecond (1000)));
+		
+		mvc.perform (MockMvcRequestBuilders.get ("/product/1").header ("If-None-Match", "\"1-3\""))
+			.andExpect (MockMvcResultMatchers.status ().isNotModified ())
+			.andExpect (MockMvcResultMatchers.header ().string ("ETag", "\"1-3\""))
+			.andExpect (MockMvcResultMatchers.content ().string (""));
+		
+		mvc.perform (MockMvcRequestBuilders.get ("/product/1").header ("If-Modified-Since", "Thu, 01 Jan 1970 00:16:40 GMT"))
+			.andExpect (MockMvcResultMatchers.status ().isNotModified ());
+		
+		Mockito.verify (productService, Mockito.never ()).getProduct (Mockito.any ());
+	}
+	
+	@Test
+	void getProductsById () throws Exception {
+		Product product = new Product (1, "roomba", "description", 12.88f, "", 12.00f, 10);
+		ProductBatch batch = new ProductBatch (Arrays.asList (product), Arrays.asList (2));
+		
+		Mockito.when (productService.getProductsById (Arrays.asList (1, 2))).thenReturn (batch);
+		
+		mvc.perform (MockMvcRequestBuilders.get ("/product?ids=1,2"))
+			.andExpect (MockMvcResultMatchers.status ().isOk ())
+			.andExpect (MockMvcResultMatchers.content ().json (json.writeValueAsString (new JsonResponse ("Got 1 products", true, batch))));
+	}
+	
+	@Test
+	void exportProducts () throws Exception {
+		User user = new User (1, "john", "doe", "jdoe@mail.com", "jdoe1", "pass123", new ArrayList <> (), new ArrayList <> (), new UserRole (2, "ADMIN"));
+		
+		Mockito.when (session.getAttribute ("user")).thenReturn (user);
+		Mockito.doAnswer (invocation -> {
+			invocation.getArgument (1, OutputStream.class).write ("{\"id\":1}\n".getBytes ());
+			
+			return null;
+		}).when (productService).exportProducts (Mockito.eq (ProductExportFormat.NDJSON), Mockito.any ());
+		
+		MvcResult result = mvc.perform (MockMvcRequestBuilders.get ("/product/export").session (session))
+			.andExpect (MockMvcResultMatchers.request ().asyncStarted ())
+			.andReturn ();
+		
+		mvc.perform (MockMvcRequestBuilders.asyncDispatch (result))
+			.andExpect (MockMvcResultMatchers.status ().isOk ())
+			.andExpect (MockMvcResultMatchers.header ().string ("Content-Type", "application/x-ndjson"))
+			.andExpect (MockMvcResultMatchers.content ().string ("{\"id\":1}\n"));
+	}
+	
+	@Test
+	void exportProductsWhenNotLoggedIn () throws Exception {
+		Mockito.when (session.getAttribute ("user")).thenReturn (null);
+		
+		mvc.perform (MockMvcRequestBuilders.get ("/product/export").session (session))
+			.andExpect (MockMvcResultMatchers.status ().isUnauthorized ());
+		
+		Mockito.verify (productService, Mockito.never ()).exportProducts (Mockito.any (), Mockito.any ());
+	}
+	
 	@Test
 	void updateProductWhenNotLoggedIn () throws Exception {
 		MultipartFile file = null;
@@ -90,6 +172,7 @@ public class ProductControllerIT {
 			.param("description", product.getDescription())
 			.param("price", product.getPrice().toString())
 			.param("stock", product.getStock().toString())
+			.param("version", "0")
 			.contentType(MediaType.MULTIPART_FORM_DATA)
 			.session (session);
 		
@@ -123,6 +206,7 @@ public class ProductControllerIT {
 			.param("description", product.getDescription())
 			.param("price", product.getPrice().toString())
 			.param("stock", product.getStock().toString())
+			.param("version", "0")
 			.contentType(MediaType.MULTIPART_FORM_DATA)
 			.session (session);
 		
@@ -155,6 +239,7 @@ public class ProductControllerIT {
 			.param("description", product.getDescription())
 			.param("price", product.getPrice().toString())
 			.param("stock", product.getStock().toString())
+			.param("version", "0")
 			.contentType(MediaType.MULTIPART_FORM_DATA)
 			.session (session);
 		
@@ -169,6 +254,7 @@ public class ProductControllerIT {
 	void updateProduct () throws Exception {
 		MultipartFile file = null;
 		Product product = new Product(1, "Dog Tricks", "Teach your dog new tricks.", (float) 1.15, null, 13);
+		product.setVersion (0L);
 		
 		Mockito.when(this.productService.updateProduct(product, file)).thenReturn(product);
 		
@@ -187,6 +273,7 @@ public class ProductControllerIT {
 			.param("description", product.getDescription())
 			.param("price", product.getPrice().toString())
 			.param("stock", product.getStock().toString())
+			.param("version", "0")
 			.contentType(MediaType.MULTIPART_FORM_DATA)
 			.session (session);
 		
@@ -198,6 +285,31 @@ public class ProductControllerIT {
 		//todo test ResponseEntity
 	}
 	
+	@Test
+	void updateProductWhenItHasChanged () throws Exception {
+		Product product = new Product (1, "Dog Tricks", "Teach your dog new tricks.", (float) 1.15, null, 13);
+		product.setVersion (0L);
+		
+		Mockito.when (this.productService.updateProduct (product, null)).thenThrow (new StaleProductException ());
+		
+		User user = new User (1, "john", "doe", "jdoe@mail.com", "jdoe1", "pass123", new ArrayList <> (), new ArrayList <> (), new UserRole (1, "ADMIN"));
+		Mockito.when (session.getAttribute ("user")).thenReturn (user);
+		
+		RequestBuilder request = MockMvcRequestBuilders
+			.patch ("/product")
+			.param ("id", product.getId ().toString ())
+			.param ("name", product.getName ())
+			.param ("description", product.getDescription ())
+			.param ("price", product.getPrice ().toString ())
+			.param ("stock", product.getStock ().toString ())
+			.param ("version", "0")
+			.contentType (MediaType.MULTIPART_FORM_DATA)
+			.session (session);
+		
+		mvc.perform (request).andExpect (MockMvcResultMatchers.status ().isConflict ())
+			.andExpect (MockMvcResultMatchers.content ().json (new ObjectMapper ().writeValueAsString (new JsonResponse (new StaleProductException ()))));
+	}
+	
 	@Test
 	void createProductWhenNotLoggedIn () throws Exception {
 		MultipartFile file = null;
@@ -314,6 +426,7 @@ public class ProductControllerIT {
 			.param("price", product.getPrice().toString())
 			.param("stock", product.getStock().toString())
 			.param("salePrice", (product.getPrice() + 10) + "")
+			.param("version", "0")
 			.contentType(MediaType.MULTIPART_FORM_DATA)
 			.session (session);
 		
@@ -1,23 +1,49 @@
 package com.revature.project3backend.controllers;
 
 import com.revature.project3backend.exceptions.InvalidValueException;
+import com.revature.project3backend.exceptions.StaleProductException;
 import com.revature.project3backend.exceptions.UnauthorizedException;
 import com.revature.project3backend.jsonmodels.JsonResponse;
+import com.revature.project3backend.jsonmodels.ProductListing;
+import com.revature.project3backend.jsonmodels.PriceFacet;
+import com.revature.project3backend.jsonmodels.ProductBatch;
+import com.revature.project3backend.jsonmodels.ProductFacets;
+import com.revature.project3backend.jsonmodels.ProductSuggestion;
+import com.revature.project3backend.modeldtos.ProductVersion;
 import com.revature.project3backend.models.Product;
 import com.revature.project3backend.models.User;
 import com.revature.project3backend.models.UserRole;
+import com.revature.project3backend.search.FacetedPage;
+import com.revature.project3backend.search.ProductCursor;
+import com.revature.project3backend.search.ProductFilter;
+import com.revature.project3backend.search.ProductSort;
 import com.revature.project3backend.services.ProductService;
+import com.revature.project3backend.utils.ProductExportFormat;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.mock.web.MockHttpSession;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.servlet.http.HttpSession;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 class ProductControllerTest {
@@ -31,50 +57,218 @@ class ProductControllerTest {
 	
 	@Test
 	void getProducts () throws InvalidValueException {
-		List <Product> products = new ArrayList <> ();
+		List <ProductListing> products = new ArrayList <> ();
 		
-		products.add (new Product (1, "roomba", "description", 12.88f, "https://i.pcmag.com/imagery/reviews/01hmxcWyN13h1LfMglNxHGC-1.fit_scale.size_1028x578.v1589573902.jpg", 12.00f, 10));
-		products.add (new Product (2, "roomba", "description", 12.88f, "https://i.pcmag.com/imagery/reviews/01hmxcWyN13h1LfMglNxHGC-1.fit_scale.size_1028x578.v1589573902.jpg", 12.00f, 10));
+		products.add (new ProductListing (1, "roomba", "description", 12.88f, "https://i.pcmag.com/imagery/reviews/01hmxcWyN13h1LfMglNxHGC-1.fit_scale.size_1028x578.v1589573902.jpg", 12.00f, 10));
+		products.add (new ProductListing (2, "roomba", "description", 12.88f, "https://i.pcmag.com/imagery/reviews/01hmxcWyN13h1LfMglNxHGC-1.fit_scale.size_1028x578.v1589573902.jpg", 12.00f, 10));
 		
 		String query = "";
 		int page = 0;
 		
-		Mockito.when (productService.getProducts (query, page)).thenReturn (products);
+		Mockito.when (productService.getProducts (query, page, ProductSort.NAME, ProductFilter.NONE)).thenReturn (new SliceImpl <> (products, PageRequest.of (page, 20), true));
 		
-		assertEquals (ResponseEntity.ok (new JsonResponse ("Got " + products.size () + " products", true, products)), productController.getProducts (query, page));
+		JsonResponse expected = new JsonResponse ("Got " + products.size () + " products", true, products);
 		
-		Mockito.verify (productService).getProducts (query, page);
+		expected.setHasNext (true);
+		
+		assertEquals (ResponseEntity.ok (expected), productController.getProducts (query, page, "name", null, null, false, false));
+		
+		Mockito.verify (productService).getProducts (query, page, ProductSort.NAME, ProductFilter.NONE);
+	}
+	
+	@Test
+	void getProductsWithTotal () throws InvalidValueException {
+		List <ProductListing> products = new ArrayList <> ();
+		
+		products.add (new ProductListing (1, "roomba", "description", 12.88f, "", 12.00f, 10));
+		
+		Mockito.when (productService.getProducts ("", 1, ProductSort.NAME, ProductFilter.NONE)).thenReturn (new PageImpl <> (products, PageRequest.of (1, 20), 21));
+		
+		JsonResponse expected = new JsonResponse ("Got " + products.size () + " products", true, products);
+		
+		expected.setHasNext (false);
+		expected.setTotal (21L);
+		
+		assertEquals (ResponseEntity.ok (expected), productController.getProducts ("", 1, "name", null, null, false, false));
+	}
+	
+	@Test
+	void getProductsWithFilter () throws InvalidValueException {
+		List <ProductListing> products = new ArrayList <> ();
+		
+		products.add (new ProductListing (1, "roomba", "description", 12.88f, "", 12.00f, 10));
+		
+		ProductFilter filter = new ProductFilter (10.00f, 20.00f, true, true);
+		ProductFacets facets = new ProductFacets (1, 1, Arrays.asList (new PriceFacet (10.00f, 25.00f, 1)));
+		
+		Mockito.when (productService.getProducts ("roomba", 0, ProductSort.NAME, filter)).thenReturn (new FacetedPage (products, PageRequest.of (0, 20), 1, facets));
+		
+		JsonResponse expected = new JsonResponse ("Got " + products.size () + " products", true, products);
+		
+		expected.setHasNext (false);
+		expected.setTotal (1L);
+		expected.setFacets (facets);
+		
+		assertEquals (ResponseEntity.ok (expected), productController.getProducts ("roomba", 0, "name", 10.00f, 20.00f, true, true));
+	}
+	
+	@Test
+	void getProductsWhenPriceRangeIsInvalid () {
+		InvalidValueException exception = assertThrows (InvalidValueException.class, () -> productController.getProducts ("", 0, "name", 20.00f, 10.00f, false, false));
+		
+		assertEquals ("Error! Invalid price range", exception.getMessage ());
+		
+		exception = assertThrows (InvalidValueException.class, () -> productController.getProducts ("", 0, "name", -1.00f, null, false, false));
+		
+		assertEquals ("Error! Invalid price range", exception.getMessage ());
+		
+		Mockito.verify (productService, Mockito.never ()).getProducts (Mockito.any (), Mockito.any (), Mockito.any (), Mockito.any ());
 	}
 	
 	@Test
 	void getProductsWhenSearchQueryIsNull () throws InvalidValueException {
-		InvalidValueException exception = assertThrows (InvalidValueException.class, () -> this.productController.getProducts (null, 1));
+		InvalidValueException exception = assertThrows (InvalidValueException.class, () -> this.productController.getProducts (null, 1, "name", null, null, false, false));
 		
 		assertEquals ("Error! Invalid search query", exception.getMessage ());
 		
-		Mockito.verify (productService, Mockito.never ()).getProducts (Mockito.any (), Mockito.any ());
+		Mockito.verify (productService, Mockito.never ()).getProducts (Mockito.any (), Mockito.any (), Mockito.any (), Mockito.any ());
 	}
 	
 	@Test
 	void getProductsWhenPageIsNull () {
-		InvalidValueException exception = assertThrows (InvalidValueException.class, () -> productController.getProducts ("", null));
+		InvalidValueException exception = assertThrows (InvalidValueException.class, () -> productController.getProducts ("", null, "name", null, null, false, false));
 		
 		assertEquals ("Error! Invalid page", exception.getMessage ());
 		
-		Mockito.verify (productService, Mockito.never ()).getProducts (Mockito.any (), Mockito.any ());
+		Mockito.verify (productService, Mockito.never ()).getProducts (Mockito.any (), Mockito.any (), Mockito.any (), Mockito.any ());
+	}
+	
+	@Test
+	void getProductsWhenSortIsInvalid () {
+		InvalidValueException exception = assertThrows (InvalidValueException.class, () -> productController.getProducts ("", 0, "price", null, null, false, false));
+		
+		assertEquals ("Error! Invalid sort", exception.getMessage ());
+		
+		Mockito.verify (productService, Mockito.never ()).getProducts (Mockito.any (), Mockito.any (), Mockito.any (), Mockito.any ());
+	}
+	
+	@Test
+	void getProductsAfterCursor () throws InvalidValueException {
+		List <ProductListing> products = new ArrayList <> ();
+		
+		products.add (new ProductListing (1, "roomba", "description", 12.88f, "", 12.00f, 10));
+		products.add (new ProductListing (2, "roomba", "description", 12.88f, "", 12.00f, 10));
+		
+		ProductCursor cursor = new ProductCursor ("roomba", 0);
+		
+		Mockito.when (productService.getProductsAfter ("", cursor)).thenReturn (new SliceImpl <> (products, PageRequest.of (0, 20), true));
+		
+		JsonResponse expected = new JsonResponse ("Got " + products.size () + " products", true, products);
+		
+		expected.setHasNext (true);
+		expected.setNextCursor (new ProductCursor ("roomba", 2).encode ());
+		
+		assertEquals (ResponseEntity.ok (expected), productController.getProductsAfterCursor ("", cursor.encode ()));
+	}
+	
+	@Test
+	void getProductsAfterCursorOnLastPage () throws InvalidValueException {
+		List <ProductListing> products = new ArrayList <> ();
+		
+		products.add (new ProductListing (1, "roomba", "description", 12.88f, "", 12.00f, 10));
+		
+		Mockito.when (productService.getProductsAfter ("", null)).thenReturn (new SliceImpl <> (products, PageRequest.of (0, 20), false));
+		
+		JsonResponse expected = new JsonResponse ("Got " + products.size () + " products", true, products);
+		
+		expected.setHasNext (false);
+		
+		assertEquals (ResponseEntity.ok (expected), productController.getProductsAfterCursor ("", ""));
+	}
+	
+	@Test
+	void getProductsAfterCursorWhenCursorIsInvalid () {
+		InvalidValueException exception = assertThrows (InvalidValueException.class, () -> productController.getProductsAfterCursor ("", "not a cursor"));
+		
+		assertEquals ("Error! Invalid cursor", exception.getMessage ());
+		
+		Mockito.verify (productService, Mockito.never ()).getProductsAfter (Mockito.any (), Mockito.any ());
+	}
+	
+	@Test
+	void getSuggestions () throws InvalidValueException {
+		List <ProductSuggestion> suggestions = new ArrayList <> ();
+		
+		suggestions.add (new ProductSuggestion (1, "roomba"));
+		
+		Mockito.when (productService.getSuggestions ("roo", 10)).thenReturn (suggestions);
+		
+		assertEquals (ResponseEntity.ok (new JsonResponse ("Got 1 suggestions", true, suggestions)), productController.getSuggestions ("roo", 10));
 	}
 	
 	@Test
 	void getProduct () throws InvalidValueException {
 		Product product = new Product (1, "roomba", "description", 12.88f, "https://i.pcmag.com/imagery/reviews/01hmxcWyN13h1LfMglNxHGC-1.fit_scale.size_1028x578.v1589573902.jpg", 12.00f, 10);
 		
+		product.setVersion (3L);
+		product.setLastModified (Instant.ofEpochSecond (1000));
+		
+		Mockito.when (productService.getProductVersion (product.getId ())).thenReturn (ProductVersion.of (product));
 		Mockito.when (productService.getProduct (product.getId ())).thenReturn (product);
 		
-		assertEquals (ResponseEntity.ok (new JsonResponse ("Got product", true, product)), productController.getProduct (product.getId ()));
+		ResponseEntity <JsonResponse> response = productController.getProduct (product.getId (), new ServletWebRequest (new MockHttpServletRequest ("GET", "/product/1"), new MockHttpServletResponse ()));
+		
+		assertEquals (new JsonResponse ("Got product", true, product), response.getBody ());
+		assertEquals ("\"1-3\"", response.getHeaders ().getETag ());
+		assertEquals (1000000, response.getHeaders ().getLastModified ());
+		assertEquals ("no-cache", response.getHeaders ().getCacheControl ());
 		
 		Mockito.verify (productService).getProduct (product.getId ());
 	}
 	
+	@Test
+	void getProductWhenNotModified () throws InvalidValueException {
+		MockHttpServletRequest request = new MockHttpServletRequest ("GET", "/product/1");
+		MockHttpServletResponse response = new MockHttpServletResponse ();
+		
+		request.addHeader ("If-None-Match", "\"1-3\"");
+		
+		Mockito.when (productService.getProductVersion (1)).thenReturn (new ProductVersion (1, 3L, Instant.ofEpochSecond (1000)));
+		
+		assertNull (productController.getProduct (1, new ServletWebRequest (request, response)));
+		assertEquals (304, response.getStatus ());
+		
+		Mockito.verify (productService, Mockito.never ()).getProduct (Mockito.any ());
+	}
+	
+	@Test
+	void getProductWhenVersionChanged () throws InvalidValueException {
+		Product product = new Product (1, "roomba", "description", 12.88f, "", 12.00f, 10);
+		MockHttpServletRequest request = new MockHttpServletRequest ("GET", "/product/1");
+		
+		product.setVersion (4L);
+		product.setLastModified (Instant.ofEpochSecond (2000));
+		request.addHeader ("If-None-Match", "\"1-3\"");
+		
+		Mockito.when (productService.getProductVersion (1)).thenReturn (ProductVersion.of (product));
+		Mockito.when (productService.getProduct (1)).thenReturn (product);
+		
+		ResponseEntity <JsonResponse> response = productController.getProduct (1, new ServletWebRequest (request, new MockHttpServletResponse ()));
+		
+		assertEquals (new JsonResponse ("Got product", true, product), response.getBody ());
+		assertEquals ("\"1-4\"", response.getHeaders ().getETag ());
+	}
+	
+	@Test
+	void getProductsById () throws InvalidValueException {
+		Product product = new Product (1, "roomba", "description", 12.88f, "", 12.00f, 10);
+		ProductBatch batch = new ProductBatch (Arrays.asList (product), Arrays.asList (2));
+		
+		Mockito.when (productService.getProductsById (Arrays.asList (1, 2))).thenReturn (batch);
+		
+		assertEquals (ResponseEntity.ok (new JsonResponse ("Got 1 products", true, batch)), productController.getProductsById (Arrays.asList (1, 2)));
+	}
+	
 	//todo this is a service test, it doesn't call the controller. It's also redundant because the service is already tested for this (ProductServiceTest.getProductWhenNotFound). Should probably just remove this test
 	@Test
 	void getProductNegative () throws InvalidValueException {
@@ -92,6 +286,61 @@ class ProductControllerTest {
 		assertEquals (expectedResult, actualResult);
 	}
 	
+	@Test
+	void exportProducts () throws InvalidValueException, UnauthorizedException, IOException {
+		User user = new User ("fname", "lname", "email@email.com", "username", "password");
+		UserRole role = new UserRole ();
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream ();
+		
+		role.setRole ("ADMIN");
+		user.setRole (role);
+		
+		Mockito.when (httpSession.getAttribute ("user")).thenReturn (user);
+		
+		ResponseEntity <StreamingResponseBody> response = productController.exportProducts ("csv", httpSession);
+		
+		assertEquals (MediaType.parseMediaType ("text/csv"), response.getHeaders ().getContentType ());
+		assertEquals ("attachment; filename=\"products.csv\"", response.getHeaders ().getFirst (HttpHeaders.CONTENT_DISPOSITION));
+		
+		response.getBody ().writeTo (outputStream);
+		
+		Mockito.verify (productService).exportProducts (ProductExportFormat.CSV, outputStream);
+	}
+	
+	@Test
+	void exportProductsWhenNotAnAdmin () throws InvalidValueException, IOException {
+		User user = new User ("fname", "lname", "email@email.com", "username", "password");
+		UserRole role = new UserRole ();
+		
+		role.setRole ("USER");
+		user.setRole (role);
+		
+		Mockito.when (httpSession.getAttribute ("user")).thenReturn (user);
+		
+		assertThrows (UnauthorizedException.class, () -> productController.exportProducts ("ndjson", httpSession));
+		
+		Mockito.when (httpSession.getAttribute ("user")).thenReturn (null);
+		
+		assertThrows (UnauthorizedException.class, () -> productController.exportProducts ("ndjson", httpSession));
+		
+		Mockito.verify (productService, Mockito.never ()).exportProducts (Mockito.any (), Mockito.any ());
+	}
+	
+	@Test
+	void exportProductsWithInvalidFormat () {
+		User user = new User ("fname", "lname", "email@email.com", "username", "password");
+		UserRole role = new UserRole ();
+		
+		role.setRole ("ADMIN");
+		user.setRole (role);
+		
+		Mockito.when (httpSession.getAttribute ("user")).thenReturn (user);
+		
+		InvalidValueException exception = assertThrows (InvalidValueException.class, () -> productController.exportProducts ("xml", httpSession));
+		
+		assertEquals ("Error! Invalid format", exception.getMessage ());
+	}
+	
 	@Test
 	void updateProductWhenNotLoggedIn () {
 		String expectedResult = "Error! Unauthorized";
@@ -100,8 +349,8 @@ class ProductControllerTest {
 		Mockito.when (httpSession.getAttribute ("user")).thenReturn (null);
 		
 		try {
-			productController.updateProduct ("product", "description", 13.0f, 11.0f, 1, Mockito.any (), null, "url.com", httpSession);
-		} catch (UnauthorizedException | InvalidValueException e) {
+			productController.updateProduct ("product", "description", 13.0f, 11.0f, 1, Mockito.any (), null, "url.com", 0L, httpSession);
+		} catch (UnauthorizedException | InvalidValueException | StaleProductException e) {
 			actualResult = e.getMessage ();
 		}
 		
@@ -122,8 +371,8 @@ class ProductControllerTest {
 		Mockito.when (httpSession.getAttribute ("user")).thenReturn (user);
 		
 		try {
-			productController.updateProduct ("product", "description", 13.0f, 11.0f, 1, Mockito.any (), null, "url.com", httpSession);
-		} catch (UnauthorizedException | InvalidValueException e) {
+			productController.updateProduct ("product", "description", 13.0f, 11.0f, 1, Mockito.any (), null, "url.com", 0L, httpSession);
+		} catch (UnauthorizedException | InvalidValueException | StaleProductException e) {
 			actualResult = e.getMessage ();
 		}
 		
@@ -132,7 +381,7 @@ class ProductControllerTest {
 	
 	
 	@Test
-	void updateProductWhenSalePriceIsNegative () throws InvalidValueException {
+	void updateProductWhenSalePriceIsNegative () throws InvalidValueException, StaleProductException {
 		Product product = new Product (1, "roomba", "description", 12.88f, "https://i.pcmag.com/imagery/reviews/01hmxcWyN13h1LfMglNxHGC-1.fit_scale.size_1028x578.v1589573902.jpg", -13.00f, 10);
 		
 		UserRole userRole = new UserRole (1, "ADMIN");
@@ -143,7 +392,7 @@ class ProductControllerTest {
 		
 		session.setAttribute ("user", user);
 		
-		InvalidValueException exception = assertThrows (InvalidValueException.class, () -> this.productController.updateProduct (product.getName (), product.getDescription (), product.getPrice (), product.getSalePrice (), product.getId (), null, product.getStock (), product.getImageUrl (), session));
+		InvalidValueException exception = assertThrows (InvalidValueException.class, () -> this.productController.updateProduct (product.getName (), product.getDescription (), product.getPrice (), product.getSalePrice (), product.getId (), null, product.getStock (), product.getImageUrl (), 0L, session));
 		
 		assertEquals ("Error! Sale price cannot negative.", exception.getMessage ());
 		
@@ -151,7 +400,7 @@ class ProductControllerTest {
 	}
 	
 	@Test
-	void updateProductWhenSalePriceIsHigherThanPrice () throws InvalidValueException {
+	void updateProductWhenSalePriceIsHigherThanPrice () throws InvalidValueException, StaleProductException {
 		Product product = new Product (1, "roomba", "description", 12.88f, "https://i.pcmag.com/imagery/reviews/01hmxcWyN13h1LfMglNxHGC-1.fit_scale.size_1028x578.v1589573902.jpg", 13.00f, 10);
 		
 		UserRole userRole = new UserRole (1, "ADMIN");
@@ -162,7 +411,7 @@ class ProductControllerTest {
 		
 		session.setAttribute ("user", user);
 		
-		InvalidValueException exception = assertThrows (InvalidValueException.class, () -> this.productController.updateProduct (product.getName (), product.getDescription (), product.getPrice (), product.getSalePrice (), product.getId (), null, product.getStock (), product.getImageUrl (), session));
+		InvalidValueException exception = assertThrows (InvalidValueException.class, () -> this.productController.updateProduct (product.getName (), product.getDescription (), product.getPrice (), product.getSalePrice (), product.getId (), null, product.getStock (), product.getImageUrl (), 0L, session));
 		
 		assertEquals ("Error! Sale price cannot be higher than normal price.", exception.getMessage ());
 		
@@ -170,7 +419,7 @@ class ProductControllerTest {
 	}
 	
 	@Test
-	void updateProductWhenPriceIsNegative () throws InvalidValueException {
+	void updateProductWhenPriceIsNegative () throws InvalidValueException, StaleProductException {
 		Product product = new Product (1, "roomba", "description", -12.88f, "https://i.pcmag.com/imagery/reviews/01hmxcWyN13h1LfMglNxHGC-1.fit_scale.size_1028x578.v1589573902.jpg", -13.00f, 10);
 		
 		UserRole userRole = new UserRole (1, "ADMIN");
@@ -181,7 +430,7 @@ class ProductControllerTest {
 		
 		session.setAttribute ("user", user);
 		
-		InvalidValueException exception = assertThrows (InvalidValueException.class, () -> this.productController.updateProduct (product.getName (), product.getDescription (), product.getPrice (), product.getSalePrice (), product.getId (), null, product.getStock (), product.getImageUrl (), session));
+		InvalidValueException exception = assertThrows (InvalidValueException.class, () -> this.productController.updateProduct (product.getName (), product.getDescription (), product.getPrice (), product.getSalePrice (), product.getId (), null, product.getStock (), product.getImageUrl (), 0L, session));
 		
 		assertEquals ("Error! Sale price cannot negative.", exception.getMessage ());
 		
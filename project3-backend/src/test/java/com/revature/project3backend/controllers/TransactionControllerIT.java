@@ -1,13 +1,18 @@
 package com.revature.project3backend.controllers;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.revature.project3backend.exceptions.InsufficientStockException;
 import com.revature.project3backend.exceptions.InvalidValueException;
+import com.revature.project3backend.exceptions.RequestInProgressException;
 import com.revature.project3backend.exceptions.UnauthorizedException;
+import com.revature.project3backend.exceptions.CheckoutQueueFullException;
 import com.revature.project3backend.jsonmodels.JsonResponse;
+import com.revature.project3backend.modeldtos.CheckoutOrder;
 import com.revature.project3backend.models.*;
-import com.revature.project3backend.services.ProductService;
+import com.revature.project3backend.services.CheckoutQueue;
+import com.revature.project3backend.services.CheckoutService;
 import com.revature.project3backend.services.TransactionService;
-import com.revature.project3backend.services.UserService;
+import com.revature.project3backend.services.IdempotencyService;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -20,8 +25,11 @@ import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
 @WebMvcTest (TransactionController.class)
 class TransactionControllerIT {
 	@Autowired
@@ -31,10 +39,13 @@ class TransactionControllerIT {
 	TransactionService transactionService;
 	
 	@MockBean
-	UserService userService;
+	CheckoutService checkoutService;
+	
+	@MockBean
+	IdempotencyService idempotencyService;
 	
 	@MockBean
-	ProductService productService;
+	CheckoutQueue checkoutQueue;
 	
 	private final ObjectMapper json = new ObjectMapper ();
 	
@@ -53,11 +64,11 @@ class TransactionControllerIT {
 		items.add (new CartItem (new User (), product, 1));
 		items.add (new CartItem (new User (), product0, 1));
 		
-		Transaction transaction = new Transaction (1, user, "", 20.00f);
+		Transaction transaction = new Transaction (1, user, new ArrayList <> (), 20.00f);
 		
 		user.setCart (items);
 		
-		Mockito.when (transactionService.createTransaction (Mockito.any (Transaction.class), Mockito.eq (items))).thenReturn (transaction);
+		Mockito.when (checkoutService.checkout (Mockito.any (User.class), Mockito.eq (items))).thenReturn (transaction);
 		
 		mvc.perform (MockMvcRequestBuilders.post ("/transaction")
 			.contentType (MediaType.APPLICATION_JSON)
@@ -66,11 +77,89 @@ class TransactionControllerIT {
 			.andExpect (MockMvcResultMatchers.status ().isOk ())
 			.andExpect (MockMvcResultMatchers.content ().json (json.writeValueAsString (new JsonResponse ("Created transaction", true, transaction))));
 		
-		Mockito.verify (productService).reduceStock (product, items.get (0).getQuantity ());
-		Mockito.verify (productService).reduceStock (product0, items.get (1).getQuantity ());
+		assertEquals (0, user.getCart ().size ());
+	}
+	
+	@Test
+	void createTransactionWhenRetriedWhileInProgress () throws Exception {
+		User user = new User (1, "first", "last", "email", "username", "password", new ArrayList <> (), new ArrayList <> (), new UserRole (2, "USER"));
+		
+		MockHttpSession mockHttpSession = new MockHttpSession ();
+		mockHttpSession.setAttribute ("user", user);
+		
+		Mockito.when (idempotencyService.begin (1, "key", "POST /transaction", null)).thenThrow (new RequestInProgressException ());
+		
+		mvc.perform (MockMvcRequestBuilders.post ("/transaction")
+			.header (IdempotencyService.HEADER, "key")
+			.contentType (MediaType.APPLICATION_JSON)
+			.session (mockHttpSession))
+			
+			.andExpect (MockMvcResultMatchers.status ().isConflict ())
+			.andExpect (MockMvcResultMatchers.content ().json (json.writeValueAsString (new JsonResponse ("Error! Request in progress", false))));
+		
+		Mockito.verify (checkoutService, Mockito.never ()).checkout (Mockito.any (), Mockito.any ());
+	}
+	
+	@Test
+	void createTransactionWhenAsync () throws Exception {
+		User user = new User (1, "first", "last", "email", "username", "password", new ArrayList <> (), new ArrayList <> (), new UserRole (2, "USER"));
+		
+		user.getCart ().add (new CartItem (new User (), new Product (1, "roomba", "description", 10f, "1.jpg", null, 10), 1));
+		
+		MockHttpSession mockHttpSession = new MockHttpSession ();
+		mockHttpSession.setAttribute ("user", user);
+		
+		CheckoutOrder order = new CheckoutOrder ("order", 1);
+		
+		Mockito.when (checkoutQueue.isEnabled ()).thenReturn (true);
+		Mockito.when (checkoutQueue.submit (user)).thenReturn (order);
+		
+		mvc.perform (MockMvcRequestBuilders.post ("/transaction")
+			.contentType (MediaType.APPLICATION_JSON)
+			.session (mockHttpSession))
+			
+			.andExpect (MockMvcResultMatchers.status ().isAccepted ())
+			.andExpect (MockMvcResultMatchers.header ().string ("Location", "/transaction/order/status"))
+			.andExpect (MockMvcResultMatchers.content ().json ("{\"message\":\"Queued transaction\",\"success\":true,\"data\":{\"id\":\"order\",\"status\":\"QUEUED\"}}"));
+		
+		Mockito.verify (checkoutService, Mockito.never ()).checkout (Mockito.any (), Mockito.any ());
+	}
+	
+	@Test
+	void createTransactionWhenQueueIsFull () throws Exception {
+		User user = new User (1, "first", "last", "email", "username", "password", new ArrayList <> (), new ArrayList <> (), new UserRole (2, "USER"));
+		
+		user.getCart ().add (new CartItem (new User (), new Product (1, "roomba", "description", 10f, "1.jpg", null, 10), 1));
+		
+		MockHttpSession mockHttpSession = new MockHttpSession ();
+		mockHttpSession.setAttribute ("user", user);
+		
+		Mockito.when (checkoutQueue.isEnabled ()).thenReturn (true);
+		Mockito.when (checkoutQueue.submit (user)).thenThrow (new CheckoutQueueFullException ());
+		
+		mvc.perform (MockMvcRequestBuilders.post ("/transaction")
+			.contentType (MediaType.APPLICATION_JSON)
+			.session (mockHttpSession))
+			
+			.andExpect (MockMvcResultMatchers.status ().isServiceUnavailable ())
+			.andExpect (MockMvcResultMatchers.header ().string ("Retry-After", "1"))
+			.andExpect (MockMvcResultMatchers.content ().json (json.writeValueAsString (new JsonResponse ("Error! Too many checkouts, try again later", false))));
+	}
+	
+	@Test
+	void getOrderStatus () throws Exception {
+		User user = new User (1, "first", "last", "email", "username", "password", new ArrayList <> (), new ArrayList <> (), new UserRole (2, "USER"));
+		
+		MockHttpSession mockHttpSession = new MockHttpSession ();
+		mockHttpSession.setAttribute ("user", user);
 		
-		Mockito.verify (transactionService).createTransaction (Mockito.any (Transaction.class), Mockito.eq (items));
-		Mockito.verify (userService).clearCart (user);
+		Mockito.when (checkoutQueue.getOrder ("order")).thenReturn (new CheckoutOrder ("order", 1).failed ("Error! Invalid quantity", Arrays.asList (3)));
+		
+		mvc.perform (MockMvcRequestBuilders.get ("/transaction/order/status")
+			.session (mockHttpSession))
+			
+			.andExpect (MockMvcResultMatchers.status ().isOk ())
+			.andExpect (MockMvcResultMatchers.content ().json ("{\"message\":\"Got order status\",\"success\":true,\"data\":{\"id\":\"order\",\"status\":\"FAILED\",\"message\":\"Error! Invalid quantity\",\"productIds\":[3]}}"));
 	}
 	
 	@Test
@@ -81,8 +170,31 @@ class TransactionControllerIT {
 			.andExpect (MockMvcResultMatchers.status ().isUnauthorized ())
 			.andExpect (MockMvcResultMatchers.content ().json (json.writeValueAsString (new JsonResponse ("Error! Unauthorized", false, null, "/login"))));
 		
-		Mockito.verify (transactionService, Mockito.never ()).createTransaction (Mockito.any (), Mockito.any ());
-		Mockito.verify (userService, Mockito.never ()).clearCart (Mockito.any ());
+		Mockito.verify (checkoutService, Mockito.never ()).checkout (Mockito.any (), Mockito.any ());
+	}
+	
+	@Test
+	void createTransactionWhenStockIsTooLow () throws Exception {
+		User user = new User (1, "first", "last", "email", "username", "password", new ArrayList <> (), new ArrayList <> (), new UserRole (2, "USER"));
+		
+		MockHttpSession mockHttpSession = new MockHttpSession ();
+		mockHttpSession.setAttribute ("user", user);
+		
+		List <CartItem> items = new ArrayList <> ();
+		
+		items.add (new CartItem (new User (), new Product (1, "roomba", "description", 10f, "1.jpg", null, 10), 1));
+		items.add (new CartItem (new User (), new Product (12, "roomba", "description", 10f, "2.jpg", null, 0), 1));
+		
+		user.setCart (items);
+		
+		Mockito.doThrow (new InsufficientStockException (Arrays.asList (12))).when (checkoutService).checkout (Mockito.any (User.class), Mockito.eq (items));
+		
+		mvc.perform (MockMvcRequestBuilders.post ("/transaction")
+			.contentType (MediaType.APPLICATION_JSON)
+			.session (mockHttpSession))
+			
+			.andExpect (MockMvcResultMatchers.status ().isBadRequest ())
+			.andExpect (MockMvcResultMatchers.content ().json (json.writeValueAsString (new JsonResponse ("Error! Invalid quantity", false, Arrays.asList (12)))));
 	}
 	
 	@Test
@@ -97,10 +209,7 @@ class TransactionControllerIT {
 			.andExpect (MockMvcResultMatchers.status ().isBadRequest ())
 			.andExpect (MockMvcResultMatchers.content ().json (json.writeValueAsString (new JsonResponse ("Error! Invalid cart", false, null, null))));
 		
-		Mockito.verify (productService, Mockito.never ()).reduceStock (Mockito.any (), Mockito.any ());
-		
-		Mockito.verify (transactionService, Mockito.never ()).createTransaction (Mockito.any (), Mockito.any ());
-		Mockito.verify (userService, Mockito.never ()).clearCart (Mockito.any ());
+		Mockito.verify (checkoutService, Mockito.never ()).checkout (Mockito.any (), Mockito.anyList ());
 	}
 	
 	@Test
@@ -113,11 +222,13 @@ class TransactionControllerIT {
 		User fakeUser = new User ();
 		fakeUser.setId (1);
 		
-		Transaction transaction = new Transaction (1, fakeUser, "", 20.00f);
+		List <TransactionLine> lines = Arrays.asList (new TransactionLine (1, 1, 1, "roomba", 10.00f, 2));
+		Transaction transaction = new Transaction (1, fakeUser, lines, 20.00f);
 		
 		user.getTransactions ().add (transaction);
 		
 		Mockito.when (transactionService.getTransaction (transaction.getId ())).thenReturn (transaction);
+		Mockito.when (transactionService.getItems (transaction.getId ())).thenReturn (lines);
 		
 		mvc.perform (MockMvcRequestBuilders.get ("/transaction/" + user.getId ())
 			.contentType (MediaType.APPLICATION_JSON)
@@ -127,6 +238,7 @@ class TransactionControllerIT {
 			.andExpect (MockMvcResultMatchers.content ().json (json.writeValueAsString (new JsonResponse ("Got transaction", true, transaction))));
 		
 		Mockito.verify (transactionService).getTransaction (transaction.getId ());
+		Mockito.verify (transactionService).getItems (transaction.getId ());
 	}
 	
 	@Test
@@ -150,7 +262,7 @@ class TransactionControllerIT {
 		MockHttpSession mockHttpSession = new MockHttpSession ();
 		mockHttpSession.setAttribute ("user", user2);
 		
-		Transaction transaction = new Transaction (transactionId, user1, "", 20.00f);
+		Transaction transaction = new Transaction (transactionId, user1, new ArrayList <> (), 20.00f);
 		
 		user1.getTransactions ().add (transaction);
 		
@@ -164,5 +276,6 @@ class TransactionControllerIT {
 			.andExpect (MockMvcResultMatchers.content ().json (json.writeValueAsString (new JsonResponse (new InvalidValueException ("Invalid transaction id")))));
 		
 		Mockito.verify (transactionService).getTransaction (transactionId);
+		Mockito.verify (transactionService, Mockito.never ()).getItems (Mockito.any ());
 	}
 }
\ No newline at end of file
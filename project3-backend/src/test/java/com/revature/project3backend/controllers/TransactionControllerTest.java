@@ -1,23 +1,32 @@
 package com.revature.project3backend.controllers;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.revature.project3backend.exceptions.CheckoutInProgressException;
+import com.revature.project3backend.exceptions.CheckoutQueueFullException;
+import com.revature.project3backend.exceptions.InsufficientStockException;
 import com.revature.project3backend.exceptions.InvalidValueException;
+import com.revature.project3backend.exceptions.RequestInProgressException;
 import com.revature.project3backend.exceptions.UnauthorizedException;
 import com.revature.project3backend.jsonmodels.JsonResponse;
+import com.revature.project3backend.modeldtos.CheckoutOrder;
 import com.revature.project3backend.models.CartItem;
 import com.revature.project3backend.models.Product;
 import com.revature.project3backend.models.Transaction;
 import com.revature.project3backend.models.User;
-import com.revature.project3backend.services.ProductService;
+import com.revature.project3backend.services.CheckoutQueue;
+import com.revature.project3backend.services.CheckoutService;
+import com.revature.project3backend.services.IdempotencyService;
 import com.revature.project3backend.services.TransactionService;
-import com.revature.project3backend.services.UserService;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.Mockito;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.mock.web.MockHttpSession;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -27,15 +36,16 @@ class TransactionControllerTest {
 	private final TransactionController transactionController;
 	
 	private final TransactionService transactionService = Mockito.mock (TransactionService.class);
-	private final UserService userService = Mockito.mock (UserService.class);
-	private final ProductService productService = Mockito.mock (ProductService.class);
+	private final CheckoutService checkoutService = Mockito.mock (CheckoutService.class);
+	private final IdempotencyService idempotencyService = Mockito.mock (IdempotencyService.class);
+	private final CheckoutQueue checkoutQueue = Mockito.mock (CheckoutQueue.class);
 	
 	public TransactionControllerTest () {
-		this.transactionController = new TransactionController (this.transactionService, this.userService, this.productService);
+		this.transactionController = new TransactionController (this.transactionService, this.checkoutService, this.idempotencyService, this.checkoutQueue);
 	}
 	
 	@Test
-	void createTransaction () throws JsonProcessingException, InvalidValueException, UnauthorizedException {
+	void createTransaction () throws JsonProcessingException, InvalidValueException, UnauthorizedException, RequestInProgressException, CheckoutQueueFullException, CheckoutInProgressException {
 		int stock = 10;
 		
 		User user = new User ("first", "last", "email", "username", "password");
@@ -50,39 +60,140 @@ class TransactionControllerTest {
 		
 		user.setCart (items);
 		
-		Transaction transaction = new Transaction (user);
-		Transaction expectedCreate = new Transaction (1, user, items.toString (), 20.0f);
+		Transaction expectedCreate = new Transaction (1, user, new ArrayList <> (), 20.0f);
+		
+		MockHttpSession mockHttpSession = new MockHttpSession ();
+		mockHttpSession.setAttribute ("user", user);
+		
+		Mockito.when (checkoutService.checkout (user, items)).thenReturn (expectedCreate);
+		
+		assertEquals (ResponseEntity.ok (new JsonResponse ("Created transaction", true, expectedCreate)), transactionController.createTransaction (null, mockHttpSession));
+		assertEquals (0, user.getCart ().size ());
+	}
+	
+	@Test
+	void createTransactionWithIdempotencyKey () throws JsonProcessingException, InvalidValueException, UnauthorizedException, RequestInProgressException, CheckoutQueueFullException, CheckoutInProgressException {
+		User user = new User (1, "first", "last", "email", "username", "password", new ArrayList <> (), new ArrayList <> (), null);
+		
+		user.getCart ().add (new CartItem (new User (), new Product (1, "roomba", "description", 10f, "1.jpg", null, 10), 1));
+		
+		Transaction expectedCreate = new Transaction (1, user, new ArrayList <> (), 10.0f);
 		
 		MockHttpSession mockHttpSession = new MockHttpSession ();
 		mockHttpSession.setAttribute ("user", user);
 		
-		Mockito.when (transactionService.createTransaction (transaction, items)).thenReturn (expectedCreate);
+		Mockito.when (checkoutService.checkout (Mockito.any (), Mockito.any ())).thenReturn (expectedCreate);
+		
+		ResponseEntity <JsonResponse> response = transactionController.createTransaction ("key", mockHttpSession);
 		
-		assertEquals (ResponseEntity.ok (new JsonResponse ("Created transaction", true, expectedCreate)), transactionController.createTransaction (mockHttpSession));
+		Mockito.verify (idempotencyService).begin (1, "key", "POST /transaction", null);
+		Mockito.verify (idempotencyService).complete (1, "key", response);
+		Mockito.verify (idempotencyService, Mockito.never ()).abandon (Mockito.any (), Mockito.any ());
+	}
+	
+	@Test
+	void createTransactionWhenRetried () throws JsonProcessingException, InvalidValueException, UnauthorizedException, RequestInProgressException, CheckoutQueueFullException, CheckoutInProgressException {
+		User user = new User (1, "first", "last", "email", "username", "password", new ArrayList <> (), new ArrayList <> (), null);
+		ResponseEntity <JsonResponse> stored = ResponseEntity.ok (new JsonResponse ("Created transaction", true));
+		
+		MockHttpSession mockHttpSession = new MockHttpSession ();
+		mockHttpSession.setAttribute ("user", user);
 		
-		Mockito.verify (productService).reduceStock (product, items.get (0).getQuantity ());
-		Mockito.verify (productService).reduceStock (product0, items.get (1).getQuantity ());
+		Mockito.when (idempotencyService.begin (1, "key", "POST /transaction", null)).thenReturn (stored);
 		
-		Mockito.verify (transactionService).createTransaction (transaction, items);
-		Mockito.verify (userService).clearCart (user);
+		assertEquals (stored, transactionController.createTransaction ("key", mockHttpSession));
+		
+		Mockito.verify (checkoutService, Mockito.never ()).checkout (Mockito.any (), Mockito.anyList ());
 	}
 	
 	@Test
-	void createTransactionWhenNotLoggedIn () throws JsonProcessingException, InvalidValueException, UnauthorizedException {
+	void createTransactionWithIdempotencyKeyWhenStockIsTooLow () throws InvalidValueException, RequestInProgressException, CheckoutQueueFullException, CheckoutInProgressException {
+		User user = new User (1, "first", "last", "email", "username", "password", new ArrayList <> (), new ArrayList <> (), null);
+		
+		user.getCart ().add (new CartItem (new User (), new Product (1, "roomba", "description", 10f, "1.jpg", null, 0), 1));
+		
 		MockHttpSession mockHttpSession = new MockHttpSession ();
+		mockHttpSession.setAttribute ("user", user);
 		
-		UnauthorizedException exception = assertThrows (UnauthorizedException.class, () -> this.transactionController.createTransaction (mockHttpSession));
+		Mockito.doThrow (new InsufficientStockException (Arrays.asList (1))).when (checkoutService).checkout (user, user.getCart ());
 		
-		assertEquals ("Error! Unauthorized", exception.getMessage ());
+		assertThrows (InsufficientStockException.class, () -> transactionController.createTransaction ("key", mockHttpSession));
+		
+		Mockito.verify (idempotencyService).abandon (1, "key");
+		Mockito.verify (idempotencyService, Mockito.never ()).complete (Mockito.any (), Mockito.any (), Mockito.any ());
+	}
+	
+	@Test
+	void createTransactionWhenAsync () throws JsonProcessingException, InvalidValueException, UnauthorizedException, RequestInProgressException, CheckoutQueueFullException, CheckoutInProgressException {
+		User user = new User (1, "first", "last", "email", "username", "password", new ArrayList <> (), new ArrayList <> (), null);
+		
+		user.getCart ().add (new CartItem (new User (), new Product (1, "roomba", "description", 10f, "1.jpg", null, 10), 1));
+		
+		CheckoutOrder order = new CheckoutOrder ("order", 1);
+		
+		MockHttpSession mockHttpSession = new MockHttpSession ();
+		mockHttpSession.setAttribute ("user", user);
+		
+		Mockito.when (checkoutQueue.isEnabled ()).thenReturn (true);
+		Mockito.when (checkoutQueue.submit (user)).thenReturn (order);
+		
+		ResponseEntity <JsonResponse> response = transactionController.createTransaction ("key", mockHttpSession);
+		
+		assertEquals (HttpStatus.ACCEPTED, response.getStatusCode ());
+		assertEquals ("/transaction/order/status", response.getHeaders ().getFirst (HttpHeaders.LOCATION));
+		assertEquals (new JsonResponse ("Queued transaction", true, order), response.getBody ());
+		
+		Mockito.verify (idempotencyService).complete (1, "key", response);
+		Mockito.verify (checkoutService, Mockito.never ()).checkout (Mockito.any (), Mockito.anyList ());
+	}
+	
+	@Test
+	void createTransactionWhenQueueIsFull () throws InvalidValueException, RequestInProgressException, CheckoutQueueFullException, CheckoutInProgressException {
+		User user = new User (1, "first", "last", "email", "username", "password", new ArrayList <> (), new ArrayList <> (), null);
+		
+		user.getCart ().add (new CartItem (new User (), new Product (1, "roomba", "description", 10f, "1.jpg", null, 10), 1));
+		
+		MockHttpSession mockHttpSession = new MockHttpSession ();
+		mockHttpSession.setAttribute ("user", user);
+		
+		Mockito.when (checkoutQueue.isEnabled ()).thenReturn (true);
+		Mockito.when (checkoutQueue.submit (user)).thenThrow (new CheckoutQueueFullException ());
+		
+		assertThrows (CheckoutQueueFullException.class, () -> transactionController.createTransaction ("key", mockHttpSession));
+		
+		Mockito.verify (idempotencyService).abandon (1, "key");
+	}
+	
+	@Test
+	void createTransactionWhileCheckingOut () throws InvalidValueException, RequestInProgressException {
+		User user = new User (1, "first", "last", "email", "username", "password", new ArrayList <> (), new ArrayList <> (), null);
+		
+		user.getCart ().add (new CartItem (new User (), new Product (1, "roomba", "description", 10f, "1.jpg", null, 10), 1));
+		
+		MockHttpSession mockHttpSession = new MockHttpSession ();
+		mockHttpSession.setAttribute ("user", user);
+		
+		Mockito.when (checkoutQueue.settle (user)).thenReturn (true);
+		
+		assertThrows (CheckoutInProgressException.class, () -> transactionController.createTransaction ("key", mockHttpSession));
+		
+		Mockito.verify (idempotencyService).abandon (1, "key");
+		Mockito.verify (checkoutService, Mockito.never ()).checkout (Mockito.any (), Mockito.anyList ());
+	}
+	
+	@Test
+	void createTransactionWhenNotLoggedIn () throws JsonProcessingException, InvalidValueException, UnauthorizedException, RequestInProgressException, CheckoutQueueFullException, CheckoutInProgressException {
+		MockHttpSession mockHttpSession = new MockHttpSession ();
+		
+		UnauthorizedException exception = assertThrows (UnauthorizedException.class, () -> this.transactionController.createTransaction (null, mockHttpSession));
 		
-		Mockito.verify (productService, Mockito.never ()).reduceStock (Mockito.any (), Mockito.any ());
+		assertEquals ("Error! Unauthorized", exception.getMessage ());
 		
-		Mockito.verify (transactionService, Mockito.never ()).createTransaction (Mockito.any (), Mockito.any ());
-		Mockito.verify (userService, Mockito.never ()).clearCart (Mockito.any ());
+		Mockito.verify (checkoutService, Mockito.never ()).checkout (Mockito.any (), Mockito.anyList ());
 	}
 	
 	@Test
-	void createTransactionWhenCartIsEmpty () throws JsonProcessingException, InvalidValueException, UnauthorizedException {
+	void createTransactionWhenCartIsEmpty () throws JsonProcessingException, InvalidValueException, UnauthorizedException, RequestInProgressException, CheckoutQueueFullException, CheckoutInProgressException {
 		User user = new User ("first", "last", "email", "username", "password");
 		
 		MockHttpSession mockHttpSession = new MockHttpSession ();
@@ -90,14 +201,11 @@ class TransactionControllerTest {
 		
 		user.setCart (new ArrayList <> ());
 		
-		InvalidValueException exception = assertThrows (InvalidValueException.class, () -> this.transactionController.createTransaction (mockHttpSession));
+		InvalidValueException exception = assertThrows (InvalidValueException.class, () -> this.transactionController.createTransaction (null, mockHttpSession));
 		
 		assertEquals ("Error! Invalid cart", exception.getMessage ());
 		
-		Mockito.verify (productService, Mockito.never ()).reduceStock (Mockito.any (), Mockito.any ());
-		
-		Mockito.verify (transactionService, Mockito.never ()).createTransaction (Mockito.any (), Mockito.any ());
-		Mockito.verify (userService, Mockito.never ()).clearCart (Mockito.any ());
+		Mockito.verify (checkoutService, Mockito.never ()).checkout (Mockito.any (), Mockito.anyList ());
 	}
 	
 	@Test
@@ -131,6 +239,7 @@ class TransactionControllerTest {
 		assertEquals (expected, transactionController.getTransaction (transaction.getId (), mockHttpSession));
 		
 		Mockito.verify (transactionService).getTransaction (transaction.getId ());
+		Mockito.verify (transactionService).getItems (transaction.getId ());
 	}
 	
 	@Test
@@ -164,5 +273,54 @@ class TransactionControllerTest {
 		assertEquals ("Error! Invalid transaction id", exception.getMessage ());
 		
 		Mockito.verify (transactionService).getTransaction (transactionId);
+		Mockito.verify (transactionService, Mockito.never ()).getItems (Mockito.any ());
+	}
+	
+	@Test
+	void getOrderStatus () throws InvalidValueException, UnauthorizedException {
+		User user = new User (1, "first", "last", "email", "username", "password", new ArrayList <> (), new ArrayList <> (), null);
+		CheckoutOrder order = new CheckoutOrder ("order", 1).completed (5);
+		
+		MockHttpSession mockHttpSession = new MockHttpSession ();
+		mockHttpSession.setAttribute ("user", user);
+		
+		Mockito.when (checkoutQueue.getOrder ("order")).thenReturn (order);
+		
+		assertEquals (ResponseEntity.ok (new JsonResponse ("Got order status", true, order)), transactionController.getOrderStatus ("order", mockHttpSession));
+		
+		Mockito.verify (checkoutQueue).settle (user);
+	}
+	
+	@Test
+	void getOrderStatusWhenNotLoggedIn () {
+		MockHttpSession mockHttpSession = new MockHttpSession ();
+		
+		assertThrows (UnauthorizedException.class, () -> this.transactionController.getOrderStatus ("order", mockHttpSession));
+		
+		Mockito.verify (checkoutQueue, Mockito.never ()).getOrder (Mockito.any ());
+	}
+	
+	@Test
+	void getOrderStatusWhenOrderWasMadeByOtherUser () {
+		User user = new User (2, "first", "last", "email", "username", "password", new ArrayList <> (), new ArrayList <> (), null);
+		
+		MockHttpSession mockHttpSession = new MockHttpSession ();
+		mockHttpSession.setAttribute ("user", user);
+		
+		Mockito.when (checkoutQueue.getOrder ("order")).thenReturn (new CheckoutOrder ("order", 1));
+		
+		InvalidValueException exception = assertThrows (InvalidValueException.class, () -> this.transactionController.getOrderStatus ("order", mockHttpSession));
+		
+		assertEquals ("Error! Invalid order id", exception.getMessage ());
+	}
+	
+	@Test
+	void getOrderStatusWhenOrderDoesNotExist () {
+		User user = new User (1, "first", "last", "email", "username", "password", new ArrayList <> (), new ArrayList <> (), null);
+		
+		MockHttpSession mockHttpSession = new MockHttpSession ();
+		mockHttpSession.setAttribute ("user", user);
+		
+		assertThrows (InvalidValueException.class, () -> this.transactionController.getOrderStatus ("order", mockHttpSession));
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,65 @@
+package com.revature.project3backend.repositories;
+
+import com.revature.project3backend.models.IdempotencyRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest
+class IdempotencyRecordRepoIT {
+	@Autowired
+	private IdempotencyRecordRepo idempotencyRecordRepo;
+	
+	@Autowired
+	private TestEntityManager testEntityManager;
+	
+	private final Instant now = Instant.parse ("2022-01-01T12:00:00Z");
+	
+	@BeforeEach
+	void setUp () {
+		idempotencyRecordRepo.saveAndFlush (new IdempotencyRecord (1, "key", "POST /transaction", "hash", now.minusSeconds (60)));
+		idempotencyRecordRepo.saveAndFlush (new IdempotencyRecord (2, "key", "POST /transaction", "hash", now));
+	}
+	
+	@Test
+	void findByUserIdAndIdempotencyKey () {
+		assertEquals (now, idempotencyRecordRepo.findByUserIdAndIdempotencyKey (2, "key").get ().getCreatedAt ());
+		assertFalse (idempotencyRecordRepo.findByUserIdAndIdempotencyKey (2, "other").isPresent ());
+	}
+	
+	@Test
+	void saveWhenKeyIsAlreadyUsed () {
+		assertThrows (DataIntegrityViolationException.class, () -> idempotencyRecordRepo.saveAndFlush (new IdempotencyRecord (1, "key", "POST /cartitem", "hash", now)));
+	}
+	
+	@Test
+	void reclaim () {
+		Integer id = idempotencyRecordRepo.findByUserIdAndIdempotencyKey (1, "key").get ().getId ();
+		
+		//the claim was made a minute ago, so it is only taken over if it had to be made before then
+		assertEquals (0, idempotencyRecordRepo.reclaim (id, now.minusSeconds (90), now));
+		assertEquals (1, idempotencyRecordRepo.reclaim (id, now.minusSeconds (30), now));
+		assertEquals (0, idempotencyRecordRepo.reclaim (id, now.minusSeconds (30), now));
+		
+		testEntityManager.clear ();
+		
+		assertEquals (now, idempotencyRecordRepo.findById (id).get ().getClaimedAt ());
+	}
+	
+	@Test
+	void deleteCreatedBefore () {
+		assertEquals (1, idempotencyRecordRepo.deleteCreatedBefore (now));
+		assertFalse (idempotencyRecordRepo.findByUserIdAndIdempotencyKey (1, "key").isPresent ());
+		assertTrue (idempotencyRecordRepo.findByUserIdAndIdempotencyKey (2, "key").isPresent ());
+	}
+}
@@ -1,20 +1,38 @@
 package com.revature.project3backend.repositories;
 
+import com.revature.project3backend.jsonmodels.ProductListing;
+import com.revature.project3backend.modeldtos.ProductVersion;
+import com.revature.project3backend.models.CartItem;
 import com.revature.project3backend.models.Product;
 import com.revature.project3backend.models.User;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Slice;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 
 import javax.persistence.Column;
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
 
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -23,6 +41,15 @@ class ProductRepoIT {
 	@Autowired
 	private ProductRepo productRepo;
 	
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+	
+	@Autowired
+	private TestEntityManager testEntityManager;
+	
+	@Autowired
+	private DataSource dataSource;
+	
 	private final List <Product> products = new ArrayList <> ();
 	
 	private final int postsPerPage = 20;
@@ -49,26 +76,242 @@ class ProductRepoIT {
 	//todo test null and empty search queries?
 	
 	@Test
-	void findByNameIgnoreCaseContainingOrDescriptionIgnoreCaseContainingWithNameInSearchQuery () {
-		List <Product> expectedResult = new ArrayList <> ();
+	void findFiltered () {
+		products.get (1).setSalePrice (null);
+		products.get (3).setStock (0);
+		
+		productRepo.save (products.get (1));
+		productRepo.save (products.get (3));
+		
+		List <ProductListing> expectedResult = new ArrayList <> ();
+		
+		expectedResult.add (ProductListing.of (products.get (2)));
+		
+		assertEquals (expectedResult, productRepo.findFiltered ("%python%", 0.00F, Float.MAX_VALUE, true, true, PageRequest.of (0, postsPerPage)).getContent ());
+		
+		expectedResult.clear ();
+		expectedResult.add (ProductListing.of (products.get (1)));
+		expectedResult.add (ProductListing.of (products.get (3)));
+		
+		assertEquals (expectedResult, productRepo.findFiltered ("%%", 15.00F, 20.00F, false, false, PageRequest.of (0, postsPerPage)).getContent ());
+	}
+	
+	@Test
+	void findFilteredWhenStockIsHeld () {
+		productRepo.reserveStock (products.get (2).getId (), products.get (2).getStock ());
+		
+		assertEquals (Collections.singletonList (ProductListing.of (products.get (3))), productRepo.findFiltered ("%python%", 0.00F, Float.MAX_VALUE, false, true, PageRequest.of (0, postsPerPage)).getContent ());
+	}
+	
+	@Test
+	void findReservedById () {
+		productRepo.reserveStock (products.get (0).getId (), 2);
+		
+		assertEquals (2, productRepo.findReservedById (products.get (0).getId ()));
+		assertNull (productRepo.findReservedById (-1));
+	}
+	
+	@Test
+	void findListings () {
+		Product product = productRepo.save (new Product (null, "Java III", String.join ("", Collections.nCopies (ProductListing.DESCRIPTION_LENGTH + 40, "a")), 30.00F, "", null, 5));
+		
+		List <ProductListing> expectedResult = new ArrayList <> ();
+		
+		expectedResult.add (ProductListing.of (products.get (1)));
+		expectedResult.add (ProductListing.of (product));
+		
+		Slice <ProductListing> actualResult = productRepo.findListings ("%java%", PageRequest.of (1, 1));
+		
+		assertEquals (expectedResult.subList (0, 1), actualResult.getContent ());
+		assertEquals (expectedResult.subList (1, 2), productRepo.findListings ("%java%", PageRequest.of (2, 1)).getContent ());
+		assertEquals (ProductListing.DESCRIPTION_LENGTH, productRepo.findListings ("%java%", PageRequest.of (2, 1)).getContent ().get (0).getDescription ().length ());
+		assertTrue (actualResult.hasNext ());
+	}
+	
+	@Test
+	void findListingsOrdersNamesByCharacter () {
+		Product product = productRepo.save (new Product (null, "java basics", "A beginner Java course", 10.00F, "", null, 5));
+		
+		List <ProductListing> expectedResult = new ArrayList <> ();
+		
+		//uppercase letters come before lowercase ones, like ProductSearchIndex
+		expectedResult.add (ProductListing.of (products.get (0)));
+		expectedResult.add (ProductListing.of (products.get (1)));
+		expectedResult.add (ProductListing.of (product));
+		
+		assertEquals (expectedResult, productRepo.findListings ("%java%", PageRequest.of (0, postsPerPage)).getContent ());
+	}
+	
+	@Test
+	void findPageAfter () {
+		List <ProductListing> expectedResult = new ArrayList <> ();
+		
+		expectedResult.add (ProductListing.of (products.get (1)));
+		expectedResult.add (ProductListing.of (products.get (2)));
+		
+		Slice <ProductListing> actualResult = productRepo.findPageAfter ("%i%", "Java I", products.get (0).getId (), PageRequest.of (0, 2));
+		
+		assertEquals (expectedResult, actualResult.getContent ());
+		assertTrue (actualResult.hasNext ());
+	}
+	
+	@Test
+	void findListingsEscapesWildcards () {
+		Product product = productRepo.save (new Product (null, "100% Java", "A complete Java course", 30.00F, "", null, 5));
+		
+		List <ProductListing> expectedResult = new ArrayList <> ();
+		
+		expectedResult.add (ProductListing.of (product));
+		
+		assertEquals (expectedResult, productRepo.findListings ("%100\\%%", PageRequest.of (0, postsPerPage)).getContent ());
+	}
+	
+	@Test
+	void findVersionById () {
+		Product product = products.get (0);
+		ProductVersion version = productRepo.findVersionById (product.getId ()).orElse (null);
+		
+		assertEquals (ProductVersion.of (product), version);
+		assertEquals (0L, version.getVersion ());
+		assertNotNull (version.getLastModified ());
+		
+		product.setStock (4);
+		
+		productRepo.saveAndFlush (product);
+		
+		assertEquals (1L, productRepo.findVersionById (product.getId ()).get ().getVersion ());
+		assertFalse (productRepo.findVersionById (-1).isPresent ());
+	}
+	
+	@Test
+	void decrementStockOfCartItems () {
+		List <CartItem> items = new ArrayList <> ();
+		
+		items.add (new CartItem (new User (), products.get (0), 2));
+		items.add (new CartItem (new User (), products.get (1), 6));
+		items.add (new CartItem (new User (), products.get (2), 5));
+		
+		assertArrayEquals (new int[] {1, 0, 1}, productRepo.decrementStock (items, new int[3]));
+		
+		assertEquals (3, productRepo.findById (products.get (0).getId ()).get ().getStock ());
+		assertEquals (5, productRepo.findById (products.get (1).getId ()).get ().getStock ());
+		assertEquals (0, productRepo.findById (products.get (2).getId ()).get ().getStock ());
+		assertEquals (1L, productRepo.findById (products.get (2).getId ()).get ().getVersion ());
+	}
+	
+	@Test
+	void reserveStock () {
+		Integer id = products.get (0).getId ();
+		
+		assertTrue (productRepo.reserveStock (id, 3));
+		assertFalse (productRepo.reserveStock (id, 3));
+		assertFalse (productRepo.reserveStock (-1, 1));
+		
+		testEntityManager.clear ();
+		
+		Product product = productRepo.findById (id).get ();
+		
+		assertEquals (5, product.getStock ());
+		assertEquals (3, product.getReserved ());
+		assertEquals (2, product.getAvailableStock ());
+		
+		//held stock can't be taken without its hold
+		assertArrayEquals (new int[] {0}, productRepo.decrementStock (Collections.singletonList (new CartItem (new User (), product, 3)), new int[1]));
+	}
+	
+	@Test
+	void releaseStock () {
+		Integer id = products.get (0).getId ();
+		Integer id0 = products.get (1).getId ();
+		
+		productRepo.reserveStock (id, 4);
+		productRepo.reserveStock (id0, 2);
+		
+		Map <Integer, Integer> quantities = new HashMap <> ();
+		
+		quantities.put (id, 3);
+		quantities.put (id0, 2);
+		
+		productRepo.releaseStock (quantities);
+		
+		testEntityManager.clear ();
+		
+		assertEquals (1, productRepo.findById (id).get ().getReserved ());
+		assertEquals (0, productRepo.findById (id0).get ().getReserved ());
+	}
+	
+	@Test
+	void decrementStockOfHeldCartItems () {
+		Integer id = products.get (0).getId ();
+		
+		productRepo.reserveStock (id, 5);
 		
-		expectedResult.add (products.get (2));
-		expectedResult.add (products.get (3));
+		List <CartItem> items = new ArrayList <> ();
 		
-		List <Product> actualResult = productRepo.findByNameIgnoreCaseContainingOrDescriptionIgnoreCaseContaining ("python", "python", PageRequest.of (0, postsPerPage, Sort.by ("name"))).getContent ();
+		items.add (new CartItem (new User (), products.get (0), 5));
+		items.add (new CartItem (new User (), products.get (1), 1));
 		
-		assertEquals (expectedResult, actualResult);
+		assertArrayEquals (new int[] {0, 1}, productRepo.decrementStock (items, new int[2]));
+		assertArrayEquals (new int[] {1, 1}, productRepo.decrementStock (items, new int[] {5, 0}));
+		
+		Product product = productRepo.findById (id).get ();
+		
+		assertEquals (0, product.getStock ());
+		assertEquals (0, product.getReserved ());
 	}
 	
 	@Test
-	void findByNameIgnoreCaseContainingOrDescriptionIgnoreCaseContainingWithDescriptionInSearchQuery () {
-		List <Product> expectedResult = new ArrayList <> ();
+	void saveDoesNotWriteReservedStock () {
+		Product product = products.get (0);
+		
+		productRepo.reserveStock (product.getId (), 2);
 		
-		expectedResult.add (products.get (0));
-		expectedResult.add (products.get (2));
+		product.setStock (10);
 		
-		List <Product> actualResult = productRepo.findByNameIgnoreCaseContainingOrDescriptionIgnoreCaseContaining ("beginner", "beginner", PageRequest.of (0, postsPerPage, Sort.by ("name"))).getContent ();
+		productRepo.saveAndFlush (product);
+		
+		testEntityManager.clear ();
+		
+		assertEquals (10, productRepo.findById (product.getId ()).get ().getStock ());
+		assertEquals (2, productRepo.findById (product.getId ()).get ().getReserved ());
+	}
+	
+	@Test
+	void streamAll () {
+		try (Stream <Product> stream = productRepo.streamAll ()) {
+			assertEquals (products, stream.collect (Collectors.toList ()));
+		}
+	}
+	
+	//runs outside of a test transaction, because products that haven't been committed aren't put in the read-write cache
+	@Test
+	@Transactional (propagation = Propagation.NOT_SUPPORTED)
+	void findByIdHitsTheSecondLevelCache () {
+		CacheRegionStatistics region = entityManagerFactory.unwrap (SessionFactory.class).getStatistics ().getDomainDataRegionStatistics ("product");
+		Integer id = products.get (0).getId ();
+		
+		productRepo.findById (id);
+		
+		long hits = region.getHitCount ();
+		
+		assertEquals (products.get (0), productRepo.findById (id).get ());
+		assertEquals (hits + 1, region.getHitCount ());
+	}
+	
+	//the stock is changed straight in the table, which the second-level cache doesn't hear about
+	@Test
+	@Transactional (propagation = Propagation.NOT_SUPPORTED)
+	void findUncachedByIdSkipsTheSecondLevelCache () throws SQLException {
+		Integer id = products.get (0).getId ();
+		
+		productRepo.findById (id);
+		
+		try (Connection connection = dataSource.getConnection (); Statement statement = connection.createStatement ()) {
+			statement.executeUpdate ("UPDATE product SET stock = 1 WHERE id = " + id);
+		}
 		
-		assertEquals (expectedResult, actualResult);
+		assertEquals (5, productRepo.findById (id).get ().getStock ());
+		assertEquals (1, productRepo.findUncachedById (id).get ().getStock ());
+		assertFalse (productRepo.findUncachedById (-1).isPresent ());
 	}
-}
\ No newline at end of file
+}
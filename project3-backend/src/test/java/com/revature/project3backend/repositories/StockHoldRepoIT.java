@@ -0,0 +1,51 @@
+package com.revature.project3backend.repositories;
+
+import com.revature.project3backend.models.StockHold;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+@DataJpaTest
+class StockHoldRepoIT {
+	@Autowired
+	private StockHoldRepo stockHoldRepo;
+	
+	private final Instant now = Instant.parse ("2022-01-01T12:00:00Z");
+	
+	private final List <StockHold> holds = new ArrayList <> ();
+	
+	@BeforeEach
+	void setUp () {
+		holds.add (stockHoldRepo.save (new StockHold (1, 1, 2, now.minusSeconds (60))));
+		holds.add (stockHoldRepo.save (new StockHold (2, 1, 1, now)));
+		holds.add (stockHoldRepo.save (new StockHold (3, 2, 4, now.plusSeconds (60))));
+	}
+	
+	@Test
+	void findByCartItemId () {
+		assertEquals (holds.get (1), stockHoldRepo.findByCartItemId (2).get ());
+		assertFalse (stockHoldRepo.findByCartItemId (9).isPresent ());
+	}
+	
+	@Test
+	void findByCartItemIds () {
+		assertEquals (Arrays.asList (holds.get (0), holds.get (2)), stockHoldRepo.findByCartItemIds (Arrays.asList (3, 1, 9)));
+	}
+	
+	@Test
+	void findExpired () {
+		List <Integer> ids = Arrays.asList (holds.get (0).getId (), holds.get (1).getId (), holds.get (2).getId ());
+		
+		assertEquals (Arrays.asList (holds.get (0), holds.get (1)), stockHoldRepo.findExpired (ids, now));
+		assertEquals (Arrays.asList (holds.get (1)), stockHoldRepo.findExpired (Arrays.asList (holds.get (1).getId ()), now));
+	}
+}
@@ -0,0 +1,63 @@
+package com.revature.project3backend.repositories;
+
+import com.revature.project3backend.models.TransactionLine;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DataJpaTest
+class TransactionLineRepoIT {
+	@Autowired
+	private TransactionLineRepo transactionLineRepo;
+	
+	@Test
+	void insertAll () {
+		List <TransactionLine> lines = new ArrayList <> ();
+		
+		//far more than the 2000 characters that the items of a transaction used to be limited to
+		for (int i = 1; i <= 500; i++) {
+			lines.add (new TransactionLine (null, 1, i, "A product with a rather long name " + i, 9.99F, i % 3 + 1));
+		}
+		
+		transactionLineRepo.insertAll (lines);
+		transactionLineRepo.insertAll (Arrays.asList (new TransactionLine (null, 2, 1, "Other", 5.00F, 1)));
+		
+		List <TransactionLine> found = transactionLineRepo.findByTransactionIdOrderById (1);
+		
+		assertEquals (500, found.size ());
+		
+		for (int i = 0; i < lines.size (); i++) {
+			lines.get (i).setId (found.get (i).getId ());
+		}
+		
+		assertEquals (lines, found);
+		assertEquals (1, transactionLineRepo.findByTransactionIdOrderById (2).size ());
+	}
+	
+	@Test
+	void sumQuantityByProduct () {
+		transactionLineRepo.insertAll (Arrays.asList (new TransactionLine (null, 1, 1, "Java I", 8.00F, 2), new TransactionLine (null, 1, 2, "Java II", 18.00F, 1)));
+		transactionLineRepo.insertAll (Arrays.asList (new TransactionLine (null, 2, 1, "Java I", 10.00F, 3)));
+		
+		Map <Integer, Long> quantities = new HashMap <> ();
+		
+		for (TransactionLineRepo.ProductSales sales : transactionLineRepo.sumQuantityByProduct ()) {
+			quantities.put (sales.getProductId (), sales.getQuantity ());
+		}
+		
+		Map <Integer, Long> expected = new HashMap <> ();
+		
+		expected.put (1, 5L);
+		expected.put (2, 1L);
+		
+		assertEquals (expected, quantities);
+	}
+}
@@ -1,9 +1,15 @@
 package com.revature.project3backend.repositories;
 
 import com.revature.project3backend.models.UserRole;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import javax.persistence.EntityManagerFactory;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -12,10 +18,25 @@ class UserRoleRepoIT {
     @Autowired
     private UserRoleRepo roleRepo;
 
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
     @Test
-    void findUserRoleByName() {
-    UserRole actual = roleRepo.findUserRoleByName("USER");
+    void findByIdHitsTheSecondLevelCache() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        CacheRegionStatistics region = statistics.getDomainDataRegionStatistics("user-role");
+
+        roleRepo.findById(1);
+        entityManager.clear();
+
+        long hits = region.getHitCount();
+        long queries = statistics.getPrepareStatementCount();
 
-    assertEquals( "USER", actual.getRole());
+        assertEquals("USER", roleRepo.findById(1).get().getRole());
+        assertEquals(hits + 1, region.getHitCount());
+        assertEquals(queries, statistics.getPrepareStatementCount());
     }
-}
\ No newline at end of file
+}
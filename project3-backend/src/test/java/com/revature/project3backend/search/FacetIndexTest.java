@@ -0,0 +1,94 @@
+package com.revature.project3backend.search;
+
+import com.revature.project3backend.jsonmodels.PriceFacet;
+import com.revature.project3backend.jsonmodels.ProductFacets;
+import com.revature.project3backend.models.Product;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class FacetIndexTest {
+	FacetIndex facetIndex = new FacetIndex ();
+	Map <Integer, Product> products = new HashMap <> ();
+
+	@BeforeEach
+	void beforeEach () {
+		add (new Product (1, "Java I", "", 8.00F, "", null, 5));
+		add (new Product (2, "Java II", "", 20.00F, "", 12.00F, 0));
+		add (new Product (3, "Python I", "", 30.00F, "", null, 5));
+		add (new Product (4, "Python II", "", 150.00F, "", 40.00F, 5));
+	}
+
+	void add (Product product) {
+		products.put (product.getId (), product);
+		facetIndex.add (product);
+	}
+
+	FacetIndex.Selection select (RoaringBitmap found, ProductFilter filter) {
+		return facetIndex.select (found, filter, products::get);
+	}
+
+	@Test
+	void select () {
+		FacetIndex.Selection selection = select (null, ProductFilter.NONE);
+
+		assertEquals (RoaringBitmap.bitmapOf (1, 2, 3, 4), selection.ids);
+		assertEquals (new ProductFacets (2, 3, Arrays.asList (
+			new PriceFacet (0.00F, 10.00F, 1),
+			new PriceFacet (10.00F, 25.00F, 1),
+			new PriceFacet (25.00F, 50.00F, 2),
+			new PriceFacet (50.00F, 100.00F, 0),
+			new PriceFacet (100.00F, null, 0)
+		)), selection.facets);
+	}
+
+	@Test
+	void selectWithFilter () {
+		FacetIndex.Selection selection = select (RoaringBitmap.bitmapOf (2, 3, 4), new ProductFilter (null, null, true, false));
+
+		assertEquals (RoaringBitmap.bitmapOf (2, 4), selection.ids);
+		assertEquals (2, selection.facets.getOnSale ());
+		assertEquals (1, selection.facets.getInStock ());
+		assertEquals (1, selection.facets.getPrices ().get (1).getCount ());
+		assertEquals (1, selection.facets.getPrices ().get (2).getCount ());
+	}
+
+	@Test
+	void selectWithPriceRange () {
+		assertEquals (RoaringBitmap.bitmapOf (2, 3), select (null, new ProductFilter (12.00F, 35.00F, false, false)).ids);
+		assertEquals (RoaringBitmap.bitmapOf (3, 4), select (null, new ProductFilter (25.00F, null, false, false)).ids);
+		assertEquals (RoaringBitmap.bitmapOf (1), select (null, new ProductFilter (null, 10.00F, false, false)).ids);
+		assertEquals (RoaringBitmap.bitmapOf (3, 4), select (null, new ProductFilter (13.00F, null, false, true)).ids);
+		assertEquals (1, select (null, new ProductFilter (13.00F, null, false, true)).facets.getOnSale ());
+	}
+
+	@Test
+	void addWhenStockIsHeld () {
+		Product product = new Product (5, "Rust", "", 10.00F, "", null, 5);
+
+		product.setReserved (5);
+
+		add (product);
+
+		assertEquals (RoaringBitmap.bitmapOf (1, 3, 4), select (null, new ProductFilter (null, null, false, true)).ids);
+	}
+
+	@Test
+	void remove () {
+		Product product = products.get (2);
+
+		facetIndex.remove (product);
+
+		product.setStock (3);
+
+		add (product);
+
+		assertEquals (4, select (null, ProductFilter.NONE).facets.getInStock ());
+	}
+}
@@ -0,0 +1,84 @@
+package com.revature.project3backend.search;
+
+import com.revature.project3backend.models.Product;
+import com.revature.project3backend.repositories.ProductRepo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PostgresProductSearchTest {
+	ProductRepo productRepo = Mockito.mock (ProductRepo.class);
+	DataSource dataSource = Mockito.mock (DataSource.class);
+	Connection connection = Mockito.mock (Connection.class);
+	DatabaseMetaData metaData = Mockito.mock (DatabaseMetaData.class);
+	Statement statement = Mockito.mock (Statement.class);
+	PostgresProductSearch postgresProductSearch = new PostgresProductSearch (productRepo, dataSource);
+
+	@BeforeEach
+	void beforeEach () throws SQLException {
+		Mockito.when (dataSource.getConnection ()).thenReturn (connection);
+		Mockito.when (connection.getMetaData ()).thenReturn (metaData);
+		Mockito.when (connection.createStatement ()).thenReturn (statement);
+	}
+
+	@Test
+	void initialize () throws SQLException {
+		Mockito.when (metaData.getDatabaseProductName ()).thenReturn ("PostgreSQL");
+
+		postgresProductSearch.initialize ();
+
+		assertTrue (postgresProductSearch.isAvailable ());
+
+		Mockito.verify (statement).execute (Mockito.contains ("ALTER TABLE product ALTER COLUMN name TYPE varchar(255) COLLATE \"C\""));
+		Mockito.verify (statement).execute ("CREATE EXTENSION IF NOT EXISTS pg_trgm");
+	}
+
+	@Test
+	void initializeWhenDatabaseIsNotPostgres () throws SQLException {
+		Mockito.when (metaData.getDatabaseProductName ()).thenReturn ("H2");
+
+		postgresProductSearch.initialize ();
+
+		assertFalse (postgresProductSearch.isAvailable ());
+
+		Mockito.verify (statement, Mockito.never ()).execute (Mockito.anyString ());
+	}
+
+	@Test
+	void initializeWhenIndexesCannotBeCreated () throws SQLException {
+		Mockito.when (metaData.getDatabaseProductName ()).thenReturn ("PostgreSQL");
+		Mockito.when (statement.execute (Mockito.anyString ())).thenThrow (new SQLException ("permission denied to create extension"));
+
+		postgresProductSearch.initialize ();
+
+		assertFalse (postgresProductSearch.isAvailable ());
+	}
+
+	@Test
+	void search () {
+		List <Product> products = new ArrayList <> ();
+
+		products.add (new Product (1, "100% Java", "description", 10F, "", null, 10));
+
+		Slice <Product> slice = new SliceImpl <> (products, PageRequest.of (2, 20), false);
+
+		Mockito.when (productRepo.searchByTrigrams ("100% java", "%100\\% java%", PageRequest.of (2, 20))).thenReturn (slice);
+
+		assertEquals (slice, postgresProductSearch.search ("100% Java", 2, 20));
+	}
+}
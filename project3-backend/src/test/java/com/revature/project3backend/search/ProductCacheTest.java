@@ -0,0 +1,91 @@
+package com.revature.project3backend.search;
+
+import com.revature.project3backend.models.Product;
+import com.revature.project3backend.repositories.ProductRepo;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ProductCacheTest {
+	ProductRepo productRepo = Mockito.mock (ProductRepo.class);
+	MeterRegistry meterRegistry = new SimpleMeterRegistry ();
+	AtomicLong nanos = new AtomicLong ();
+	ProductCache productCache = new ProductCache (productRepo, 100, Duration.ofSeconds (5), meterRegistry, nanos::get);
+	Product product = new Product (1, "Java I", "A beginner Java course", 10.00F, "", 8.00F, 5);
+
+	ProductCacheTest () {
+		Mockito.when (productRepo.findUncachedById (1)).thenReturn (Optional.of (product));
+		Mockito.when (productRepo.findUncachedById (2)).thenReturn (Optional.empty ());
+	}
+
+	@Test
+	void get () {
+		assertEquals (product, productCache.get (1));
+		assertEquals (product, productCache.get (1));
+		Mockito.verify (productRepo, Mockito.times (1)).findUncachedById (Mockito.any ());
+	}
+
+	@Test
+	void getCopiesTheProduct () {
+		Product cached = productCache.get (1);
+
+		assertNotSame (product, cached);
+
+		cached.setStock (0);
+		product.setStock (1);
+
+		assertEquals (5, productCache.get (1).getStock ());
+	}
+
+	@Test
+	void getWhenProductIsMissing () {
+		assertNull (productCache.get (2));
+		assertNull (productCache.get (2));
+		Mockito.verify (productRepo, Mockito.times (2)).findUncachedById (Mockito.any ());
+	}
+
+	@Test
+	void getAfterMaxStaleness () {
+		productCache.get (1);
+		nanos.addAndGet (TimeUnit.SECONDS.toNanos (4));
+		productCache.get (1);
+
+		Mockito.verify (productRepo, Mockito.times (1)).findUncachedById (Mockito.any ());
+
+		nanos.addAndGet (TimeUnit.SECONDS.toNanos (2));
+		productCache.get (1);
+
+		Mockito.verify (productRepo, Mockito.times (2)).findUncachedById (Mockito.any ());
+	}
+
+	@Test
+	void invalidate () {
+		productCache.get (1);
+		productCache.invalidate (1);
+		productCache.get (1);
+
+		Mockito.verify (productRepo, Mockito.times (2)).findUncachedById (Mockito.any ());
+	}
+
+	@Test
+	void metrics () {
+		productCache.get (1);
+		productCache.get (1);
+
+		assertEquals (1, meterRegistry.get ("cache.gets").tag ("cache", ProductCache.NAME).tag ("result", "hit").functionCounter ().count ());
+		assertEquals (1, meterRegistry.get ("cache.gets").tag ("cache", ProductCache.NAME).tag ("result", "miss").functionCounter ().count ());
+		assertEquals (1, meterRegistry.get ("cache.load").tag ("cache", ProductCache.NAME).tag ("result", "success").functionCounter ().count ());
+		assertNotNull (meterRegistry.get ("cache.load.duration").tag ("cache", ProductCache.NAME).timeGauge ());
+	}
+}
@@ -0,0 +1,22 @@
+package com.revature.project3backend.search;
+
+import com.revature.project3backend.exceptions.InvalidValueException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ProductCursorTest {
+	@Test
+	void decode () throws InvalidValueException {
+		ProductCursor cursor = new ProductCursor ("Java: The Good Parts", 12);
+
+		assertEquals (cursor, ProductCursor.decode (cursor.encode ()));
+	}
+
+	@Test
+	void decodeWhenCursorIsInvalid () {
+		assertThrows (InvalidValueException.class, () -> ProductCursor.decode ("not a cursor"));
+		assertThrows (InvalidValueException.class, () -> ProductCursor.decode ("YWJj"));
+	}
+}
@@ -0,0 +1,63 @@
+package com.revature.project3backend.search;
+
+import com.revature.project3backend.jsonmodels.ProductListing;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class ProductSearchCacheTest {
+	MeterRegistry meterRegistry = new SimpleMeterRegistry ();
+	ProductSearchCache productSearchCache = new ProductSearchCache (100, Duration.ofMinutes (1), meterRegistry);
+	AtomicInteger loads = new AtomicInteger ();
+
+	Slice <ProductListing> load () {
+		loads.incrementAndGet ();
+
+		List <ProductListing> products = new ArrayList <> ();
+
+		products.add (new ProductListing (1, "Java I", "A beginner Java course", 10.00F, "", 8.00F, 5));
+
+		return new SliceImpl <> (products, PageRequest.of (0, 20), false);
+	}
+
+	@Test
+	void get () {
+		Slice <ProductListing> page = productSearchCache.get ("Java", 0, ProductSort.NAME, ProductFilter.NONE, this::load);
+
+		assertSame (page, productSearchCache.get ("JAVA", 0, ProductSort.NAME, ProductFilter.NONE, this::load));
+		assertEquals (1, loads.get ());
+
+		productSearchCache.get ("java", 1, ProductSort.NAME, ProductFilter.NONE, this::load);
+
+		assertEquals (2, loads.get ());
+	}
+
+	@Test
+	void invalidate () {
+		productSearchCache.get ("java", 0, ProductSort.NAME, ProductFilter.NONE, this::load);
+		productSearchCache.invalidate ();
+		productSearchCache.get ("java", 0, ProductSort.NAME, ProductFilter.NONE, this::load);
+
+		assertEquals (2, loads.get ());
+	}
+
+	@Test
+	void metrics () {
+		productSearchCache.get ("java", 0, ProductSort.NAME, ProductFilter.NONE, this::load);
+		productSearchCache.get ("java", 0, ProductSort.NAME, ProductFilter.NONE, this::load);
+
+		assertEquals (1, meterRegistry.get ("cache.gets").tag ("cache", ProductSearchCache.NAME).tag ("result", "hit").functionCounter ().count ());
+		assertEquals (1, meterRegistry.get ("cache.gets").tag ("cache", ProductSearchCache.NAME).tag ("result", "miss").functionCounter ().count ());
+	}
+}
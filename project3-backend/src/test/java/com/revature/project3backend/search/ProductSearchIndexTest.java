@@ -0,0 +1,307 @@
+package com.revature.project3backend.search;
+
+import com.revature.project3backend.models.Product;
+import com.revature.project3backend.repositories.ProductRepo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProductSearchIndexTest {
+	ProductRepo productRepo = Mockito.mock (ProductRepo.class);
+	ProductSearchIndex productSearchIndex;
+	List <Product> products = new ArrayList <> ();
+
+	@BeforeEach
+	void beforeEach () {
+		products.add (new Product (1, "Python II", "An intermediate Python course", 20.00F, "", 18.00F, 5));
+		products.add (new Product (2, "Java I", "A beginner Java course", 10.00F, "", 8.00F, 5));
+		products.add (new Product (3, "Python I", "A beginner Python course", 10.00F, "", 8.00F, 5));
+		products.add (new Product (4, "Java II", "An intermediate Java course", 20.00F, "", 18.00F, 5));
+
+		Mockito.when (productRepo.findAll (Mockito.any (Pageable.class))).thenReturn (new PageImpl <> (products, PageRequest.of (0, 1000), products.size ()));
+
+		productSearchIndex = new ProductSearchIndex (productRepo, true, 5);
+		productSearchIndex.rebuild ();
+	}
+
+	@Test
+	void rebuild () {
+		assertTrue (productSearchIndex.isReady ());
+	}
+
+	@Test
+	void rebuildWhenDisabled () {
+		ProductSearchIndex disabled = new ProductSearchIndex (productRepo, false, 5);
+
+		disabled.rebuild ();
+
+		assertFalse (disabled.isReady ());
+	}
+
+	@Test
+	void searchWithNameInSearchQuery () {
+		assertEquals (Arrays.asList (products.get (2), products.get (0)), productSearchIndex.search ("PYTHON", 0, 20, ProductSort.NAME, ProductFilter.NONE).getContent ());
+	}
+
+	@Test
+	void searchWithDescriptionInSearchQuery () {
+		assertEquals (Arrays.asList (products.get (1), products.get (2)), productSearchIndex.search ("beginner", 0, 20, ProductSort.NAME, ProductFilter.NONE).getContent ());
+	}
+
+	@Test
+	void searchWithShortSearchQuery () {
+		assertEquals (Arrays.asList (products.get (1), products.get (3), products.get (2), products.get (0)), productSearchIndex.search ("i", 0, 20, ProductSort.NAME, ProductFilter.NONE).getContent ());
+	}
+
+	@Test
+	void searchWithEmptySearchQuery () {
+		assertEquals (Arrays.asList (products.get (1), products.get (3), products.get (2), products.get (0)), productSearchIndex.search ("", 0, 20, ProductSort.NAME, ProductFilter.NONE).getContent ());
+	}
+
+	@Test
+	void searchWhenNothingMatches () {
+		assertEquals (new ArrayList <> (), productSearchIndex.search ("rust", 0, 20, ProductSort.NAME, ProductFilter.NONE).getContent ());
+	}
+
+	@Test
+	void searchPages () {
+		Page <Product> page = productSearchIndex.search ("", 1, 2, ProductSort.NAME, ProductFilter.NONE);
+
+		assertEquals (Arrays.asList (products.get (2), products.get (0)), page.getContent ());
+		assertEquals (4, page.getTotalElements ());
+		assertFalse (page.hasNext ());
+		assertTrue (productSearchIndex.search ("", 0, 2, ProductSort.NAME, ProductFilter.NONE).hasNext ());
+		assertEquals (new ArrayList <> (), productSearchIndex.search ("", 2, 2, ProductSort.NAME, ProductFilter.NONE).getContent ());
+	}
+
+	@Test
+	void searchByRelevance () {
+		Product bundle = new Product (5, "Intro bundle", "Python and Java", 25.00F, "", null, 5);
+
+		productSearchIndex.index (bundle);
+
+		assertEquals (Arrays.asList (bundle, products.get (2), products.get (0)), productSearchIndex.search ("python", 0, 20, ProductSort.NAME, ProductFilter.NONE).getContent ());
+		assertEquals (Arrays.asList (products.get (2), products.get (0), bundle), productSearchIndex.search ("python", 0, 20, ProductSort.RELEVANCE, ProductFilter.NONE).getContent ());
+		assertEquals (Arrays.asList (products.get (0)), productSearchIndex.search ("python", 1, 1, ProductSort.RELEVANCE, ProductFilter.NONE).getContent ());
+		assertEquals (3, productSearchIndex.search ("python", 1, 1, ProductSort.RELEVANCE, ProductFilter.NONE).getTotalElements ());
+	}
+
+	@Test
+	void searchByRelevanceWithoutSearchQuery () {
+		assertEquals (productSearchIndex.search ("", 0, 20, ProductSort.NAME, ProductFilter.NONE).getContent (), productSearchIndex.search ("", 0, 20, ProductSort.RELEVANCE, ProductFilter.NONE).getContent ());
+	}
+
+	@Test
+	void searchWithMisspelledSearchQuery () {
+		Page <Product> page = productSearchIndex.search ("jaav", 0, 20, ProductSort.NAME, ProductFilter.NONE);
+
+		assertEquals (Arrays.asList (products.get (1), products.get (3)), page.getContent ());
+		assertEquals (2, page.getTotalElements ());
+		assertEquals (Arrays.asList (products.get (2), products.get (0)), productSearchIndex.search ("pyhton i", 0, 20, ProductSort.RELEVANCE, ProductFilter.NONE).getContent ());
+	}
+
+	@Test
+	void searchWithMisspelledSearchQueryAfterExactMatches () {
+		Product product = new Product (5, "Jaavanese Tea", "A green tea", 5.00F, "", null, 5);
+
+		productSearchIndex.index (product);
+
+		assertEquals (Arrays.asList (product, products.get (1), products.get (3)), productSearchIndex.search ("jaav", 0, 20, ProductSort.NAME, ProductFilter.NONE).getContent ());
+	}
+
+	@Test
+	void searchWithMisspelledSearchQueryWhenFuzzySearchIsOff () {
+		ProductSearchIndex exact = new ProductSearchIndex (productRepo, true, 0);
+
+		exact.rebuild ();
+
+		assertEquals (new ArrayList <> (), exact.search ("jaav", 0, 20, ProductSort.NAME, ProductFilter.NONE).getContent ());
+	}
+
+	@Test
+	void searchWithFilter () {
+		productSearchIndex.index (new Product (4, "Java II", "An intermediate Java course", 20.00F, "", null, 0));
+
+		FacetedPage page = productSearchIndex.search ("java", 0, 20, ProductSort.NAME, new ProductFilter (null, 15.00F, false, false));
+
+		assertEquals (Arrays.asList (products.get (1)), page.getContent ());
+		assertEquals (1, page.getTotalElements ());
+		assertEquals (1, page.getFacets ().getOnSale ());
+		assertEquals (1, page.getFacets ().getInStock ());
+		assertEquals (1, page.getFacets ().getPrices ().get (0).getCount ());
+		assertEquals (1, page.getFacets ().getPrices ().get (1).getCount ());
+		assertEquals (Arrays.asList (products.get (1)), productSearchIndex.search ("java", 0, 20, ProductSort.NAME, new ProductFilter (null, null, false, true)).getContent ());
+		assertEquals (Arrays.asList (products.get (1)), productSearchIndex.search ("java", 0, 20, ProductSort.NAME, new ProductFilter (null, null, true, true)).getContent ());
+	}
+
+	@Test
+	void searchWithFilterWithoutSearchQuery () {
+		productSearchIndex.index (new Product (4, "Java II", "An intermediate Java course", 20.00F, "", null, 0));
+
+		FacetedPage page = productSearchIndex.search ("", 1, 1, ProductSort.NAME, new ProductFilter (null, null, false, true));
+
+		assertEquals (Arrays.asList (products.get (2)), page.getContent ());
+		assertEquals (3, page.getTotalElements ());
+		assertEquals (3, page.getFacets ().getInStock ());
+	}
+
+	@Test
+	void searchFacetsWithoutSearchQuery () {
+		FacetedPage page = productSearchIndex.search ("", 0, 1, ProductSort.NAME, ProductFilter.NONE);
+
+		assertEquals (4, page.getFacets ().getOnSale ());
+		assertEquals (4, page.getFacets ().getInStock ());
+		assertEquals (2, page.getFacets ().getPrices ().get (0).getCount ());
+		assertEquals (2, page.getFacets ().getPrices ().get (1).getCount ());
+	}
+
+	@Test
+	void get () {
+		Map <Integer, Product> found = productSearchIndex.get (Arrays.asList (2, 9, 4));
+
+		assertEquals (2, found.size ());
+		assertEquals (products.get (1), found.get (2));
+		assertEquals (products.get (3), found.get (4));
+
+		found.get (2).setStock (0);
+
+		assertEquals (5, productSearchIndex.get (Arrays.asList (2)).get (2).getStock ());
+	}
+
+	@Test
+	void updateReserved () {
+		assertTrue (productSearchIndex.updateReserved (2, 5));
+		assertEquals (Arrays.asList (products.get (3)), productSearchIndex.search ("java", 0, 20, ProductSort.NAME, new ProductFilter (null, null, false, true)).getContent ());
+
+		assertFalse (productSearchIndex.updateReserved (2, 6));
+		assertTrue (productSearchIndex.updateReserved (2, 4));
+		assertFalse (productSearchIndex.updateReserved (2, 0));
+		assertFalse (productSearchIndex.updateReserved (9, 1));
+
+		assertEquals (0, productSearchIndex.get (Arrays.asList (2)).get (2).getReserved ());
+		assertEquals (Arrays.asList (products.get (1), products.get (3)), productSearchIndex.search ("java", 0, 20, ProductSort.NAME, new ProductFilter (null, null, false, true)).getContent ());
+	}
+
+	@Test
+	void updateStock () {
+		Product product = new Product (2, "Java I", "A beginner Java course", 10.00F, "", 8.00F, 0);
+
+		assertTrue (productSearchIndex.updateStock (product));
+		assertEquals (Arrays.asList (products.get (3)), productSearchIndex.search ("java", 0, 20, ProductSort.NAME, new ProductFilter (null, null, false, true)).getContent ());
+
+		product.setStock (3);
+
+		assertTrue (productSearchIndex.updateStock (product));
+
+		product.setStock (2);
+
+		assertFalse (productSearchIndex.updateStock (product));
+		assertEquals (2, productSearchIndex.get (Arrays.asList (2)).get (2).getStock ());
+		assertTrue (productSearchIndex.updateStock (new Product (9, "Rust I", "A beginner Rust course", 10.00F, "", null, 5)));
+	}
+
+	@Test
+	void searchAfter () {
+		Slice <Product> first = productSearchIndex.searchAfter ("", null, 3);
+
+		assertEquals (Arrays.asList (products.get (1), products.get (3), products.get (2)), first.getContent ());
+		assertTrue (first.hasNext ());
+
+		Slice <Product> second = productSearchIndex.searchAfter ("", ProductCursor.after (products.get (2)), 3);
+
+		assertEquals (Arrays.asList (products.get (0)), second.getContent ());
+		assertFalse (second.hasNext ());
+	}
+
+	@Test
+	void searchAfterOrdersNamesByCharacter () {
+		Product product = new Product (5, "java basics", "A beginner Java course", 10.00F, "", null, 5);
+
+		productSearchIndex.index (product);
+
+		//uppercase letters come before lowercase ones, like ProductRepo.findListings
+		assertEquals (Arrays.asList (products.get (1), products.get (3), product), productSearchIndex.searchAfter ("java", null, 20).getContent ());
+	}
+
+	@Test
+	void searchAfterWithSearchQuery () {
+		Slice <Product> first = productSearchIndex.searchAfter ("python", null, 1);
+
+		assertEquals (Arrays.asList (products.get (2)), first.getContent ());
+		assertTrue (first.hasNext ());
+
+		Slice <Product> second = productSearchIndex.searchAfter ("python", ProductCursor.after (products.get (2)), 1);
+
+		assertEquals (Arrays.asList (products.get (0)), second.getContent ());
+		assertFalse (second.hasNext ());
+	}
+
+	@Test
+	void searchAfterWithFewMatches () {
+		//with this many other products, the few that contain java are sorted rather than found by walking the catalog
+		for (int id = 5; id < 25; id++) {
+			productSearchIndex.index (new Product (id, "Rust " + id, "A Rust course", 10.00F, "", null, 5));
+		}
+
+		Slice <Product> first = productSearchIndex.searchAfter ("java", null, 1);
+
+		assertEquals (Arrays.asList (products.get (1)), first.getContent ());
+		assertTrue (first.hasNext ());
+
+		Slice <Product> second = productSearchIndex.searchAfter ("java", ProductCursor.after (products.get (1)), 1);
+
+		assertEquals (Arrays.asList (products.get (3)), second.getContent ());
+		assertFalse (second.hasNext ());
+		assertEquals (new ArrayList <> (), productSearchIndex.searchAfter ("java", ProductCursor.after (products.get (3)), 1).getContent ());
+	}
+
+	@Test
+	void searchAfterWhenCursorProductIsGone () {
+		assertEquals (Arrays.asList (products.get (3), products.get (0)), productSearchIndex.searchAfter ("ii", new ProductCursor ("Java I", 9), 20).getContent ());
+	}
+
+	@Test
+	void index () {
+		Product product = new Product (1, "Rust", "Learn Rust language", 13.99F, "", null, 30);
+
+		productSearchIndex.index (product);
+
+		assertEquals (Arrays.asList (product), productSearchIndex.search ("rust", 0, 20, ProductSort.NAME, ProductFilter.NONE).getContent ());
+		assertEquals (Arrays.asList (products.get (2)), productSearchIndex.search ("python", 0, 20, ProductSort.NAME, ProductFilter.NONE).getContent ());
+	}
+
+	@Test
+	void indexCopiesTheProduct () {
+		Product product = new Product (5, "Rust", "Learn Rust language", 13.99F, "", null, 30);
+
+		productSearchIndex.index (product);
+
+		product.setStock (0);
+
+		assertEquals (30, productSearchIndex.search ("rust", 0, 20, ProductSort.NAME, ProductFilter.NONE).getContent ().get (0).getStock ());
+	}
+
+	@Test
+	void indexWhenOnlyStockChanged () {
+		Product product = new Product (3, "Python I", "A beginner Python course", 10.00F, "", 8.00F, 0);
+
+		productSearchIndex.index (product);
+
+		assertEquals (0, productSearchIndex.search ("python", 0, 20, ProductSort.RELEVANCE, ProductFilter.NONE).getContent ().get (0).getStock ());
+		assertEquals (Arrays.asList (products.get (1), product), productSearchIndex.search ("beginner", 0, 20, ProductSort.RELEVANCE, ProductFilter.NONE).getContent ());
+	}
+}
@@ -0,0 +1,75 @@
+package com.revature.project3backend.search;
+
+import com.revature.project3backend.jsonmodels.ProductSuggestion;
+import com.revature.project3backend.models.Product;
+import com.revature.project3backend.repositories.ProductRepo;
+import com.revature.project3backend.repositories.TransactionLineRepo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ProductSuggestionsTest {
+	ProductRepo productRepo = Mockito.mock (ProductRepo.class);
+	TransactionLineRepo transactionLineRepo = Mockito.mock (TransactionLineRepo.class);
+	ProductSuggestions productSuggestions = new ProductSuggestions (productRepo, transactionLineRepo);
+	List <Product> products = new ArrayList <> ();
+
+	@BeforeEach
+	void beforeEach () {
+		products.add (new Product (1, "Java I", "A beginner Java course", 10.00F, "", 8.00F, 5));
+		products.add (new Product (2, "Java II", "An intermediate Java course", 20.00F, "", 18.00F, 5));
+		products.add (new Product (3, "Advanced Java", "An advanced Java course", 30.00F, "", null, 5));
+
+		TransactionLineRepo.ProductSales sales = Mockito.mock (TransactionLineRepo.ProductSales.class);
+
+		Mockito.when (sales.getProductId ()).thenReturn (2);
+		Mockito.when (sales.getQuantity ()).thenReturn (3L);
+
+		Mockito.when (productRepo.findAll (Mockito.any (Pageable.class))).thenReturn (new PageImpl <> (products, PageRequest.of (0, 1000), products.size ()));
+		Mockito.when (transactionLineRepo.sumQuantityByProduct ()).thenReturn (Arrays.asList (sales));
+
+		productSuggestions.rebuild ();
+	}
+
+	@Test
+	void suggest () {
+		assertEquals (Arrays.asList (new ProductSuggestion (2, "Java II"), new ProductSuggestion (3, "Advanced Java"), new ProductSuggestion (1, "Java I")), productSuggestions.suggest ("JAV", 10));
+		assertEquals (Arrays.asList (new ProductSuggestion (3, "Advanced Java")), productSuggestions.suggest ("adv", 10));
+		assertEquals (Arrays.asList (new ProductSuggestion (2, "Java II")), productSuggestions.suggest ("java", 1));
+	}
+
+	@Test
+	void suggestBeforeRebuild () {
+		assertEquals (new ArrayList <> (), new ProductSuggestions (productRepo, transactionLineRepo).suggest ("java", 10));
+	}
+
+	@Test
+	void index () {
+		productSuggestions.index (new Product (1, "Python I", "A beginner Python course", 10.00F, "", 8.00F, 5));
+		productSuggestions.index (new Product (4, "Python II", "An intermediate Python course", 20.00F, "", 18.00F, 5));
+
+		assertEquals (Arrays.asList (new ProductSuggestion (1, "Python I"), new ProductSuggestion (4, "Python II")), productSuggestions.suggest ("py", 10));
+		assertEquals (Arrays.asList (new ProductSuggestion (2, "Java II"), new ProductSuggestion (3, "Advanced Java")), productSuggestions.suggest ("java", 10));
+	}
+
+	@Test
+	void sold () {
+		productSuggestions.sold (products.get (0), 5);
+
+		assertEquals (Arrays.asList (new ProductSuggestion (1, "Java I"), new ProductSuggestion (2, "Java II"), new ProductSuggestion (3, "Advanced Java")), productSuggestions.suggest ("java", 10));
+	}
+
+	@Test
+	void keys () {
+		assertEquals (Arrays.asList ("advanced  java", "java"), new ArrayList <> (ProductSuggestions.keys (" Advanced  Java")));
+	}
+}
@@ -0,0 +1,65 @@
+package com.revature.project3backend.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RelevanceIndexTest {
+	RelevanceIndex relevanceIndex = new RelevanceIndex ();
+
+	@Test
+	void rank () {
+		int description = relevanceIndex.add ("course bundle", "java and python");
+		int name = relevanceIndex.add ("java i", "a beginner course");
+		int unrelated = relevanceIndex.add ("python i", "a beginner course");
+
+		assertArrayEquals (new int[] {1, 0, 2}, relevanceIndex.rank ("java", new int[] {description, name, unrelated}, 3));
+		assertArrayEquals (new int[] {1}, relevanceIndex.rank ("java", new int[] {description, name, unrelated}, 1));
+	}
+
+	@Test
+	void rankByTermFrequency () {
+		int once = relevanceIndex.add ("tea", "green tea from japan");
+		int twice = relevanceIndex.add ("tea", "green tea and black tea");
+
+		assertArrayEquals (new int[] {1, 0}, relevanceIndex.rank ("tea", new int[] {once, twice}, 2));
+	}
+
+	@Test
+	void rankKeepsTies () {
+		int first = relevanceIndex.add ("java i", "a java course");
+		int second = relevanceIndex.add ("java i", "a java course");
+
+		assertArrayEquals (new int[] {0, 1}, relevanceIndex.rank ("java", new int[] {first, second}, 2));
+		assertArrayEquals (new int[] {0, 1}, relevanceIndex.rank ("rust", new int[] {first, second}, 2));
+	}
+
+	@Test
+	void remove () {
+		int java = relevanceIndex.add ("java i", "a java course");
+		int python = relevanceIndex.add ("python i", "a python course");
+
+		relevanceIndex.remove (java, "java i", "a java course");
+
+		int rust = relevanceIndex.add ("rust", "a rust course");
+
+		assertEquals (java, rust);
+		assertArrayEquals (new int[] {1, 0}, relevanceIndex.rank ("python", new int[] {rust, python}, 2));
+		assertArrayEquals (new int[] {0, 1}, relevanceIndex.rank ("java", new int[] {rust, python}, 2));
+	}
+
+	@Test
+	void smallest () {
+		assertArrayEquals (new long[] {1, 2, 3}, RelevanceIndex.smallest (new long[] {9, 3, 7, 1, 8, 2, 6, 5}, 3));
+		assertArrayEquals (new long[] {1, 2, 3, 5, 6}, RelevanceIndex.smallest (new long[] {9, 3, 7, 1, 8, 2, 6, 5}, 5));
+		assertArrayEquals (new long[0], RelevanceIndex.smallest (new long[] {2, 1}, 0));
+	}
+
+	@Test
+	void tokenize () {
+		assertEquals (Arrays.asList ("c", "for", "beginners", "2nd", "edition"), RelevanceIndex.tokenize ("c++ for beginners, 2nd edition"));
+	}
+}
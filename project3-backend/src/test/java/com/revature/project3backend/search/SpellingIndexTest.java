@@ -0,0 +1,57 @@
+package com.revature.project3backend.search;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class SpellingIndexTest {
+	SpellingIndex spellingIndex = new SpellingIndex ();
+
+	@Test
+	void correct () {
+		spellingIndex.add ("spring boot in action");
+		spellingIndex.add ("java i");
+		spellingIndex.add ("introduction to programming");
+
+		assertEquals ("spring", spellingIndex.correct ("sprng"));
+		assertEquals ("java", spellingIndex.correct ("jaav"));
+		assertEquals ("programming", spellingIndex.correct ("progamming"));
+		assertEquals ("introduction", spellingIndex.correct ("intorductoin"));
+		assertNull (spellingIndex.correct ("jv"));
+		assertNull (spellingIndex.correct ("jaaaav"));
+		assertNull (spellingIndex.correct ("python"));
+	}
+
+	@Test
+	void correctToTheMostCommonWord () {
+		spellingIndex.add ("cart");
+		spellingIndex.add ("card games");
+		spellingIndex.add ("card tricks");
+
+		assertEquals ("card", spellingIndex.correct ("carx"));
+	}
+
+	@Test
+	void remove () {
+		spellingIndex.add ("java i");
+		spellingIndex.add ("java ii");
+		spellingIndex.remove ("java i");
+
+		assertEquals ("java", spellingIndex.correct ("jaav"));
+
+		spellingIndex.remove ("java ii");
+
+		assertNull (spellingIndex.correct ("jaav"));
+	}
+
+	@Test
+	void distance () {
+		assertEquals (0, SpellingIndex.distance ("java", "java", 2));
+		assertEquals (1, SpellingIndex.distance ("jaav", "java", 2));
+		assertEquals (1, SpellingIndex.distance ("sprng", "spring", 2));
+		assertEquals (2, SpellingIndex.distance ("kitten", "sittin", 2));
+		assertEquals (3, SpellingIndex.distance ("kitten", "sitting", 2));
+		assertEquals (3, SpellingIndex.distance ("java", "javascript", 2));
+	}
+}
@@ -0,0 +1,69 @@
+package com.revature.project3backend.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Comparator;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+class SuggestionTrieTest {
+	SuggestionTrie trie = new SuggestionTrie (2, Comparator.naturalOrder ());
+
+	@Test
+	void complete () {
+		trie.add ("java i", 1);
+		trie.add ("java ii", 2);
+		trie.add ("javascript", 3);
+		trie.add ("python", 4);
+
+		assertArrayEquals (new int[] {1, 2}, trie.complete ("ja"));
+		assertArrayEquals (new int[] {1, 2}, trie.complete ("java "));
+		assertArrayEquals (new int[] {2}, trie.complete ("java ii"));
+		assertArrayEquals (new int[] {3}, trie.complete ("javas"));
+		assertArrayEquals (new int[] {4}, trie.complete ("py"));
+		assertArrayEquals (new int[] {1, 2}, trie.complete (""));
+		assertArrayEquals (new int[0], trie.complete ("javax"));
+		assertArrayEquals (new int[0], trie.complete ("java iii"));
+		assertArrayEquals (new int[0], trie.complete ("rust"));
+	}
+
+	@Test
+	void remove () {
+		trie.add ("java i", 1);
+		trie.add ("java ii", 2);
+		trie.add ("javascript", 3);
+
+		trie.remove ("java i", 1);
+
+		assertArrayEquals (new int[] {2, 3}, trie.complete ("java"));
+		assertArrayEquals (new int[] {2}, trie.complete ("java i"));
+
+		trie.remove ("java ii", 2);
+
+		assertArrayEquals (new int[] {3}, trie.complete ("j"));
+		assertArrayEquals (new int[0], trie.complete ("java "));
+
+		trie.add ("java ii", 2);
+
+		assertArrayEquals (new int[] {2, 3}, trie.complete ("java"));
+	}
+
+	@Test
+	void removeWhenKeyIsMissing () {
+		trie.add ("java", 1);
+
+		trie.remove ("jav", 1);
+		trie.remove ("java", 2);
+
+		assertArrayEquals (new int[] {1}, trie.complete ("j"));
+	}
+
+	@Test
+	void completeWithSameKeyForManyProducts () {
+		trie.add ("java", 3);
+		trie.add ("java", 1);
+		trie.add ("java", 2);
+
+		assertArrayEquals (new int[] {1, 2}, trie.complete ("java"));
+	}
+}
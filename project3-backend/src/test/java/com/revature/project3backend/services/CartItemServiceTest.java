@@ -20,13 +20,14 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 
 class CartItemServiceTest {
 	private final CartItemRepo cartItemRepo = Mockito.mock (CartItemRepo.class);
+	private final StockHoldService stockHoldService = Mockito.mock (StockHoldService.class);
 	private final CartItemService cartItemService;
 	
 	List <Product> products = new ArrayList <> ();
 	List <User> users = new ArrayList <> ();
 	
 	public CartItemServiceTest () {
-		cartItemService = new CartItemService (cartItemRepo);
+		cartItemService = new CartItemService (cartItemRepo, stockHoldService);
 	}
 	
 	@BeforeEach
@@ -48,12 +49,24 @@ class CartItemServiceTest {
 	}
 	
 	@Test
-	void createCartItem () {
+	void createCartItem () throws InvalidValueException {
 		CartItem cartItem = new CartItem (users.get (1), products.get (2), 4);
 		
 		cartItemService.createCartItem (cartItem);
 		
 		Mockito.verify (this.cartItemRepo).save (cartItem);
+		Mockito.verify (this.stockHoldService).hold (cartItem);
+	}
+	
+	@Test
+	void createCartItemWhenStockIsNotAvailable () throws InvalidValueException {
+		CartItem cartItem = new CartItem (users.get (1), products.get (2), 6);
+		
+		Mockito.doThrow (new InvalidValueException ("Invalid quantity")).when (stockHoldService).hold (cartItem);
+		
+		InvalidValueException exception = assertThrows (InvalidValueException.class, () -> cartItemService.createCartItem (cartItem));
+		
+		assertEquals ("Error! Invalid quantity", exception.getMessage ());
 	}
 	
 	@Test
@@ -70,9 +83,25 @@ class CartItemServiceTest {
 		
 		assertEquals (newQuantity, cartItem.getQuantity ());
 		
+		Mockito.verify (stockHoldService).changeHold (cartItem, newQuantity);
 		Mockito.verify (cartItemRepo).save (cartItem);
 	}
 	
+	@Test
+	void updateCartItemWhenStockIsNotAvailable () throws InvalidValueException {
+		CartItem cartItem = new CartItem (1, users.get (0), products.get (1), 3);
+		
+		Mockito.when (cartItemRepo.findById (1)).thenReturn (Optional.of (cartItem));
+		Mockito.doThrow (new InvalidValueException ("Invalid quantity")).when (stockHoldService).changeHold (cartItem, 6);
+		
+		InvalidValueException exception = assertThrows (InvalidValueException.class, () -> cartItemService.updateCartItem (1, 6));
+		
+		assertEquals ("Error! Invalid quantity", exception.getMessage ());
+		assertEquals (3, cartItem.getQuantity ());
+		
+		Mockito.verify (cartItemRepo, Mockito.never ()).save (Mockito.any ());
+	}
+	
 	@Test
 	void updateCartItemWhenNotFound () {
 		int id = 1;
@@ -0,0 +1,165 @@
+package com.revature.project3backend.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.revature.project3backend.exceptions.CheckoutInProgressException;
+import com.revature.project3backend.exceptions.CheckoutQueueFullException;
+import com.revature.project3backend.exceptions.InsufficientStockException;
+import com.revature.project3backend.exceptions.InvalidValueException;
+import com.revature.project3backend.modeldtos.CheckoutOrder;
+import com.revature.project3backend.models.CartItem;
+import com.revature.project3backend.models.Product;
+import com.revature.project3backend.models.Transaction;
+import com.revature.project3backend.models.User;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.dao.CannotAcquireLockException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CheckoutQueueTest {
+	CheckoutService checkoutService = Mockito.mock (CheckoutService.class);
+	MeterRegistry meterRegistry = new SimpleMeterRegistry ();
+	CheckoutQueue checkoutQueue = new CheckoutQueue (checkoutService, true, 1, 1, Duration.ofHours (1), meterRegistry);
+	User user = new User (1, "first", "last", "email", "username", "password", new ArrayList <> (), new ArrayList <> (), null);
+	
+	public CheckoutQueueTest () {
+		user.getCart ().add (new CartItem (new User (), new Product (1, "name", "description", 10F, "", null, 10), 1));
+	}
+	
+	@Test
+	void submit () throws CheckoutQueueFullException, CheckoutInProgressException, InvalidValueException, JsonProcessingException, InterruptedException {
+		List <CartItem> cart = user.getCart ();
+		Transaction transaction = new Transaction (5, user, new ArrayList <> (), 10F);
+		
+		Mockito.when (checkoutService.checkout (Mockito.any (), Mockito.eq (cart))).thenReturn (transaction);
+		
+		CheckoutOrder order = checkoutQueue.submit (user);
+		
+		assertEquals (CheckoutOrder.Status.QUEUED, order.getStatus ());
+		
+		checkoutQueue.shutdown ();
+		
+		assertEquals (order.completed (5), checkoutQueue.getOrder (order.getId ()));
+		
+		//the worker leaves the session alone, the cart is only emptied once the order is settled
+		assertSame (cart, user.getCart ());
+		assertFalse (checkoutQueue.settle (user));
+		assertTrue (user.getCart ().isEmpty ());
+		
+		Mockito.verify (checkoutService).checkout (Mockito.any (), Mockito.eq (cart));
+	}
+	
+	@Test
+	void submitDoesNotShareTheSessionUser () throws CheckoutQueueFullException, CheckoutInProgressException, InvalidValueException, JsonProcessingException, InterruptedException {
+		Mockito.when (checkoutService.checkout (Mockito.any (), Mockito.any ())).thenReturn (new Transaction (5, user, new ArrayList <> (), 10F));
+		
+		checkoutQueue.submit (user);
+		checkoutQueue.shutdown ();
+		
+		Mockito.verify (checkoutService).checkout (Mockito.argThat (buyer -> buyer != user && buyer.getId ().equals (1)), Mockito.argThat (cart -> cart != user.getCart () && cart.equals (user.getCart ())));
+	}
+	
+	@Test
+	void submitWhenStockIsTooLow () throws CheckoutQueueFullException, CheckoutInProgressException, InvalidValueException, InterruptedException {
+		List <CartItem> cart = user.getCart ();
+		
+		Mockito.doThrow (new InsufficientStockException (Arrays.asList (1))).when (checkoutService).checkout (Mockito.any (), Mockito.eq (cart));
+		
+		CheckoutOrder order = checkoutQueue.submit (user);
+		
+		checkoutQueue.shutdown ();
+		
+		assertEquals (order.failed ("Error! Invalid quantity", Arrays.asList (1)), checkoutQueue.getOrder (order.getId ()));
+		assertFalse (checkoutQueue.settle (user));
+		assertSame (cart, user.getCart ());
+		assertEquals (1, cart.size ());
+	}
+	
+	@Test
+	void submitWhenCheckoutFails () throws CheckoutQueueFullException, CheckoutInProgressException, InvalidValueException, InterruptedException {
+		Mockito.doThrow (new CannotAcquireLockException ("locked")).when (checkoutService).checkout (Mockito.any (), Mockito.anyList ());
+		
+		CheckoutOrder order = checkoutQueue.submit (user);
+		
+		checkoutQueue.shutdown ();
+		
+		assertEquals (order.failed ("Error! Checkout failed", null), checkoutQueue.getOrder (order.getId ()));
+		assertFalse (checkoutQueue.settle (user));
+		assertEquals (1, user.getCart ().size ());
+	}
+	
+	@Test
+	void submitWhileQueued () throws CheckoutQueueFullException, CheckoutInProgressException, InvalidValueException, InterruptedException {
+		CountDownLatch release = new CountDownLatch (1);
+		
+		Mockito.doAnswer (invocation -> {
+			release.await ();
+			
+			return null;
+		}).when (checkoutService).checkout (Mockito.any (), Mockito.anyList ());
+		
+		checkoutQueue.submit (user);
+		
+		assertTrue (checkoutQueue.settle (user));
+		assertThrows (CheckoutInProgressException.class, () -> checkoutQueue.submit (user));
+		assertEquals (1, user.getCart ().size ());
+		
+		release.countDown ();
+		checkoutQueue.shutdown ();
+	}
+	
+	@Test
+	void submitWhenQueueIsFull () throws CheckoutQueueFullException, CheckoutInProgressException, InvalidValueException, InterruptedException {
+		CountDownLatch started = new CountDownLatch (1);
+		CountDownLatch release = new CountDownLatch (1);
+		
+		Mockito.doAnswer (invocation -> {
+			started.countDown ();
+			release.await ();
+			
+			return null;
+		}).when (checkoutService).checkout (Mockito.any (), Mockito.anyList ());
+		
+		checkoutQueue.submit (new User (2, "first", "last", "email", "username", "password", new ArrayList <> (user.getCart ()), new ArrayList <> (), null));
+		started.await ();
+		checkoutQueue.submit (new User (3, "first", "last", "email", "username", "password", new ArrayList <> (user.getCart ()), new ArrayList <> (), null));
+		
+		List <CartItem> cart = user.getCart ();
+		
+		assertThrows (CheckoutQueueFullException.class, () -> checkoutQueue.submit (user));
+		
+		assertSame (cart, user.getCart ());
+		assertFalse (checkoutQueue.settle (user));
+		assertEquals (1, meterRegistry.counter ("checkout.queue.rejected").count ());
+		assertEquals (1, meterRegistry.get ("checkout.queue.size").gauge ().value ());
+		
+		release.countDown ();
+		checkoutQueue.shutdown ();
+	}
+	
+	@Test
+	void settleWhenNothingIsQueued () {
+		List <CartItem> cart = user.getCart ();
+		
+		assertFalse (checkoutQueue.settle (user));
+		assertSame (cart, user.getCart ());
+	}
+	
+	@Test
+	void getOrderWhenOrderDoesNotExist () {
+		assertNull (checkoutQueue.getOrder ("order"));
+	}
+}
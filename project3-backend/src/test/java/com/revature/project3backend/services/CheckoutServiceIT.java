@@ -0,0 +1,191 @@
+package com.revature.project3backend.services;
+
+import com.revature.project3backend.exceptions.InsufficientStockException;
+import com.revature.project3backend.models.CartItem;
+import com.revature.project3backend.models.Product;
+import com.revature.project3backend.models.User;
+import com.revature.project3backend.models.UserRole;
+import com.revature.project3backend.repositories.ProductRepo;
+import com.revature.project3backend.repositories.TransactionLineRepo;
+import com.revature.project3backend.repositories.TransactionRepo;
+import com.revature.project3backend.repositories.UserRepo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class CheckoutServiceIT {
+	@Autowired
+	private CheckoutService checkoutService;
+	
+	@Autowired
+	private ProductRepo productRepo;
+	
+	@Autowired
+	private StockHoldService stockHoldService;
+	
+	@Autowired
+	private UserRepo userRepo;
+	
+	@Autowired
+	private TransactionRepo transactionRepo;
+	
+	@Autowired
+	private TransactionLineRepo transactionLineRepo;
+	
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+	
+	private final List <Product> products = new ArrayList <> ();
+	
+	private User buyer;
+	
+	@BeforeEach
+	void setUp () {
+		buyer = userRepo.save (new User (null, "first", "last", "buyer@mail.com", "buyer", "password", new ArrayList <> (), new ArrayList <> (), new UserRole (1, "USER")));
+	}
+	
+	//deletes by id because the products' stock and version have changed since they were saved, then empties the second-level cache, which is shared with the other tests' databases
+	@AfterEach
+	void tearDown () {
+		transactionLineRepo.deleteAllInBatch ();
+		transactionRepo.deleteAllInBatch ();
+		
+		for (Product product : products) {
+			productRepo.deleteById (product.getId ());
+		}
+		
+		userRepo.deleteById (buyer.getId ());
+		
+		entityManagerFactory.getCache ().evict (Product.class);
+	}
+	
+	@Test
+	void checkoutFromManyThreads () throws Exception {
+		int stock = 50;
+		int threads = 16;
+		int checkoutsPerThread = 5;
+		
+		Product product = productRepo.save (new Product (null, "Flash sale", "A very popular course", 10.00F, "", 5.00F, stock));
+		Product other = productRepo.save (new Product (null, "Bundle", "Bought with the popular course", 10.00F, "", null, threads * checkoutsPerThread));
+		
+		products.add (product);
+		products.add (other);
+		
+		ExecutorService executor = Executors.newFixedThreadPool (threads);
+		CountDownLatch start = new CountDownLatch (1);
+		List <Future <Integer>> results = new ArrayList <> ();
+		
+		for (int i = 0; i < threads; i++) {
+			int thread = i;
+			
+			results.add (executor.submit ((Callable <Integer>) () -> {
+				start.await ();
+				
+				int sold = 0;
+				
+				for (int j = 0; j < checkoutsPerThread; j++) {
+					List <CartItem> cart = new ArrayList <> ();
+					
+					cart.add (new CartItem (buyer, copy (product), 1));
+					cart.add (new CartItem (buyer, copy (other), 1));
+					
+					//half of the carts list their products the other way round
+					if (thread % 2 == 0) {
+						Collections.reverse (cart);
+					}
+					
+					try {
+						checkoutService.checkout (buyer, cart);
+						
+						sold++;
+					} catch (InsufficientStockException exception) {
+						assertEquals (Collections.singletonList (product.getId ()), exception.getProductIds ());
+					}
+				}
+				
+				return sold;
+			}));
+		}
+		
+		start.countDown ();
+		executor.shutdown ();
+		
+		assertTrue (executor.awaitTermination (1, TimeUnit.MINUTES));
+		
+		int sold = 0;
+		
+		for (Future <Integer> result : results) {
+			sold += result.get ();
+		}
+		
+		assertEquals (stock, sold);
+		assertEquals (0, productRepo.findById (product.getId ()).get ().getStock ());
+		assertEquals (threads * checkoutsPerThread - stock, productRepo.findById (other.getId ()).get ().getStock ());
+		assertEquals (stock, transactionRepo.count ());
+	}
+	
+	@Test
+	void checkoutConfirmsHolds () throws Exception {
+		Product product = productRepo.save (new Product (null, "Flash sale", "A very popular course", 10.00F, "", 5.00F, 3));
+		
+		products.add (product);
+		
+		CartItem held = new CartItem (1001, buyer, copy (product), 2);
+		
+		stockHoldService.hold (held);
+		
+		List <CartItem> cart = new ArrayList <> ();
+		
+		cart.add (new CartItem (1002, buyer, copy (product), 2));
+		
+		//only one of the three is available to carts without a hold
+		assertThrows (InsufficientStockException.class, () -> checkoutService.checkout (buyer, cart));
+		
+		checkoutService.checkout (buyer, Collections.singletonList (held));
+		
+		Product checkedOut = productRepo.findById (product.getId ()).get ();
+		
+		assertEquals (1, checkedOut.getStock ());
+		assertEquals (0, checkedOut.getReserved ());
+		assertEquals (1, checkedOut.getAvailableStock ());
+	}
+	
+	//the transaction can't be created for a buyer that doesn't exist, so the stock that was already taken for it is given back
+	@Test
+	void checkoutWhenTransactionCannotBeCreated () {
+		Product product = productRepo.save (new Product (null, "Flash sale", "A very popular course", 10.00F, "", 5.00F, 3));
+		
+		products.add (product);
+		
+		User missing = new User (-1, "first", "last", "email", "username", "password", new ArrayList <> (), new ArrayList <> (), null);
+		
+		assertThrows (DataIntegrityViolationException.class, () -> checkoutService.checkout (missing, Collections.singletonList (new CartItem (missing, copy (product), 2))));
+		
+		assertEquals (3, productRepo.findById (product.getId ()).get ().getStock ());
+		assertEquals (0, transactionRepo.count ());
+		assertEquals (0, transactionLineRepo.count ());
+	}
+	
+	private static Product copy (Product product) {
+		return new Product (product.getId (), product.getName (), product.getDescription (), product.getPrice (), product.getImageUrl (), product.getSalePrice (), product.getStock ());
+	}
+}
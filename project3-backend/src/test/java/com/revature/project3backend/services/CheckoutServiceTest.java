@@ -0,0 +1,87 @@
+package com.revature.project3backend.services;
+
+import com.revature.project3backend.exceptions.InsufficientStockException;
+import com.revature.project3backend.exceptions.InvalidValueException;
+import com.revature.project3backend.models.CartItem;
+import com.revature.project3backend.models.Product;
+import com.revature.project3backend.models.Transaction;
+import com.revature.project3backend.models.User;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CheckoutServiceTest {
+	TransactionService transactionService = Mockito.mock (TransactionService.class);
+	MeterRegistry meterRegistry = new SimpleMeterRegistry ();
+	CheckoutService checkoutService = new CheckoutService (transactionService, 3, Duration.ofMillis (1), meterRegistry);
+	User buyer = new User (1, "first", "last", "email", "username", "password", new ArrayList <> (), new ArrayList <> (), null);
+	List <CartItem> cart = new ArrayList <> ();
+	
+	public CheckoutServiceTest () {
+		cart.add (new CartItem (new User (), new Product (1, "name", "description", 10F, "", null, 10), 1));
+	}
+	
+	@Test
+	void checkout () throws InvalidValueException {
+		Transaction transaction = new Transaction (5, buyer, new ArrayList <> (), 10F);
+		
+		Mockito.when (transactionService.checkout (buyer, cart)).thenReturn (transaction);
+		
+		assertEquals (transaction, checkoutService.checkout (buyer, cart));
+		
+		Mockito.verify (transactionService).checkout (buyer, cart);
+		
+		assertEquals (0, meterRegistry.counter ("checkout.stock.conflicts").count ());
+		assertEquals (0, meterRegistry.counter ("checkout.stock.retries").count ());
+	}
+	
+	@Test
+	void checkoutRetriesConflicts () throws InvalidValueException {
+		Mockito.doThrow (new CannotAcquireLockException ("locked"))
+			.doThrow (new ObjectOptimisticLockingFailureException (Product.class, 1))
+			.doReturn (new Transaction (5, buyer, new ArrayList <> (), 10F))
+			.when (transactionService).checkout (buyer, cart);
+		
+		checkoutService.checkout (buyer, cart);
+		
+		Mockito.verify (transactionService, Mockito.times (3)).checkout (buyer, cart);
+		
+		assertEquals (2, meterRegistry.counter ("checkout.stock.conflicts").count ());
+		assertEquals (2, meterRegistry.counter ("checkout.stock.retries").count ());
+	}
+	
+	@Test
+	void checkoutWhenConflictsDoNotStop () throws InvalidValueException {
+		Mockito.doThrow (new CannotAcquireLockException ("locked")).when (transactionService).checkout (buyer, cart);
+		
+		assertThrows (ConcurrencyFailureException.class, () -> checkoutService.checkout (buyer, cart));
+		
+		Mockito.verify (transactionService, Mockito.times (3)).checkout (buyer, cart);
+		
+		assertEquals (3, meterRegistry.counter ("checkout.stock.conflicts").count ());
+		assertEquals (2, meterRegistry.counter ("checkout.stock.retries").count ());
+	}
+	
+	@Test
+	void checkoutWhenStockIsTooLow () throws InvalidValueException {
+		Mockito.doThrow (new InsufficientStockException (Arrays.asList (1))).when (transactionService).checkout (buyer, cart);
+		
+		assertThrows (InsufficientStockException.class, () -> checkoutService.checkout (buyer, cart));
+		
+		Mockito.verify (transactionService, Mockito.times (1)).checkout (buyer, cart);
+		
+		assertEquals (0, meterRegistry.counter ("checkout.stock.conflicts").count ());
+	}
+}
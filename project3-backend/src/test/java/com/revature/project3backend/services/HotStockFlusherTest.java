@@ -0,0 +1,28 @@
+package com.revature.project3backend.services;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.dao.CannotAcquireLockException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class HotStockFlusherTest {
+	HotStockService hotStockService = Mockito.mock (HotStockService.class);
+	HotStockFlusher hotStockFlusher = new HotStockFlusher (hotStockService, 2);
+	
+	@Test
+	void flush () {
+		Mockito.when (hotStockService.flush (2)).thenReturn (2, 2, 1);
+		
+		assertEquals (5, hotStockFlusher.flush ());
+		
+		Mockito.verify (hotStockService, Mockito.times (3)).flush (2);
+	}
+	
+	@Test
+	void flushWhenBatchFails () {
+		Mockito.when (hotStockService.flush (2)).thenReturn (2).thenThrow (new CannotAcquireLockException ("locked"));
+		
+		assertEquals (2, hotStockFlusher.flush ());
+	}
+}
@@ -0,0 +1,244 @@
+package com.revature.project3backend.services;
+
+import com.revature.project3backend.exceptions.InsufficientStockException;
+import com.revature.project3backend.models.CartItem;
+import com.revature.project3backend.models.Product;
+import com.revature.project3backend.models.StockDelta;
+import com.revature.project3backend.models.StockHold;
+import com.revature.project3backend.models.User;
+import com.revature.project3backend.models.UserRole;
+import com.revature.project3backend.repositories.ProductRepo;
+import com.revature.project3backend.repositories.StockDeltaRepo;
+import com.revature.project3backend.repositories.StockHoldRepo;
+import com.revature.project3backend.repositories.TransactionLineRepo;
+import com.revature.project3backend.repositories.TransactionRepo;
+import com.revature.project3backend.repositories.UserRepo;
+import org.apache.log4j.Logger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class HotStockIT {
+	@Autowired
+	private CheckoutService checkoutService;
+	
+	@Autowired
+	private HotStockService hotStockService;
+	
+	@Autowired
+	private HotStockFlusher hotStockFlusher;
+	
+	@Autowired
+	private ProductRepo productRepo;
+	
+	@Autowired
+	private StockDeltaRepo stockDeltaRepo;
+	
+	@Autowired
+	private StockHoldService stockHoldService;
+	
+	@Autowired
+	private StockHoldRepo stockHoldRepo;
+	
+	@Autowired
+	private UserRepo userRepo;
+	
+	@Autowired
+	private TransactionRepo transactionRepo;
+	
+	@Autowired
+	private TransactionLineRepo transactionLineRepo;
+	
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+	
+	private final List <Product> products = new ArrayList <> ();
+	
+	private User buyer;
+	
+	private static final Logger logger = Logger.getLogger (HotStockIT.class);
+	
+	@BeforeEach
+	void setUp () {
+		buyer = userRepo.save (new User (null, "first", "last", "buyer@mail.com", "buyer", "password", new ArrayList <> (), new ArrayList <> (), new UserRole (1, "USER")));
+	}
+	
+	@AfterEach
+	void tearDown () {
+		transactionLineRepo.deleteAllInBatch ();
+		transactionRepo.deleteAllInBatch ();
+		
+		for (Product product : products) {
+			hotStockService.disable (product.getId ());
+			productRepo.deleteById (product.getId ());
+		}
+		
+		stockDeltaRepo.deleteAllInBatch ();
+		stockHoldRepo.deleteAllInBatch ();
+		userRepo.deleteById (buyer.getId ());
+		
+		entityManagerFactory.getCache ().evict (Product.class);
+	}
+	
+	//a benchmark of checkouts of a single product, the throughputs are logged rather than compared because they depend on the machine
+	@Test
+	void checkoutThroughputOfOneProduct () throws Exception {
+		int threads = 16;
+		int checkoutsPerThread = 50;
+		
+		Product cold = productRepo.save (new Product (null, "Java II", "An intermediate Java course", 20.00F, "", 18.00F, threads * checkoutsPerThread));
+		Product hot = productRepo.save (new Product (null, "Java II on sale", "An intermediate Java course", 20.00F, "", 10.00F, threads * checkoutsPerThread));
+		
+		products.add (cold);
+		products.add (hot);
+		
+		hotStockService.enable (hot.getId ());
+		
+		long start = System.nanoTime ();
+		
+		assertEquals (threads * checkoutsPerThread, checkOut (cold, threads, checkoutsPerThread));
+		
+		long coldNanos = System.nanoTime () - start;
+		
+		start = System.nanoTime ();
+		
+		assertEquals (threads * checkoutsPerThread, checkOut (hot, threads, checkoutsPerThread));
+		
+		long hotNanos = System.nanoTime () - start;
+		
+		hotStockFlusher.flush ();
+		
+		logger.info ("Checked out " + perSecond (threads * checkoutsPerThread, coldNanos) + " carts per second from the product table and " + perSecond (threads * checkoutsPerThread, hotNanos) + " per second from memory");
+		
+		assertEquals (0, productRepo.findById (cold.getId ()).get ().getStock ());
+		assertEquals (0, productRepo.findById (hot.getId ()).get ().getStock ());
+		assertEquals (0, stockDeltaRepo.count ());
+	}
+	
+	@Test
+	void checkoutOfHotProductDoesNotOversell () throws Exception {
+		int stock = 50;
+		
+		Product hot = productRepo.save (new Product (null, "Flash sale", "A very popular course", 10.00F, "", 5.00F, stock));
+		
+		products.add (hot);
+		
+		hotStockService.enable (hot.getId ());
+		
+		assertEquals (stock, checkOut (hot, 16, 5));
+		
+		hotStockFlusher.flush ();
+		
+		assertEquals (0, productRepo.findById (hot.getId ()).get ().getStock ());
+	}
+	
+	@Test
+	void enableAfterRestart () throws Exception {
+		Product hot = productRepo.save (new Product (null, "Flash sale", "A very popular course", 10.00F, "", 5.00F, 10));
+		
+		products.add (hot);
+		
+		//sales that were made before the application stopped and not yet applied
+		stockDeltaRepo.save (new StockDelta (hot.getId (), 3));
+		stockDeltaRepo.save (new StockDelta (hot.getId (), 2));
+		
+		hotStockService.enable (hot.getId ());
+		
+		assertEquals (5, checkOut (hot, 1, 6));
+		
+		hotStockFlusher.flush ();
+		
+		assertEquals (0, productRepo.findById (hot.getId ()).get ().getStock ());
+		assertFalse (stockDeltaRepo.findAll ().iterator ().hasNext ());
+	}
+	
+	@Test
+	void holdMadeBeforeProductBecameHotExpires () throws Exception {
+		Product hot = productRepo.save (new Product (null, "Flash sale", "A very popular course", 10.00F, "", 5.00F, 10));
+		
+		products.add (hot);
+		
+		//a cart held some of the stock before the sale started, and the hold has expired since
+		productRepo.reserveStock (hot.getId (), 4);
+		StockHold hold = stockHoldRepo.save (new StockHold (1, hot.getId (), 4, Instant.EPOCH));
+		
+		hotStockService.enable (hot.getId ());
+		
+		assertEquals (1, stockHoldService.releaseExpired (Collections.singletonList (hold.getId ())));
+		assertEquals (10, checkOut (hot, 1, 11));
+		
+		hotStockFlusher.flush ();
+		
+		Product product = productRepo.findById (hot.getId ()).get ();
+		
+		assertEquals (0, product.getStock ());
+		assertEquals (0, product.getReserved ());
+	}
+	
+	//checks out carts of a single unit of a product from many threads at once, and returns how many were checked out
+	private int checkOut (Product product, int threads, int checkoutsPerThread) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool (threads);
+		CountDownLatch start = new CountDownLatch (1);
+		List <Future <Integer>> results = new ArrayList <> ();
+		
+		for (int i = 0; i < threads; i++) {
+			results.add (executor.submit ((Callable <Integer>) () -> {
+				start.await ();
+				
+				int sold = 0;
+				
+				for (int j = 0; j < checkoutsPerThread; j++) {
+					try {
+						checkoutService.checkout (buyer, Collections.singletonList (new CartItem (buyer, copy (product), 1)));
+						
+						sold++;
+					} catch (InsufficientStockException exception) {
+						assertEquals (Collections.singletonList (product.getId ()), exception.getProductIds ());
+					}
+				}
+				
+				return sold;
+			}));
+		}
+		
+		start.countDown ();
+		executor.shutdown ();
+		
+		assertTrue (executor.awaitTermination (5, TimeUnit.MINUTES));
+		
+		int sold = 0;
+		
+		for (Future <Integer> result : results) {
+			sold += result.get ();
+		}
+		
+		return sold;
+	}
+	
+	private static long perSecond (int count, long nanos) {
+		return count * TimeUnit.SECONDS.toNanos (1) / Math.max (nanos, 1);
+	}
+	
+	private static Product copy (Product product) {
+		return new Product (product.getId (), product.getName (), product.getDescription (), product.getPrice (), product.getImageUrl (), product.getSalePrice (), product.getStock ());
+	}
+}
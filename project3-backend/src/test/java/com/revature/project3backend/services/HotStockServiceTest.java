@@ -0,0 +1,189 @@
+package com.revature.project3backend.services;
+
+import com.revature.project3backend.exceptions.InvalidValueException;
+import com.revature.project3backend.models.Product;
+import com.revature.project3backend.models.StockDelta;
+import com.revature.project3backend.repositories.ProductRepo;
+import com.revature.project3backend.repositories.StockDeltaRepo;
+import com.revature.project3backend.search.ProductCache;
+import com.revature.project3backend.search.ProductSearchCache;
+import com.revature.project3backend.search.ProductSearchIndex;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HotStockServiceTest {
+	ProductRepo productRepo = Mockito.mock (ProductRepo.class);
+	StockDeltaRepo stockDeltaRepo = Mockito.mock (StockDeltaRepo.class);
+	ProductSearchIndex productSearchIndex = Mockito.mock (ProductSearchIndex.class);
+	ProductSearchCache productSearchCache = Mockito.mock (ProductSearchCache.class);
+	ProductCache productCache = Mockito.mock (ProductCache.class);
+	HotStockService hotStockService = new HotStockService (productRepo, stockDeltaRepo, productSearchIndex, productSearchCache, productCache, Arrays.asList (3, 9), 4);
+	Product product = new Product (3, "name", "description", 10F, "", null, 10);
+	
+	public HotStockServiceTest () {
+		product.setReserved (2);
+		
+		Mockito.when (productRepo.findAndLockById (3)).thenReturn (Optional.of (product));
+		Mockito.when (stockDeltaRepo.sumQuantityByProductId (3)).thenReturn (3L);
+	}
+	
+	@Test
+	void load () {
+		hotStockService.load ();
+		
+		assertTrue (hotStockService.isHot (3));
+		assertFalse (hotStockService.isHot (9));
+	}
+	
+	@Test
+	void enable () throws InvalidValueException {
+		hotStockService.enable (3);
+		
+		//10 in stock, 2 reserved and 3 sold but not yet taken from the stock
+		assertTrue (hotStockService.take (3, 5));
+		assertFalse (hotStockService.take (3, 1));
+	}
+	
+	@Test
+	void enableWhenProductDoesNotExist () {
+		InvalidValueException exception = assertThrows (InvalidValueException.class, () -> hotStockService.enable (9));
+		
+		assertEquals ("Error! Invalid product id", exception.getMessage ());
+		assertFalse (hotStockService.isHot (9));
+	}
+	
+	@Test
+	void disable () throws InvalidValueException {
+		hotStockService.enable (3);
+		hotStockService.disable (3);
+		
+		assertFalse (hotStockService.isHot (3));
+		assertFalse (hotStockService.take (3, 1));
+	}
+	
+	@Test
+	void refresh () throws InvalidValueException {
+		hotStockService.enable (3);
+		
+		product.setStock (20);
+		
+		hotStockService.refresh (3);
+		
+		assertTrue (hotStockService.take (3, 15));
+	}
+	
+	@Test
+	void refreshWhenProductIsNotHot () throws InvalidValueException {
+		hotStockService.refresh (3);
+		
+		assertFalse (hotStockService.isHot (3));
+		
+		Mockito.verify (productRepo, Mockito.never ()).findAndLockById (Mockito.any ());
+	}
+	
+	@Test
+	void take () throws InvalidValueException {
+		hotStockService.enable (3);
+		
+		assertTrue (hotStockService.take (3, 2));
+		
+		ArgumentCaptor <StockDelta> delta = ArgumentCaptor.forClass (StockDelta.class);
+		
+		Mockito.verify (stockDeltaRepo).save (delta.capture ());
+		
+		assertEquals (3, delta.getValue ().getProductId ());
+		assertEquals (2, delta.getValue ().getQuantity ());
+	}
+	
+	@Test
+	void takeWhenStockIsTooLow () throws InvalidValueException {
+		hotStockService.enable (3);
+		
+		assertFalse (hotStockService.take (3, 6));
+		
+		Mockito.verify (stockDeltaRepo, Mockito.never ()).save (Mockito.any ());
+	}
+	
+	@Test
+	void release () throws InvalidValueException {
+		hotStockService.enable (3);
+		
+		assertTrue (hotStockService.take (3, 5));
+		
+		//the 2 reserved were held before the product became hot
+		hotStockService.release (3, 2);
+		
+		assertTrue (hotStockService.take (3, 2));
+		assertFalse (hotStockService.take (3, 1));
+	}
+	
+	@Test
+	void releaseWhenProductIsNotHot () {
+		hotStockService.release (3, 2);
+		
+		assertFalse (hotStockService.isHot (3));
+		assertFalse (hotStockService.take (3, 1));
+	}
+	
+	@Test
+	void flush () {
+		List <StockDelta> deltas = Arrays.asList (new StockDelta (1, 3, 2), new StockDelta (2, 4, 1), new StockDelta (3, 3, 1));
+		Product other = new Product (4, "name", "description", 10F, "", null, 10);
+		
+		Mockito.when (stockDeltaRepo.findOldest (PageRequest.of (0, 10))).thenReturn (deltas);
+		Mockito.when (productRepo.findAllById (Mockito.any ())).thenReturn (Arrays.asList (product, other));
+		Mockito.when (productSearchIndex.updateStock (product)).thenReturn (true);
+		
+		assertEquals (3, hotStockService.flush (10));
+		
+		Map <Integer, Integer> quantities = new HashMap <> ();
+		
+		quantities.put (3, 3);
+		quantities.put (4, 1);
+		
+		Mockito.verify (productRepo).applyStockDeltas (quantities);
+		Mockito.verify (stockDeltaRepo).deleteAllInBatch (deltas);
+		Mockito.verify (productSearchIndex).updateStock (product);
+		Mockito.verify (productSearchIndex).updateStock (other);
+		Mockito.verify (productCache).invalidate (3);
+		Mockito.verify (productCache).invalidate (4);
+		Mockito.verify (productSearchCache).invalidate ();
+	}
+	
+	@Test
+	void flushWhenNoProductWentInOrOutOfStock () {
+		List <StockDelta> deltas = Arrays.asList (new StockDelta (1, 3, 2));
+		
+		Mockito.when (stockDeltaRepo.findOldest (PageRequest.of (0, 10))).thenReturn (deltas);
+		Mockito.when (productRepo.findAllById (Mockito.any ())).thenReturn (Arrays.asList (product));
+		Mockito.when (productSearchIndex.updateStock (product)).thenReturn (false);
+		
+		assertEquals (1, hotStockService.flush (10));
+		
+		Mockito.verify (productSearchIndex).updateStock (product);
+		Mockito.verify (productCache).invalidate (3);
+		Mockito.verify (productSearchCache, Mockito.never ()).invalidate ();
+	}
+	
+	@Test
+	void flushWhenThereAreNoDeltas () {
+		Mockito.when (stockDeltaRepo.findOldest (PageRequest.of (0, 10))).thenReturn (Arrays.asList ());
+		
+		assertEquals (0, hotStockService.flush (10));
+		
+		Mockito.verify (productRepo, Mockito.never ()).applyStockDeltas (Mockito.any ());
+	}
+}
@@ -0,0 +1,208 @@
+package com.revature.project3backend.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.revature.project3backend.exceptions.IdempotencyKeyReusedException;
+import com.revature.project3backend.exceptions.InvalidValueException;
+import com.revature.project3backend.exceptions.RequestInProgressException;
+import com.revature.project3backend.jsonmodels.CreateCartItemBody;
+import com.revature.project3backend.jsonmodels.JsonResponse;
+import com.revature.project3backend.models.IdempotencyRecord;
+import com.revature.project3backend.repositories.IdempotencyRecordRepo;
+import org.junit.jupiter.api.Test;
+import org.mockito.AdditionalAnswers;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class IdempotencyServiceTest {
+	IdempotencyRecordRepo idempotencyRecordRepo = Mockito.mock (IdempotencyRecordRepo.class);
+	IdempotencyService idempotencyService = new IdempotencyService (idempotencyRecordRepo, new ObjectMapper (), Duration.ofHours (1), Duration.ofMinutes (1), 100);
+	
+	public IdempotencyServiceTest () {
+		Mockito.when (idempotencyRecordRepo.findByUserIdAndIdempotencyKey (Mockito.any (), Mockito.any ())).thenReturn (Optional.empty ());
+		Mockito.when (idempotencyRecordRepo.save (Mockito.any ())).then (AdditionalAnswers.returnsFirstArg ());
+	}
+	
+	@Test
+	void begin () throws InvalidValueException, RequestInProgressException {
+		assertNull (idempotencyService.begin (1, "key", "POST /transaction", null));
+		
+		ArgumentCaptor <IdempotencyRecord> record = ArgumentCaptor.forClass (IdempotencyRecord.class);
+		
+		Mockito.verify (idempotencyRecordRepo).saveAndFlush (record.capture ());
+		
+		assertEquals (1, record.getValue ().getUserId ());
+		assertEquals ("key", record.getValue ().getIdempotencyKey ());
+		assertEquals ("POST /transaction", record.getValue ().getEndpoint ());
+		assertEquals (idempotencyService.hash (null), record.getValue ().getRequestHash ());
+		assertEquals (record.getValue ().getCreatedAt (), record.getValue ().getClaimedAt ());
+		assertNull (record.getValue ().getStatus ());
+	}
+	
+	@Test
+	void beginWithoutKey () throws InvalidValueException, RequestInProgressException {
+		assertNull (idempotencyService.begin (1, null, "POST /transaction", null));
+		
+		Mockito.verify (idempotencyRecordRepo, Mockito.never ()).saveAndFlush (Mockito.any ());
+	}
+	
+	@Test
+	void beginWhenKeyIsTooLong () {
+		char[] key = new char[IdempotencyService.MAX_KEY_LENGTH + 1];
+		
+		Arrays.fill (key, 'k');
+		
+		InvalidValueException exception = assertThrows (InvalidValueException.class, () -> idempotencyService.begin (1, new String (key), "POST /transaction", null));
+		
+		assertEquals ("Error! Invalid idempotency key", exception.getMessage ());
+	}
+	
+	@Test
+	void beginWhenCompleted () throws InvalidValueException, RequestInProgressException {
+		IdempotencyRecord record = new IdempotencyRecord (1, 1, "key", "POST /transaction", idempotencyService.hash (null), 202, "{\"Location\":[\"/transaction/order/status\"]}", "{\"message\":\"Queued transaction\",\"success\":true,\"data\":{\"id\":\"order\"}}", Instant.now (), Instant.now ());
+		
+		Mockito.when (idempotencyRecordRepo.findByUserIdAndIdempotencyKey (1, "key")).thenReturn (Optional.of (record));
+		
+		ResponseEntity <JsonResponse> response = idempotencyService.begin (1, "key", "POST /transaction", null);
+		
+		assertEquals (HttpStatus.ACCEPTED, response.getStatusCode ());
+		assertEquals ("Queued transaction", response.getBody ().getMessage ());
+		assertEquals ("order", ((Map <?, ?>) response.getBody ().getData ()).get ("id"));
+		assertEquals ("/transaction/order/status", response.getHeaders ().getFirst (HttpHeaders.LOCATION));
+		assertEquals ("true", response.getHeaders ().getFirst (IdempotencyService.REPLAYED_HEADER));
+		
+		Mockito.verify (idempotencyRecordRepo, Mockito.never ()).saveAndFlush (Mockito.any ());
+	}
+	
+	@Test
+	void beginWhenInProgress () {
+		Mockito.when (idempotencyRecordRepo.findByUserIdAndIdempotencyKey (1, "key")).thenReturn (Optional.of (new IdempotencyRecord (1, "key", "POST /transaction", idempotencyService.hash (null), Instant.now ())));
+		
+		RequestInProgressException exception = assertThrows (RequestInProgressException.class, () -> idempotencyService.begin (1, "key", "POST /transaction", null));
+		
+		assertEquals ("Error! Request in progress", exception.getMessage ());
+	}
+	
+	@Test
+	void beginWhenClaimHasTimedOut () throws InvalidValueException, RequestInProgressException {
+		IdempotencyRecord record = new IdempotencyRecord (3, 1, "key", "POST /transaction", idempotencyService.hash (null), null, null, null, Instant.now ().minusSeconds (120), Instant.now ().minusSeconds (120));
+		
+		Mockito.when (idempotencyRecordRepo.findByUserIdAndIdempotencyKey (1, "key")).thenReturn (Optional.of (record));
+		Mockito.when (idempotencyRecordRepo.reclaim (Mockito.eq (3), Mockito.any (), Mockito.any ())).thenReturn (1);
+		
+		assertNull (idempotencyService.begin (1, "key", "POST /transaction", null));
+		
+		Mockito.verify (idempotencyRecordRepo, Mockito.never ()).saveAndFlush (Mockito.any ());
+	}
+	
+	@Test
+	void beginWhenClaimedAtTheSameTime () {
+		Mockito.when (idempotencyRecordRepo.saveAndFlush (Mockito.any ())).thenThrow (new DataIntegrityViolationException ("duplicate key"));
+		
+		assertThrows (RequestInProgressException.class, () -> idempotencyService.begin (1, "key", "POST /transaction", null));
+	}
+	
+	@Test
+	void beginWhenKeyWasUsedForAnotherEndpoint () {
+		Mockito.when (idempotencyRecordRepo.findByUserIdAndIdempotencyKey (1, "key")).thenReturn (Optional.of (new IdempotencyRecord (1, 1, "key", "POST /cartitem", idempotencyService.hash (null), 200, null, "{}", Instant.now (), Instant.now ())));
+		
+		InvalidValueException exception = assertThrows (InvalidValueException.class, () -> idempotencyService.begin (1, "key", "POST /transaction", null));
+		
+		assertEquals ("Error! Invalid idempotency key", exception.getMessage ());
+	}
+	
+	@Test
+	void beginWhenKeyWasUsedForAnotherRequest () {
+		CreateCartItemBody body = new CreateCartItemBody ();
+		
+		body.setProductId (1);
+		body.setQuantity (2);
+		
+		Mockito.when (idempotencyRecordRepo.findByUserIdAndIdempotencyKey (1, "key")).thenReturn (Optional.of (new IdempotencyRecord (1, 1, "key", "POST /cartitem", idempotencyService.hash (body), 200, null, "{}", Instant.now (), Instant.now ())));
+		
+		body.setQuantity (3);
+		
+		IdempotencyKeyReusedException exception = assertThrows (IdempotencyKeyReusedException.class, () -> idempotencyService.begin (1, "key", "POST /cartitem", body));
+		
+		assertEquals ("Error! Idempotency key was used for another request", exception.getMessage ());
+	}
+	
+	@Test
+	void beginWhenExpired () throws InvalidValueException, RequestInProgressException {
+		IdempotencyRecord record = new IdempotencyRecord (1, 1, "key", "POST /transaction", idempotencyService.hash (null), 200, null, "{}", Instant.now ().minus (Duration.ofHours (2)), Instant.now ().minus (Duration.ofHours (2)));
+		
+		Mockito.when (idempotencyRecordRepo.findByUserIdAndIdempotencyKey (1, "key")).thenReturn (Optional.of (record));
+		
+		assertNull (idempotencyService.begin (1, "key", "POST /transaction", null));
+		
+		Mockito.verify (idempotencyRecordRepo).delete (record);
+		Mockito.verify (idempotencyRecordRepo).saveAndFlush (Mockito.any ());
+	}
+	
+	@Test
+	void complete () throws InvalidValueException, RequestInProgressException {
+		IdempotencyRecord record = new IdempotencyRecord (1, "key", "POST /transaction", idempotencyService.hash (null), Instant.now ());
+		
+		Mockito.when (idempotencyRecordRepo.findByUserIdAndIdempotencyKey (1, "key")).thenReturn (Optional.of (record));
+		
+		idempotencyService.complete (1, "key", ResponseEntity.accepted ().header (HttpHeaders.LOCATION, "/transaction/order/status").header (HttpHeaders.CACHE_CONTROL, "no-store").body (new JsonResponse ("Queued transaction", true)));
+		
+		assertEquals (202, record.getStatus ());
+		assertEquals ("{\"Location\":[\"/transaction/order/status\"]}", record.getHeaders ());
+		
+		Mockito.verify (idempotencyRecordRepo).save (record);
+		
+		//the response is now served from memory
+		Mockito.when (idempotencyRecordRepo.findByUserIdAndIdempotencyKey (1, "key")).thenReturn (Optional.empty ());
+		
+		ResponseEntity <JsonResponse> response = idempotencyService.begin (1, "key", "POST /transaction", null);
+		
+		assertEquals (new JsonResponse ("Queued transaction", true), response.getBody ());
+		assertEquals ("/transaction/order/status", response.getHeaders ().getFirst (HttpHeaders.LOCATION));
+	}
+	
+	@Test
+	void completeWhenExpiredInMemory () throws InvalidValueException, RequestInProgressException {
+		IdempotencyRecord record = new IdempotencyRecord (1, "key", "POST /transaction", idempotencyService.hash (null), Instant.now ().minus (Duration.ofHours (2)));
+		
+		Mockito.when (idempotencyRecordRepo.findByUserIdAndIdempotencyKey (1, "key")).thenReturn (Optional.of (record), Optional.empty ());
+		
+		idempotencyService.complete (1, "key", ResponseEntity.ok (new JsonResponse ("Created transaction", true)));
+		
+		//the record is in memory, but it started longer ago than the TTL
+		assertNull (idempotencyService.begin (1, "key", "POST /transaction", null));
+		
+		Mockito.verify (idempotencyRecordRepo).saveAndFlush (Mockito.any ());
+	}
+	
+	@Test
+	void abandon () {
+		IdempotencyRecord record = new IdempotencyRecord (1, "key", "POST /transaction", idempotencyService.hash (null), Instant.now ());
+		
+		Mockito.when (idempotencyRecordRepo.findByUserIdAndIdempotencyKey (1, "key")).thenReturn (Optional.of (record));
+		
+		idempotencyService.abandon (1, "key");
+		
+		Mockito.verify (idempotencyRecordRepo).delete (record);
+	}
+	
+	@Test
+	void purgeExpired () {
+		Mockito.when (idempotencyRecordRepo.deleteCreatedBefore (Mockito.any ())).thenReturn (3);
+		
+		assertEquals (3, idempotencyService.purgeExpired ());
+	}
+}
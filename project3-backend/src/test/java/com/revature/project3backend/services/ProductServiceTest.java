@@ -1,26 +1,58 @@
 package com.revature.project3backend.services;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.revature.project3backend.exceptions.InsufficientStockException;
 import com.revature.project3backend.exceptions.InvalidValueException;
+import com.revature.project3backend.exceptions.StaleProductException;
+import com.revature.project3backend.jsonmodels.ProductBatch;
+import com.revature.project3backend.jsonmodels.ProductListing;
+import com.revature.project3backend.jsonmodels.ProductSuggestion;
+import com.revature.project3backend.modeldtos.ProductVersion;
+import com.revature.project3backend.models.CartItem;
 import com.revature.project3backend.models.Product;
+import com.revature.project3backend.models.User;
 import com.revature.project3backend.repositories.ProductRepo;
+import com.revature.project3backend.search.FacetedPage;
+import com.revature.project3backend.search.PostgresProductSearch;
+import com.revature.project3backend.search.ProductCache;
+import com.revature.project3backend.search.ProductCursor;
+import com.revature.project3backend.search.ProductFilter;
+import com.revature.project3backend.search.ProductSearchCache;
+import com.revature.project3backend.search.ProductSearchIndex;
+import com.revature.project3backend.search.ProductSort;
+import com.revature.project3backend.search.ProductSuggestions;
 import com.revature.project3backend.utils.FileUtil;
+import com.revature.project3backend.utils.ProductExportFormat;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.persistence.EntityManager;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 class ProductServiceTest {
@@ -28,6 +60,14 @@ class ProductServiceTest {
 	ProductService productService;
 	MultipartFile mf = null;
 	FileUtil fileUtil = Mockito.mock (FileUtil.class);
+	ProductSearchIndex productSearchIndex = Mockito.mock (ProductSearchIndex.class);
+	PostgresProductSearch postgresProductSearch = Mockito.mock (PostgresProductSearch.class);
+	ProductSearchCache productSearchCache = new ProductSearchCache (1000, Duration.ofMinutes (1), new SimpleMeterRegistry ());
+	ProductSuggestions productSuggestions = Mockito.mock (ProductSuggestions.class);
+	ProductCache productCache = new ProductCache (productRepo, 1000, Duration.ofMinutes (1), new SimpleMeterRegistry ());
+	StockHoldService stockHoldService = Mockito.mock (StockHoldService.class);
+	HotStockService hotStockService = Mockito.mock (HotStockService.class);
+	EntityManager entityManager = Mockito.mock (EntityManager.class);
 	List <Product> products = new ArrayList <> ();
 	
 	@BeforeAll
@@ -80,8 +120,18 @@ class ProductServiceTest {
 		};
 	}
 	
+	List <ProductListing> listings () {
+		List <ProductListing> listings = new ArrayList <> ();
+		
+		for (Product product : products) {
+			listings.add (ProductListing.of (product));
+		}
+		
+		return listings;
+	}
+	
 	public ProductServiceTest () {
-		this.productService = new ProductService (this.productRepo, this.fileUtil);
+		this.productService = new ProductService (this.productRepo, this.fileUtil, this.productSearchIndex, this.postgresProductSearch, this.productSearchCache, this.productSuggestions, this.productCache, this.stockHoldService, this.hotStockService, this.entityManager, new ObjectMapper ());
 		
 		products.add (new Product (1, "name", "description", 10F, "", null, 10));
 		products.add (new Product (2, "name", "description", 10F, "", null, 10));
@@ -90,29 +140,304 @@ class ProductServiceTest {
 	
 	@Test
 	void getProducts () {
+		Slice <ProductListing> slice = new SliceImpl <> (listings ());
+		
+		Mockito.when (productRepo.findListings ("%query%", PageRequest.of (0, 20))).thenReturn (slice);
+		
+		assertEquals (slice, productService.getProducts ("query", 0, ProductSort.NAME, ProductFilter.NONE));
+	}
+	
+	@Test
+	void getProductsWithFilter () {
+		Slice <ProductListing> slice = new SliceImpl <> (listings ());
+		
+		Mockito.when (productRepo.findFiltered ("%50\\% off%", 0.00F, 20.00F, true, false, PageRequest.of (0, 20))).thenReturn (slice);
+		
+		assertEquals (slice, productService.getProducts ("50% OFF", 0, ProductSort.NAME, new ProductFilter (null, 20.00F, true, false)));
+	}
+	
+	@Test
+	void getProductsWhenIndexIsReady () {
 		String searchQuery = "query";
 		
-		Page <Product> page = new PageImpl <> (products);
+		Mockito.when (productSearchIndex.isReady ()).thenReturn (true);
+		FacetedPage <Product> page = new FacetedPage <> (products, PageRequest.of (0, 20), products.size (), null);
+		
+		Mockito.when (productSearchIndex.search (searchQuery, 0, 20, ProductSort.NAME, ProductFilter.NONE)).thenReturn (page);
+		
+		assertEquals (new FacetedPage <> (listings (), PageRequest.of (0, 20), products.size (), null), productService.getProducts (searchQuery, 0, ProductSort.NAME, ProductFilter.NONE));
+		
+		Mockito.verify (productRepo, Mockito.never ()).findListings (Mockito.any (), Mockito.any ());
+	}
+	
+	@Test
+	void getProductsWhenPostgresSearchIsAvailable () {
+		String searchQuery = "query";
+		
+		Mockito.when (postgresProductSearch.isAvailable ()).thenReturn (true);
+		Slice <Product> slice = new SliceImpl <> (products);
+		
+		Mockito.when (postgresProductSearch.search (searchQuery, 0, 20)).thenReturn (slice);
+		
+		assertEquals (new SliceImpl <> (listings ()), productService.getProducts (searchQuery, 0, ProductSort.NAME, ProductFilter.NONE));
+		
+		Mockito.verify (productRepo, Mockito.never ()).findListings (Mockito.any (), Mockito.any ());
+	}
+	
+	@Test
+	void getProductsListsTheStartOfTheDescription () {
+		Product product = new Product (4, "name", String.join ("", Collections.nCopies (ProductListing.DESCRIPTION_LENGTH + 1, "a")), 10F, "", null, 10);
+		
+		Mockito.when (productSearchIndex.isReady ()).thenReturn (true);
+		Mockito.when (productSearchIndex.search ("", 0, 20, ProductSort.NAME, ProductFilter.NONE)).thenReturn (new FacetedPage <> (Collections.singletonList (product), PageRequest.of (0, 20), 1, null));
+		
+		assertEquals (ProductListing.DESCRIPTION_LENGTH, productService.getProducts ("", 0, ProductSort.NAME, ProductFilter.NONE).getContent ().get (0).getDescription ().length ());
+	}
+	
+	@Test
+	void getProductsIsCached () {
+		Slice <ProductListing> slice = new SliceImpl <> (listings ());
+		
+		Mockito.when (productRepo.findListings (Mockito.any (), Mockito.any ())).thenReturn (slice);
+		
+		assertEquals (slice, productService.getProducts ("Query", 0, ProductSort.NAME, ProductFilter.NONE));
+		assertEquals (slice, productService.getProducts ("query", 0, ProductSort.NAME, ProductFilter.NONE));
+		
+		Mockito.verify (productRepo, Mockito.times (1)).findListings (Mockito.any (), Mockito.any ());
+	}
+	
+	@Test
+	void getProductsAfterProductChanges () throws InvalidValueException {
+		Mockito.when (productRepo.findListings (Mockito.any (), Mockito.any ())).thenReturn (new SliceImpl <> (listings ()));
+		
+		List <CartItem> cart = Collections.singletonList (new CartItem (new User (), products.get (0), 1));
+		
+		Mockito.when (stockHoldService.consume (cart)).thenReturn (new int[1]);
+		Mockito.when (productRepo.decrementStock (cart, new int[1])).thenReturn (new int[] {1});
+		Mockito.when (productRepo.findAllById (Collections.singleton (1))).thenReturn (Collections.singletonList (new Product (1, "name", "description", 10F, "", null, 0)));
+		Mockito.when (productSearchIndex.updateStock (Mockito.any ())).thenReturn (true);
+		
+		productService.getProducts ("query", 0, ProductSort.NAME, ProductFilter.NONE);
+		productService.reduceStock (cart);
+		productService.getProducts ("query", 0, ProductSort.NAME, ProductFilter.NONE);
+		
+		Mockito.verify (productRepo, Mockito.times (2)).findListings (Mockito.any (), Mockito.any ());
+	}
+	
+	@Test
+	void getProductsAfterProductStockChanges () throws InvalidValueException {
+		Mockito.when (productRepo.findListings (Mockito.any (), Mockito.any ())).thenReturn (new SliceImpl <> (listings ()));
+		
+		List <CartItem> cart = Collections.singletonList (new CartItem (new User (), products.get (0), 1));
+		
+		Mockito.when (stockHoldService.consume (cart)).thenReturn (new int[1]);
+		Mockito.when (productRepo.decrementStock (cart, new int[1])).thenReturn (new int[] {1});
+		Mockito.when (productRepo.findAllById (Collections.singleton (1))).thenReturn (Collections.singletonList (new Product (1, "name", "description", 10F, "", null, 9)));
+		Mockito.when (productSearchIndex.updateStock (Mockito.any ())).thenReturn (false);
+		
+		productService.getProducts ("query", 0, ProductSort.NAME, ProductFilter.NONE);
+		productService.reduceStock (cart);
+		productService.getProducts ("query", 0, ProductSort.NAME, ProductFilter.NONE);
+		
+		//the product is still in stock, so the cached page is kept
+		Mockito.verify (productRepo, Mockito.times (1)).findListings (Mockito.any (), Mockito.any ());
+	}
+	
+	@Test
+	void getProductsAfter () {
+		Slice <ProductListing> slice = new SliceImpl <> (listings (), PageRequest.of (0, 20), true);
+		
+		Mockito.when (productRepo.findPageAfter ("%50\\% off%", "name", 3, PageRequest.of (0, 20))).thenReturn (slice);
+		
+		assertEquals (slice, productService.getProductsAfter ("50% OFF", new ProductCursor ("name", 3)));
+	}
+	
+	@Test
+	void getProductsAfterWithoutCursor () {
+		Slice <ProductListing> slice = new SliceImpl <> (listings (), PageRequest.of (0, 20), false);
+		
+		Mockito.when (productRepo.findListings ("%query%", PageRequest.of (0, 20))).thenReturn (slice);
+		
+		assertEquals (slice, productService.getProductsAfter ("query", null));
+	}
+	
+	@Test
+	void getProductsAfterWhenIndexIsReady () {
+		Slice <Product> slice = new SliceImpl <> (products, PageRequest.of (0, 20), false);
+		ProductCursor cursor = new ProductCursor ("name", 3);
+		
+		Mockito.when (productSearchIndex.isReady ()).thenReturn (true);
+		Mockito.when (productSearchIndex.searchAfter ("query", cursor, 20)).thenReturn (slice);
 		
-		Mockito.when (productRepo.findByNameIgnoreCaseContainingOrDescriptionIgnoreCaseContaining (Mockito.eq (searchQuery), Mockito.eq (searchQuery), Mockito.any (PageRequest.class))).thenReturn (page);
+		assertEquals (new SliceImpl <> (listings (), PageRequest.of (0, 20), false), productService.getProductsAfter ("query", cursor));
 		
-		assertEquals (products, productService.getProducts (searchQuery, 0));
+		Mockito.verify (productRepo, Mockito.never ()).findPageAfter (Mockito.any (), Mockito.any (), Mockito.any (), Mockito.any ());
+	}
+	
+	@Test
+	void getSuggestions () throws InvalidValueException {
+		List <ProductSuggestion> suggestions = new ArrayList <> ();
+		
+		suggestions.add (new ProductSuggestion (1, "name"));
+		
+		Mockito.when (productSuggestions.suggest ("na", 5)).thenReturn (suggestions);
+		
+		assertEquals (suggestions, productService.getSuggestions ("na", 5));
+	}
+	
+	@Test
+	void getSuggestionsWhenLimitIsInvalid () {
+		InvalidValueException exception = assertThrows (InvalidValueException.class, () -> productService.getSuggestions ("na", 0));
+		
+		assertEquals ("Error! Invalid limit", exception.getMessage ());
+		assertThrows (InvalidValueException.class, () -> productService.getSuggestions ("na", 11));
+		
+		Mockito.verify (productSuggestions, Mockito.never ()).suggest (Mockito.any (), Mockito.anyInt ());
+	}
+	
+	@Test
+	void exportProducts () throws IOException {
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream ();
+		
+		products.get (1).setSalePrice (8F);
+		
+		Mockito.when (productRepo.streamAll ()).thenReturn (products.stream ());
+		
+		productService.exportProducts (ProductExportFormat.NDJSON, outputStream);
+		
+		String[] lines = outputStream.toString ().split ("\n");
+		
+		assertEquals (3, lines.length);
+		assertEquals ("{\"id\":2,\"name\":\"name\",\"description\":\"description\",\"price\":10.0,\"imageUrl\":\"\",\"salePrice\":8.0,\"stock\":10,\"version\":null}", lines[1]);
+		
+		for (Product product : products) {
+			Mockito.verify (entityManager).detach (product);
+		}
+	}
+	
+	@Test
+	void exportProductsAsCsv () throws IOException {
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream ();
+		
+		Mockito.when (productRepo.streamAll ()).thenReturn (Stream.of (new Product (1, "Java, \"the\" course", "description", 10F, "", null, 10)));
+		
+		productService.exportProducts (ProductExportFormat.CSV, outputStream);
+		
+		assertEquals ("id,name,description,price,imageUrl,salePrice,stock\r\n1,\"Java, \"\"the\"\" course\",description,10.0,,,10\r\n", outputStream.toString ());
+	}
+	
+	@Test
+	void exportProductsAsCsvWithFormulas () throws IOException {
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream ();
+		
+		Mockito.when (productRepo.streamAll ()).thenReturn (Stream.of (new Product (1, "=HYPERLINK(\"http://example.com\")", "-1+2", 10F, "@image", null, 10)));
+		
+		productService.exportProducts (ProductExportFormat.CSV, outputStream);
+		
+		assertEquals ("id,name,description,price,imageUrl,salePrice,stock\r\n1,\"'=HYPERLINK(\"\"http://example.com\"\")\",'-1+2,10.0,'@image,,10\r\n", outputStream.toString ());
 	}
 	
 	@Test
 	void getProduct () throws InvalidValueException {
 		int id = 1;
 		
-		Mockito.when (productRepo.findById (id)).thenReturn (Optional.of (products.get (0)));
+		Mockito.when (productRepo.findUncachedById (id)).thenReturn (Optional.of (products.get (0)));
 		
 		assertEquals (products.get (0), productService.getProduct (id));
 	}
 	
+	@Test
+	void getProductIsCached () throws InvalidValueException {
+		Mockito.when (productRepo.findUncachedById (1)).thenReturn (Optional.of (products.get (0)));
+		
+		productService.getProduct (1).setStock (0);
+		
+		assertEquals (products.get (0), productService.getProduct (1));
+		
+		Mockito.verify (productRepo, Mockito.times (1)).findUncachedById (1);
+	}
+	
+	@Test
+	void getProductAfterProductChanges () throws InvalidValueException {
+		List <CartItem> cart = Collections.singletonList (new CartItem (new User (), products.get (0), 1));
+		
+		Mockito.when (productRepo.findUncachedById (1)).thenReturn (Optional.of (products.get (0)), Optional.of (new Product (1, "name", "description", 10F, "", null, 9)));
+		Mockito.when (stockHoldService.consume (cart)).thenReturn (new int[1]);
+		Mockito.when (productRepo.decrementStock (cart, new int[1])).thenReturn (new int[] {1});
+		Mockito.when (productRepo.findAllById (Collections.singleton (1))).thenReturn (Collections.singletonList (new Product (1, "name", "description", 10F, "", null, 9)));
+		
+		productService.getProduct (1);
+		productService.reduceStock (cart);
+		
+		assertEquals (9, productService.getProduct (1).getStock ());
+		
+		Mockito.verify (productRepo, Mockito.times (2)).findUncachedById (1);
+	}
+	
+	@Test
+	void getProductsById () throws InvalidValueException {
+		Mockito.when (productRepo.findAllById (Arrays.asList (3, 9, 1))).thenReturn (Arrays.asList (products.get (0), products.get (2)));
+		
+		assertEquals (new ProductBatch (Arrays.asList (products.get (2), products.get (0)), Arrays.asList (9)), productService.getProductsById (Arrays.asList (3, 9, 1, 3)));
+		
+		Mockito.verify (productRepo, Mockito.never ()).findUncachedById (Mockito.any ());
+	}
+	
+	@Test
+	void getProductsByIdWhenIndexIsReady () throws InvalidValueException {
+		Map <Integer, Product> indexed = new HashMap <> ();
+		
+		indexed.put (2, products.get (1));
+		
+		Mockito.when (productSearchIndex.isReady ()).thenReturn (true);
+		Mockito.when (productSearchIndex.get (new LinkedHashSet <> (Arrays.asList (2, 3)))).thenReturn (indexed);
+		Mockito.when (productRepo.findAllById (Arrays.asList (3))).thenReturn (Arrays.asList (products.get (2)));
+		
+		assertEquals (new ProductBatch (Arrays.asList (products.get (1), products.get (2)), new ArrayList <> ()), productService.getProductsById (Arrays.asList (2, 3)));
+	}
+	
+	@Test
+	void getProductsByIdWhenAllAreIndexed () throws InvalidValueException {
+		Map <Integer, Product> indexed = new HashMap <> ();
+		
+		indexed.put (1, products.get (0));
+		
+		Mockito.when (productSearchIndex.isReady ()).thenReturn (true);
+		Mockito.when (productSearchIndex.get (Mockito.any ())).thenReturn (indexed);
+		
+		assertEquals (new ProductBatch (Arrays.asList (products.get (0)), new ArrayList <> ()), productService.getProductsById (Arrays.asList (1)));
+		
+		Mockito.verify (productRepo, Mockito.never ()).findAllById (Mockito.any ());
+	}
+	
+	@Test
+	void getProductsByIdWhenIdsAreInvalid () {
+		InvalidValueException exception = assertThrows (InvalidValueException.class, () -> productService.getProductsById (new ArrayList <> ()));
+		
+		assertEquals ("Error! Invalid ids", exception.getMessage ());
+		
+		exception = assertThrows (InvalidValueException.class, () -> productService.getProductsById (Arrays.asList (1, null)));
+		
+		assertEquals ("Error! Invalid ids", exception.getMessage ());
+		
+		List <Integer> ids = new ArrayList <> ();
+		
+		for (int id = 0; id <= ProductService.MAX_BATCH_SIZE; id++) {
+			ids.add (id);
+		}
+		
+		exception = assertThrows (InvalidValueException.class, () -> productService.getProductsById (ids));
+		
+		assertEquals ("Error! Too many ids", exception.getMessage ());
+		
+		Mockito.verify (productRepo, Mockito.never ()).findAllById (Mockito.any ());
+	}
+	
 	@Test
 	void getProductWhenNotFound () throws InvalidValueException {
 		int id = 1;
 		
-		Mockito.when (productRepo.findById (id)).thenReturn (Optional.empty ());
+		Mockito.when (productRepo.findUncachedById (id)).thenReturn (Optional.empty ());
 		
 		InvalidValueException exception = assertThrows (InvalidValueException.class, () -> productService.getProduct (id));
 		
@@ -120,39 +445,164 @@ class ProductServiceTest {
 	}
 	
 	@Test
-	void reduceStock () throws InvalidValueException {
-		int stock = 10;
+	void getProductVersion () throws InvalidValueException {
+		ProductVersion version = new ProductVersion (1, 3L, Instant.EPOCH);
 		
-		Product product = new Product (3, "name", "description", 10F, "", null, stock);
+		Mockito.when (productRepo.findVersionById (1)).thenReturn (Optional.of (version));
 		
-		int quantity = 3;
+		assertEquals (version, productService.getProductVersion (1));
+		
+		Mockito.verify (productRepo, Mockito.never ()).findUncachedById (Mockito.any ());
+	}
+	
+	@Test
+	void getProductVersionWhenIndexIsReady () throws InvalidValueException {
+		ProductVersion version = new ProductVersion (1, 3L, Instant.EPOCH);
 		
-		productService.reduceStock (product, quantity);
+		Mockito.when (productSearchIndex.isReady ()).thenReturn (true);
+		Mockito.when (productSearchIndex.getVersion (1)).thenReturn (version);
 		
-		assertEquals (stock - quantity, product.getStock ());
+		assertEquals (version, productService.getProductVersion (1));
 		
-		Mockito.verify (productRepo).save (product);
+		Mockito.verify (productRepo, Mockito.never ()).findVersionById (Mockito.any ());
 	}
 	
 	@Test
-	void reduceStockWhenStockWouldBeBelowZero () throws InvalidValueException {
-		int stock = 2;
+	void getProductVersionWhenNotFound () {
+		Mockito.when (productRepo.findVersionById (9)).thenReturn (Optional.empty ());
 		
-		Product product = new Product (3, "name", "description", 10F, "", null, stock);
+		InvalidValueException exception = assertThrows (InvalidValueException.class, () -> productService.getProductVersion (9));
 		
-		int quantity = 3;
+		assertEquals ("Error! Invalid product id", exception.getMessage ());
+	}
+	
+	@Test
+	void reduceStockOfCart () throws InvalidValueException {
+		List <CartItem> cart = new ArrayList <> ();
+		
+		cart.add (new CartItem (new User (), products.get (0), 2));
+		cart.add (new CartItem (new User (), products.get (1), 1));
+		
+		Product updated = new Product (1, "name", "description", 10F, "", null, 8);
+		Product updated0 = new Product (2, "name", "description", 10F, "", null, 9);
+		
+		int[] held = {2, 0};
+		
+		Mockito.when (stockHoldService.consume (cart)).thenReturn (held);
+		Mockito.when (productRepo.decrementStock (cart, held)).thenReturn (new int[] {1, 1});
+		Mockito.when (productRepo.findAllById (new LinkedHashSet <> (Arrays.asList (1, 2)))).thenReturn (Arrays.asList (updated0, updated));
+		
+		productService.reduceStock (cart);
+		
+		assertEquals (8, products.get (0).getStock ());
+		assertEquals (9, products.get (1).getStock ());
 		
-		InvalidValueException exception = assertThrows (InvalidValueException.class, () -> productService.reduceStock (product, quantity));
+		Mockito.verify (productSearchIndex).updateStock (updated);
+		Mockito.verify (productSearchIndex).updateStock (updated0);
+		Mockito.verify (productSuggestions).sold (updated, 2);
+		Mockito.verify (productSuggestions).sold (updated0, 1);
+	}
+	
+	@Test
+	void reduceStockOfCartWhenStockIsTooLow () {
+		List <CartItem> cart = new ArrayList <> ();
+		
+		cart.add (new CartItem (new User (), products.get (0), 2));
+		cart.add (new CartItem (new User (), products.get (1), 11));
+		cart.add (new CartItem (new User (), products.get (2), 12));
+		
+		int[] held = new int[3];
+		
+		Mockito.when (stockHoldService.consume (cart)).thenReturn (held);
+		Mockito.when (productRepo.decrementStock (cart, held)).thenReturn (new int[] {1, 0, 0});
+		
+		InsufficientStockException exception = assertThrows (InsufficientStockException.class, () -> productService.reduceStock (cart));
 		
 		assertEquals ("Error! Invalid quantity", exception.getMessage ());
+		assertEquals (Arrays.asList (2, 3), exception.getProductIds ());
+		assertEquals (10, products.get (0).getStock ());
 		
-		assertEquals (stock, product.getStock ());
+		Mockito.verify (productSearchIndex, Mockito.never ()).updateStock (Mockito.any ());
+	}
+	
+	@Test
+	void reduceStockOfCartWithHotProduct () throws InvalidValueException {
+		List <CartItem> cart = new ArrayList <> ();
+		
+		cart.add (new CartItem (new User (), products.get (0), 2));
+		cart.add (new CartItem (new User (), products.get (1), 1));
+		
+		Product updated0 = new Product (2, "name", "description", 10F, "", null, 9);
+		
+		Mockito.when (stockHoldService.consume (cart)).thenReturn (new int[2]);
+		Mockito.when (hotStockService.isHot (1)).thenReturn (true);
+		Mockito.when (hotStockService.take (1, 2)).thenReturn (true);
+		Mockito.when (productRepo.decrementStock (Arrays.asList (cart.get (1)), new int[1])).thenReturn (new int[] {1});
+		Mockito.when (productRepo.findAllById (new LinkedHashSet <> (Arrays.asList (2)))).thenReturn (Arrays.asList (updated0));
+		
+		productService.reduceStock (cart);
+		
+		//the hot product's row is only updated when its sales are flushed
+		assertEquals (10, products.get (0).getStock ());
+		assertEquals (9, products.get (1).getStock ());
+		
+		Mockito.verify (productSearchIndex, Mockito.never ()).updateStock (products.get (0));
+		Mockito.verify (productSuggestions).sold (products.get (0), 2);
+		Mockito.verify (productSuggestions).sold (updated0, 1);
+	}
+	
+	@Test
+	void reduceStockOfCartWhenHotProductStockIsTooLow () {
+		List <CartItem> cart = new ArrayList <> ();
+		
+		cart.add (new CartItem (new User (), products.get (0), 2));
+		cart.add (new CartItem (new User (), products.get (1), 1));
+		
+		Mockito.when (stockHoldService.consume (cart)).thenReturn (new int[2]);
+		Mockito.when (hotStockService.isHot (1)).thenReturn (true);
+		Mockito.when (hotStockService.take (1, 2)).thenReturn (false);
+		Mockito.when (productRepo.decrementStock (Arrays.asList (cart.get (1)), new int[1])).thenReturn (new int[] {1});
+		
+		InsufficientStockException exception = assertThrows (InsufficientStockException.class, () -> productService.reduceStock (cart));
+		
+		assertEquals (Arrays.asList (1), exception.getProductIds ());
+	}
+	
+	@Test
+	void reduceStockOfCartWhenHotProductIsHeld () throws InvalidValueException {
+		List <CartItem> cart = new ArrayList <> ();
+		
+		cart.add (new CartItem (new User (), products.get (0), 2));
+		
+		int[] held = {2};
+		
+		Mockito.when (stockHoldService.consume (cart)).thenReturn (held);
+		Mockito.when (hotStockService.isHot (1)).thenReturn (true);
+		Mockito.when (productRepo.decrementStock (cart, held)).thenReturn (new int[] {1});
+		Mockito.when (productRepo.findAllById (new LinkedHashSet <> (Arrays.asList (1)))).thenReturn (Arrays.asList (new Product (1, "name", "description", 10F, "", null, 8)));
+		
+		productService.reduceStock (cart);
+		
+		assertEquals (8, products.get (0).getStock ());
+		
+		Mockito.verify (hotStockService, Mockito.never ()).take (Mockito.any (), Mockito.anyInt ());
+	}
+	
+	@Test
+	void reduceStockOfCartWhenQuantityIsNotPositive () {
+		List <CartItem> cart = new ArrayList <> ();
+		
+		cart.add (new CartItem (new User (), products.get (0), 0));
 		
-		Mockito.verify (productRepo, Mockito.never ()).save (Mockito.any ());
+		InvalidValueException exception = assertThrows (InvalidValueException.class, () -> productService.reduceStock (cart));
+		
+		assertEquals ("Error! Invalid quantity", exception.getMessage ());
+		
+		Mockito.verify (productRepo, Mockito.never ()).decrementStock (Mockito.anyList (), Mockito.any ());
 	}
 	
 	@Test
-	void updateProductWhenNameIsNull () throws InvalidValueException {
+	void updateProductWhenNameIsNull () throws InvalidValueException, StaleProductException {
 		Product product = new Product (1, null, "description", 10F, null, null, 10);
 		
 		Mockito.when (fileUtil.uploadToS3 (product, null)).thenReturn ("https://s3-alpha.figma.com/hub/file/948140848/1f4d8ea7-e9d9-48b7-b70c-819482fb10fb-cover.png");
@@ -172,7 +622,7 @@ class ProductServiceTest {
 	}
 	
 	@Test
-	void updateProductWhenDescriptionIsNull () throws InvalidValueException {
+	void updateProductWhenDescriptionIsNull () throws InvalidValueException, StaleProductException {
 		Product product = new Product (1, "name", null, 10F, null, null, 10);
 		
 		Mockito.when (fileUtil.uploadToS3 (product, null)).thenReturn ("https://s3-alpha.figma.com/hub/file/948140848/1f4d8ea7-e9d9-48b7-b70c-819482fb10fb-cover.png");
@@ -192,41 +642,122 @@ class ProductServiceTest {
 	}
 	
 	@Test
-	void updateProductWithImage () throws InvalidValueException {
+	void updateProductWithImage () throws InvalidValueException, StaleProductException {
 		Product product = new Product (1, "name", "description", 10F, null, null, null);
+		product.setVersion (3L);
 		
-		Mockito.when (fileUtil.uploadToS3 (product, this.mf)).thenReturn ("https://s3-alpha.figma.com/hub/file/948140848/1f4d8ea7-e9d9-48b7-b70c-819482fb10fb-cover.png");
-		Mockito.when (productRepo.save (product)).thenReturn (product);
+		Product stored = new Product (1, "old name", "old description", 12F, null, null, 4);
+		stored.setVersion (3L);
+		
+		Mockito.when (productRepo.findById (1)).thenReturn (Optional.of (stored));
+		Mockito.when (fileUtil.uploadToS3 (stored, this.mf)).thenReturn ("https://s3-alpha.figma.com/hub/file/948140848/1f4d8ea7-e9d9-48b7-b70c-819482fb10fb-cover.png");
+		Mockito.when (productRepo.saveAndFlush (stored)).thenReturn (stored);
 		
 		Product actualResult = productService.updateProduct (product, this.mf);
-		product.setImageUrl ("https://s3-alpha.figma.com/hub/file/948140848/1f4d8ea7-e9d9-48b7-b70c-819482fb10fb-cover.png");
 		
-		assertEquals (product, actualResult);
+		assertEquals ("name", actualResult.getName ());
+		assertEquals ("https://s3-alpha.figma.com/hub/file/948140848/1f4d8ea7-e9d9-48b7-b70c-819482fb10fb-cover.png", actualResult.getImageUrl ());
 	}
 	
 	@Test
-	void updateProductWithoutImage () throws InvalidValueException {
-		Product product = new Product (1, "name", "description", 10F, null, null, 10);
+	void updateProductWithoutImage () throws InvalidValueException, StaleProductException {
+		Product product = new Product (1, "name", "description", 10F, "url.com", 8F, 10);
+		product.setVersion (3L);
 		
-		Mockito.when (fileUtil.uploadToS3 (product, null)).thenReturn ("https://s3-alpha.figma.com/hub/file/948140848/1f4d8ea7-e9d9-48b7-b70c-819482fb10fb-cover.png");
-		Mockito.when (productRepo.save (product)).thenReturn (product);
+		Product stored = new Product (1, "old name", "old description", 12F, null, null, 4);
+		stored.setVersion (3L);
+		
+		Mockito.when (productRepo.findById (1)).thenReturn (Optional.of (stored));
+		Mockito.when (productRepo.saveAndFlush (stored)).thenReturn (stored);
 		
 		Product actualResult = productService.updateProduct (product, null);
 		
-		assertEquals (product, actualResult);
+		assertEquals ("name", actualResult.getName ());
+		assertEquals ("description", actualResult.getDescription ());
+		assertEquals (10F, actualResult.getPrice ());
+		assertEquals (8F, actualResult.getSalePrice ());
+		assertEquals ("url.com", actualResult.getImageUrl ());
+		assertEquals (10, actualResult.getStock ());
+		assertEquals (3L, actualResult.getVersion ());
+		
+		Mockito.verify (fileUtil, Mockito.never ()).uploadToS3 (Mockito.any (), Mockito.any ());
+		Mockito.verify (productSearchIndex).index (stored);
+		Mockito.verify (productSuggestions).index (stored);
 	}
-
+	
 	@Test
-	void updateProductNegativeStock() throws InvalidValueException {
-		MultipartFile file = null;
+	void updateProductWhenVersionIsNull () {
+		Product product = new Product (1, "name", "description", 10F, null, null, 10);
+		
+		InvalidValueException exception = assertThrows (InvalidValueException.class, () -> productService.updateProduct (product, null));
+		
+		assertEquals ("Error! No product version", exception.getMessage ());
+		
+		Mockito.verify (productRepo, Mockito.never ()).saveAndFlush (Mockito.any ());
+	}
+	
+	@Test
+	void updateProductWhenNotFound () {
+		Product product = new Product (9, "name", "description", 10F, null, null, 10);
+		product.setVersion (3L);
+		
+		Mockito.when (productRepo.findById (9)).thenReturn (Optional.empty ());
+		
+		InvalidValueException exception = assertThrows (InvalidValueException.class, () -> productService.updateProduct (product, null));
+		
+		assertEquals ("Error! Invalid product id", exception.getMessage ());
+		
+		Mockito.verify (productRepo, Mockito.never ()).saveAndFlush (Mockito.any ());
+	}
+	
+	@Test
+	void updateProductWhenItHasChanged () {
+		Product product = new Product (1, "name", "description", 10F, null, null, 10);
+		product.setVersion (3L);
+		
+		Product stored = new Product (1, "name", "description", 10F, null, null, 8);
+		stored.setVersion (4L);
+		
+		Mockito.when (productRepo.findById (1)).thenReturn (Optional.of (stored));
+		
+		assertThrows (StaleProductException.class, () -> productService.updateProduct (product, null));
+		
+		assertEquals (8, stored.getStock ());
+		
+		Mockito.verify (productRepo, Mockito.never ()).saveAndFlush (Mockito.any ());
+		Mockito.verify (productSearchIndex, Mockito.never ()).index (Mockito.any ());
+	}
+	
+	@Test
+	void updateProductWhenItChangesWhileSaving () {
+		Product product = new Product (1, "name", "description", 10F, null, null, 10);
+		product.setVersion (3L);
+		
+		Product stored = new Product (1, "name", "description", 10F, null, null, 8);
+		stored.setVersion (3L);
+		
+		Mockito.when (productRepo.findById (1)).thenReturn (Optional.of (stored));
+		Mockito.when (productRepo.saveAndFlush (stored)).thenThrow (new ObjectOptimisticLockingFailureException (Product.class, 1));
+		
+		assertThrows (StaleProductException.class, () -> productService.updateProduct (product, null));
+		
+		Mockito.verify (productSearchIndex, Mockito.never ()).index (Mockito.any ());
+	}
+	
+	@Test
+	void updateProductNegativeStock () throws InvalidValueException, StaleProductException {
 		Product product = new Product (1, "Dog Tricks", "Teach your dog new tricks.", (float) 1.15, null, -13);
-
-		Mockito.when(productRepo.save(product)).thenReturn(product);
-
-		Product actual = productService.updateProduct(product, null);
-		product.setStock(null);
-
-		assertEquals(product, actual);
+		product.setVersion (3L);
+		
+		Product stored = new Product (1, "Dog Tricks", "Teach your dog new tricks.", (float) 1.15, null, 13);
+		stored.setVersion (3L);
+		
+		Mockito.when (productRepo.findById (1)).thenReturn (Optional.of (stored));
+		Mockito.when (productRepo.saveAndFlush (stored)).thenReturn (stored);
+		
+		Product actual = productService.updateProduct (product, null);
+		
+		assertNull (actual.getStock ());
 	}
 	
 	@Test
@@ -287,6 +818,7 @@ class ProductServiceTest {
 		
 		Mockito.when (fileUtil.uploadToS3 (product, this.mf)).thenReturn ("https://s3-alpha.figma.com/hub/file/948140848/1f4d8ea7-e9d9-48b7-b70c-819482fb10fb-cover.png");
 		Mockito.when (productRepo.save (product)).thenReturn (product);
+		Mockito.when (productRepo.saveAndFlush (product)).thenReturn (product);
 		
 		Product actualResult = productService.createProduct (product, this.mf);
 		product.setImageUrl ("https://s3-alpha.figma.com/hub/file/948140848/1f4d8ea7-e9d9-48b7-b70c-819482fb10fb-cover.png");
@@ -298,24 +830,27 @@ class ProductServiceTest {
 	void createProductWithoutImage () throws InvalidValueException {
 		Product product = new Product (1, "name", "description", 10F, "https://s3-alpha.figma.com/hub/file/948140848/1f4d8ea7-e9d9-48b7-b70c-819482fb10fb-cover.png", null, 10);
 		
-		Mockito.when (productRepo.save (product)).thenReturn (product);
+		Mockito.when (productRepo.saveAndFlush (product)).thenReturn (product);
 		
 		Product actualResult = productService.createProduct (product, null);
 		
 		assertEquals (product, actualResult);
+		
+		Mockito.verify (productSearchIndex).index (product);
+		Mockito.verify (productSuggestions).index (product);
 	}
-
-
+	
+	
 	@Test
 	void createProductNegativeStock() throws InvalidValueException {
 		MultipartFile file = null;
 		Product product = new Product (1, "Dog Tricks", "Teach your dog new tricks.", (float) 1.15, null, -13);
-
-		Mockito.when(productRepo.save(product)).thenReturn(product);
-
+		
+		Mockito.when(productRepo.saveAndFlush(product)).thenReturn(product);
+		
 		Product actual = productService.createProduct(product, null);
 		product.setStock(null);
-
+		
 		assertEquals(product, actual);
 	}
 }
\ No newline at end of file
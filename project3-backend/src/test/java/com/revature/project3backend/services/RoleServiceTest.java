@@ -6,6 +6,8 @@ import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.util.Arrays;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class RoleServiceTest {
@@ -22,10 +24,29 @@ class RoleServiceTest {
     void getRoleByName() {
         UserRole role = new UserRole(1, "USER");
 
-        Mockito.when(this.roleRepo.findUserRoleByName(role.getRole())).thenReturn(role);
+        Mockito.when(this.roleRepo.findAll()).thenReturn(Arrays.asList(role, new UserRole(2, "ADMIN")));
 
         UserRole actual = this.roleService.getRoleByName("USER");
 
         assertEquals(role, actual);
+        assertEquals(role, this.roleService.getRoleByName("user"));
+        assertNull(this.roleService.getRoleByName("MODERATOR"));
+
+        Mockito.verify(this.roleRepo, Mockito.times(1)).findAll();
+    }
+
+    @Test
+    void refresh() {
+        Mockito.when(this.roleRepo.findAll()).thenReturn(Arrays.asList(new UserRole(1, "USER")));
+
+        this.roleService.refresh();
+
+        assertNull(this.roleService.getRoleByName("ADMIN"));
+
+        Mockito.when(this.roleRepo.findAll()).thenReturn(Arrays.asList(new UserRole(1, "USER"), new UserRole(2, "ADMIN")));
+
+        this.roleService.refresh();
+
+        assertEquals(new UserRole(2, "ADMIN"), this.roleService.getRoleByName("ADMIN"));
     }
-}
\ No newline at end of file
+}
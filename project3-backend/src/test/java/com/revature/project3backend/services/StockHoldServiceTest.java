@@ -0,0 +1,271 @@
+package com.revature.project3backend.services;
+
+import com.revature.project3backend.exceptions.InvalidValueException;
+import com.revature.project3backend.models.CartItem;
+import com.revature.project3backend.models.Product;
+import com.revature.project3backend.models.StockHold;
+import com.revature.project3backend.models.User;
+import com.revature.project3backend.repositories.ProductRepo;
+import com.revature.project3backend.repositories.StockHoldRepo;
+import com.revature.project3backend.search.ProductCache;
+import com.revature.project3backend.search.ProductSearchCache;
+import com.revature.project3backend.search.ProductSearchIndex;
+import org.junit.jupiter.api.Test;
+import org.mockito.AdditionalAnswers;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StockHoldServiceTest {
+	StockHoldRepo stockHoldRepo = Mockito.mock (StockHoldRepo.class);
+	ProductRepo productRepo = Mockito.mock (ProductRepo.class);
+	ProductCache productCache = Mockito.mock (ProductCache.class);
+	HotStockService hotStockService = Mockito.mock (HotStockService.class);
+	ProductSearchIndex productSearchIndex = Mockito.mock (ProductSearchIndex.class);
+	ProductSearchCache productSearchCache = Mockito.mock (ProductSearchCache.class);
+	StockHoldService stockHoldService = new StockHoldService (stockHoldRepo, productRepo, productCache, hotStockService, productSearchIndex, productSearchCache, Duration.ZERO);
+	Product product = new Product (3, "name", "description", 10F, "", null, 5);
+	
+	public StockHoldServiceTest () {
+		Mockito.when (stockHoldRepo.save (Mockito.any ())).then (AdditionalAnswers.returnsFirstArg ());
+	}
+	
+	@Test
+	void hold () throws InvalidValueException {
+		Mockito.when (productRepo.reserveStock (3, 2)).thenReturn (true);
+		
+		stockHoldService.hold (new CartItem (7, new User (), product, 2));
+		
+		ArgumentCaptor <StockHold> hold = ArgumentCaptor.forClass (StockHold.class);
+		
+		Mockito.verify (stockHoldRepo).save (hold.capture ());
+		Mockito.verify (productCache).invalidate (3);
+		Mockito.verify (productSearchCache, Mockito.never ()).invalidate ();
+		
+		assertEquals (7, hold.getValue ().getCartItemId ());
+		assertEquals (3, hold.getValue ().getProductId ());
+		assertEquals (2, hold.getValue ().getQuantity ());
+	}
+	
+	@Test
+	void holdOfTheLastStock () throws InvalidValueException {
+		Mockito.when (productRepo.reserveStock (3, 5)).thenReturn (true);
+		Mockito.when (productRepo.findReservedById (3)).thenReturn (5);
+		Mockito.when (productSearchIndex.updateReserved (3, 5)).thenReturn (true);
+		
+		stockHoldService.hold (new CartItem (7, new User (), product, 5));
+		
+		Mockito.verify (productSearchIndex).updateReserved (3, 5);
+		Mockito.verify (productSearchCache).invalidate ();
+	}
+	
+	@Test
+	void holdWhenStockIsNotAvailable () {
+		Mockito.when (productRepo.reserveStock (3, 6)).thenReturn (false);
+		
+		InvalidValueException exception = assertThrows (InvalidValueException.class, () -> stockHoldService.hold (new CartItem (7, new User (), product, 6)));
+		
+		assertEquals ("Error! Invalid quantity", exception.getMessage ());
+		
+		Mockito.verify (stockHoldRepo, Mockito.never ()).save (Mockito.any ());
+	}
+	
+	@Test
+	void holdWhenProductIsHot () throws InvalidValueException {
+		Mockito.when (hotStockService.isHot (3)).thenReturn (true);
+		
+		stockHoldService.hold (new CartItem (7, new User (), product, 2));
+		
+		Mockito.verify (productRepo, Mockito.never ()).reserveStock (Mockito.any (), Mockito.anyInt ());
+		Mockito.verify (stockHoldRepo, Mockito.never ()).save (Mockito.any ());
+	}
+	
+	@Test
+	void changeHoldToMore () throws InvalidValueException {
+		StockHold hold = new StockHold (1, 7, 3, 2, Instant.EPOCH);
+		
+		Mockito.when (stockHoldRepo.findByCartItemId (7)).thenReturn (Optional.of (hold));
+		Mockito.when (productRepo.reserveStock (3, 2)).thenReturn (true);
+		
+		stockHoldService.changeHold (new CartItem (7, new User (), product, 2), 4);
+		
+		assertEquals (4, hold.getQuantity ());
+		assertTrue (hold.getExpiresAt ().isAfter (Instant.EPOCH));
+		
+		Mockito.verify (productRepo, Mockito.never ()).releaseStock (Mockito.any ());
+		Mockito.verify (stockHoldRepo).save (hold);
+	}
+	
+	@Test
+	void changeHoldToLess () throws InvalidValueException {
+		StockHold hold = new StockHold (1, 7, 3, 4, Instant.EPOCH);
+		
+		Mockito.when (stockHoldRepo.findByCartItemId (7)).thenReturn (Optional.of (hold));
+		
+		stockHoldService.changeHold (new CartItem (7, new User (), product, 4), 1);
+		
+		assertEquals (1, hold.getQuantity ());
+		
+		Mockito.verify (productRepo, Mockito.never ()).reserveStock (Mockito.any (), Mockito.anyInt ());
+		Mockito.verify (productRepo).releaseStock (Collections.singletonMap (3, 3));
+		Mockito.verify (productRepo).findReservedById (3);
+	}
+	
+	@Test
+	void changeHoldWhenStockIsNotAvailable () {
+		StockHold hold = new StockHold (1, 7, 3, 2, Instant.EPOCH);
+		
+		Mockito.when (stockHoldRepo.findByCartItemId (7)).thenReturn (Optional.of (hold));
+		Mockito.when (productRepo.reserveStock (3, 4)).thenReturn (false);
+		
+		InvalidValueException exception = assertThrows (InvalidValueException.class, () -> stockHoldService.changeHold (new CartItem (7, new User (), product, 2), 6));
+		
+		assertEquals ("Error! Invalid quantity", exception.getMessage ());
+		assertEquals (2, hold.getQuantity ());
+	}
+	
+	@Test
+	void changeHoldWhenHoldHasExpired () throws InvalidValueException {
+		Mockito.when (stockHoldRepo.findByCartItemId (7)).thenReturn (Optional.empty ());
+		Mockito.when (productRepo.reserveStock (3, 4)).thenReturn (true);
+		
+		stockHoldService.changeHold (new CartItem (7, new User (), product, 2), 4);
+		
+		Mockito.verify (productRepo).reserveStock (3, 4);
+		Mockito.verify (stockHoldRepo).save (Mockito.any ());
+	}
+	
+	@Test
+	void changeHoldWhenProductHasBecomeHot () throws InvalidValueException {
+		StockHold hold = new StockHold (1, 7, 3, 2, Instant.EPOCH);
+		
+		Mockito.when (stockHoldRepo.findByCartItemId (7)).thenReturn (Optional.of (hold));
+		Mockito.when (hotStockService.isHot (3)).thenReturn (true);
+		
+		stockHoldService.changeHold (new CartItem (7, new User (), product, 2), 4);
+		
+		Mockito.verify (stockHoldRepo).delete (hold);
+		Mockito.verify (productRepo).releaseStock (Collections.singletonMap (3, 2));
+		Mockito.verify (hotStockService).release (3, 2);
+		Mockito.verify (productRepo, Mockito.never ()).reserveStock (Mockito.any (), Mockito.anyInt ());
+		Mockito.verify (stockHoldRepo, Mockito.never ()).save (Mockito.any ());
+	}
+	
+	@Test
+	void release () {
+		StockHold hold = new StockHold (1, 7, 3, 2, Instant.EPOCH);
+		
+		Mockito.when (stockHoldRepo.findByCartItemId (7)).thenReturn (Optional.of (hold));
+		
+		stockHoldService.release (new CartItem (7, new User (), product, 2));
+		
+		Mockito.verify (stockHoldRepo).delete (hold);
+		Mockito.verify (productRepo).releaseStock (Collections.singletonMap (3, 2));
+		Mockito.verify (hotStockService).release (3, 2);
+	}
+	
+	@Test
+	void consume () {
+		List <CartItem> cart = new ArrayList <> ();
+		
+		cart.add (new CartItem (7, new User (), product, 2));
+		cart.add (new CartItem (8, new User (), new Product (4, "name", "description", 10F, "", null, 5), 1));
+		cart.add (new CartItem (new User (), new Product (5, "name", "description", 10F, "", null, 5), 1));
+		
+		List <StockHold> holds = Arrays.asList (new StockHold (1, 7, 3, 2, Instant.EPOCH));
+		
+		Mockito.when (stockHoldRepo.findByCartItemIds (Arrays.asList (7, 8))).thenReturn (holds);
+		
+		assertArrayEquals (new int[] {2, 0, 0}, stockHoldService.consume (cart));
+		
+		Mockito.verify (stockHoldRepo).deleteAllInBatch (holds);
+	}
+	
+	@Test
+	void releaseExpired () {
+		List <StockHold> holds = Arrays.asList (new StockHold (1, 7, 3, 2, Instant.EPOCH), new StockHold (2, 8, 3, 1, Instant.EPOCH), new StockHold (3, 9, 4, 5, Instant.EPOCH));
+		
+		Mockito.when (stockHoldRepo.findExpired (Mockito.eq (Arrays.asList (1, 2, 3, 4)), Mockito.any ())).thenReturn (holds);
+		
+		assertEquals (3, stockHoldService.releaseExpired (Arrays.asList (1, 2, 3, 4)));
+		
+		Map <Integer, Integer> quantities = new HashMap <> ();
+		
+		quantities.put (3, 3);
+		quantities.put (4, 5);
+		
+		Mockito.verify (stockHoldRepo).deleteAllInBatch (holds);
+		Mockito.verify (productRepo).releaseStock (quantities);
+		Mockito.verify (hotStockService).release (3, 3);
+		Mockito.verify (hotStockService).release (4, 5);
+		Mockito.verify (productRepo).findReservedById (3);
+		Mockito.verify (productRepo).findReservedById (4);
+		Mockito.verify (productCache).invalidate (3);
+		Mockito.verify (productCache).invalidate (4);
+	}
+	
+	@Test
+	void releaseExpiredWhenNoneHaveExpired () {
+		Mockito.when (stockHoldRepo.findExpired (Mockito.any (), Mockito.any ())).thenReturn (new ArrayList <> ());
+		
+		assertEquals (0, stockHoldService.releaseExpired (Arrays.asList (1)));
+		
+		Mockito.verify (productRepo, Mockito.never ()).releaseStock (Mockito.any ());
+	}
+	
+	@Test
+	void due () throws InvalidValueException {
+		Mockito.when (productRepo.reserveStock (3, 2)).thenReturn (true);
+		Mockito.when (stockHoldRepo.save (Mockito.any ())).then (invocation -> {
+			StockHold hold = invocation.getArgument (0);
+			
+			hold.setId (1);
+			
+			return hold;
+		});
+		
+		stockHoldService.hold (new CartItem (7, new User (), product, 2));
+		
+		//the time to live is zero, so the hold is due by the next tick
+		List <Integer> due = new ArrayList <> ();
+		
+		for (int i = 0; i < 30 && due.isEmpty (); i++) {
+			due.addAll (stockHoldService.due ());
+			
+			sleep ();
+		}
+		
+		assertEquals (Arrays.asList (1), due);
+	}
+	
+	@Test
+	void load () {
+		Mockito.when (stockHoldRepo.findAll ()).thenReturn (Arrays.asList (new StockHold (1, 7, 3, 2, Instant.EPOCH)));
+		
+		stockHoldService.load ();
+		
+		assertEquals (Arrays.asList (1), stockHoldService.due ());
+	}
+	
+	private static void sleep () {
+		try {
+			Thread.sleep (100);
+		} catch (InterruptedException exception) {
+			Thread.currentThread ().interrupt ();
+		}
+	}
+}
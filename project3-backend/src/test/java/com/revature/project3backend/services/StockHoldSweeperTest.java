@@ -0,0 +1,37 @@
+package com.revature.project3backend.services;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.dao.CannotAcquireLockException;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class StockHoldSweeperTest {
+	StockHoldService stockHoldService = Mockito.mock (StockHoldService.class);
+	StockHoldSweeper stockHoldSweeper = new StockHoldSweeper (stockHoldService, 2);
+	
+	@Test
+	void sweep () {
+		Mockito.when (stockHoldService.due ()).thenReturn (Arrays.asList (1, 2, 3, 4, 5));
+		Mockito.when (stockHoldService.releaseExpired (Mockito.any ())).thenReturn (2, 1, 1);
+		
+		assertEquals (4, stockHoldSweeper.sweep ());
+		
+		Mockito.verify (stockHoldService).releaseExpired (Arrays.asList (1, 2));
+		Mockito.verify (stockHoldService).releaseExpired (Arrays.asList (3, 4));
+		Mockito.verify (stockHoldService).releaseExpired (Arrays.asList (5));
+	}
+	
+	@Test
+	void sweepWhenBatchFails () {
+		Mockito.when (stockHoldService.due ()).thenReturn (Arrays.asList (1, 2, 3));
+		Mockito.when (stockHoldService.releaseExpired (Arrays.asList (1, 2))).thenThrow (new CannotAcquireLockException ("locked"));
+		Mockito.when (stockHoldService.releaseExpired (Arrays.asList (3))).thenReturn (1);
+		
+		assertEquals (1, stockHoldSweeper.sweep ());
+		
+		Mockito.verify (stockHoldService).retry (Arrays.asList (1, 2));
+	}
+}
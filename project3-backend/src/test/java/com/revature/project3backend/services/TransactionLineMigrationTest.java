@@ -0,0 +1,29 @@
+package com.revature.project3backend.services;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TransactionLineMigrationTest {
+	TransactionService transactionService = Mockito.mock (TransactionService.class);
+	TransactionLineMigration transactionLineMigration = new TransactionLineMigration (transactionService);
+	
+	@Test
+	void migrate () {
+		Mockito.when (transactionService.migrateLegacyItems (0, TransactionLineMigration.BATCH_SIZE)).thenReturn (500);
+		Mockito.when (transactionService.migrateLegacyItems (500, TransactionLineMigration.BATCH_SIZE)).thenReturn (730);
+		Mockito.when (transactionService.migrateLegacyItems (730, TransactionLineMigration.BATCH_SIZE)).thenReturn (null);
+		
+		assertEquals (2, transactionLineMigration.migrate ());
+		
+		Mockito.verify (transactionService).migrateLegacyItems (730, TransactionLineMigration.BATCH_SIZE);
+	}
+	
+	@Test
+	void migrateWhenThereIsNothingToMove () {
+		Mockito.when (transactionService.migrateLegacyItems (0, TransactionLineMigration.BATCH_SIZE)).thenReturn (null);
+		
+		assertEquals (0, transactionLineMigration.migrate ());
+	}
+}
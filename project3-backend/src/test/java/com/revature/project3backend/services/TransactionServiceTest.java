@@ -1,46 +1,105 @@
 package com.revature.project3backend.services;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
+import com.revature.project3backend.exceptions.InsufficientStockException;
 import com.revature.project3backend.exceptions.InvalidValueException;
 import com.revature.project3backend.models.*;
+import com.revature.project3backend.repositories.TransactionLineRepo;
 import com.revature.project3backend.repositories.TransactionRepo;
 import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
 import org.mockito.Mockito;
+import org.springframework.data.domain.Pageable;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 class TransactionServiceTest {
 	TransactionService transactionService;
 	TransactionRepo transactionRepo = Mockito.mock (TransactionRepo.class);
+	TransactionLineRepo transactionLineRepo = Mockito.mock (TransactionLineRepo.class);
+	ProductService productService = Mockito.mock (ProductService.class);
+	UserService userService = Mockito.mock (UserService.class);
 	
 	public TransactionServiceTest () {
-		this.transactionService = new TransactionService (transactionRepo);
+		this.transactionService = new TransactionService (transactionRepo, transactionLineRepo, productService, userService);
 	}
 	
 	@Test
-	void createTransaction () throws JsonProcessingException {
+	void checkout () throws InvalidValueException {
+		List <CartItem> items = new ArrayList <> ();
+		User user = new User (1, "john", "doe", "jdoe@mail.com", "jdoe1", "pass123", items, null, new UserRole (2, "USER"));
+		
+		items.add (new CartItem (1, user, new Product (1, "something", "something", 20.00f, "image", null, 1), 2));
+		
+		Mockito.when (transactionRepo.save (Mockito.any ())).then (invocation -> {
+			Transaction transaction = invocation.getArgument (0);
+			
+			transaction.setId (1);
+			
+			return transaction;
+		});
+		
+		Transaction result = transactionService.checkout (user, items);
+		
+		assertEquals (user, result.getBuyer ());
+		assertEquals (40.00f, result.getTotal ());
+		
+		InOrder inOrder = Mockito.inOrder (productService, transactionRepo, userService);
+		
+		inOrder.verify (productService).reduceStock (items);
+		inOrder.verify (transactionRepo).save (result);
+		inOrder.verify (userService).deleteCartItems (items);
+	}
+	
+	@Test
+	void checkoutWhenStockIsTooLow () throws InvalidValueException {
+		List <CartItem> items = new ArrayList <> ();
+		User user = new User (1, "john", "doe", "jdoe@mail.com", "jdoe1", "pass123", items, null, new UserRole (2, "USER"));
+		
+		items.add (new CartItem (1, user, new Product (1, "something", "something", 20.00f, "image", null, 1), 2));
+		
+		Mockito.doThrow (new InsufficientStockException (Arrays.asList (1))).when (productService).reduceStock (items);
+		
+		assertThrows (InsufficientStockException.class, () -> transactionService.checkout (user, items));
+		
+		Mockito.verify (transactionRepo, Mockito.never ()).save (Mockito.any ());
+		Mockito.verify (userService, Mockito.never ()).deleteCartItems (Mockito.any ());
+	}
+	
+	@Test
+	void createTransaction () {
 		List <CartItem> items = new ArrayList <> ();
 		
 		Product product = new Product (1, "something", "something", 3000.00f, "image", null, 1);
+		Product product0 = new Product (2, "something else", "something else", 20.00f, "image", 15.00f, 1);
 		
 		User user = new User (1, "john", "doe", "jdoe@mail.com", "jdoe1", "pass123", items, null, new UserRole (2, "USER"));
 		
-		CartItem cartItem = new CartItem (1, user, product, 1);
+		items.add (new CartItem (1, user, product, 1));
+		items.add (new CartItem (2, user, product0, 2));
 		
-		items.add (cartItem);
+		Transaction transaction = new Transaction (user);
+		
+		Mockito.when (transactionRepo.save (transaction)).then (invocation -> {
+			transaction.setId (1);
+			
+			return transaction;
+		});
 		
-		Transaction expectedResult = new Transaction (1, user, "[]", 300.00f);
+		List <TransactionLine> lines = Arrays.asList (new TransactionLine (null, 1, 1, "something", 3000.00f, 1), new TransactionLine (null, 1, 2, "something else", 15.00f, 2));
 		
-		Mockito.when (transactionRepo.save (expectedResult)).thenReturn (expectedResult);
+		Transaction result = transactionService.createTransaction (transaction, items);
 		
-		assertEquals (expectedResult, transactionService.createTransaction (expectedResult, items));
+		assertEquals (3030.00f, result.getTotal ());
+		assertEquals (lines, result.getItems ());
 		
-		Mockito.verify (transactionRepo).save (expectedResult);
+		Mockito.verify (transactionLineRepo).insertAll (lines);
 	}
 	
 	@Test
@@ -55,13 +114,23 @@ class TransactionServiceTest {
 		
 		items.add (cartItem);
 		
-		Transaction expectedResult = new Transaction (1, user, "items", 300.00f);
+		Transaction expectedResult = new Transaction (1, user, null, 300.00f);
 		
 		Mockito.when (transactionRepo.findById (expectedResult.getId ())).thenReturn (Optional.of (expectedResult));
 		
 		assertEquals (expectedResult, transactionService.getTransaction (expectedResult.getId ()));
 		
 		Mockito.verify (transactionRepo).findById (expectedResult.getId ());
+		Mockito.verify (transactionLineRepo, Mockito.never ()).findByTransactionIdOrderById (Mockito.any ());
+	}
+	
+	@Test
+	void getItems () {
+		List <TransactionLine> lines = Arrays.asList (new TransactionLine (1, 1, 1, "something", 3000.00f, 1));
+		
+		Mockito.when (transactionLineRepo.findByTransactionIdOrderById (1)).thenReturn (lines);
+		
+		assertEquals (lines, transactionService.getItems (1));
 	}
 	
 	@Test
@@ -76,4 +145,31 @@ class TransactionServiceTest {
 		
 		assertEquals ("Error! Invalid transaction id", exception.getMessage ());
 	}
-}
\ No newline at end of file
+	
+	@Test
+	void migrateLegacyItems () {
+		Transaction transaction = new Transaction (3, null, null, 46.00f);
+		Transaction unreadable = new Transaction (7, null, null, 10.00f);
+		
+		transaction.setLegacyItems ("[{\"id\":1,\"product\":{\"id\":2,\"name\":\"Java I\",\"price\":10.0,\"salePrice\":8.0},\"quantity\":2},{\"id\":2,\"product\":{\"id\":4,\"name\":\"Java II\",\"price\":15.0,\"salePrice\":null},\"quantity\":2}]");
+		unreadable.setLegacyItems ("not json");
+		
+		Mockito.when (transactionRepo.findByLegacyItemsNotNullAndIdGreaterThanOrderById (Mockito.eq (0), Mockito.any (Pageable.class))).thenReturn (Arrays.asList (transaction, unreadable));
+		
+		assertEquals (7, transactionService.migrateLegacyItems (0, 2));
+		
+		assertNull (transaction.getLegacyItems ());
+		assertEquals ("not json", unreadable.getLegacyItems ());
+		
+		Mockito.verify (transactionLineRepo).insertAll (Arrays.asList (new TransactionLine (null, 3, 2, "Java I", 8.00f, 2), new TransactionLine (null, 3, 4, "Java II", 15.00f, 2)));
+	}
+	
+	@Test
+	void migrateLegacyItemsWhenNoneAreLeft () {
+		Mockito.when (transactionRepo.findByLegacyItemsNotNullAndIdGreaterThanOrderById (Mockito.eq (7), Mockito.any (Pageable.class))).thenReturn (new ArrayList <> ());
+		
+		assertNull (transactionService.migrateLegacyItems (7, 2));
+		
+		Mockito.verify (transactionLineRepo, Mockito.never ()).insertAll (Mockito.any ());
+	}
+}
@@ -19,10 +19,11 @@ class UserServiceTest {
 	UserService userService;
 	UserRepo userRepo = Mockito.mock (UserRepo.class);
 	CartItemRepo cartItemRepo = Mockito.mock (CartItemRepo.class);
+	StockHoldService stockHoldService = Mockito.mock (StockHoldService.class);
 	BCryptPasswordEncoder passwordEncoder = new BCryptPasswordEncoder ();
 	
 	public UserServiceTest () {
-		userService = new UserService (userRepo, cartItemRepo);
+		userService = new UserService (userRepo, cartItemRepo, stockHoldService);
 	}
 	
 	@Test
@@ -143,20 +144,8 @@ class UserServiceTest {
 		
 		userService.removeFromCart (user, cartItem);
 		
+		Mockito.verify (stockHoldService).release (cartItem);
 		Mockito.verify (cartItemRepo).delete (Mockito.any ());
 		Mockito.verify (userRepo).save (Mockito.any ());
 	}
-	
-	@Test
-	void clearCart () {
-		List <CartItem> cartItems = new ArrayList <> ();
-		cartItems.add (new CartItem (1, null, new Product (), 1));
-		cartItems.add (new CartItem (2, null, new Product (), 2));
-		User user = new User (1, "first", "last", "email", "username", "password", cartItems, null, new UserRole (2, "USER"));
-		
-		userService.clearCart (user);
-		
-		Mockito.verify (cartItemRepo).deleteAll (Mockito.any ());
-		Mockito.verify (userRepo).save (Mockito.any ());
-	}
 }
\ No newline at end of file
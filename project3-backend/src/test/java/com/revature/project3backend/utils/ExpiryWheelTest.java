@@ -0,0 +1,47 @@
+package com.revature.project3backend.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ExpiryWheelTest {
+	Instant start = Instant.ofEpochSecond (1000);
+	ExpiryWheel <Integer> wheel = new ExpiryWheel <> (Duration.ofSeconds (1), 8, start);
+	
+	@Test
+	void advance () {
+		wheel.schedule (1, start.plusSeconds (2));
+		wheel.schedule (2, start.plusMillis (2500));
+		wheel.schedule (3, start.plusSeconds (5));
+		
+		assertEquals (3, wheel.size ());
+		assertEquals (new ArrayList <> (), wheel.advance (start.plusSeconds (1)));
+		assertEquals (Arrays.asList (1), wheel.advance (start.plusMillis (2900)));
+		assertEquals (Arrays.asList (2), wheel.advance (start.plusSeconds (3)));
+		assertEquals (Arrays.asList (3), wheel.advance (start.plusSeconds (60)));
+		assertEquals (0, wheel.size ());
+	}
+	
+	@Test
+	void advanceLeavesLaterTurnsOfTheWheel () {
+		wheel.schedule (1, start.plusSeconds (3));
+		wheel.schedule (2, start.plusSeconds (11));
+		
+		assertEquals (Arrays.asList (1), wheel.advance (start.plusSeconds (4)));
+		assertEquals (new ArrayList <> (), wheel.advance (start.plusSeconds (10)));
+		assertEquals (Arrays.asList (2), wheel.advance (start.plusSeconds (11)));
+	}
+	
+	@Test
+	void scheduleWhenAlreadyExpired () {
+		wheel.advance (start.plusSeconds (5));
+		wheel.schedule (1, start);
+		
+		assertEquals (Arrays.asList (1), wheel.advance (start.plusSeconds (6)));
+	}
+}
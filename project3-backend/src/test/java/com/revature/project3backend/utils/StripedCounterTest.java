@@ -0,0 +1,94 @@
+package com.revature.project3backend.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StripedCounterTest {
+	@Test
+	void tryTake () {
+		StripedCounter counter = new StripedCounter (10, 4);
+		
+		assertEquals (10, counter.get ());
+		assertTrue (counter.tryTake (2));
+		assertEquals (8, counter.get ());
+	}
+	
+	@Test
+	void tryTakeFromSeveralStripes () {
+		StripedCounter counter = new StripedCounter (10, 4);
+		
+		//no stripe has more than 3
+		assertTrue (counter.tryTake (9));
+		assertEquals (1, counter.get ());
+		assertTrue (counter.tryTake (1));
+		assertFalse (counter.tryTake (1));
+	}
+	
+	@Test
+	void tryTakeWhenThereIsNotEnough () {
+		StripedCounter counter = new StripedCounter (5, 4);
+		
+		assertFalse (counter.tryTake (6));
+		assertEquals (5, counter.get ());
+	}
+	
+	@Test
+	void add () {
+		StripedCounter counter = new StripedCounter (0, 4);
+		
+		counter.add (3);
+		
+		assertEquals (3, counter.get ());
+		assertTrue (counter.tryTake (3));
+	}
+	
+	@Test
+	void tryTakeFromManyThreads () throws Exception {
+		int threads = 8;
+		StripedCounter counter = new StripedCounter (1000, 4);
+		ExecutorService executor = Executors.newFixedThreadPool (threads);
+		CountDownLatch start = new CountDownLatch (1);
+		List <Future <Integer>> results = new ArrayList <> ();
+		
+		for (int i = 0; i < threads; i++) {
+			results.add (executor.submit ((Callable <Integer>) () -> {
+				start.await ();
+				
+				int taken = 0;
+				
+				for (int j = 0; j < 200; j++) {
+					if (counter.tryTake (1 + j % 3)) {
+						taken += 1 + j % 3;
+					}
+				}
+				
+				return taken;
+			}));
+		}
+		
+		start.countDown ();
+		executor.shutdown ();
+		
+		assertTrue (executor.awaitTermination (1, TimeUnit.MINUTES));
+		
+		int taken = 0;
+		
+		for (Future <Integer> result : results) {
+			taken += result.get ();
+		}
+		
+		assertEquals (1000, taken + counter.get ());
+	}
+}
@@ -0,0 +1,76 @@
+package com.revature.project3backend.utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TransactionUtilTest {
+	List <String> ran = new ArrayList <> ();
+	
+	@AfterEach
+	void afterEach () {
+		if (TransactionSynchronizationManager.isSynchronizationActive ()) {
+			TransactionSynchronizationManager.clearSynchronization ();
+		}
+	}
+	
+	@Test
+	void afterCommit () {
+		TransactionSynchronizationManager.initSynchronization ();
+		
+		TransactionUtil.afterCommit (() -> ran.add ("first"));
+		
+		assertTrue (ran.isEmpty ());
+		
+		TransactionSynchronizationUtils.invokeAfterCommit (TransactionSynchronizationManager.getSynchronizations ());
+		
+		assertEquals (Arrays.asList ("first"), ran);
+	}
+	
+	@Test
+	void afterCommitWithoutTransaction () {
+		TransactionUtil.afterCommit (() -> ran.add ("first"));
+		
+		assertEquals (Arrays.asList ("first"), ran);
+	}
+	
+	@Test
+	void afterCommitAfterTheTransactionCommitted () {
+		TransactionSynchronizationManager.initSynchronization ();
+		
+		TransactionUtil.afterCommit (() -> {
+			ran.add ("first");
+			
+			TransactionUtil.afterCommit (() -> ran.add ("second"));
+		});
+		
+		TransactionSynchronizationUtils.invokeAfterCommit (TransactionSynchronizationManager.getSynchronizations ());
+		
+		//a synchronization registered now would never be called
+		assertEquals (Arrays.asList ("first", "second"), ran);
+	}
+	
+	@Test
+	void afterRollback () {
+		TransactionSynchronizationManager.initSynchronization ();
+		
+		TransactionUtil.afterRollback (() -> ran.add ("first"));
+		
+		TransactionSynchronizationUtils.invokeAfterCompletion (TransactionSynchronizationManager.getSynchronizations (), TransactionSynchronization.STATUS_COMMITTED);
+		
+		assertTrue (ran.isEmpty ());
+		
+		TransactionSynchronizationUtils.invokeAfterCompletion (TransactionSynchronizationManager.getSynchronizations (), TransactionSynchronization.STATUS_ROLLED_BACK);
+		
+		assertEquals (Arrays.asList ("first"), ran);
+	}
+}
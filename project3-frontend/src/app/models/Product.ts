@@ -6,4 +6,5 @@ export interface Product {
 	salePrice : number;
 	imageUrl : string;
 	stock : number;
+	version : number;
 };
\ No newline at end of file
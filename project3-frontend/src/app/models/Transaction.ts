@@ -1,9 +1,9 @@
-import { CartItem } from "./CartItem";
+import { TransactionLine } from "./TransactionLine";
 import { User } from "./User";
 
 export interface Transaction {
 	id : number;
 	buyer : User;
-	items : CartItem [];
+	items : TransactionLine [];
 	total : number;
 };
\ No newline at end of file
@@ -0,0 +1,7 @@
+export interface TransactionLine {
+	id : number;
+	productId : number;
+	name : string;
+	price : number;
+	quantity : number;
+};
\ No newline at end of file
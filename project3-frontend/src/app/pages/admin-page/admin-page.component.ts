@@ -105,6 +105,7 @@ export class AdminPageComponent implements OnInit {
 		formData.append("imageUrl", this.newProduct.imageUrl);
 		formData.append("file", file);
 		formData.append("id", JSON.stringify(this.newProduct.id));
+		formData.append("version", JSON.stringify(this.newProduct.version));
 
 		console.log("new product");
 		console.log(this.newProduct);
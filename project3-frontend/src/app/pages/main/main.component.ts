@@ -12,14 +12,14 @@ import { DataService } from 'src/app/services/data/data.service';
 	}
 })
 export class MainComponent implements OnInit {
-	productsPerPage : number = 20;
-	
 	searchQuery : string = "";
 	
 	currentPage : number = 0;
 	
 	lastPage : boolean = false;
 	
+	suggestions : string[] = [];
+	
 	constructor (public dataService : DataService, private apiService : ApiService) {}
 	
 	onKeyDown = (event : KeyboardEvent) : void => {
@@ -28,6 +28,12 @@ export class MainComponent implements OnInit {
 		}
 	};
 	
+	onInput = () : void => {
+		this.apiService.getSuggestions (this.searchQuery, (body : any) : void => {
+			this.suggestions = body.data.map ((suggestion : any) : string => suggestion.name);
+		}, () : void => {});
+	};
+	
 	search = () : void => {
 		this.currentPage = 0;
 		
@@ -38,9 +44,7 @@ export class MainComponent implements OnInit {
 	
 	getProducts = () : void => {
 		this.apiService.getProducts (this.searchQuery, this.currentPage, (body : any) : void => {
-			if (body.data.length < this.productsPerPage) {
-				this.lastPage = true;
-			}
+			this.lastPage = !body.hasNext;
 			
 			this.dataService.products = this.dataService.products.concat (body.data);
 		});
@@ -26,8 +26,6 @@ export class ReceiptComponent implements OnInit {
 		
 		this.activatedRoute.params.subscribe (paramaters => {
 			this.apiService.getTransaction (parseInt (paramaters ["transactionId"]), (body : any) : void => {
-				body.data.items = JSON.parse (body.data.items);
-				
 				this.transaction = body.data;
 			});
 		});
@@ -111,6 +111,10 @@ export class ApiService {
 		this.handleResponse (this.get ("product?searchQuery=" + searchQuery + "&page=" + page), callback, errorCallback);
 	}
 	
+	getSuggestions = (prefix : string, callback? : Function, errorCallback? : Function) : void => {
+		this.handleResponse (this.get ("product/suggest?prefix=" + encodeURIComponent (prefix)), callback, errorCallback);
+	}
+	
 	getProduct = (id : number, callback? : Function, errorCallback? : Function) : void => {
 		this.handleResponse (this.get ("product/" + id), callback, errorCallback);
 	};